@@ -37,6 +37,10 @@ MIN_FACE_SIZE        = 50
 BLUR_THRESHOLD       = 50
 FACE_MODEL_NAME      = "buffalo_l"
 DET_SIZE             = (416, 416)
+# الـ backend (Java) هو صاحب المعرض ومزامنة الفولدر (FaceGallerySyncService)، بس مبيعيدش تسجيل
+# الطلاب لما السيرفر ده يعيد التشغيل → طول ما face.attend.matcher=sidecar (الـ default) لازم
+# المعرض يتحمّل من الفولدر هنا. FACE_AUTO_REGISTER=0 لو face.attend.matcher=index (مستخرج embeddings بس)
+AUTO_REGISTER        = os.environ.get("FACE_AUTO_REGISTER", "1") == "1"
 
 # ─── Create FastAPI app ─────────────────────────────────────
 app = FastAPI(
@@ -86,6 +90,17 @@ class FaceQualityChecker:
         return score >= 1
 
 
+# ─── Image Listing ──────────────────────────────────────────
+IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png"}
+
+
+def list_images(folder):
+    """صور الطالب: الفولدر نفسه + فولدرات الـ shard اللي الـ backend بيكتب فيها (<code>/<hh>/<sha256>.jpg)"""
+    folder = Path(folder)
+    paths = sorted(folder.glob("*")) + sorted(folder.glob("*/*"))
+    return [str(p) for p in paths if p.is_file() and p.suffix.lower() in IMAGE_EXTENSIONS]
+
+
 # ─── Recognition System ─────────────────────────────────────
 class FaceRecognitionSystem:
     def __init__(self):
@@ -201,14 +216,28 @@ class FaceRecognitionSystem:
             traceback.print_exc()
             return {"results": [], "match_success": False, "best_match": None}
 
+    def extract_embeddings(self, frame):
+        """يرجع embedding (normalized) لكل وجه صالح في الصورة - بدون مطابقة"""
+        faces = self.app.get(frame)
+        out = []
+        for face in faces:
+            if face.embedding is None or not self.quality.evaluate(face, frame):
+                continue
+            emb = face.embedding / np.linalg.norm(face.embedding)
+            out.append({
+                "bbox": face.bbox.astype(int).tolist() if face.bbox is not None else None,
+                "det_score": float(face.det_score) if face.det_score is not None else None,
+                "embedding": emb.astype(np.float32).tolist(),
+            })
+        return out
+
     def register_new_face(self, student_code):
         folder_path = os.path.join(REGISTER_FOLDER, student_code)
         if not os.path.exists(folder_path):
             print(f"مجلد الطالب غير موجود: {folder_path}")
             return False, f"مجلد {student_code} غير موجود"
 
-        images = [os.path.join(folder_path, f) for f in os.listdir(folder_path) 
-                  if f.lower().endswith((".jpg", ".jpeg", ".png"))]
+        images = list_images(folder_path)
 
         if not images:
             print(f"لا توجد صور في مجلد {student_code}")
@@ -236,7 +265,7 @@ def auto_register(system):
             continue
 
         name = person_dir.name
-        images = [str(p) for p in person_dir.glob("*") if p.suffix.lower() in {".jpg", ".jpeg", ".png"}]
+        images = list_images(person_dir)
 
         if images and system.add_person(name, images):
             added += 1
@@ -246,9 +275,10 @@ def auto_register(system):
 
 # ─── Initialize ─────────────────────────────────────────────
 system = FaceRecognitionSystem()
-auto_register(system)
+if AUTO_REGISTER:
+    auto_register(system)
 
-if not system.labels:
+if AUTO_REGISTER and not system.labels:
     print("⚠️  تحذير: لا يوجد أشخاص مسجلين → كل النتائج ستكون Unknown")
 
 
@@ -261,6 +291,21 @@ class RegisterRequest(BaseModel):
     student_code: str
 
 
+class BatchImageData(BaseModel):
+    images: list[str]  # عدة فريمات / قصاصات وجوه في طلب واحد
+
+
+# ─── Helpers ────────────────────────────────────────────────
+def decode_image(image_b64):
+    if image_b64.startswith("data:image"):
+        image_b64 = image_b64.split(",", 1)[1]
+    nparr = np.frombuffer(base64.b64decode(image_b64), np.uint8)
+    frame = cv2.imdecode(nparr, cv2.IMREAD_COLOR)
+    if frame is None:
+        raise ValueError("تعذر فك تشفير الصورة")
+    return frame
+
+
 # ─── Endpoints ──────────────────────────────────────────────
 @app.post("/recognize", response_class=JSONResponse)
 async def recognize_face(data: ImageData):
@@ -293,6 +338,49 @@ async def recognize_face(data: ImageData):
         raise HTTPException(status_code=400, detail=f"خطأ في معالجة الصورة: {str(e)}")
 
 
+@app.post("/embed", response_class=JSONResponse)
+async def embed_face(data: ImageData):
+    """مستخرج فقط: يرجع embeddings الوجوه والـ backend هو اللي يطابق"""
+    try:
+        frame = decode_image(data.image)
+        faces = system.extract_embeddings(frame)
+        return {"status": "success", "faces_detected": len(faces), "faces": faces}
+    except Exception as e:
+        traceback.print_exc()
+        raise HTTPException(status_code=400, detail=f"خطأ في معالجة الصورة: {str(e)}")
+
+
+@app.post("/recognize_batch", response_class=JSONResponse)
+async def recognize_batch(data: BatchImageData):
+    items = []
+    for image in data.images:
+        try:
+            result_data = system.recognize_frame(decode_image(image))
+            items.append({
+                "status": "success",
+                "faces_detected": len(result_data["results"]),
+                "results": result_data["results"],
+                "match_success": result_data["match_success"],
+                "best_match": result_data["best_match"],
+            })
+        except Exception as e:
+            items.append({"status": "error", "detail": str(e), "faces_detected": 0,
+                          "results": [], "match_success": False, "best_match": None})
+    return {"status": "success", "items": items}
+
+
+@app.post("/embed_batch", response_class=JSONResponse)
+async def embed_batch(data: BatchImageData):
+    items = []
+    for image in data.images:
+        try:
+            faces = system.extract_embeddings(decode_image(image))
+            items.append({"status": "success", "faces_detected": len(faces), "faces": faces})
+        except Exception as e:
+            items.append({"status": "error", "detail": str(e), "faces_detected": 0, "faces": []})
+    return {"status": "success", "items": items}
+
+
 @app.post("/register_new_face")
 async def register_new_face(req: RegisterRequest):
     try:
@@ -322,6 +410,9 @@ if __name__ == "__main__":
     print("   Face Recognition & Attendance API جاهزة - ديناميكية كاملة")
     print("   →  http://localhost:8000")
     print("   • POST /recognize          ← { \"image\": \"base64...\" }")
+    print("   • POST /embed              ← { \"image\": \"base64...\" }  (embeddings فقط)")
+    print("   • POST /recognize_batch    ← { \"images\": [\"base64...\", ...] }")
+    print("   • POST /embed_batch        ← { \"images\": [\"base64...\", ...] }")
     print("   • POST /register_new_face  ← { \"student_code\": \"112233\" }")
     print("   • GET  /health             ← حالة النظام")
     print("   • GET  /docs               ← Swagger UI للتجربة")
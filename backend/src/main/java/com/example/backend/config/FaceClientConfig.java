@@ -0,0 +1,68 @@
+package com.example.backend.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP client used to talk to the face-recognition sidecar (face.py).
+ * - Pooled keep-alive connections (no TCP/HTTP setup per frame)
+ * - Separate connect / pool-acquire / response timeouts
+ * - Idle and expired connections are evicted in the background
+ */
+@Configuration
+public class FaceClientConfig {
+
+    @Value("${face.client.connect-timeout-ms:1000}")
+    private long connectTimeoutMs;
+
+    @Value("${face.client.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    @Value("${face.client.pool-acquire-timeout-ms:500}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${face.client.pool.max-total:32}")
+    private int maxTotal;
+
+    @Value("${face.client.pool.max-per-route:16}")
+    private int maxPerRoute;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient faceHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    @Bean
+    public RestTemplate faceRestTemplate(CloseableHttpClient faceHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(faceHttpClient));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.backend.config;
+
+import com.example.backend.model.PackedEmbedding;
+import org.bson.types.Binary;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+/**
+ * Custom MongoDB type conversions.
+ * - {@link PackedEmbedding} is stored as one BSON binary instead of an array of doubles
+ */
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new PackedEmbeddingWriter(),
+                new BinaryToPackedEmbedding(),
+                new BytesToPackedEmbedding()
+        ));
+    }
+
+    @WritingConverter
+    static class PackedEmbeddingWriter implements Converter<PackedEmbedding, Binary> {
+        @Override
+        public Binary convert(PackedEmbedding source) {
+            return new Binary(source.toBytes());
+        }
+    }
+
+    @ReadingConverter
+    static class BinaryToPackedEmbedding implements Converter<Binary, PackedEmbedding> {
+        @Override
+        public PackedEmbedding convert(Binary source) {
+            return PackedEmbedding.fromBytes(source.getData());
+        }
+    }
+
+    @ReadingConverter
+    static class BytesToPackedEmbedding implements Converter<byte[], PackedEmbedding> {
+        @Override
+        public PackedEmbedding convert(byte[] source) {
+            return PackedEmbedding.fromBytes(source);
+        }
+    }
+}
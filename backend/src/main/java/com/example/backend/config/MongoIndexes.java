@@ -0,0 +1,148 @@
+package com.example.backend.config;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compound and partial index definitions, next to the query shapes they serve.
+ * <p>
+ * Single-field indexes stay on the model fields ({@code @Indexed}); everything with more
+ * than one key or a filter is declared here. {@code IndexVerificationService} creates or
+ * verifies both kinds on startup and runs {@link #QUERY_SHAPES} through {@code explain} to
+ * report shapes that would scan the collection or sort in memory. A new repository finder or
+ * service query should get a shape here (and an index, if it has none).
+ */
+public final class MongoIndexes {
+
+    private MongoIndexes() {
+    }
+
+    /**
+     * @param partialFilter null for a regular index
+     */
+    public record IndexSpec(String collection, String name, Document keys, Document partialFilter) {
+
+        public IndexDefinition toDefinition() {
+            CompoundIndexDefinition definition = new CompoundIndexDefinition(keys);
+            definition.named(name);
+            if (partialFilter != null) definition.partial(PartialIndexFilter.of(partialFilter));
+            return definition;
+        }
+    }
+
+    /**
+     * A query as the code sends it (sample values); {@code sort} may be empty
+     */
+    public record QueryShape(String name, String collection, Document filter, Document sort) {
+    }
+
+    private static final String STUDENTS = "students";
+    private static final String TRANSACTIONS = "payment_transactions";
+    private static final String USERS = "users";
+
+    // ────────────────────────────────────────────────────────────────
+    // Indexes
+    // ────────────────────────────────────────────────────────────────
+
+    public static final List<IndexSpec> INDEXES = List.of(
+            // findByClassName / findByClassNameAndDivision + قوائم الفصل مترتبة بالاسم
+            new IndexSpec(STUDENTS, "class_division_name_idx",
+                    new Document("className", 1).append("division", 1).append("fullName", 1), null),
+            // findByClassName مترتب بالاسم (الـ division في النص بيمنع class_division_name_idx يخدم الترتيب)
+            new IndexSpec(STUDENTS, "class_name_idx",
+                    new Document("className", 1).append("fullName", 1), null),
+            // الذمم بالأكبر رصيد + studentCode كـ tie-breaker (ReceivablesService) – بدون studentCode الترتيب بيبقى in-memory
+            new IndexSpec(STUDENTS, "balance_code_idx",
+                    new Document("balanceDue", -1).append("studentCode", 1), null),
+            // الذمم لكل فصل
+            new IndexSpec(STUDENTS, "class_balance_code_idx",
+                    new Document("className", 1).append("balanceDue", -1).append("studentCode", 1), null),
+            // findByPaymentStatus(OrderByBalanceDueDesc) + الذمم بفلتر الحالة
+            new IndexSpec(STUDENTS, "status_balance_code_idx",
+                    new Document("paymentStatus", 1).append("balanceDue", -1).append("studentCode", 1), null),
+            // الطلاب المقيدين في يوم (قفل اليوم، تنبيهات الغياب): active:true + createdAt < يوم
+            new IndexSpec(STUDENTS, "active_enrolled_idx",
+                    new Document("createdAt", 1), new Document("active", true)),
+            // الترتيب الافتراضي في GET /api/students
+            new IndexSpec(STUDENTS, "created_desc_idx",
+                    new Document("createdAt", -1), null),
+            new IndexSpec(STUDENTS, "active_idx",
+                    new Document("active", 1), null),
+            new IndexSpec(STUDENTS, "name_idx",
+                    new Document("fullName", 1), null),
+            new IndexSpec(STUDENTS, "absent_days_idx",
+                    new Document("absentDays", -1), null),
+            new IndexSpec(STUDENTS, "guardian_phone_secondary_idx",
+                    new Document("guardianPhoneSecondary", 1),
+                    new Document("guardianPhoneSecondary", new Document("$exists", true))),
+            // findStudentsPresentToday / findByAttendanceOnDate (multikey)
+            new IndexSpec(STUDENTS, "attendance_time_idx",
+                    new Document("attendanceRecords.dateTime", 1), null),
+            // المحصل لكل فصل في الشهر (PayrollService)
+            new IndexSpec(TRANSACTIONS, "class_posted_idx",
+                    new Document("className", 1).append("postedAt", 1), null),
+            // المدرسين النشطين (PayrollService) / findByRole
+            new IndexSpec(USERS, "role_name_idx",
+                    new Document("role", 1).append("active", 1).append("fullName", 1), null)
+    );
+
+    // ────────────────────────────────────────────────────────────────
+    // Query shapes (explain check)
+    // ────────────────────────────────────────────────────────────────
+
+    public static final List<QueryShape> QUERY_SHAPES = queryShapes();
+
+    private static List<QueryShape> queryShapes() {
+        // LocalDateTime بيتخزن كـ Date بتوقيت السيرفر
+        Date today = Date.from(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date tomorrow = Date.from(LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Document none = new Document();
+        return List.of(
+                new QueryShape("students.byStudentCode", STUDENTS, new Document("studentCode", "S-1"), none),
+                new QueryShape("students.byClass", STUDENTS, new Document("className", "1"), new Document("fullName", 1)),
+                new QueryShape("students.byClassAndDivision", STUDENTS,
+                        new Document("className", "1").append("division", "A"), none),
+                new QueryShape("students.byGuardianPhone", STUDENTS, new Document("guardianPhonePrimary", "0100"), none),
+                new QueryShape("students.byGuardianPhoneSecondary", STUDENTS, new Document("guardianPhoneSecondary", "0100"), none),
+                new QueryShape("students.presentOnDay", STUDENTS,
+                        new Document("attendanceRecords.dateTime", new Document("$gte", today).append("$lt", tomorrow)), none),
+                new QueryShape("students.absentDays", STUDENTS, new Document("absentDays", new Document("$gte", 5)), none),
+                new QueryShape("students.byPaymentStatus", STUDENTS,
+                        new Document("paymentStatus", "OVERDUE"), new Document("balanceDue", -1)),
+                new QueryShape("students.receivables", STUDENTS,
+                        new Document("balanceDue", new Document("$gt", 0)), new Document("balanceDue", -1).append("studentCode", 1)),
+                new QueryShape("students.receivablesByClass", STUDENTS,
+                        new Document("balanceDue", new Document("$gt", 0)).append("className", "1"),
+                        new Document("balanceDue", -1).append("studentCode", 1)),
+                new QueryShape("students.receivablesByStatus", STUDENTS,
+                        new Document("balanceDue", new Document("$gt", 0)).append("paymentStatus", "OVERDUE"),
+                        new Document("balanceDue", -1).append("studentCode", 1)),
+                new QueryShape("students.active", STUDENTS, new Document("active", true), none),
+                new QueryShape("students.enrolledOn", STUDENTS,
+                        new Document("active", true).append("createdAt", new Document("$lt", tomorrow)), none),
+                new QueryShape("students.noAttendanceSince", STUDENTS,
+                        new Document("active", true).append("$or", List.of(
+                                new Document("lastSeenAt", new Document("$lt", today)), new Document("lastSeenAt", null))), none),
+                new QueryShape("students.allByCreatedAt", STUDENTS, none, new Document("createdAt", -1)),
+                new QueryShape("students.allByName", STUDENTS, none, new Document("fullName", 1)),
+                new QueryShape("payments.ledger", TRANSACTIONS, new Document("studentCode", "S-1"), new Document("postedAt", -1)),
+                new QueryShape("payments.unapplied", TRANSACTIONS,
+                        new Document("applied", false).append("postedAt", new Document("$lt", today)), new Document("postedAt", 1)),
+                new QueryShape("payments.collectedByClass", TRANSACTIONS,
+                        new Document("className", new Document("$in", List.of("1", "2")))
+                                .append("postedAt", new Document("$gte", today).append("$lt", tomorrow)), none),
+                new QueryShape("users.byEmail", USERS, new Document("email", "a@b.c"), none),
+                new QueryShape("users.activeTeachers", USERS,
+                        new Document("role", "TEACHER").append("active", true), new Document("fullName", 1)),
+                new QueryShape("outbox.due", "notification_outbox",
+                        new Document("status", "PENDING").append("nextAttemptAt", new Document("$lte", today)), none)
+        );
+    }
+}
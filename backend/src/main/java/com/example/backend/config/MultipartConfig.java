@@ -0,0 +1,42 @@
+package com.example.backend.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.List;
+
+/**
+ * Multipart handling:
+ * - normal endpoints keep Spring's resolver ({@code spring.servlet.multipart.*} limits,
+ *   parts buffered in memory / temp files before the controller runs)
+ * - {@code face.upload.stream.paths} are left unparsed, so the controller can stream the
+ *   body part by part ({@code FaceUploadService.storeStream}) with its own limits
+ */
+@Configuration
+public class MultipartConfig {
+
+    @Value("${face.upload.stream.paths:/api/students/*/face-images,/api/students/face-images/bulk}")
+    private List<String> streamingPaths;
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public StandardServletMultipartResolver multipartResolver(MultipartProperties properties) {
+        AntPathMatcher matcher = new AntPathMatcher();
+        UrlPathHelper pathHelper = new UrlPathHelper();
+        StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                String path = pathHelper.getPathWithinApplication(request);
+                return super.isMultipart(request) && streamingPaths.stream().noneMatch(p -> matcher.match(p, path));
+            }
+        };
+        resolver.setResolveLazily(properties.isResolveLazily());
+        return resolver;
+    }
+}
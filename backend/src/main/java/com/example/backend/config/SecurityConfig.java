@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -27,10 +28,12 @@ import java.util.List;
  * - CORS for React frontend (fixed properly)
  * - Public endpoints: auth (login/register) + camera
  * - Protected endpoints: students (POST/PUT/DELETE require ADMIN/STAFF)
+ * - Method security: per-endpoint roles via @PreAuthorize on the controllers
  * - Custom JSON responses for 401/403 errors
  */
 @Configuration
 @EnableWebSecurity
+@EnableMethodSecurity
 public class SecurityConfig {
 
     private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
@@ -116,7 +119,7 @@ public class SecurityConfig {
         ));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         configuration.setAllowedHeaders(List.of("*"));
-        configuration.setExposedHeaders(List.of("Authorization")); // مهم لو بتعرض التوكن
+        configuration.setExposedHeaders(List.of("Authorization", "ETag")); // مهم لو بتعرض التوكن
         configuration.setAllowCredentials(true); // مهم لو فيه cookies أو auth في المستقبل
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,233 @@
+package com.example.backend.controller;
+
+import com.example.backend.service.AttendanceDayCloseService;
+import com.example.backend.service.AttendanceDayCloseService.DayCloseResult;
+import com.example.backend.service.AttendancePipelineService;
+import com.example.backend.service.AttendancePipelineService.PipelineResult;
+import com.example.backend.service.AttendanceRollupService;
+import com.example.backend.service.AttendanceRollupService.Rebuilt;
+import com.example.backend.service.AttendanceRollupService.Report;
+import com.example.backend.service.AttendanceSnapshotService;
+import com.example.backend.service.FaceServiceException;
+import com.example.backend.service.PresenceBitmapService;
+import com.example.backend.service.PresenceBitmapService.PresenceResult;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST Controller for face-driven attendance (recognize + attend in one call).
+ */
+@RestController
+@RequestMapping("/api/attendance")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class AttendanceController {
+
+    private final AttendancePipelineService pipeline;
+    private final AttendanceSnapshotService snapshotService;
+    private final AttendanceRollupService rollupService;
+    private final AttendanceDayCloseService dayCloseService;
+    private final PresenceBitmapService presenceService;
+
+    // أقصى مدة لتقرير أو rebuild واحد
+    private static final long MAX_RANGE_DAYS = 366;
+
+    public AttendanceController(
+            AttendancePipelineService pipeline,
+            AttendanceSnapshotService snapshotService,
+            AttendanceRollupService rollupService,
+            AttendanceDayCloseService dayCloseService,
+            PresenceBitmapService presenceService) {
+        this.pipeline = pipeline;
+        this.snapshotService = snapshotService;
+        this.rollupService = rollupService;
+        this.dayCloseService = dayCloseService;
+        this.presenceService = presenceService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. فريم → تعرف → تسجيل حضور (طلب واحد بدل ثلاثة)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping(value = "/recognize", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<PipelineResult> recognizeAndAttend(
+            @RequestBody CameraController.GateRequest request,
+            Authentication authentication) {
+
+        if (request == null || request.image == null || request.image.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "الصورة مطلوبة");
+        }
+        byte[] frame;
+        try {
+            frame = CameraController.decodeImage(request.image);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "صيغة الصورة غير صحيحة");
+        }
+
+        String recordedBy = authentication != null ? authentication.getName() : "system";
+        try {
+            return ResponseEntity.ok(pipeline.process(request.cameraId, frame, recordedBy));
+        } catch (FaceServiceException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "خدمة التعرف على الوجه غير متاحة حاليًا");
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. تشغيل / إيقاف التسجيل المستمر من كاميرا السيرفر
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/camera/start")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, Object>> startCameraJob(
+            @RequestParam(defaultValue = "0") long intervalMs) {
+        boolean started = pipeline.startCameraJob(intervalMs);
+        return ResponseEntity.ok(Map.of("started", started, "running", pipeline.isCameraJobRunning()));
+    }
+
+    @PostMapping("/camera/stop")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, Object>> stopCameraJob() {
+        boolean stopped = pipeline.stopCameraJob();
+        return ResponseEntity.ok(Map.of("stopped", stopped, "running", pipeline.isCameraJobRunning()));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 3. صورة الإثبات لسجل حضور بالوش (attendanceRecords[].snapshot)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/snapshots/{day}/{file:.+}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<Resource> getSnapshot(@PathVariable String day, @PathVariable String file) {
+        return snapshotService.resolve(day + "/" + file)
+                .map(path -> ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_JPEG)
+                        // الاسم فيه الوقت بالملي ثانية → المحتوى مبيتغيرش
+                        .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS).cachePrivate())
+                        .<Resource>body(new FileSystemResource(path)))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "الصورة غير موجودة (ممكن تكون اتمسحت بعد مدة الاحتفاظ)"));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 4. تقرير حضور فصل / مدرسة لفترة (من الـ rollups اليومية)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/report")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<Report> report(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) String division) {
+        checkRange(from, to);
+        return ResponseEntity.ok(rollupService.report(from, to, className, division));
+    }
+
+    // إعادة حساب الـ rollups وbitmaps الحضور من سجلات الحضور الأصلية (بعد تعديل يدوي أو مشكلة) – الأيام اللي فاتت بس، النهارده لا
+    @PostMapping("/report/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Rebuilt> rebuildReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        checkRange(from, to);
+        Rebuilt rebuilt = rollupService.rebuild(from, to);
+        if (rebuilt.to() != null) {
+            for (LocalDate day = from; !day.isAfter(rebuilt.to()); day = day.plusDays(1)) {
+                presenceService.refresh(day);
+            }
+        }
+        return ResponseEntity.ok(rebuilt);
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "تاريخ البداية بعد تاريخ النهاية");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "أقصى مدة هي " + MAX_RANGE_DAYS + " يوم");
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 5. قفل اليوم يدويًا (غياب + تأخير) – الأيام اللي قبله ومتقفلتش بتتقفل الأول
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/close")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<DayCloseResult>> closeDay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return ResponseEntity.ok(dayCloseService.closeThrough(date));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 6. مين غايب: النهارده / كذا يوم ورا بعض / من تاريخ معين (من الـ presence bitmaps)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/missing")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<PresenceResult> missing(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) String division) {
+        return ResponseEntity.ok(presenceService.missing(date != null ? date : LocalDate.now(), className, division));
+    }
+
+    @GetMapping("/absent-streak")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<PresenceResult> absentStreak(
+            @RequestParam(defaultValue = "3") int days,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate through,
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) String division) {
+        // الافتراضي لحد امبارح – النهارده لسه مخلصش
+        LocalDate last = through != null ? through : LocalDate.now().minusDays(1);
+        try {
+            return ResponseEntity.ok(presenceService.absentStreak(days, last, className, division));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // قائمة المتابعة: مفيش ولا حضور من since لحد through (الافتراضي النهارده)
+    @GetMapping("/follow-up")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<PresenceResult> followUp(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate through,
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) String division) {
+        try {
+            return ResponseEntity.ok(presenceService.noAttendanceSince(since,
+                    through != null ? through : LocalDate.now(), className, division));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(pipeline.getStats());
+        stats.put("dayClose", dayCloseService.getStats());
+        stats.put("presence", presenceService.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.CalendarDay;
+import com.example.backend.service.SchoolCalendarService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST Controller for the school calendar (working week, holidays, make-up days).
+ */
+@RestController
+@RequestMapping("/api/calendar")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class CalendarController {
+
+    private final SchoolCalendarService calendar;
+
+    // أقصى مدة لطلب واحد
+    private static final long MAX_RANGE_DAYS = 366;
+
+    public CalendarController(SchoolCalendarService calendar) {
+        this.calendar = calendar;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. الأيام الدراسية والإجازات لفترة
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getCalendar(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "تاريخ البداية بعد تاريخ النهاية");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "أقصى مدة هي " + MAX_RANGE_DAYS + " يوم");
+        }
+        Map<String, Object> body = new LinkedHashMap<>(calendar.describe());
+        body.put("overrides", calendar.overrides(from, to));
+        body.put("schoolDays", calendar.schoolDays(from, to));
+        return ResponseEntity.ok(body);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. إضافة / تعديل / حذف إجازة أو يوم تعويضي
+    // ────────────────────────────────────────────────────────────────
+    @PutMapping("/{date}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CalendarDay> setDay(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestBody DayRequest request) {
+        if (request == null || request.type == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "نوع اليوم مطلوب (HOLIDAY أو SCHOOL_DAY)");
+        }
+        return ResponseEntity.ok(calendar.setDay(date, request.type, request.name));
+    }
+
+    @DeleteMapping("/{date}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> removeDay(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        if (!calendar.removeDay(date)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "اليوم ده مش متسجل في التقويم");
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // ────────────────── DTOs ──────────────────
+
+    public static class DayRequest {
+        public CalendarDay.Type type;
+        public String name;             // اسم الإجازة / المناسبة
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.backend.controller;
 
+import com.example.backend.service.MotionGateService;
+import com.example.backend.service.MotionGateService.GateDecision;
 import com.example.backend.service.WebcamService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -7,13 +9,21 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Base64;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/camera")
 public class CameraController {
 
+    private static final String WEBCAM_CAMERA_ID = "webcam-0";
+
     @Autowired
     private WebcamService webcamService;
 
+    @Autowired
+    private MotionGateService motionGateService;
+
     @GetMapping("/start")
     public ResponseEntity<String> startCamera() {
         try {
@@ -59,4 +69,58 @@ public class CameraController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    // Frame from the server webcam, but only if the motion gate lets it through (204 otherwise)
+    @GetMapping(value = "/frame/gated", produces = MediaType.IMAGE_JPEG_VALUE)
+    public ResponseEntity<byte[]> getGatedFrame() {
+        try {
+            byte[] bytes = webcamService.getFrameAsBytes();
+            if (bytes == null) {
+                return ResponseEntity.noContent().build();
+            }
+            GateDecision decision = motionGateService.evaluate(WEBCAM_CAMERA_ID, bytes);
+            if (!decision.forward()) {
+                return ResponseEntity.noContent()
+                        .header("X-Gate-Reason", decision.reason().name())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .header("X-Gate-Reason", decision.reason().name())
+                    .body(bytes);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Ask the gate whether a client-captured frame is worth sending to recognition
+    @PostMapping(value = "/gate", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<GateDecision> gateFrame(@RequestBody GateRequest request) {
+        if (request == null || request.image == null || request.image.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        byte[] bytes;
+        try {
+            bytes = decodeImage(request.image);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(motionGateService.evaluate(request.cameraId, bytes));
+    }
+
+    // Suppression counters per camera
+    @GetMapping(value = "/gate/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, MotionGateService.GateStats>> getGateStats() {
+        return ResponseEntity.ok(motionGateService.getStats());
+    }
+
+    static byte[] decodeImage(String image) {
+        String base64 = image.startsWith("data:image") ? image.substring(image.indexOf(',') + 1) : image;
+        return Base64.getDecoder().decode(base64);
+    }
+
+    public static class GateRequest {
+        public String cameraId;
+        public String image;   // base64 (with or without data:image prefix)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.example.backend.controller;
+
+import com.example.backend.index.SearchHit;
+import com.example.backend.model.FaceEmbedding;
+import com.example.backend.model.FaceJob;
+import com.example.backend.service.FaceGallerySyncService;
+import com.example.backend.service.FaceImageProcessor;
+import com.example.backend.service.FaceImageStore;
+import com.example.backend.service.FaceIndexService;
+import com.example.backend.service.FaceRecognitionClient;
+import com.example.backend.service.FaceRegistrationService;
+import com.example.backend.service.FaceRegistrationService.BatchSummary;
+import com.example.backend.service.FaceUploadService;
+import com.example.backend.service.StudentPhotoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller for the face-embedding gallery (search + enrolment of vectors).
+ */
+@RestController
+@RequestMapping("/api/faces")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.DELETE, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class FaceController {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceController.class);
+
+    private static final int MAX_K = 50;
+
+    private final FaceIndexService faceIndexService;
+    private final FaceRecognitionClient faceClient;
+    private final FaceRegistrationService faceRegistration;
+    private final FaceGallerySyncService gallerySync;
+    private final FaceImageProcessor imageProcessor;
+    private final FaceImageStore imageStore;
+    private final FaceUploadService faceUploads;
+    private final StudentPhotoService studentPhotoService;
+
+    public FaceController(
+            FaceIndexService faceIndexService,
+            FaceRecognitionClient faceClient,
+            FaceRegistrationService faceRegistration,
+            FaceGallerySyncService gallerySync,
+            FaceImageProcessor imageProcessor,
+            FaceImageStore imageStore,
+            FaceUploadService faceUploads,
+            StudentPhotoService studentPhotoService) {
+        this.faceIndexService = faceIndexService;
+        this.faceClient = faceClient;
+        this.faceRegistration = faceRegistration;
+        this.gallerySync = gallerySync;
+        this.imageProcessor = imageProcessor;
+        this.imageStore = imageStore;
+        this.faceUploads = faceUploads;
+        this.studentPhotoService = studentPhotoService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. بحث top-k بالتشابه (cosine)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/search")
+    public ResponseEntity<List<SearchHit>> search(@RequestBody SearchRequest request) {
+        if (request == null || request.embedding == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "embedding مطلوب");
+        }
+        int k = Math.min(Math.max(1, request.k != null ? request.k : 1), MAX_K);
+        try {
+            List<SearchHit> hits = request.minScore != null
+                    ? faceIndexService.search(request.embedding, k, request.minScore)
+                    : faceIndexService.search(request.embedding, k);
+            return ResponseEntity.ok(hits);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. إضافة embedding لشخص
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/{label}/embeddings")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, Object>> addEmbedding(
+            @PathVariable String label,
+            @RequestBody AddEmbeddingRequest request) {
+
+        if (request == null || request.embedding == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "embedding مطلوب");
+        }
+        try {
+            FaceEmbedding saved = faceIndexService.addEmbedding(label, request.personType, request.embedding, request.source);
+            log.info("Embedding stored for {}: id={}", label, saved.getId());
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", saved.getId(), "label", label));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 3. حذف كل embeddings شخص
+    // ────────────────────────────────────────────────────────────────
+    @DeleteMapping("/{label}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, Object>> removeLabel(@PathVariable String label) {
+        long removed = faceIndexService.removeLabel(label);
+        return ResponseEntity.ok(Map.of("label", label, "removed", removed));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 4. حالة الفهرس + إعادة التحميل
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(faceIndexService.getStats());
+    }
+
+    @GetMapping("/client-stats")
+    public ResponseEntity<Map<String, Object>> clientStats() {
+        return ResponseEntity.ok(faceClient.getStats());
+    }
+
+    @PostMapping("/reload")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reload() {
+        faceIndexService.reload();
+        return ResponseEntity.ok(faceIndexService.getStats());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 5. طابور تسجيل الوجوه (jobs)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/jobs/bulk")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<BatchSummary> enqueueClass(@RequestBody BulkEnrolRequest request) {
+        if (request == null || request.className == null || request.className.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "className مطلوب");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(faceRegistration.enqueueClass(request.className, request.division));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<FaceJob> getJob(@PathVariable String id) {
+        return faceRegistration.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/jobs/student/{code}")
+    public ResponseEntity<List<FaceJob>> getJobsForStudent(@PathVariable String code) {
+        return ResponseEntity.ok(faceRegistration.getJobsForStudent(code));
+    }
+
+    @GetMapping("/jobs/batch/{batchId}")
+    public ResponseEntity<BatchSummary> getBatch(@PathVariable String batchId) {
+        return ResponseEntity.ok(faceRegistration.batchSummary(batchId));
+    }
+
+    @PostMapping("/jobs/{id}/retry")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<FaceJob> retryJob(@PathVariable String id) {
+        return faceRegistration.retry(id)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "الـ job غير موجود أو ليس في حالة FAILED"));
+    }
+
+    @GetMapping("/jobs/stats")
+    public ResponseEntity<Map<String, Object>> jobStats() {
+        return ResponseEntity.ok(faceRegistration.getStats());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 6. مزامنة فولدر الصور مع الـ gallery
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/gallery/sync/{code}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, Object>> syncStudent(@PathVariable String code) {
+        gallerySync.requestSync(code);
+        return ResponseEntity.accepted().body(Map.of("studentCode", code, "scheduled", true));
+    }
+
+    @PostMapping("/gallery/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconcileGallery() {
+        gallerySync.requestReconcile();
+        return ResponseEntity.accepted().body(Map.of("scheduled", true));
+    }
+
+    @GetMapping("/gallery/stats")
+    public ResponseEntity<Map<String, Object>> galleryStats() {
+        return ResponseEntity.ok(gallerySync.getStats());
+    }
+
+    @GetMapping("/upload-stats")
+    public ResponseEntity<Map<String, Object>> uploadStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(imageProcessor.getStats());
+        stats.put("store", imageStore.getStats());
+        stats.put("stream", faceUploads.getStats());
+        stats.put("photos", studentPhotoService.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // DTOs
+    // ────────────────────────────────────────────────────────────────
+
+    public static class SearchRequest {
+        public float[] embedding;
+        public Integer k;
+        public Float minScore;
+    }
+
+    public static class AddEmbeddingRequest {
+        public float[] embedding;
+        public String personType;     // STUDENT (default) or USER
+        public String source;
+    }
+
+    public static class BulkEnrolRequest {
+        public String className;
+        public String division;       // optional
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.Student;
+import com.example.backend.service.IdCardService;
+import com.example.backend.service.IdCardService.Format;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller for batch ID-card printing (PDF / PNG sheets rendered on the server).
+ */
+@RestController
+@RequestMapping("/api/id-cards")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    exposedHeaders = {"Content-Disposition", "X-Card-Count"},
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class IdCardController {
+
+    private final IdCardService idCardService;
+
+    public IdCardController(IdCardService idCardService) {
+        this.idCardService = idCardService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. طباعة كروت فصل كامل أو قائمة طلاب (الملف بيتبعت وهو بيترسم)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/render")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<StreamingResponseBody> render(@RequestBody RenderRequest request,
+                                                        HttpServletRequest httpRequest) {
+        if (request == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "بيانات الطلب مطلوبة");
+        }
+        Format format;
+        List<Student> students;
+        try {
+            format = Format.parse(request.format);
+            students = idCardService.selectStudents(request.className, request.division, request.codes);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (students.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "لا يوجد طلاب مطابقين");
+        }
+
+        String baseName = "id-cards" + (request.className != null && !request.className.isBlank() ? "-" + request.className : "");
+        String fileName = baseName + (format == Format.PDF ? ".pdf" : ".zip");
+        StreamingResponseBody body = out -> idCardService.render(students, request.schoolName, format, out);
+        // الـ body بيتكتب async → timeout خاص بالـ route بدل الـ 30 ثانية بتوع Tomcat (3000 كارت بتاخد أكتر)
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(httpRequest).getAsyncWebRequest();
+        if (asyncRequest != null) asyncRequest.setTimeout(idCardService.getRenderTimeoutMs());
+
+        return ResponseEntity.ok()
+                .contentType(format == Format.PDF ? MediaType.APPLICATION_PDF : MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString())
+                .header("X-Card-Count", String.valueOf(students.size()))
+                .body(body);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(idCardService.getStats());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // DTOs
+    // ────────────────────────────────────────────────────────────────
+
+    public static class RenderRequest {
+        public String className;
+        public String division;
+        public List<String> codes;       // لو موجودة بتتطبع بنفس الترتيب بدل الفصل
+        public String format;            // "pdf" (default) or "png" (zip of sheets)
+        public String schoolName;
+    }
+}
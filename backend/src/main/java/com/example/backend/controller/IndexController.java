@@ -0,0 +1,57 @@
+package com.example.backend.controller;
+
+import com.example.backend.service.IndexVerificationService;
+import com.example.backend.service.IndexVerificationService.PlanCheck;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller for MongoDB index verification (declared indexes + explain-based plan check).
+ */
+@RestController
+@RequestMapping("/api/indexes")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class IndexController {
+
+    private final IndexVerificationService indexService;
+
+    public IndexController(IndexVerificationService indexService) {
+        this.indexService = indexService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. نتيجة آخر تحقق (الـ indexes + خطط الـ queries)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> report() {
+        return ResponseEntity.ok(indexService.report());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. تحقق من جديد: إنشاء الناقص ثم explain لكل query shape
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/verify")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> verify() {
+        indexService.ensureIndexes();
+        indexService.checkPlans();
+        return ResponseEntity.ok(indexService.report());
+    }
+
+    // explain بس (من غير إنشاء) – COLLSCAN / IN_MEMORY_SORT = query محتاج index
+    @GetMapping("/plans")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<PlanCheck>> plans() {
+        return ResponseEntity.ok(indexService.checkPlans());
+    }
+}
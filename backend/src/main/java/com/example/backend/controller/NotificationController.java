@@ -0,0 +1,71 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.OutboxNotification;
+import com.example.backend.service.AbsenceAlertService;
+import com.example.backend.service.AbsenceAlertService.AlertRun;
+import com.example.backend.service.NotificationDispatcher;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller for guardian notifications (absence alerts + the outbox).
+ */
+@RestController
+@RequestMapping("/api/notifications")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class NotificationController {
+
+    private final AbsenceAlertService absenceAlertService;
+    private final NotificationDispatcher dispatcher;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    public NotificationController(AbsenceAlertService absenceAlertService, NotificationDispatcher dispatcher) {
+        this.absenceAlertService = absenceAlertService;
+        this.dispatcher = dispatcher;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. تشغيل تنبيهات الغياب يدويًا (مش بتكرر تنبيه اتبعت قبل كده)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/absence-alerts/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AlertRun> runAbsenceAlerts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(absenceAlertService.generate(date != null ? date : LocalDate.now()));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. الـ outbox (الأحدث الأول)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/outbox")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<List<OutboxNotification>> outbox(
+            @RequestParam(required = false) OutboxNotification.Status status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "حجم الصفحة لازم يكون بين 1 و " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(dispatcher.list(status, page, size));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(new LinkedHashMap<>(dispatcher.getStats()));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.PaymentTransaction;
+import com.example.backend.model.Student;
+import com.example.backend.service.PaymentLedgerService;
+import com.example.backend.service.PaymentLedgerService.Ledger;
+import com.example.backend.service.PaymentLedgerService.PostingResult;
+import com.example.backend.service.PaymentLedgerService.SnapshotRun;
+import com.example.backend.service.ReceivablesService;
+import com.example.backend.service.ReceivablesService.OverdueRun;
+import com.example.backend.service.ReceivablesService.Receivable;
+import com.example.backend.service.ReceivablesService.Summary;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST Controller for the payment ledger (postings, per-student history, snapshots) and receivables.
+ */
+@RestController
+@RequestMapping("/api/payments")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class PaymentController {
+
+    private final PaymentLedgerService ledgerService;
+    private final ReceivablesService receivablesService;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    public PaymentController(PaymentLedgerService ledgerService, ReceivablesService receivablesService) {
+        this.ledgerService = ledgerService;
+        this.receivablesService = receivablesService;
+    }
+
+    public record PaymentRequest(String studentCode, PaymentTransaction.Type type, Double amount,
+                                 String method, String reference, String note) {
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. تسجيل دفعة / استرداد / تسوية (Idempotency-Key إجباري – إعادة الطلب مش بتكرر الدفعة)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<PostingResult> post(
+            @RequestHeader("Idempotency-Key") String idempotencyKey,
+            @RequestBody PaymentRequest request,
+            Authentication authentication) {
+        if (request.studentCode() == null || request.studentCode().isBlank() || request.amount() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "رقم الطالب والمبلغ مطلوبين");
+        }
+        String postedBy = authentication != null ? authentication.getName() : "system";
+        PaymentTransaction.Type type = request.type() != null ? request.type() : PaymentTransaction.Type.PAYMENT;
+
+        PostingResult result;
+        try {
+            result = ledgerService.post(idempotencyKey, request.studentCode().trim(), type, request.amount(),
+                    request.method(), request.reference(), request.note(), postedBy);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return switch (result.status()) {
+            case STUDENT_NOT_FOUND -> throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
+            case DUPLICATE -> ResponseEntity.ok(result);
+            case POSTED -> ResponseEntity.status(HttpStatus.CREATED).body(result);
+        };
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. كشف حساب الطالب (الرصيد + الرصيد المحسوب من الـ ledger + العمليات، الأحدث الأول)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/students/{code}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Ledger> ledger(
+            @PathVariable String code,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size لازم يكون بين 1 و " + MAX_PAGE_SIZE);
+        }
+        Ledger ledger = ledgerService.ledger(code, page, size);
+        if (ledger == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
+        }
+        return ResponseEntity.ok(ledger);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 3. snapshot يدوي للأرصدة (بيتعمل تلقائي حسب payments.snapshot.cron)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/snapshots")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SnapshotRun> snapshot() {
+        return ResponseEntity.ok(ledgerService.snapshot());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 4. الذمم: الطلاب اللي عليهم فلوس، الأكبر رصيد الأول (فلتر اختياري بالفصل / الحالة)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/receivables")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<Page<Receivable>> receivables(
+            @RequestParam(required = false) String className,
+            @RequestParam(required = false) Student.PaymentStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size لازم يكون بين 1 و " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(receivablesService.receivables(className, status, page, size));
+    }
+
+    // إجماليات شاشة الماليات (المصروفات / المحصل / المتبقي / عدد كل حالة)
+    @GetMapping("/receivables/summary")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<Summary> receivablesSummary(@RequestParam(required = false) String className) {
+        return ResponseEntity.ok(receivablesService.summary(className));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 5. تقييم المتأخرين يدوي (بيشتغل تلقائي كل ليلة حسب fees.overdue.cron)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/overdue/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OverdueRun> runOverdue(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(receivablesService.evaluate(date != null ? date : LocalDate.now()));
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ledger", ledgerService.getStats());
+        stats.put("overdue", receivablesService.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.TeacherPayroll;
+import com.example.backend.model.User;
+import com.example.backend.repository.UserRepository;
+import com.example.backend.service.PayrollService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller for teacher payroll (monthly share of the fees collected in the teacher's classes).
+ */
+@RestController
+@RequestMapping("/api/payroll")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class PayrollController {
+
+    private final PayrollService payrollService;
+    private final UserRepository userRepository;
+
+    public PayrollController(PayrollService payrollService, UserRepository userRepository) {
+        this.payrollService = payrollService;
+        this.userRepository = userRepository;
+    }
+
+    public record AssignmentRequest(List<String> teachingClasses, Double payrollSharePercent) {
+    }
+
+    public record Assignment(String id, String fullName, List<String> teachingClasses, Double payrollSharePercent) {
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. مرتب المدرس اللي عامل login (month=yyyy-MM، الافتراضي الشهر الحالي)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/me")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<TeacherPayroll> mine(
+            @RequestParam(required = false) String month,
+            Authentication authentication) {
+        User user = userRepository.findByEmail(authentication.getName())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "المستخدم غير موجود"));
+        return ResponseEntity.ok(payrollService.forTeacher(user.getId(), parseMonth(month)));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. مرتبات كل المدرسين في شهر (الأعلى الأول) / مدرس واحد
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<TeacherPayroll>> month(@RequestParam(required = false) String month) {
+        return ResponseEntity.ok(payrollService.month(parseMonth(month)));
+    }
+
+    @GetMapping("/teachers/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TeacherPayroll> teacher(
+            @PathVariable String id,
+            @RequestParam(required = false) String month) {
+        TeacherPayroll payroll = payrollService.forTeacher(id, parseMonth(month));
+        if (payroll == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "المدرس غير موجود");
+        }
+        return ResponseEntity.ok(payroll);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 3. فصول المدرس ونسبته (null = قواعد payroll.* في الإعدادات)
+    // ────────────────────────────────────────────────────────────────
+    @PutMapping("/teachers/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Assignment> assign(@PathVariable String id, @RequestBody AssignmentRequest request) {
+        User updated;
+        try {
+            updated = payrollService.assign(id, request.teachingClasses(), request.payrollSharePercent());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (updated == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "المدرس غير موجود");
+        }
+        return ResponseEntity.ok(new Assignment(updated.getId(), updated.getFullName(),
+                updated.getTeachingClasses(), updated.getPayrollSharePercent()));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 4. إعادة حساب شهر مقفول (بعد تغيير النسب أو الفصول)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/{month}/recompute")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<TeacherPayroll>> recompute(@PathVariable String month) {
+        return ResponseEntity.ok(payrollService.recompute(parseMonth(month)));
+    }
+
+    @GetMapping("/rules")
+    @PreAuthorize("hasAnyRole('ADMIN', 'TEACHER')")
+    public ResponseEntity<Map<String, Object>> rules() {
+        return ResponseEntity.ok(payrollService.rules());
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static YearMonth parseMonth(String month) {
+        if (month == null || month.isBlank()) return YearMonth.now();
+        YearMonth parsed;
+        try {
+            parsed = YearMonth.parse(month.trim());
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "الشهر لازم يكون yyyy-MM");
+        }
+        if (parsed.isAfter(YearMonth.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "الشهر لسه مجاش");
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.backend.controller;
+
+import com.example.backend.service.RankingService;
+import com.example.backend.service.RankingService.BoardKey;
+import com.example.backend.service.RankingService.BoardSummary;
+import com.example.backend.service.RankingService.Kind;
+import com.example.backend.service.RankingService.Ranked;
+import com.example.backend.service.RankingService.RebuildResult;
+import com.example.backend.service.RankingService.Standing;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST Controller for class rankings (rank-in-class / percentile per exam or graded subject).
+ */
+@RestController
+@RequestMapping("/api/rankings")
+@CrossOrigin(
+    origins = "http://localhost:3000",
+    allowedHeaders = "*",
+    methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS},
+    allowCredentials = "true"
+)
+public class RankingController {
+
+    private final RankingService rankingService;
+
+    private static final int MAX_TOP = 500;
+
+    public RankingController(RankingService rankingService) {
+        this.rankingService = rankingService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 1. امتحانات / مواد الفصل اللي ليها ترتيب
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/boards")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<List<BoardSummary>> boards(@RequestParam String className) {
+        return ResponseEntity.ok(rankingService.boards(className));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 2. الأوائل في امتحان (kind=EXAM + name=اسم الامتحان) أو مادة (kind=GRADE + name=المادة)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/top")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<List<Ranked>> top(
+            @RequestParam String className,
+            @RequestParam(defaultValue = "EXAM") Kind kind,
+            @RequestParam String name,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_TOP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "العدد لازم يكون بين 1 و " + MAX_TOP);
+        }
+        return ResponseEntity.ok(rankingService.top(new BoardKey(className, kind, name, date), limit));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 3. ترتيب الطالب ونسبته المئوية في كل امتحانات فصله (أو في امتحان واحد)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/students/{code}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<List<Standing>> standings(@PathVariable String code) {
+        List<Standing> standings = rankingService.standings(code);
+        if (standings == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
+        }
+        return ResponseEntity.ok(standings);
+    }
+
+    @GetMapping("/students/{code}/board")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF', 'TEACHER')")
+    public ResponseEntity<Standing> standing(
+            @PathVariable String code,
+            @RequestParam String className,
+            @RequestParam(defaultValue = "EXAM") Kind kind,
+            @RequestParam String name,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        Standing standing = rankingService.standing(new BoardKey(className, kind, name, date), code);
+        if (standing == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب ملوش درجة في الامتحان ده");
+        }
+        return ResponseEntity.ok(standing);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // 4. إعادة بناء الترتيب من الدرجات (بعد import أو نقل طلاب بين الفصول)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RebuildResult> rebuild() {
+        try {
+            return ResponseEntity.ok(rankingService.rebuild());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "إعادة البناء شغالة بالفعل");
+        }
+    }
+}
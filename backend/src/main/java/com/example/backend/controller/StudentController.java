@@ -1,36 +1,56 @@
 package com.example.backend.controller;
 
 import com.example.backend.model.Student;
-import com.example.backend.model.Student.AttendanceRecord;
 import com.example.backend.model.Student.Grade;
 import com.example.backend.model.Student.ExamResult;
 import com.example.backend.repository.StudentRepository;
+import com.example.backend.service.AttendanceService;
+import com.example.backend.service.AttendanceService.AttendanceResult;
+import com.example.backend.service.FaceUploadService;
+import com.example.backend.service.FaceUploadService.FaceUploadSummary;
+import com.example.backend.service.FaceUploadService.UploadLimitException;
+import com.example.backend.service.GradeService;
+import com.example.backend.service.PaymentLedgerService;
+import com.example.backend.service.StudentAnalyticsService;
+import com.example.backend.service.StudentAnalyticsService.StudentAnalytics;
+import com.example.backend.service.GradeService.SheetResult;
+import com.example.backend.service.GradeService.SheetRow;
+import com.example.backend.service.StudentPhotoService;
+import com.example.backend.service.StudentPhotoService.Photo;
+import com.example.backend.service.StudentUpdateService;
+import com.example.backend.service.StudentUpdateService.PatchResult;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -51,21 +71,43 @@ public class StudentController {
     private final StudentRepository studentRepository;
     private final ObjectMapper objectMapper;
     private final Validator validator;
-
-    @Value("${face.register.folder}")
-    private String registerFolder;
-
-    private static final List<String> ALLOWED_EXTENSIONS = List.of(".jpg", ".jpeg", ".png");
-    private static final int MAX_FACE_IMAGES = 10;
-    private static final long MAX_FILE_SIZE = 5L * 1024 * 1024;
+    private final FaceUploadService faceUploads;
+    private final StudentPhotoService studentPhotoService;
+    private final AttendanceService attendanceService;
+    private final StudentUpdateService studentUpdateService;
+    private final GradeService gradeService;
+    private final StudentAnalyticsService analyticsService;
+    private final PaymentLedgerService ledgerService;
+
+    // الـ URL ثابت لكل طالب، فالصورة ممكن تتغير → يوم كامل كاش وبعده revalidate بالـ ETag (رد 304 صغير)
+    private static final CacheControl PHOTO_CACHE = CacheControl.maxAge(Duration.ofDays(1)).cachePrivate();
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     public StudentController(
             StudentRepository studentRepository,
             ObjectMapper objectMapper,
-            Validator validator) {
+            Validator validator,
+            FaceUploadService faceUploads,
+            StudentPhotoService studentPhotoService,
+            AttendanceService attendanceService,
+            StudentUpdateService studentUpdateService,
+            GradeService gradeService,
+            StudentAnalyticsService analyticsService,
+            PaymentLedgerService ledgerService) {
         this.studentRepository = studentRepository;
         this.objectMapper = objectMapper;
         this.validator = validator;
+        this.faceUploads = faceUploads;
+        this.studentPhotoService = studentPhotoService;
+        this.attendanceService = attendanceService;
+        this.studentUpdateService = studentUpdateService;
+        this.gradeService = gradeService;
+        this.analyticsService = analyticsService;
+        this.ledgerService = ledgerService;
     }
 
     // ────────────────────────────────────────────────────────────────
@@ -75,7 +117,8 @@ public class StudentController {
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     public ResponseEntity<StudentResponse> createStudent(
             @RequestPart("student") String studentJson,
-            @RequestPart(value = "faceImages", required = false) MultipartFile[] faceImages) {
+            @RequestPart(value = "faceImages", required = false) MultipartFile[] faceImages,
+            Authentication authentication) {
 
         Student student;
         try {
@@ -98,9 +141,17 @@ public class StudentController {
 
         // Safe defaults
         student.setCurrency(student.getCurrency() != null ? student.getCurrency() : "EGP");
-        student.setPaymentStatus(student.getPaymentStatus() != null ? student.getPaymentStatus() : Student.PaymentStatus.PENDING);
+        // الحالة بتتحسب من الأرقام (زي الـ ledger)؛ OVERDUE بس اللي بيتاخد من الطلب
+        student.setPaymentStatus(PaymentLedgerService.statusOf(student.getAmountPaid(), student.getTotalFees(), student.getPaymentStatus()));
+        student.setBalanceDue(student.getTotalFees() - student.getAmountPaid());
+        student.setRecentPayments(null);
+        // بيتحطوا من السيرفر بس (ordinal من العداد، الحضور وقفل اليوم من السجلات)
+        student.setOrdinal(null);
+        student.setLastSeenAt(null);
+        student.setLastClosedDay(null);
         student.setCreatedAt(student.getCreatedAt() != null ? student.getCreatedAt() : LocalDateTime.now());
         student.setUpdatedAt(student.getUpdatedAt() != null ? student.getUpdatedAt() : LocalDateTime.now());
+        student.setVersion(0);
 
         // Business validation
         if (student.getStudentCode() == null || student.getStudentCode().trim().isEmpty()) {
@@ -112,6 +163,9 @@ public class StudentController {
         if (student.getTotalFees() < 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "إجمالي المصروفات لا يمكن أن يكون سالبًا");
         }
+        if (student.getAmountPaid() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "المبلغ المدفوع لا يمكن أن يكون سالبًا");
+        }
 
         if (studentRepository.existsByStudentCode(student.getStudentCode())) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "رقم الطالب موجود بالفعل");
@@ -119,53 +173,39 @@ public class StudentController {
 
         Student saved = studentRepository.save(student);
         log.info("Student created: code={}, name={}, id={}", saved.getStudentCode(), saved.getFullName(), saved.getId());
+        // المدفوع وقت التسجيل = أول قيد في الـ ledger
+        ledgerService.recordOpening(saved, authentication != null ? authentication.getName() : "system");
 
-        // Save face images
-        int savedImageCount = 0;
+        // Save face images (normalized + quality-checked)
+        FaceUploadSummary faceUpload = null;
         if (faceImages != null && faceImages.length > 0) {
-            if (faceImages.length > MAX_FACE_IMAGES) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "الحد الأقصى لعدد الصور هو " + MAX_FACE_IMAGES);
+            if (faceImages.length > faceUploads.getMaxImagesPerStudent()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "الحد الأقصى لعدد الصور هو " + faceUploads.getMaxImagesPerStudent());
             }
 
             try {
-                Path studentDir = Paths.get(registerFolder, saved.getStudentCode());
-                Files.createDirectories(studentDir);
-
-                for (MultipartFile file : faceImages) {
-                    if (file == null || file.isEmpty()) continue;
-                    if (file.getSize() > MAX_FILE_SIZE) continue;
-
-                    String origName = file.getOriginalFilename();
-                    if (origName == null) continue;
-
-                    String ext = origName.substring(origName.lastIndexOf(".")).toLowerCase();
-                    if (!ALLOWED_EXTENSIONS.contains(ext)) continue;
-
-                    String safeName = "face_" + System.currentTimeMillis() + ext;
-                    Path target = studentDir.resolve(safeName);
-                    file.transferTo(target.toFile());
-                    savedImageCount++;
-                }
-
-                if (savedImageCount > 0) {
-                    log.info("Saved {} face images for student {}", savedImageCount, saved.getStudentCode());
-                }
+                faceUpload = storeFaceImages(saved.getStudentCode(), faceImages);
             } catch (IOException e) {
                 log.error("Failed to save face images for student {}: {}", saved.getStudentCode(), e.getMessage(), e);
                 // لا نُفشل الطلب كله
             }
         }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(new StudentResponse(saved));
+        StudentResponse response = new StudentResponse(saved);
+        response.setFaceUpload(faceUpload);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     // ────────────────────────────────────────────────────────────────
     // 2. جلب طالب بواسطة الكود
     // ────────────────────────────────────────────────────────────────
+    // history=false → من غير attendanceRecords / grades / examResults (الداشبورد بياخدهم من /analytics)
     @GetMapping("/code/{code}")
-    public ResponseEntity<StudentResponse> getStudentByCode(@PathVariable String code) {
+    public ResponseEntity<StudentResponse> getStudentByCode(
+            @PathVariable String code,
+            @RequestParam(defaultValue = "true") boolean history) {
         return studentRepository.findByStudentCode(code)
-                .map(s -> ResponseEntity.ok(new StudentResponse(s)))
+                .map(s -> ResponseEntity.ok().eTag(etagOf(s)).body(new StudentResponse(s, history)))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
@@ -191,75 +231,69 @@ public class StudentController {
     // ────────────────────────────────────────────────────────────────
     // 4. تعديل بيانات الطالب الأساسية (PATCH)
     // ────────────────────────────────────────────────────────────────
+    // $set واحد للحقول المبعوتة بس؛ لو فيه If-Match (الـ ETag من GET) والنسخة اتغيرت → 412
     @PatchMapping("/{code}")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     public ResponseEntity<StudentResponse> updateStudent(
             @PathVariable String code,
-            @RequestBody Map<String, Object> updates) {
-
-        Student student = studentRepository.findByStudentCode(code)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود"));
-
-        // تحديث الحقول المرسلة فقط
-        updates.forEach((key, value) -> {
-            switch (key) {
-                case "fullName" -> student.setFullName((String) value);
-                case "className" -> student.setClassName((String) value);
-                case "division" -> student.setDivision((String) value);
-                case "address" -> student.setAddress((String) value);
-                case "guardianPhonePrimary" -> student.setGuardianPhonePrimary((String) value);
-                case "guardianPhoneSecondary" -> student.setGuardianPhoneSecondary((String) value);
-                case "notes" -> student.setNotes((String) value);
-                case "totalFees" -> student.setTotalFees(((Number) value).doubleValue());
-                case "amountPaid" -> student.setAmountPaid(((Number) value).doubleValue());
-                case "active" -> student.setActive((Boolean) value);
-                // أضف المزيد حسب الحاجة
-            }
-        });
+            @RequestBody Map<String, Object> updates,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        student.setUpdatedAt(LocalDateTime.now());
-        Student updated = studentRepository.save(student);
+        PatchResult result;
+        try {
+            result = studentUpdateService.patch(code, updates, parseIfMatch(ifMatch));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
-        log.info("Student updated: code={}", code);
-        return ResponseEntity.ok(new StudentResponse(updated));
+        return switch (result.status()) {
+            case NOT_FOUND -> throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
+            case VERSION_MISMATCH -> ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .eTag(etagOf(result.student()))
+                    .body(new StudentResponse(result.student()));
+            case UPDATED -> ResponseEntity.ok()
+                    .eTag(etagOf(result.student()))
+                    .body(new StudentResponse(result.student()));
+        };
     }
 
     // ────────────────────────────────────────────────────────────────
     // 5. إضافة درجة أو نتيجة امتحان
     // ────────────────────────────────────────────────────────────────
+    // $push على السيرفر (من غير تحميل وحفظ الطالب كله)
     @PatchMapping("/{code}/grade")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     public ResponseEntity<StudentResponse> addGradeOrExam(
             @PathVariable String code,
             @RequestBody GradeOrExamRequest request) {
 
-        Student student = studentRepository.findByStudentCode(code)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود"));
-
-        if ("grade".equalsIgnoreCase(request.type)) {
-            Grade grade = new Grade(
-                    request.subject,
-                    request.score,
-                    request.maxScore,
-                    request.date != null ? request.date : LocalDate.now(),
-                    request.comment
-            );
-            student.getGrades().add(grade);
-        } else if ("exam".equalsIgnoreCase(request.type)) {
-            ExamResult exam = new ExamResult(
-                    request.examName,
-                    request.obtainedMarks,
-                    request.totalMarks,
-                    request.date != null ? request.date : LocalDate.now(),
-                    request.gradeLetter
-            );
-            student.getExamResults().add(exam);
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "نوع غير مدعوم: استخدم 'grade' أو 'exam'");
+        Student updated;
+        try {
+            if ("grade".equalsIgnoreCase(request.type)) {
+                updated = gradeService.addGrade(code, new Grade(
+                        request.subject,
+                        request.score,
+                        request.maxScore,
+                        request.date,
+                        request.comment
+                ));
+            } else if ("exam".equalsIgnoreCase(request.type)) {
+                updated = gradeService.addExamResult(code, new ExamResult(
+                        request.examName,
+                        request.obtainedMarks,
+                        request.totalMarks,
+                        request.date,
+                        request.gradeLetter     // لو فاضي بيتحسب من الدرجات
+                ));
+            } else {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "نوع غير مدعوم: استخدم 'grade' أو 'exam'");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (updated == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
         }
-
-        student.setUpdatedAt(LocalDateTime.now());
-        Student updated = studentRepository.save(student);
 
         log.info("Added {} for student: {}", request.type, code);
         return ResponseEntity.ok(new StudentResponse(updated));
@@ -274,30 +308,18 @@ public class StudentController {
             @PathVariable String code,
             @RequestBody(required = false) Map<String, String> body) {
 
-        Student student = studentRepository.findByStudentCode(code)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود"));
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDate today = now.toLocalDate();
-
-        // منع التكرار في نفس اليوم (اختياري – يمكن إزالته إذا أردت السماح بتعديل الحضور)
-        boolean alreadyToday = student.getAttendanceRecords().stream()
-                .anyMatch(r -> r.getDateTime().toLocalDate().equals(today));
-
-        if (alreadyToday) {
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "تم تسجيل حضور الطالب اليوم بالفعل");
-        }
-
         String method = body != null ? body.getOrDefault("method", "manual") : "manual";
         String recordedBy = body != null ? body.getOrDefault("recordedBy", "system") : "system";
 
-        AttendanceRecord record = new AttendanceRecord(now, method, recordedBy);
-        student.addAttendanceRecord(record);
-        student.incrementPresentDays();
-
-        Student updated = studentRepository.save(student);
+        // منع التكرار في نفس اليوم جوه نفس الـ update (atomic)
+        AttendanceResult result = attendanceService.recordAttendance(code, method, recordedBy);
+        switch (result.status()) {
+            case STUDENT_NOT_FOUND -> throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
+            case ALREADY_PRESENT -> throw new ResponseStatusException(HttpStatus.CONFLICT, "تم تسجيل حضور الطالب اليوم بالفعل");
+            default -> { }
+        }
+        Student updated = result.student();
 
-        log.info("Attendance recorded for {} at {} by {}", code, now, recordedBy);
         return ResponseEntity.ok(new StudentResponse(updated));
     }
 // ────────────────────────────────────────────────────────────────
@@ -307,92 +329,147 @@ public class StudentController {
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     public ResponseEntity<StudentResponse> addFaceImages(
             @PathVariable String code,
-            @RequestPart(value = "faceImages", required = true) MultipartFile[] faceImages) {
-
-        if (faceImages == null || faceImages.length == 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "يجب رفع صورة واحدة على الأقل");
-        }
+            HttpServletRequest request) {
 
+        // الطلب ده مش بيتقرأ بـ Spring multipart (MultipartConfig) → الصور بتتقرأ من الـ body مباشرة
         Student student = studentRepository.findByStudentCode(code)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود"));
 
-        int savedImageCount = 0;
+        FaceUploadSummary faceUpload = streamFaceImages(request, code)
+                .getOrDefault(code, new FaceUploadSummary());
+        if (faceUpload.getSaved() == 0 && faceUpload.getDuplicates() == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, faceUpload.getRejected().isEmpty()
+                    ? "يجب رفع صورة واحدة على الأقل"
+                    : "لم يتم حفظ أي صور صالحة: " + faceUpload.describeRejections());
+        }
 
-        try {
-            Path studentDir = Paths.get(registerFolder, code);
-            if (!Files.exists(studentDir)) {
-                Files.createDirectories(studentDir);
-            }
+        StudentResponse response = new StudentResponse(student);
+        response.setFaceUpload(faceUpload);
+        return ResponseEntity.ok(response);
+    }
 
-            for (MultipartFile file : faceImages) {
-                if (file == null || file.isEmpty()) continue;
-                if (file.getSize() > MAX_FILE_SIZE) {
-                    log.warn("تجاهل ملف كبير: {} ({} bytes)", file.getOriginalFilename(), file.getSize());
-                    continue;
-                }
-
-                String origName = file.getOriginalFilename();
-                if (origName == null) continue;
-
-                String ext = origName.substring(origName.lastIndexOf(".")).toLowerCase();
-                if (!ALLOWED_EXTENSIONS.contains(ext)) {
-                    log.warn("صيغة غير مدعومة: {}", origName);
-                    continue;
-                }
-
-                String safeName = "face_" + System.currentTimeMillis() + "_" + (savedImageCount + 1) + ext;
-                Path target = studentDir.resolve(safeName);
-                file.transferTo(target.toFile());
-                savedImageCount++;
-            }
+// ────────────────────────────────────────────────────────────────
+// 8. رفع صور يوم التصوير لكل الفصل في طلب واحد (اسم الحقل = كود الطالب)
+// ────────────────────────────────────────────────────────────────
+    @PostMapping(value = "/face-images/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Map<String, FaceUploadSummary>> addFaceImagesBulk(HttpServletRequest request) {
+        Map<String, FaceUploadSummary> summaries = streamFaceImages(request, null);
+        if (summaries.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "يجب رفع صورة واحدة على الأقل");
+        }
+        return ResponseEntity.ok(summaries);
+    }
 
-            if (savedImageCount == 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "لم يتم حفظ أي صور صالحة");
-            }
+// ────────────────────────────────────────────────────────────────
+// 9. صورة الطالب بمقاس صغير (كروت / قوائم / الكارنيه) مع كاش في المتصفح
+// ────────────────────────────────────────────────────────────────
+    @GetMapping("/{code}/photo")
+    public void getPhoto(
+            @PathVariable String code,
+            @RequestParam(defaultValue = "128") int size,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
-            log.info("تم إضافة {} صور وجه جديدة للطالب {}", savedImageCount, code);
+        Photo photo = studentPhotoService.photo(code, size)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "لا توجد صورة للطالب"));
 
-            // إعادة جلب الطالب بعد التحديث (اختياري، لكن مفيد)
-            Student updated = studentRepository.findByStudentCode(code).orElse(student);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, PHOTO_CACHE.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(photo.etag(), photo.lastModified())) {
+            return;   // 304 – ETag / Last-Modified اتحطوا خلاص
+        }
+        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        response.setContentLengthLong(photo.length());
+        if ("HEAD".equals(request.getMethod())) return;
+
+        // Tomcat sendfile: الكيرنل بيبعت الملف مباشرة من غير ما يعدي على الـ JVM
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, photo.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, photo.length());
+            return;
+        }
+        Files.copy(photo.file(), response.getOutputStream());
+    }
 
-            return ResponseEntity.ok(new StudentResponse(updated));
+    // ────────────────────────────────────────────────────────────────
+    // 10. شيت درجات فصل كامل لامتحان واحد (bulk write واحد)
+    // ────────────────────────────────────────────────────────────────
+    @PostMapping("/grade-sheet")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<SheetResult> submitGradeSheet(@RequestBody GradeSheetRequest request) {
+        if (request == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "بيانات الشيت مطلوبة");
+        }
+        try {
+            return ResponseEntity.ok(gradeService.applyGradeSheet(
+                    request.examName, request.totalMarks, request.date, request.className, request.rows));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
 
-        } catch (IOException e) {
-            log.error("فشل في حفظ صور الوجه للطالب {}: {}", code, e.getMessage(), e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "فشل في حفظ الصور: " + e.getMessage());
+    // ────────────────────────────────────────────────────────────────
+    // 11. إحصائيات الطالب للداشبورد (متجمعة على السيرفر + كاش لحد أول تعديل)
+    // ────────────────────────────────────────────────────────────────
+    @GetMapping("/{code}/analytics")
+    public ResponseEntity<StudentAnalytics> getAnalytics(
+            @PathVariable String code,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        StudentAnalytics analytics = analyticsService.analytics(code);
+        if (analytics == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "الطالب غير موجود");
         }
+        String etag = "\"" + analytics.stamp() + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return null;   // 304
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(analytics);
     }
-// **************************************************
-// بعد حفظ الطالب
-    if (faceImages != null && faceImages.length > 0) {
-        String studentCode = savedStudent.getStudentCode();
-        Path studentFaceDir = Paths.get(registerFolder, studentCode);
 
+    // الصور بتتفحص وتتصغر وتتخزن في FaceUploadService؛ هنا بس تحويل الأخطاء لـ HTTP
+    private FaceUploadSummary storeFaceImages(String code, MultipartFile[] files) throws IOException {
         try {
-            Files.createDirectories(studentFaceDir);
-
-            for (MultipartFile file : faceImages) {
-                if (!file.isEmpty()) {
-                    String fileName = file.getOriginalFilename();
-                    Path dest = studentFaceDir.resolve(fileName);
-                    Files.copy(file.getInputStream(), dest);
-                }
-            }
+            return faceUploads.storeFiles(code, files);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "الخادم مشغول بمعالجة صور أخرى، حاول بعد قليل");
+        }
+    }
 
-            // أخبر الـ face server
-            RestTemplate rest = new RestTemplate();
-            String faceServerUrl = "http://localhost:8000/register_new_face";
-            Map<String, String> payload = new HashMap<>();
-            payload.put("student_code", studentCode);
+    private Map<String, FaceUploadSummary> streamFaceImages(HttpServletRequest request, String code) {
+        try {
+            return faceUploads.storeStream(request, code);
+        } catch (UploadLimitException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "حجم الطلب أو عدد الصور أكبر من المسموح: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "الخادم مشغول بمعالجة صور أخرى، حاول بعد قليل");
+        } catch (IOException e) {
+            log.error("فشل في حفظ صور الوجه للطالب {}: {}", code, e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "فشل في حفظ الصور: " + e.getMessage());
+        }
+    }
 
-            rest.postForObject(faceServerUrl, payload, String.class);
-            log.info("Sent registration request to face server for student: {}", studentCode);
+    // ETag = نسخة البيانات الأساسية (Student.version)
+    private static String etagOf(Student student) {
+        return "\"" + student.getVersion() + "\"";
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to register face for student {}: {}", studentCode, e.getMessage(), e);
-            // مش لازم ترمي exception، خلّي الإضافة تنجح حتى لو الوجه ما سجلش
+    // "3" / W/"3" → 3 ؛ مفيش header أو * → من غير شرط
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "قيمة If-Match غير صحيحة");
         }
     }
+
     // ────────────────────────────────────────────────────────────────
     // DTOs
     // ────────────────────────────────────────────────────────────────
@@ -406,15 +483,27 @@ public class StudentController {
         private final String guardianPhonePrimary;
         private final double totalFees;
         private final double amountPaid;
+        private final double balanceDue;
         private final Student.PaymentStatus paymentStatus;
         private final String currency;
         private final String notes;
         private final boolean active;
+        private final long version;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private final List<Student.AttendanceRecord> attendanceRecords;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private final List<Student.Grade> grades;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         private final List<Student.ExamResult> examResults;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private FaceUploadSummary faceUpload;     // فقط في ردود رفع الصور
 
         public StudentResponse(Student s) {
+            this(s, true);
+        }
+
+        // history=false: من غير المصفوفات (null → مش بتتبعت)
+        public StudentResponse(Student s, boolean history) {
             this.id = s.getId();
             this.studentCode = s.getStudentCode();
             this.fullName = s.getFullName();
@@ -423,13 +512,15 @@ public class StudentController {
             this.guardianPhonePrimary = s.getGuardianPhonePrimary();
             this.totalFees = s.getTotalFees();
             this.amountPaid = s.getAmountPaid();
+            this.balanceDue = s.getBalanceDue();
             this.paymentStatus = s.getPaymentStatus();
             this.currency = s.getCurrency();
             this.notes = s.getNotes();
             this.active = s.isActive();
-            this.attendanceRecords = new ArrayList<>(s.getAttendanceRecords());
-            this.grades = new ArrayList<>(s.getGrades());
-            this.examResults = new ArrayList<>(s.getExamResults());
+            this.version = s.getVersion();
+            this.attendanceRecords = history ? new ArrayList<>(s.getAttendanceRecords()) : null;
+            this.grades = history ? new ArrayList<>(s.getGrades()) : null;
+            this.examResults = history ? new ArrayList<>(s.getExamResults()) : null;
         }
 
         // getters ...
@@ -441,13 +532,17 @@ public class StudentController {
         public String getGuardianPhonePrimary() { return guardianPhonePrimary; }
         public double getTotalFees() { return totalFees; }
         public double getAmountPaid() { return amountPaid; }
+        public double getBalanceDue() { return balanceDue; }
         public Student.PaymentStatus getPaymentStatus() { return paymentStatus; }
         public String getCurrency() { return currency; }
         public String getNotes() { return notes; }
         public boolean isActive() { return active; }
+        public long getVersion() { return version; }
         public List<Student.AttendanceRecord> getAttendanceRecords() { return attendanceRecords; }
         public List<Student.Grade> getGrades() { return grades; }
         public List<Student.ExamResult> getExamResults() { return examResults; }
+        public FaceUploadSummary getFaceUpload() { return faceUpload; }
+        public void setFaceUpload(FaceUploadSummary faceUpload) { this.faceUpload = faceUpload; }
     }
 
     // DTO لإضافة درجة أو امتحان
@@ -464,4 +559,13 @@ public class StudentController {
         public double totalMarks;
         public String gradeLetter;
     }
+
+    // DTO لشيت الدرجات: امتحان واحد + صف لكل طالب
+    public static class GradeSheetRequest {
+        public String examName;
+        public double totalMarks;
+        public LocalDate date;        // default: النهارده
+        public String className;      // اختياري: الطلاب اللي مش في الفصل ده بيترفضوا
+        public List<SheetRow> rows;   // [{ "studentCode": "...", "obtainedMarks": 17.5 }]
+    }
 }
\ No newline at end of file
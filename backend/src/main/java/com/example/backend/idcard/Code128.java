@@ -0,0 +1,86 @@
+package com.example.backend.idcard;
+
+/**
+ * Code 128 encoder (the symbology react-barcode prints and Search.js's Quagga
+ * {@code code_128_reader} scans).
+ * <p>
+ * All-digit values of even length use code set C (two digits per symbol, ~half the
+ * width – student codes are usually numeric); anything else printable uses code set B.
+ */
+public final class Code128 {
+
+    /** Bar/space widths of symbols 0..106 (106 = stop, which has a 7th element) */
+    private static final String[] PATTERNS = {
+            "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+            "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+            "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+            "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+            "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+            "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+            "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+            "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+            "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+            "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+            "114131", "311141", "411131", "211412", "211214", "211232", "2331112"
+    };
+
+    private static final int START_B = 104;
+    private static final int START_C = 105;
+    private static final int STOP = 106;
+
+    private Code128() {}
+
+    /**
+     * Module widths, alternating bar / space and starting with a bar (quiet zones not included)
+     *
+     * @throws IllegalArgumentException for empty values or characters outside ASCII 32..126
+     */
+    public static int[] encode(String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Barcode value is empty");
+        }
+        int[] symbols = symbols(value);
+        StringBuilder widths = new StringBuilder();
+        for (int symbol : symbols) {
+            widths.append(PATTERNS[symbol]);
+        }
+        int[] out = new int[widths.length()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = widths.charAt(i) - '0';
+        }
+        return out;
+    }
+
+    /** Total width in modules (sum of {@link #encode}) */
+    public static int moduleCount(int[] widths) {
+        int sum = 0;
+        for (int w : widths) sum += w;
+        return sum;
+    }
+
+    // start, data, checksum, stop
+    private static int[] symbols(String value) {
+        boolean numeric = value.length() % 2 == 0 && value.chars().allMatch(c -> c >= '0' && c <= '9');
+        int dataLength = numeric ? value.length() / 2 : value.length();
+        int[] symbols = new int[dataLength + 3];
+        symbols[0] = numeric ? START_C : START_B;
+        for (int i = 0; i < dataLength; i++) {
+            if (numeric) {
+                symbols[i + 1] = (value.charAt(2 * i) - '0') * 10 + (value.charAt(2 * i + 1) - '0');
+            } else {
+                char c = value.charAt(i);
+                if (c < 32 || c > 126) {
+                    throw new IllegalArgumentException("Unsupported barcode character: " + (int) c);
+                }
+                symbols[i + 1] = c - 32;
+            }
+        }
+        int checksum = symbols[0];
+        for (int i = 1; i <= dataLength; i++) {
+            checksum += symbols[i] * i;
+        }
+        symbols[dataLength + 1] = checksum % 103;
+        symbols[dataLength + 2] = STOP;
+        return symbols;
+    }
+}
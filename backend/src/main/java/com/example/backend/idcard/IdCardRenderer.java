@@ -0,0 +1,253 @@
+package com.example.backend.idcard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws print-ready ID cards with Java2D – same layout as {@code IdCardGenerator.js}
+ * (school header, photo, name / class / code, Code 128 barcode, footer stripe).
+ * <p>
+ * Everything is in pixels at 300 dpi: a card is CR80 (85.6 × 54 mm), a sheet is A4
+ * holding {@value #COLUMNS} × {@value #ROWS} cards. Stateless, safe to call from
+ * several threads.
+ * <p>
+ * Text is drawn with DejaVu Sans shipped in {@code resources/fonts} (Latin + Arabic), so the
+ * cards look the same on a headless server as on a desktop.
+ */
+public final class IdCardRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(IdCardRenderer.class);
+
+    public static final int DPI = 300;
+    public static final int CARD_WIDTH = 1011;
+    public static final int CARD_HEIGHT = 638;
+    public static final int SHEET_WIDTH = 2480;
+    public static final int SHEET_HEIGHT = 3508;
+    public static final int COLUMNS = 2;
+    public static final int ROWS = 5;
+    public static final int CARDS_PER_SHEET = COLUMNS * ROWS;
+
+    private static final int GAP = 40;
+    private static final int MARGIN_X = (SHEET_WIDTH - COLUMNS * CARD_WIDTH - (COLUMNS - 1) * GAP) / 2;
+    private static final int MARGIN_Y = (SHEET_HEIGHT - ROWS * CARD_HEIGHT - (ROWS - 1) * GAP) / 2;
+
+    private static final Color BRAND = new Color(0x0D, 0x8A, 0xBC);
+    private static final Color TEXT = new Color(0x22, 0x22, 0x22);
+    private static final Color MUTED = new Color(0x66, 0x66, 0x66);
+    private static final Color CUT_LINE = new Color(0xCC, 0xCC, 0xCC);
+
+    // الخط جوه الـ jar (resources/fonts): الـ SANS_SERIF على سيرفر headless ممكن ميبقاش فيه
+    // حروف عربي والأسامي تطلع مربعات فاضية
+    private static final Font REGULAR = loadFont("/fonts/DejaVuSans.ttf", Font.PLAIN);
+    private static final Font BOLD = loadFont("/fonts/DejaVuSans-Bold.ttf", Font.BOLD);
+    private static final Font HEADER_FONT = BOLD.deriveFont(46f);
+    private static final Font NAME_FONT = BOLD.deriveFont(50f);
+    private static final Font BODY_FONT = REGULAR.deriveFont(36f);
+    private static final Font CODE_FONT = new Font(Font.MONOSPACED, Font.BOLD, 34)
+            .deriveFont(Map.of(TextAttribute.TRACKING, 0.1));
+
+    private IdCardRenderer() {}
+
+    /**
+     * One card's data; {@code photo} may be null (initials placeholder is drawn)
+     */
+    public record Card(String studentCode, String fullName, String className, BufferedImage photo) {
+    }
+
+    /**
+     * Up to {@value #CARDS_PER_SHEET} cards on a white A4 sheet with light cut lines
+     */
+    public static BufferedImage renderSheet(List<Card> cards, String schoolName) {
+        if (cards.size() > CARDS_PER_SHEET) {
+            throw new IllegalArgumentException("At most " + CARDS_PER_SHEET + " cards per sheet");
+        }
+        BufferedImage sheet = new BufferedImage(SHEET_WIDTH, SHEET_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sheet.createGraphics();
+        try {
+            applyHints(g);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, SHEET_WIDTH, SHEET_HEIGHT);
+            for (int i = 0; i < cards.size(); i++) {
+                int x = MARGIN_X + (i % COLUMNS) * (CARD_WIDTH + GAP);
+                int y = MARGIN_Y + (i / COLUMNS) * (CARD_HEIGHT + GAP);
+                g.setColor(CUT_LINE);
+                g.setStroke(new BasicStroke(1f));
+                g.drawRect(x - 1, y - 1, CARD_WIDTH + 1, CARD_HEIGHT + 1);
+                Graphics2D cg = (Graphics2D) g.create(x, y, CARD_WIDTH, CARD_HEIGHT);
+                try {
+                    drawCard(cg, cards.get(i), schoolName);
+                } finally {
+                    cg.dispose();
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return sheet;
+    }
+
+    /**
+     * A single card (used for previews / one-off reprints)
+     */
+    public static BufferedImage renderCard(Card card, String schoolName) {
+        BufferedImage image = new BufferedImage(CARD_WIDTH, CARD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            applyHints(g);
+            drawCard(g, card, schoolName);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static void drawCard(Graphics2D g, Card card, String schoolName) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, CARD_WIDTH, CARD_HEIGHT);
+
+        // header
+        g.setColor(BRAND);
+        g.fillRect(0, 0, CARD_WIDTH, 100);
+        g.setColor(Color.WHITE);
+        g.setFont(HEADER_FONT);
+        drawCentered(g, fit(g, schoolName != null ? schoolName : "", CARD_WIDTH - 60), CARD_WIDTH / 2, 66);
+
+        // photo
+        int px = 40, py = 130, pw = 230, ph = 280;
+        drawPhoto(g, card, px, py, pw, ph);
+
+        // details
+        int tx = px + pw + 40;
+        int textWidth = CARD_WIDTH - tx - 40;
+        g.setColor(TEXT);
+        g.setFont(NAME_FONT);
+        g.drawString(fit(g, nullToEmpty(card.fullName()), textWidth), tx, py + 60);
+        g.setColor(MUTED);
+        g.setFont(BODY_FONT);
+        g.drawString("Student", tx, py + 120);
+        g.setColor(TEXT);
+        g.drawString(fit(g, "Class: " + nullToEmpty(card.className()), textWidth), tx, py + 180);
+        g.drawString(fit(g, "ID: " + card.studentCode(), textWidth), tx, py + 240);
+
+        // barcode (studentCode – what Search.js scans)
+        drawBarcode(g, card.studentCode(), CARD_WIDTH / 2, 440, 110);
+
+        // footer stripe
+        g.setColor(BRAND);
+        g.fillRect(0, CARD_HEIGHT - 16, CARD_WIDTH, 16);
+    }
+
+    private static void drawPhoto(Graphics2D g, Card card, int x, int y, int w, int h) {
+        BufferedImage photo = card.photo();
+        if (photo == null) {
+            g.setColor(new Color(0xE3, 0xF2, 0xFA));
+            g.fillRect(x, y, w, h);
+            g.setColor(BRAND);
+            g.setFont(NAME_FONT.deriveFont(90f));
+            drawCentered(g, initials(card.fullName()), x + w / 2, y + h / 2 + 32);
+        } else {
+            // cover: scale to fill the box, crop the overflow (centered)
+            double scale = Math.max((double) w / photo.getWidth(), (double) h / photo.getHeight());
+            int sw = (int) Math.round(photo.getWidth() * scale);
+            int sh = (int) Math.round(photo.getHeight() * scale);
+            Graphics2D pg = (Graphics2D) g.create(x, y, w, h);
+            try {
+                pg.drawImage(photo, (w - sw) / 2, (h - sh) / 2, sw, sh, null);
+            } finally {
+                pg.dispose();
+            }
+        }
+        g.setColor(BRAND);
+        g.setStroke(new BasicStroke(4f));
+        g.drawRect(x, y, w, h);
+    }
+
+    private static void drawBarcode(Graphics2D g, String value, int centerX, int top, int height) {
+        int[] widths = Code128.encode(value);
+        int modules = Code128.moduleCount(widths);
+        // 10-module quiet zone each side; keep the bars at least 2 px (≈ 0.17 mm) wide
+        int module = Math.max(2, Math.min(4, (CARD_WIDTH - 120) / (modules + 20)));
+        int x = centerX - modules * module / 2;
+        g.setColor(Color.WHITE);
+        g.fillRect(x - 10 * module, top, (modules + 20) * module, height + 50);
+        g.setColor(Color.BLACK);
+        boolean bar = true;
+        for (int w : widths) {
+            if (bar) g.fillRect(x, top, w * module, height);
+            x += w * module;
+            bar = !bar;
+        }
+        g.setFont(CODE_FONT);
+        drawCentered(g, value, centerX, top + height + 38);
+    }
+
+    private static void drawCentered(Graphics2D g, String text, int centerX, int baseline) {
+        FontMetrics fm = g.getFontMetrics();
+        g.drawString(text, centerX - fm.stringWidth(text) / 2, baseline);
+    }
+
+    // ellipsize so long names never run off the card
+    private static String fit(Graphics2D g, String text, int maxWidth) {
+        FontMetrics fm = g.getFontMetrics();
+        if (fm.stringWidth(text) <= maxWidth) return text;
+        String cut = text;
+        while (!cut.isEmpty() && fm.stringWidth(cut + "…") > maxWidth) {
+            cut = cut.substring(0, cut.length() - 1);
+        }
+        return cut + "…";
+    }
+
+    private static String initials(String name) {
+        if (name == null || name.isBlank()) return "?";
+        StringBuilder out = new StringBuilder();
+        for (String part : name.trim().split("\\s+")) {
+            out.appendCodePoint(part.codePointAt(0));
+            if (out.length() >= 2) break;
+        }
+        return out.toString().toUpperCase();
+    }
+
+    /**
+     * A bundled TrueType font, registered so Java2D can also fall back to it by family name;
+     * the logical {@code SANS_SERIF} if the resource is missing or unreadable
+     */
+    private static Font loadFont(String resource, int style) {
+        try (InputStream in = IdCardRenderer.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("not on the classpath");
+            Font font = Font.createFont(Font.TRUETYPE_FONT, in);
+            GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font);
+            return font;
+        } catch (IOException | FontFormatException e) {
+            log.warn("ID-card font {} could not be loaded ({}), using the logical SansSerif font", resource, e.getMessage());
+            return new Font(Font.SANS_SERIF, style, 1);
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    private static void applyHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.backend.idcard;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal streaming PDF writer: one full-page JPEG per page.
+ * <p>
+ * Each page is written (and can be flushed to the client) as soon as it is added; only
+ * object offsets are kept until {@link #close()} writes the page tree and xref table.
+ * That is all a print sheet needs, without holding a whole document in memory.
+ */
+public class PdfSheetWriter implements Closeable {
+
+    /** A4 in PDF points */
+    private static final double PAGE_WIDTH = 595.28;
+    private static final double PAGE_HEIGHT = 841.89;
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+
+    private final CountingOutputStream out;
+    private final List<Long> offsets = new ArrayList<>();   // index = object number - 1
+    private final List<Integer> pageObjects = new ArrayList<>();
+    private boolean closed;
+
+    public PdfSheetWriter(OutputStream target) throws IOException {
+        this.out = new CountingOutputStream(target);
+        write("%PDF-1.4\n");
+        out.write(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});   // binary marker
+        offsets.add(null);   // 1: catalog
+        offsets.add(null);   // 2: page tree (written last)
+        beginObject(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+    }
+
+    /**
+     * Append a page showing {@code jpeg} (baseline JPEG, RGB) scaled to the full A4 page
+     */
+    public void addJpegPage(byte[] jpeg, int widthPx, int heightPx) throws IOException {
+        int image = nextObject();
+        beginObject(image);
+        write("<< /Type /XObject /Subtype /Image /Width " + widthPx + " /Height " + heightPx
+                + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode /Length " + jpeg.length + " >>\nstream\n");
+        out.write(jpeg);
+        write("\nendstream\nendobj\n");
+
+        byte[] content = String.format(Locale.ROOT, "q %.2f 0 0 %.2f 0 0 cm /Im0 Do Q", PAGE_WIDTH, PAGE_HEIGHT)
+                .getBytes(StandardCharsets.US_ASCII);
+        int contents = nextObject();
+        beginObject(contents);
+        write("<< /Length " + content.length + " >>\nstream\n");
+        out.write(content);
+        write("\nendstream\nendobj\n");
+
+        int page = nextObject();
+        beginObject(page);
+        write(String.format(Locale.ROOT,
+                "<< /Type /Page /Parent %d 0 R /MediaBox [0 0 %.2f %.2f] /Resources << /XObject << /Im0 %d 0 R >> >> /Contents %d 0 R >>\nendobj\n",
+                PAGES, PAGE_WIDTH, PAGE_HEIGHT, image, contents));
+        pageObjects.add(page);
+        out.flush();
+    }
+
+    public int getPageCount() {
+        return pageObjects.size();
+    }
+
+    /**
+     * Write the page tree, xref and trailer; the underlying stream is flushed, not closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        beginObject(PAGES);
+        StringBuilder kids = new StringBuilder();
+        for (int page : pageObjects) {
+            kids.append(page).append(" 0 R ");
+        }
+        write("<< /Type /Pages /Kids [" + kids.toString().trim() + "] /Count " + pageObjects.size() + " >>\nendobj\n");
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder();
+        table.append("xref\n0 ").append(offsets.size() + 1).append('\n');
+        table.append("0000000000 65535 f \n");
+        for (Long offset : offsets) {
+            table.append(String.format(Locale.ROOT, "%010d 00000 n \n", offset));
+        }
+        table.append("trailer\n<< /Size ").append(offsets.size() + 1).append(" /Root ").append(CATALOG).append(" 0 R >>\n");
+        table.append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        out.flush();
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private int nextObject() {
+        offsets.add(null);
+        return offsets.size();
+    }
+
+    private void beginObject(int number) throws IOException {
+        offsets.set(number - 1, out.count);
+        write(number + " 0 obj\n");
+    }
+
+    private void write(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.backend.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact brute-force index: all vectors live in one contiguous {@code float[]}
+ * (row-major, {@code dimension} floats per row), so a search is a single linear,
+ * cache-friendly scan. Good up to tens of thousands of faces.
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    private final int dimension;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] data;
+    private String[] labels;
+    private int size;
+
+    public FlatVectorIndex(int dimension) {
+        this(dimension, 1024);
+    }
+
+    public FlatVectorIndex(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        int capacity = Math.max(16, initialCapacity);
+        this.data = new float[capacity * dimension];
+        this.labels = new String[capacity];
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String label, float[] vector) {
+        checkDimension(vector);
+        addNormalized(label, VectorMath.normalize(vector));
+    }
+
+    @Override
+    public int remove(String label) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            int i = 0;
+            while (i < size) {
+                if (labels[i].equals(label)) {
+                    // swap-with-last: O(1) per removal, order does not matter for search
+                    int last = size - 1;
+                    if (i != last) {
+                        System.arraycopy(data, last * dimension, data, i * dimension, dimension);
+                        labels[i] = labels[last];
+                    }
+                    labels[last] = null;
+                    size--;
+                    removed++;
+                } else {
+                    i++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(labels, 0, size, null);
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, int k) {
+        checkDimension(query);
+        float[] q = VectorMath.normalize(query);
+        TopKCollector top = new TopKCollector(k);
+
+        lock.readLock().lock();
+        try {
+            for (int row = 0, offset = 0; row < size; row++, offset += dimension) {
+                float score = VectorMath.dot(q, data, offset);
+                if (top.accepts(score)) {
+                    top.offer(labels[row], score);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.result();
+    }
+
+    @Override
+    public String type() {
+        return "flat";
+    }
+
+    @Override
+    public void addNormalized(String label, float[] unitVector) {
+        checkDimension(unitVector);
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + 1);
+            System.arraycopy(unitVector, 0, data, size * dimension, dimension);
+            labels[size] = label;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= labels.length) return;
+        int newCapacity = Math.max(rows, labels.length * 2);
+        data = Arrays.copyOf(data, newCapacity * dimension);
+        labels = Arrays.copyOf(labels, newCapacity);
+    }
+
+    private void checkDimension(float[] v) {
+        if (v == null || v.length != dimension) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dimension
+                    + " but got " + (v == null ? "null" : v.length));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.backend.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate index based on HNSW (Hierarchical Navigable Small World graphs).
+ * <p>
+ * Meant for very large galleries where a flat scan becomes noticeable. Vectors are
+ * still kept in one contiguous array; the graph only stores neighbour ids.
+ * Removal is a tombstone (the node keeps routing searches but never shows up in results);
+ * callers rebuild the index when too many tombstones accumulate.
+ */
+public class HnswVectorIndex implements VectorIndex {
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private String[] labels;
+    private int[][][] links;       // links[node][level] = neighbour ids
+    private int[][] linkCounts;    // linkCounts[node][level]
+    private int count;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private final Map<String, List<Integer>> nodesByLabel = new HashMap<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswVectorIndex(int dimension, int m, int efConstruction, int efSearch) {
+        this.dimension = dimension;
+        this.m = Math.max(4, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        int capacity = 1024;
+        this.vectors = new float[capacity * dimension];
+        this.labels = new String[capacity];
+        this.links = new int[capacity][][];
+        this.linkCounts = new int[capacity][];
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fraction of nodes that are tombstones – used to decide when to rebuild
+     */
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return count == 0 ? 0.0 : (double) deletedCount / count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(String label, float[] vector) {
+        checkDimension(vector);
+        addNormalized(label, VectorMath.normalize(vector));
+    }
+
+    @Override
+    public void addNormalized(String label, float[] unitVector) {
+        checkDimension(unitVector);
+        lock.writeLock().lock();
+        try {
+            insert(label, unitVector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int remove(String label) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> nodes = nodesByLabel.remove(label);
+            if (nodes == null) return 0;
+            for (int node : nodes) {
+                if (!deleted.get(node)) {
+                    deleted.set(node);
+                    deletedCount++;
+                }
+            }
+            return nodes.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(labels, 0, count, null);
+            Arrays.fill(links, 0, count, null);
+            Arrays.fill(linkCounts, 0, count, null);
+            count = 0;
+            deleted.clear();
+            deletedCount = 0;
+            nodesByLabel.clear();
+            entryPoint = -1;
+            maxLevel = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, int k) {
+        checkDimension(query);
+        float[] q = VectorMath.normalize(query);
+        TopKCollector top = new TopKCollector(k);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) return top.result();
+
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = greedyClosest(q, ep, level);
+            }
+            // several vectors per label → widen the beam so de-duplication still yields k labels
+            int ef = Math.max(efSearch, k * 4);
+            for (Candidate c : searchLayer(q, ep, ef, 0)) {
+                if (!deleted.get(c.node) && top.accepts(c.score)) {
+                    top.offer(labels[c.node], c.score);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.result();
+    }
+
+    @Override
+    public String type() {
+        return "hnsw";
+    }
+
+    // ────────────────── Graph construction ──────────────────
+
+    private void insert(String label, float[] unit) {
+        int node = count;
+        ensureCapacity(node + 1);
+        System.arraycopy(unit, 0, vectors, node * dimension, dimension);
+        labels[node] = label;
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        linkCounts[node] = new int[level + 1];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        count++;
+        nodesByLabel.computeIfAbsent(label, key -> new ArrayList<>(2)).add(node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(unit, ep, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(unit, ep, efConstruction, l);
+            int maxLinks = l == 0 ? maxM0 : m;
+            int connected = 0;
+            for (Candidate c : found) {         // already sorted best first
+                if (c.node == node) continue;
+                if (connected >= m) break;
+                link(node, c.node, l, maxLinks);
+                link(c.node, node, l, maxLinks);
+                connected++;
+            }
+            if (!found.isEmpty()) {
+                ep = found.get(0).node;
+            }
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private void link(int from, int to, int level, int maxLinks) {
+        int[] list = links[from][level];
+        int n = linkCounts[from][level];
+        for (int i = 0; i < n; i++) {
+            if (list[i] == to) return;
+        }
+        if (n < maxLinks) {
+            list[n] = to;
+            linkCounts[from][level] = n + 1;
+            return;
+        }
+        // full: replace the weakest neighbour if the new one is closer
+        int base = from * dimension;
+        float[] self = Arrays.copyOfRange(vectors, base, base + dimension);
+        int weakest = -1;
+        float weakestScore = Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            float s = VectorMath.dot(self, vectors, list[i] * dimension);
+            if (s < weakestScore) {
+                weakestScore = s;
+                weakest = i;
+            }
+        }
+        if (VectorMath.dot(self, vectors, to * dimension) > weakestScore) {
+            list[weakest] = to;
+        }
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) Math.floor(-Math.log(Math.max(r, 1e-12)) * levelMultiplier);
+    }
+
+    // ────────────────── Graph search ──────────────────
+
+    private int greedyClosest(float[] q, int ep, int level) {
+        int current = ep;
+        float best = VectorMath.dot(q, vectors, current * dimension);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            if (level >= links[current].length) break;
+            int[] list = links[current][level];
+            int n = linkCounts[current][level];
+            for (int i = 0; i < n; i++) {
+                int candidate = list[i];
+                float s = VectorMath.dot(q, vectors, candidate * dimension);
+                if (s > best) {
+                    best = s;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer; returns up to {@code ef} nodes sorted best first
+     */
+    private List<Candidate> searchLayer(float[] q, int ep, int ef, int level) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.score, a.score));
+        PriorityQueue<Candidate> results = new PriorityQueue<>((a, b) -> Float.compare(a.score, b.score));
+
+        Candidate start = new Candidate(ep, VectorMath.dot(q, vectors, ep * dimension));
+        visited.set(ep);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score < results.peek().score) break;
+            if (level >= links[current.node].length) continue;
+
+            int[] list = links[current.node][level];
+            int n = linkCounts[current.node][level];
+            for (int i = 0; i < n; i++) {
+                int neighbour = list[i];
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+
+                float s = VectorMath.dot(q, vectors, neighbour * dimension);
+                if (results.size() < ef || s > results.peek().score) {
+                    Candidate c = new Candidate(neighbour, s);
+                    candidates.add(c);
+                    results.add(c);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+
+        List<Candidate> out = new ArrayList<>(results);
+        out.sort((a, b) -> Float.compare(b.score, a.score));
+        return out;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes <= labels.length) return;
+        int newCapacity = Math.max(nodes, labels.length * 2);
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        labels = Arrays.copyOf(labels, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+        linkCounts = Arrays.copyOf(linkCounts, newCapacity);
+    }
+
+    private void checkDimension(float[] v) {
+        if (v == null || v.length != dimension) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dimension
+                    + " but got " + (v == null ? "null" : v.length));
+        }
+    }
+
+    private record Candidate(int node, float score) {}
+}
@@ -0,0 +1,172 @@
+package com.example.backend.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Order-statistic tree over (score, label), highest score first.
+ * <p>
+ * A treap whose nodes carry their subtree size, so insert, remove and the rank counts
+ * ({@link #countAbove}, {@link #countAtLeast}) are O(log n) expected and the first
+ * {@code n} entries come out in O(log size + n). Equal scores are ordered by label.
+ * Not thread-safe.
+ */
+public final class RankTree {
+
+    public record Entry(String label, double score) {
+    }
+
+    private static final class Node {
+        final double score;
+        final String label;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(double score, String label, int priority) {
+            this.score = score;
+            this.label = label;
+            this.priority = priority;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Add an entry; the same (score, label) must not be added twice
+     */
+    public void insert(double score, String label) {
+        Node[] parts = split(root, score, label);
+        root = merge(merge(parts[0], new Node(score, label, random.nextInt())), parts[1]);
+    }
+
+    /**
+     * @return false if there was no such entry
+     */
+    public boolean remove(double score, String label) {
+        int before = size(root);
+        root = remove(root, score, label);
+        return size(root) < before;
+    }
+
+    /**
+     * Number of entries with a score strictly greater than {@code score}
+     * (competition rank of that score = this + 1)
+     */
+    public int countAbove(double score) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score > score) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of entries with a score greater than or equal to {@code score}
+     */
+    public int countAtLeast(double score) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score >= score) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The {@code n} highest entries, best first
+     */
+    public List<Entry> top(int n) {
+        List<Entry> out = new ArrayList<>(Math.min(Math.max(n, 0), size()));
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        while ((node != null || !stack.isEmpty()) && out.size() < n) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            out.add(new Entry(node.label, node.score));
+            node = node.right;
+        }
+        return out;
+    }
+
+    // ────────────────── Treap internals ──────────────────
+
+    // ترتيب الشجرة: الأعلى درجة الأول، وبعدين بالـ label
+    private static int compare(double score, String label, Node node) {
+        int byScore = Double.compare(node.score, score);
+        return byScore != 0 ? byScore : label.compareTo(node.label);
+    }
+
+    /** [entries before (score, label), entries from (score, label) on] */
+    private static Node[] split(Node node, double score, String label) {
+        if (node == null) return new Node[]{null, null};
+        if (compare(score, label, node) > 0) {
+            Node[] parts = split(node.right, score, label);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, score, label);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    /** every entry of {@code a} comes before every entry of {@code b} */
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static Node remove(Node node, double score, String label) {
+        if (node == null) return null;
+        int cmp = compare(score, label, node);
+        if (cmp == 0) return merge(node.left, node.right);
+        if (cmp < 0) {
+            node.left = remove(node.left, score, label);
+        } else {
+            node.right = remove(node.right, score, label);
+        }
+        update(node);
+        return node;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.backend.index;
+
+/**
+ * One search result: the label (student code / user id) and its cosine similarity
+ */
+public record SearchHit(String label, float score) {}
@@ -0,0 +1,55 @@
+package com.example.backend.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@code k} labels seen so far (one entry per label, best score wins).
+ */
+final class TopKCollector {
+
+    private final int k;
+    private final PriorityQueue<SearchHit> heap;
+    private final Map<String, SearchHit> byLabel;
+
+    TopKCollector(int k) {
+        this.k = Math.max(1, k);
+        this.heap = new PriorityQueue<>(this.k + 1, (a, b) -> Float.compare(a.score(), b.score()));
+        this.byLabel = new HashMap<>();
+    }
+
+    /**
+     * Cheap pre-check so callers can skip building a hit for hopeless candidates
+     */
+    boolean accepts(float score) {
+        return heap.size() < k || score > heap.peek().score();
+    }
+
+    void offer(String label, float score) {
+        SearchHit existing = byLabel.get(label);
+        if (existing != null) {
+            if (score <= existing.score()) return;
+            heap.remove(existing);
+        } else if (!accepts(score)) {
+            return;
+        }
+
+        SearchHit hit = new SearchHit(label, score);
+        heap.add(hit);
+        byLabel.put(label, hit);
+
+        if (heap.size() > k) {
+            SearchHit evicted = heap.poll();
+            byLabel.remove(evicted.label());
+        }
+    }
+
+    List<SearchHit> result() {
+        List<SearchHit> out = new ArrayList<>(heap);
+        out.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return out;
+    }
+}
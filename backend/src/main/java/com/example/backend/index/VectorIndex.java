@@ -0,0 +1,49 @@
+package com.example.backend.index;
+
+import java.util.List;
+
+/**
+ * In-memory cosine-similarity index over L2-normalized float vectors.
+ * <p>
+ * Several vectors may share the same label (e.g. one embedding per face image of
+ * the same student); search results are de-duplicated per label, keeping the best score.
+ */
+public interface VectorIndex {
+
+    int dimension();
+
+    /**
+     * Number of live vectors in the index
+     */
+    int size();
+
+    /**
+     * Add a vector under {@code label}. The vector is normalized internally.
+     */
+    void add(String label, float[] vector);
+
+    /**
+     * Bulk-load path: {@code unitVector} must already be L2-normalized
+     * (stored embeddings are), so no extra copy is made.
+     */
+    void addNormalized(String label, float[] unitVector);
+
+    /**
+     * Remove every vector stored under {@code label}
+     *
+     * @return number of vectors removed
+     */
+    int remove(String label);
+
+    void clear();
+
+    /**
+     * Top-k labels by cosine similarity, best first
+     */
+    List<SearchHit> search(float[] query, int k);
+
+    /**
+     * Short name for logs/stats ("flat", "hnsw")
+     */
+    String type();
+}
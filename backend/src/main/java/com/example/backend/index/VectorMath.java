@@ -0,0 +1,42 @@
+package com.example.backend.index;
+
+/**
+ * Small float-vector helpers shared by the vector indexes.
+ */
+public final class VectorMath {
+
+    private VectorMath() {}
+
+    /**
+     * Dot product of {@code q} with the row starting at {@code offset} in a flat array.
+     * Four independent accumulators let the JIT keep the loop in SIMD registers.
+     */
+    public static float dot(float[] q, float[] data, int offset) {
+        int n = q.length;
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += q[i] * data[offset + i];
+            s1 += q[i + 1] * data[offset + i + 1];
+            s2 += q[i + 2] * data[offset + i + 2];
+            s3 += q[i + 3] * data[offset + i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += q[i] * data[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns a unit-length copy of {@code v} (or a zero vector if {@code v} has no length)
+     */
+    public static float[] normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += (double) x * x;
+        float[] out = new float[v.length];
+        if (norm == 0) return out;
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) out[i] = v[i] * inv;
+        return out;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Who was present on one day, as a bitset over {@code Student.ordinal}
+ * ({@link java.util.BitSet#toByteArray()} – bit i set = student with ordinal i attended).
+ * <p>
+ * Ordinals are dense, so a day of 100k students is ~12 KB. Written by
+ * {@code PresenceBitmapService} and always rebuildable from the students' attendanceRecords.
+ */
+@Document(collection = "attendance_bitmaps")
+public class AttendanceBitmap {
+
+    @Id
+    private String id;                 // "<yyyy-MM-dd>"
+
+    private LocalDate date;
+    private byte[] present;
+    private int count;                 // عدد الحاضرين (cardinality)
+
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public AttendanceBitmap() {
+    }
+
+    public AttendanceBitmap(LocalDate date, byte[] present, int count) {
+        this.id = date.toString();
+        this.date = date;
+        this.present = present;
+        this.count = count;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public byte[] getPresent() { return present; }
+    public void setPresent(byte[] present) { this.present = present; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
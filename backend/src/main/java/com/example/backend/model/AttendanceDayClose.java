@@ -0,0 +1,73 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress / outcome of the end-of-day attendance close for one school day.
+ * <p>
+ * RUNNING while the student counters are being updated; a crash leaves it RUNNING and
+ * the next run simply closes the day again (every student update is guarded by
+ * {@code Student.lastClosedDay}, so nobody is counted twice).
+ */
+@Document(collection = "attendance_day_closes")
+public class AttendanceDayClose {
+
+    public enum Status {
+        RUNNING, DONE
+    }
+
+    @Id
+    private String id;                 // "<yyyy-MM-dd>"
+
+    private LocalDate date;
+    private Status status = Status.RUNNING;
+    private int attempts;
+
+    private long enrolled;
+    private long present;
+    private long late;
+    private long absent;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    // ────────────────── Constructors ──────────────────
+    public AttendanceDayClose() {
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public long getEnrolled() { return enrolled; }
+    public void setEnrolled(long enrolled) { this.enrolled = enrolled; }
+
+    public long getPresent() { return present; }
+    public void setPresent(long present) { this.present = present; }
+
+    public long getLate() { return late; }
+    public void setLate(long late) { this.late = late; }
+
+    public long getAbsent() { return absent; }
+    public void setAbsent(long absent) { this.absent = absent; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
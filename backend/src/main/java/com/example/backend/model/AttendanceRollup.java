@@ -0,0 +1,71 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Attendance counts of one class section on one school day.
+ * <p>
+ * Maintained incrementally by every attendance write ({@code $inc} on an upsert) and
+ * rebuildable from the students' raw {@code attendanceRecords}, so a date-range / class
+ * report reads a handful of these instead of every student. {@code late} is a subset of
+ * {@code present}.
+ */
+@Document(collection = "attendance_rollups")
+@CompoundIndex(name = "class_date_idx", def = "{'className': 1, 'division': 1, 'date': 1}")
+public class AttendanceRollup {
+
+    @Id
+    private String id;                 // "<yyyy-MM-dd>|<className>|<division>"
+
+    @Indexed
+    private LocalDate date;
+
+    private String className;
+    private String division;
+
+    private int present;
+    private int late;
+    private int absent;
+
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public AttendanceRollup() {
+    }
+
+    public static String idOf(LocalDate date, String className, String division) {
+        return date + "|" + (className != null ? className : "") + "|" + (division != null ? division : "");
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public String getClassName() { return className; }
+    public void setClassName(String className) { this.className = className; }
+
+    public String getDivision() { return division; }
+    public void setDivision(String division) { this.division = division; }
+
+    public int getPresent() { return present; }
+    public void setPresent(int present) { this.present = present; }
+
+    public int getLate() { return late; }
+    public void setLate(int late) { this.late = late; }
+
+    public int getAbsent() { return absent; }
+    public void setAbsent(int absent) { this.absent = absent; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,56 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Exception to the regular school week: a holiday on a working weekday, or a make-up
+ * school day on a weekend. Days without an entry follow {@code calendar.working-days}.
+ */
+@Document(collection = "school_calendar")
+public class CalendarDay {
+
+    public enum Type {
+        HOLIDAY, SCHOOL_DAY
+    }
+
+    @Id
+    private String id;                 // "<yyyy-MM-dd>"
+
+    private LocalDate date;
+    private Type type;
+    private String name;               // "شم النسيم", "Mid-year break", ...
+
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public CalendarDay() {
+    }
+
+    public CalendarDay(LocalDate date, Type type, String name) {
+        this.id = date.toString();
+        this.date = date;
+        this.type = type;
+        this.name = name;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
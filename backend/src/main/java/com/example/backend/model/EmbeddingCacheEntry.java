@@ -0,0 +1,65 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Face-service result for one stored image, keyed by the SHA-256 of its bytes.
+ * <p>
+ * Gallery images are content-addressed, so the same hash always means the same
+ * pixels; re-enrolling an image (re-upload, folder re-sync, gallery rebuild) reuses
+ * the vector instead of calling the face service again. Images without a usable
+ * face are cached too ({@code noFace = true}).
+ */
+@Document(collection = "face_embedding_cache")
+public class EmbeddingCacheEntry {
+
+    @Id
+    private String contentHash;
+
+    private PackedEmbedding vector;    // always FLOAT32 – lossless, re-packed by the index
+
+    private Double detScore;
+
+    private boolean noFace;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public EmbeddingCacheEntry() {
+    }
+
+    public static EmbeddingCacheEntry of(String contentHash, float[] vector, Double detScore) {
+        EmbeddingCacheEntry entry = new EmbeddingCacheEntry();
+        entry.contentHash = contentHash;
+        entry.vector = PackedEmbedding.of(vector);
+        entry.detScore = detScore;
+        return entry;
+    }
+
+    public static EmbeddingCacheEntry noFace(String contentHash) {
+        EmbeddingCacheEntry entry = new EmbeddingCacheEntry();
+        entry.contentHash = contentHash;
+        entry.noFace = true;
+        return entry;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public PackedEmbedding getVector() { return vector; }
+    public void setVector(PackedEmbedding vector) { this.vector = vector; }
+
+    public Double getDetScore() { return detScore; }
+    public void setDetScore(Double detScore) { this.detScore = detScore; }
+
+    public boolean isNoFace() { return noFace; }
+    public void setNoFace(boolean noFace) { this.noFace = noFace; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,75 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One face embedding in the recognition gallery.
+ * <p>
+ * Students and users (staff) share the gallery; a person may have several embeddings
+ * (one per enrolled image). The vector is an L2-normalized {@link PackedEmbedding}
+ * (float32 by default, optionally float16/int8) stored as a single BSON binary, so it
+ * decodes straight into the in-memory index at startup.
+ */
+@Document(collection = "face_embeddings")
+@CompoundIndex(name = "person_idx", def = "{'personType': 1, 'label': 1}")
+public class FaceEmbedding {
+
+    public static final String PERSON_STUDENT = "STUDENT";
+    public static final String PERSON_USER = "USER";
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String label;          // studentCode (or user id for staff)
+
+    private String personType = PERSON_STUDENT;
+
+    private int dimension;
+
+    private PackedEmbedding vector;
+
+    private String source;         // image the embedding came from (optional)
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public FaceEmbedding() {
+    }
+
+    public FaceEmbedding(String label, String personType, PackedEmbedding vector, String source) {
+        this.label = label;
+        this.personType = personType;
+        this.dimension = vector.getDimension();
+        this.vector = vector;
+        this.source = source;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getLabel() { return label; }
+    public void setLabel(String label) { this.label = label; }
+
+    public String getPersonType() { return personType; }
+    public void setPersonType(String personType) { this.personType = personType; }
+
+    public int getDimension() { return dimension; }
+    public void setDimension(int dimension) { this.dimension = dimension; }
+
+    public PackedEmbedding getVector() { return vector; }
+    public void setVector(PackedEmbedding vector) { this.vector = vector; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
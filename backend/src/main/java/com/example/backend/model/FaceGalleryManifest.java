@@ -0,0 +1,101 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last synced state of one student's folder in the face gallery
+ * ({@code register_faces/<studentCode>/}).
+ * <p>
+ * Only file metadata is kept (name, size, mtime) plus a fingerprint over all of it,
+ * so a restart can tell unchanged students apart with a directory listing and a
+ * single string compare – no image is read or embedded again.
+ * <p>
+ * {@code uploads} maps the SHA-256 of an original upload to the content hash of the
+ * normalized image it produced (see {@code FaceImageStore}), so the same photo sent
+ * twice is recognised before it is decoded again.
+ */
+@Document(collection = "face_gallery_manifests")
+public class FaceGalleryManifest {
+
+    @Id
+    private String studentCode;
+
+    private String fingerprint;
+
+    private List<FileStamp> files = new ArrayList<>();
+
+    private Map<String, String> uploads = new LinkedHashMap<>();
+
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public FaceGalleryManifest() {
+    }
+
+    public FaceGalleryManifest(String studentCode) {
+        this.studentCode = studentCode;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getStudentCode() { return studentCode; }
+    public void setStudentCode(String studentCode) { this.studentCode = studentCode; }
+
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public List<FileStamp> getFiles() { return files; }
+    public void setFiles(List<FileStamp> files) { this.files = files != null ? files : new ArrayList<>(); }
+
+    public Map<String, String> getUploads() { return uploads; }
+    public void setUploads(Map<String, String> uploads) { this.uploads = uploads != null ? uploads : new LinkedHashMap<>(); }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    // ────────────────── Helper methods ──────────────────
+
+    public Map<String, FileStamp> filesByName() {
+        Map<String, FileStamp> byName = new LinkedHashMap<>();
+        for (FileStamp file : files) {
+            byName.put(file.getName(), file);
+        }
+        return byName;
+    }
+
+    // ────────────────── Embedded classes ──────────────────
+
+    public static class FileStamp {
+        private String name;
+        private long size;
+        private long modifiedAt;      // epoch millis
+
+        public FileStamp() {}
+
+        public FileStamp(String name, long size, long modifiedAt) {
+            this.name = name;
+            this.size = size;
+            this.modifiedAt = modifiedAt;
+        }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public long getSize() { return size; }
+        public void setSize(long size) { this.size = size; }
+
+        public long getModifiedAt() { return modifiedAt; }
+        public void setModifiedAt(long modifiedAt) { this.modifiedAt = modifiedAt; }
+
+        public boolean sameAs(FileStamp other) {
+            return other != null && size == other.size && modifiedAt == other.modifiedAt;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One face-registration job: embed a set of newly saved images of one student and
+ * add the vectors to the gallery.
+ * <p>
+ * Jobs live in Mongo so they survive restarts; workers claim them atomically
+ * (PENDING → RUNNING with a lease) and record per-image progress in
+ * {@code doneImages}, so a retry only embeds what is still missing.
+ */
+@Document(collection = "face_jobs")
+@CompoundIndex(name = "claim_idx", def = "{'status': 1, 'nextAttemptAt': 1, 'createdAt': 1}")
+public class FaceJob {
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String studentCode;
+
+    @Indexed(sparse = true)
+    private String batchId;            // bulk enrolment (whole class) → shared id
+
+    private List<String> images = new ArrayList<>();        // file names inside the student folder
+    private List<String> doneImages = new ArrayList<>();    // embedded (or skipped) already
+    private List<String> skippedImages = new ArrayList<>(); // no usable face / unreadable
+
+    private Status status = Status.PENDING;
+    private int attempts = 0;
+    private int maxAttempts = 5;
+    private String lastError;
+    private int embeddingsAdded = 0;
+
+    private String lockedBy;
+    private LocalDateTime lockedUntil;
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    // ────────────────── Constructors ──────────────────
+    public FaceJob() {
+    }
+
+    public FaceJob(String studentCode, List<String> images, String batchId, int maxAttempts) {
+        this.studentCode = studentCode;
+        this.images = images != null ? new ArrayList<>(images) : new ArrayList<>();
+        this.batchId = batchId;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getStudentCode() { return studentCode; }
+    public void setStudentCode(String studentCode) { this.studentCode = studentCode; }
+
+    public String getBatchId() { return batchId; }
+    public void setBatchId(String batchId) { this.batchId = batchId; }
+
+    public List<String> getImages() { return images; }
+    public void setImages(List<String> images) { this.images = images != null ? images : new ArrayList<>(); }
+
+    public List<String> getDoneImages() { return doneImages; }
+    public void setDoneImages(List<String> doneImages) { this.doneImages = doneImages != null ? doneImages : new ArrayList<>(); }
+
+    public List<String> getSkippedImages() { return skippedImages; }
+    public void setSkippedImages(List<String> skippedImages) { this.skippedImages = skippedImages != null ? skippedImages : new ArrayList<>(); }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public int getEmbeddingsAdded() { return embeddingsAdded; }
+    public void setEmbeddingsAdded(int embeddingsAdded) { this.embeddingsAdded = embeddingsAdded; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    // ────────────────── Helper methods ──────────────────
+
+    public int getTotal() {
+        return images.size();
+    }
+
+    public int getProcessed() {
+        return doneImages.size();
+    }
+}
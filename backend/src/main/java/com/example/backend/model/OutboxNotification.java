@@ -0,0 +1,97 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One message waiting to be sent (or already sent) to a guardian.
+ * <p>
+ * Alert jobs only ever insert here – keyed by {@code dedupKey}, so generating the same
+ * alert twice is a no-op – and {@code NotificationDispatcher} delivers PENDING entries in
+ * batches through the matching {@code NotificationChannel}, retrying with backoff.
+ */
+@Document(collection = "notification_outbox")
+@CompoundIndex(name = "status_due_idx", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class OutboxNotification {
+
+    public enum Status {
+        PENDING, SENDING, SENT, FAILED
+    }
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String dedupKey;           // e.g. "absence|<studentCode>|<lastSeen day or 'never'>"
+
+    private String type;               // "ABSENCE_ALERT", ...
+    private String channel;            // NotificationChannel.getName()
+    private String recipient;          // phone / email حسب القناة
+    private String recipientName;
+    private String studentCode;
+    private String message;
+
+    private Status status = Status.PENDING;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String claimToken;         // الـ dispatcher اللي ماسكها وهي SENDING
+    private String lastError;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime sentAt;
+
+    // ────────────────── Constructors ──────────────────
+    public OutboxNotification() {
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getDedupKey() { return dedupKey; }
+    public void setDedupKey(String dedupKey) { this.dedupKey = dedupKey; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getChannel() { return channel; }
+    public void setChannel(String channel) { this.channel = channel; }
+
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    public String getRecipientName() { return recipientName; }
+    public void setRecipientName(String recipientName) { this.recipientName = recipientName; }
+
+    public String getStudentCode() { return studentCode; }
+    public void setStudentCode(String studentCode) { this.studentCode = studentCode; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+}
@@ -0,0 +1,214 @@
+package com.example.backend.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compact, immutable face-embedding value stored as a single BSON binary.
+ * <p>
+ * Layout (little-endian):
+ * <pre>
+ *   [0]      magic 'E'
+ *   [1]      encoding (1 = float32, 2 = float16, 3 = int8)
+ *   [2..3]   dimension (unsigned short)
+ *   [4..7]   scale (int8 only)
+ *   [...]    payload: 4, 2 or 1 byte(s) per dimension
+ * </pre>
+ * A 512-d float32 embedding is 2 KB (vs ~8 KB as a BSON array of doubles), float16 halves
+ * that and int8 quarters it with a cosine error well below recognition thresholds.
+ */
+public final class PackedEmbedding {
+
+    private static final byte MAGIC = 'E';
+    private static final int HEADER = 4;
+
+    public enum Encoding {
+        FLOAT32((byte) 1, 4), FLOAT16((byte) 2, 2), INT8((byte) 3, 1);
+
+        private final byte tag;
+        private final int bytesPerValue;
+
+        Encoding(byte tag, int bytesPerValue) {
+            this.tag = tag;
+            this.bytesPerValue = bytesPerValue;
+        }
+
+        static Encoding fromTag(byte tag) {
+            for (Encoding e : values()) {
+                if (e.tag == tag) return e;
+            }
+            return null;
+        }
+    }
+
+    private final Encoding encoding;
+    private final int dimension;
+    private final byte[] bytes;      // full serialized form (header + payload)
+
+    private PackedEmbedding(Encoding encoding, int dimension, byte[] bytes) {
+        this.encoding = encoding;
+        this.dimension = dimension;
+        this.bytes = bytes;
+    }
+
+    // ────────────────── Factories ──────────────────
+
+    public static PackedEmbedding of(float[] vector) {
+        return of(vector, Encoding.FLOAT32);
+    }
+
+    public static PackedEmbedding of(float[] vector, Encoding encoding) {
+        if (vector == null || vector.length == 0 || vector.length > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid embedding length");
+        }
+        int dim = vector.length;
+        int extra = encoding == Encoding.INT8 ? Float.BYTES : 0;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + extra + dim * encoding.bytesPerValue)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC).put(encoding.tag).putShort((short) dim);
+
+        switch (encoding) {
+            case FLOAT32 -> buf.asFloatBuffer().put(vector);
+            case FLOAT16 -> {
+                for (float v : vector) buf.putShort(toHalf(v));
+            }
+            case INT8 -> {
+                float maxAbs = 0f;
+                for (float v : vector) maxAbs = Math.max(maxAbs, Math.abs(v));
+                float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+                buf.putFloat(scale);
+                for (float v : vector) buf.put((byte) Math.round(v / scale));
+            }
+        }
+        return new PackedEmbedding(encoding, dim, buf.array());
+    }
+
+    /**
+     * Parse the serialized form. Header-less blobs whose length is a multiple of 4 are
+     * accepted as legacy raw float32 (the first format written to face_embeddings).
+     */
+    public static PackedEmbedding fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Empty embedding");
+        }
+        if (bytes.length >= HEADER && bytes[0] == MAGIC) {
+            Encoding encoding = Encoding.fromTag(bytes[1]);
+            int dim = (bytes[2] & 0xFF) | ((bytes[3] & 0xFF) << 8);
+            if (encoding != null) {
+                int extra = encoding == Encoding.INT8 ? Float.BYTES : 0;
+                if (bytes.length == HEADER + extra + dim * encoding.bytesPerValue) {
+                    return new PackedEmbedding(encoding, dim, bytes);
+                }
+            }
+        }
+        if (bytes.length % Float.BYTES == 0) {
+            float[] legacy = new float[bytes.length / Float.BYTES];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(legacy);
+            return of(legacy);
+        }
+        throw new IllegalArgumentException("Unrecognized embedding format (" + bytes.length + " bytes)");
+    }
+
+    // ────────────────── Accessors ──────────────────
+
+    public Encoding getEncoding() { return encoding; }
+
+    public int getDimension() { return dimension; }
+
+    /**
+     * Serialized form; do not modify the returned array
+     */
+    public byte[] toBytes() { return bytes; }
+
+    public float[] toFloatArray() {
+        float[] out = new float[dimension];
+        decodeInto(out, 0);
+        return out;
+    }
+
+    /**
+     * Decode straight into {@code target[offset .. offset+dimension)} – used by the
+     * index loader to avoid an intermediate array per embedding.
+     */
+    public void decodeInto(float[] target, int offset) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER);
+        switch (encoding) {
+            case FLOAT32 -> buf.asFloatBuffer().get(target, offset, dimension);
+            case FLOAT16 -> {
+                for (int i = 0; i < dimension; i++) target[offset + i] = fromHalf(buf.getShort());
+            }
+            case INT8 -> {
+                float scale = buf.getFloat();
+                for (int i = 0; i < dimension; i++) target[offset + i] = buf.get() * scale;
+            }
+        }
+    }
+
+    /**
+     * Re-encode with a different precision
+     */
+    public PackedEmbedding withEncoding(Encoding target) {
+        return target == encoding ? this : of(toFloatArray(), target);
+    }
+
+    // ────────────────── float16 helpers (IEEE 754 half precision) ──────────────────
+
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exp <= 0) {                       // subnormal or zero
+            if (exp < -10) return (short) sign;
+            mantissa = (mantissa | 0x800000) >> (1 - exp);
+            return (short) (sign | ((mantissa + 0x1000) >> 13));
+        }
+        if (exp >= 0x1F) {                    // overflow / inf / NaN
+            return (short) (sign | 0x7C00 | (((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0 ? 0x200 : 0));
+        }
+        int half = sign | (exp << 10) | (mantissa >> 13);
+        if ((mantissa & 0x1000) != 0) half++;  // round to nearest
+        return (short) half;
+    }
+
+    static float fromHalf(short half) {
+        int h = half & 0xFFFF;
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1F;
+        int mantissa = h & 0x3FF;
+
+        if (exp == 0) {
+            if (mantissa == 0) return Float.intBitsToFloat(sign);
+            // subnormal → normalize
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exp--;
+            }
+            exp++;
+            mantissa &= 0x3FF;
+        } else if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exp + 127 - 15) << 23) | (mantissa << 13));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedEmbedding other)) return false;
+        return Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "PackedEmbedding{" + encoding + ", dim=" + dimension + ", bytes=" + bytes.length + '}';
+    }
+}
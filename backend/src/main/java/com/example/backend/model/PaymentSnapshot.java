@@ -0,0 +1,43 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ledger total of one student up to {@code upTo} – the ledger balance is this plus the
+ * postings after it, so checking a balance never replays the whole history.
+ */
+@Document(collection = "payment_snapshots")
+public class PaymentSnapshot {
+
+    @Id
+    private String studentCode;
+
+    private double paid;               // مجموع الـ amounts لحد upTo
+    private long transactions;
+    private LocalDateTime upTo;
+    private LocalDateTime takenAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public PaymentSnapshot() {
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getStudentCode() { return studentCode; }
+    public void setStudentCode(String studentCode) { this.studentCode = studentCode; }
+
+    public double getPaid() { return paid; }
+    public void setPaid(double paid) { this.paid = paid; }
+
+    public long getTransactions() { return transactions; }
+    public void setTransactions(long transactions) { this.transactions = transactions; }
+
+    public LocalDateTime getUpTo() { return upTo; }
+    public void setUpTo(LocalDateTime upTo) { this.upTo = upTo; }
+
+    public LocalDateTime getTakenAt() { return takenAt; }
+    public void setTakenAt(LocalDateTime takenAt) { this.takenAt = takenAt; }
+}
@@ -0,0 +1,97 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One posting in the append-only payment ledger.
+ * <p>
+ * {@code amount} is the signed effect on the student's {@code amountPaid} (a refund is
+ * negative). The client's {@code idempotencyKey} is unique, so a retried request can never
+ * post the same payment twice. {@code applied} turns true once the student's balance
+ * includes the posting; entries left unapplied by a crash are applied again later.
+ */
+@Document(collection = "payment_transactions")
+@CompoundIndexes({
+        @CompoundIndex(name = "student_posted_idx", def = "{'studentCode': 1, 'postedAt': -1}"),
+        @CompoundIndex(name = "applied_posted_idx", def = "{'applied': 1, 'postedAt': 1}")
+})
+public class PaymentTransaction {
+
+    public enum Type {
+        PAYMENT, REFUND, ADJUSTMENT, OPENING
+    }
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String idempotencyKey;
+
+    private String studentCode;
+    private String className;          // الفصل وقت الدفع (تقارير التحصيل لكل فصل)
+    private Type type;
+    private double amount;
+    private String currency;
+    private String method;             // cash, card, transfer...
+    private String reference;          // رقم الإيصال / التحويل
+    private String note;
+    private String postedBy;
+    private LocalDateTime postedAt = LocalDateTime.now();
+
+    private boolean applied;
+    private Double paidAfter;          // amountPaid بعد الترحيل
+
+    // ────────────────── Constructors ──────────────────
+    public PaymentTransaction() {
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getStudentCode() { return studentCode; }
+    public void setStudentCode(String studentCode) { this.studentCode = studentCode; }
+
+    public String getClassName() { return className; }
+    public void setClassName(String className) { this.className = className; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public double getAmount() { return amount; }
+    public void setAmount(double amount) { this.amount = amount; }
+
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+
+    public String getMethod() { return method; }
+    public void setMethod(String method) { this.method = method; }
+
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+
+    public String getNote() { return note; }
+    public void setNote(String note) { this.note = note; }
+
+    public String getPostedBy() { return postedBy; }
+    public void setPostedBy(String postedBy) { this.postedBy = postedBy; }
+
+    public LocalDateTime getPostedAt() { return postedAt; }
+    public void setPostedAt(LocalDateTime postedAt) { this.postedAt = postedAt; }
+
+    public boolean isApplied() { return applied; }
+    public void setApplied(boolean applied) { this.applied = applied; }
+
+    public Double getPaidAfter() { return paidAfter; }
+    public void setPaidAfter(Double paidAfter) { this.paidAfter = paidAfter; }
+}
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "students")
+// الـ indexes المركبة والـ partial في config/MongoIndexes
 public class Student {
 
     @Id
@@ -41,10 +42,18 @@ public class Student {
     private LocalDate lastPaymentDate;
     private String paymentMethod;
     private PaymentStatus paymentStatus = PaymentStatus.PENDING;
+    // totalFees - amountPaid، بيتحدث مع كل دفعة أو تغيير في المصروفات (PaymentLedgerService.balanceStage)
+    // الـ indexes بتاعته compound مع studentCode (MongoIndexes) عشان ترتيب الذمم
+    private double balanceDue = 0.0;
+    // آخر الـ postings اللي اتطبقت على amountPaid (PaymentLedgerService) – بتمنع تطبيق نفس الدفعة مرتين
+    private List<String> recentPayments = new ArrayList<>();
 
     private int presentDays = 0;
     private int absentDays = 0;
     private int lateDays = 0;
+    @Indexed
+    private LocalDateTime lastSeenAt;  // آخر حضور – بيتحدث مع كل تسجيل حضور (AttendanceService)
+    private LocalDate lastClosedDay;   // آخر يوم دراسي اتقفل للطالب (AttendanceDayCloseService)
 
     private List<AttendanceRecord> attendanceRecords = new ArrayList<>();
 
@@ -58,6 +67,13 @@ public class Student {
     private LocalDateTime updatedAt = LocalDateTime.now();
     private boolean active = true;
 
+    // نسخة البيانات الأساسية: بتزيد مع كل PATCH (ETag / If-Match)؛ الحضور والدرجات مش بيغيروها
+    private long version = 0;
+
+    // رقم متسلسل ثابت للطالب (0, 1, 2, ...) – مكانه في bitmaps الحضور (PresenceBitmapService)
+    @Indexed(unique = true, sparse = true)
+    private Integer ordinal;
+
     // ────────────────── Constructors ──────────────────
     public Student() {
         this.grades = new ArrayList<>();
@@ -180,6 +196,18 @@ public class Student {
     public int getLateDays() { return lateDays; }
     public void setLateDays(int lateDays) { this.lateDays = lateDays; }
 
+    public double getBalanceDue() { return balanceDue; }
+    public void setBalanceDue(double balanceDue) { this.balanceDue = balanceDue; }
+
+    public List<String> getRecentPayments() { return recentPayments; }
+    public void setRecentPayments(List<String> recentPayments) { this.recentPayments = recentPayments != null ? recentPayments : new ArrayList<>(); }
+
+    public LocalDateTime getLastSeenAt() { return lastSeenAt; }
+    public void setLastSeenAt(LocalDateTime lastSeenAt) { this.lastSeenAt = lastSeenAt; }
+
+    public LocalDate getLastClosedDay() { return lastClosedDay; }
+    public void setLastClosedDay(LocalDate lastClosedDay) { this.lastClosedDay = lastClosedDay; }
+
     public List<AttendanceRecord> getAttendanceRecords() {
         return attendanceRecords;
     }
@@ -244,6 +272,22 @@ public class Student {
         this.active = active;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Integer getOrdinal() {
+        return ordinal;
+    }
+
+    public void setOrdinal(Integer ordinal) {
+        this.ordinal = ordinal;
+    }
+
     // ────────────────── Helper methods ──────────────────
 
     public void incrementPresentDays() {
@@ -269,6 +313,8 @@ public class Student {
         private LocalDateTime dateTime;
         private String method;         // "face", "manual", "qr", etc.
         private String recordedBy;     // "system", username, etc.
+        private Double confidence;     // face only: match score
+        private String snapshot;       // face only: evidence crop, "<yyyy-MM-dd>/<file>.jpg" (AttendanceSnapshotService)
 
         public AttendanceRecord() {}
 
@@ -286,6 +332,12 @@ public class Student {
 
         public String getRecordedBy() { return recordedBy; }
         public void setRecordedBy(String recordedBy) { this.recordedBy = recordedBy; }
+
+        public Double getConfidence() { return confidence; }
+        public void setConfidence(Double confidence) { this.confidence = confidence; }
+
+        public String getSnapshot() { return snapshot; }
+        public void setSnapshot(String snapshot) { this.snapshot = snapshot; }
     }
 
     public static class Grade {
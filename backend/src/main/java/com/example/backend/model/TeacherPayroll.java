@@ -0,0 +1,107 @@
+package com.example.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A teacher's earnings for one month: per class, the fees collected that month and the
+ * teacher's share of them. {@code closed} months (the month is over, so no posting can
+ * land in it any more) are served as stored; the current month is recomputed on read.
+ */
+@Document(collection = "teacher_payroll")
+public class TeacherPayroll {
+
+    @Id
+    private String id;                 // teacherId|yyyy-MM
+
+    @Indexed
+    private String month;              // yyyy-MM
+
+    private String teacherId;
+    private String teacherName;
+    private List<ClassShare> classes = new ArrayList<>();
+    private double collected;
+    private double total;
+    private boolean closed;
+    private LocalDateTime computedAt = LocalDateTime.now();
+
+    // ────────────────── Constructors ──────────────────
+    public TeacherPayroll() {
+    }
+
+    // ────────────────── Getters & Setters ──────────────────
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getMonth() { return month; }
+    public void setMonth(String month) { this.month = month; }
+
+    public String getTeacherId() { return teacherId; }
+    public void setTeacherId(String teacherId) { this.teacherId = teacherId; }
+
+    public String getTeacherName() { return teacherName; }
+    public void setTeacherName(String teacherName) { this.teacherName = teacherName; }
+
+    public List<ClassShare> getClasses() { return classes; }
+    public void setClasses(List<ClassShare> classes) { this.classes = classes != null ? classes : new ArrayList<>(); }
+
+    public double getCollected() { return collected; }
+    public void setCollected(double collected) { this.collected = collected; }
+
+    public double getTotal() { return total; }
+    public void setTotal(double total) { this.total = total; }
+
+    public boolean isClosed() { return closed; }
+    public void setClosed(boolean closed) { this.closed = closed; }
+
+    public LocalDateTime getComputedAt() { return computedAt; }
+    public void setComputedAt(LocalDateTime computedAt) { this.computedAt = computedAt; }
+
+    // ────────────────── Nested ──────────────────
+
+    public static class ClassShare {
+        private String className;
+        private double collected;          // صافي المحصل في الشهر (دفعات - استرداد ± تسويات)
+        private long payments;
+        private int students;              // عدد الطلاب اللي دفعوا
+        private double sharePercent;
+        private double amount;
+
+        public ClassShare() {
+        }
+
+        public ClassShare(String className, double collected, long payments, int students,
+                          double sharePercent, double amount) {
+            this.className = className;
+            this.collected = collected;
+            this.payments = payments;
+            this.students = students;
+            this.sharePercent = sharePercent;
+            this.amount = amount;
+        }
+
+        public String getClassName() { return className; }
+        public void setClassName(String className) { this.className = className; }
+
+        public double getCollected() { return collected; }
+        public void setCollected(double collected) { this.collected = collected; }
+
+        public long getPayments() { return payments; }
+        public void setPayments(long payments) { this.payments = payments; }
+
+        public int getStudents() { return students; }
+        public void setStudents(int students) { this.students = students; }
+
+        public double getSharePercent() { return sharePercent; }
+        public void setSharePercent(double sharePercent) { this.sharePercent = sharePercent; }
+
+        public double getAmount() { return amount; }
+        public void setAmount(double amount) { this.amount = amount; }
+    }
+}
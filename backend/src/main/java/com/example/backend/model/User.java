@@ -5,12 +5,15 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Represents a user in the system (admin, teacher, parent, etc.).
- * Stores authentication info, profile data, and optional face embedding for recognition.
+ * Stores authentication info and profile data.
+ * Face embeddings (if any) live in the {@code face_embeddings} gallery as {@link FaceEmbedding}
+ * documents with personType=USER and label = user id, packed as {@link PackedEmbedding}.
  */
 @Document(collection = "users")
 public class User {
@@ -29,9 +32,12 @@ public class User {
 
     private String role;                   // e.g., ADMIN, TEACHER, PARENT, STUDENT
 
-    private String profilePictureUrl;
+    // TEACHER: الفصول اللي بيدرّسها ونسبته من المحصل (null = قواعد payroll.*) – PayrollService
+    private List<String> teachingClasses = new ArrayList<>();
+
+    private Double payrollSharePercent;
 
-    private List<Double> faceEmbedding;    // For face recognition (optional)
+    private String profilePictureUrl;
 
     private boolean active = true;
 
@@ -54,7 +60,7 @@ public class User {
      */
     public User(String id, String fullName, String email, String passwordHash,
                 String phoneNumber, String role, String profilePictureUrl,
-                List<Double> faceEmbedding, boolean active,
+                boolean active,
                 LocalDateTime lastLoginAt, LocalDateTime createdAt, LocalDateTime updatedAt) {
         this.id = id;
         this.fullName = fullName;
@@ -63,7 +69,6 @@ public class User {
         this.phoneNumber = phoneNumber;
         this.role = role;
         this.profilePictureUrl = profilePictureUrl;
-        this.faceEmbedding = faceEmbedding;
         this.active = active;
         this.lastLoginAt = lastLoginAt;
         this.createdAt = createdAt;
@@ -120,20 +125,28 @@ public class User {
         this.role = role != null ? role.trim().toUpperCase() : null;
     }
 
-    public String getProfilePictureUrl() {
-        return profilePictureUrl;
+    public List<String> getTeachingClasses() {
+        return teachingClasses;
     }
 
-    public void setProfilePictureUrl(String profilePictureUrl) {
-        this.profilePictureUrl = profilePictureUrl;
+    public void setTeachingClasses(List<String> teachingClasses) {
+        this.teachingClasses = teachingClasses != null ? teachingClasses : new ArrayList<>();
     }
 
-    public List<Double> getFaceEmbedding() {
-        return faceEmbedding;
+    public Double getPayrollSharePercent() {
+        return payrollSharePercent;
     }
 
-    public void setFaceEmbedding(List<Double> faceEmbedding) {
-        this.faceEmbedding = faceEmbedding;
+    public void setPayrollSharePercent(Double payrollSharePercent) {
+        this.payrollSharePercent = payrollSharePercent;
+    }
+
+    public String getProfilePictureUrl() {
+        return profilePictureUrl;
+    }
+
+    public void setProfilePictureUrl(String profilePictureUrl) {
+        this.profilePictureUrl = profilePictureUrl;
     }
 
     public boolean isActive() {
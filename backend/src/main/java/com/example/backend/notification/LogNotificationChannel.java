@@ -0,0 +1,49 @@
+package com.example.backend.notification;
+
+import com.example.backend.model.OutboxNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Local sink for testing: logs every notification and, when
+ * {@code notifications.log.file} is set, appends it as one tab-separated line
+ * (time, recipient, student, message) to that file.
+ */
+@Component
+public class LogNotificationChannel implements NotificationChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(LogNotificationChannel.class);
+
+    @Value("${notifications.log.file:}")
+    private String file;
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public synchronized void send(OutboxNotification notification) throws IOException {
+        log.info("Notification to {} ({}) about {}: {}", notification.getRecipient(),
+                notification.getRecipientName(), notification.getStudentCode(), notification.getMessage());
+        if (file == null || file.isBlank()) return;
+
+        Path path = Paths.get(file);
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        String line = String.join("\t", LocalDateTime.now().toString(),
+                String.valueOf(notification.getRecipient()),
+                String.valueOf(notification.getStudentCode()),
+                notification.getMessage().replace('\n', ' ')) + System.lineSeparator();
+        Files.writeString(path, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.backend.notification;
+
+import com.example.backend.model.OutboxNotification;
+
+/**
+ * A way of delivering outbox notifications (SMS gateway, WhatsApp, e-mail, log file...).
+ * <p>
+ * Every Spring bean implementing this is picked up by {@code NotificationDispatcher};
+ * an outbox entry goes to the channel whose {@link #getName()} matches its {@code channel}.
+ */
+public interface NotificationChannel {
+
+    String getName();
+
+    /**
+     * Deliver one notification; throwing marks it for a retry (with backoff)
+     */
+    void send(OutboxNotification notification) throws Exception;
+}
@@ -0,0 +1,12 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.EmbeddingCacheEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for cached face-service results (id = SHA-256 of the image)
+ */
+@Repository
+public interface EmbeddingCacheRepository extends MongoRepository<EmbeddingCacheEntry, String> {
+}
@@ -0,0 +1,25 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.FaceEmbedding;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the persisted face gallery (one document per embedding)
+ */
+@Repository
+public interface FaceEmbeddingRepository extends MongoRepository<FaceEmbedding, String> {
+
+    List<FaceEmbedding> findByLabel(String label);
+
+    List<FaceEmbedding> findByPersonTypeAndLabel(String personType, String label);
+
+    long countByLabel(String label);
+
+    long deleteByLabel(String label);
+
+    long deleteByLabelAndSourceIn(String label, Collection<String> sources);
+}
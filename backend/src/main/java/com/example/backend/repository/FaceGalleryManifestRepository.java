@@ -0,0 +1,12 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.FaceGalleryManifest;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for per-student gallery folder manifests (id = studentCode)
+ */
+@Repository
+public interface FaceGalleryManifestRepository extends MongoRepository<FaceGalleryManifest, String> {
+}
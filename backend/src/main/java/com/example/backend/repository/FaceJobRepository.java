@@ -0,0 +1,20 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.FaceJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for face-registration jobs (claiming is done with findAndModify in the service)
+ */
+@Repository
+public interface FaceJobRepository extends MongoRepository<FaceJob, String> {
+
+    List<FaceJob> findByStudentCodeOrderByCreatedAtDesc(String studentCode);
+
+    List<FaceJob> findByBatchId(String batchId);
+
+    long countByStatus(FaceJob.Status status);
+}
@@ -87,14 +87,15 @@ public interface StudentRepository extends MongoRepository<Student, String> {
     List<Student> findByPaymentStatusNot(Student.PaymentStatus status);
 
     /**
-     * Students who still owe money (practical filter)
+     * Students who still owe more than {@code amount} (stored balanceDue = totalFees - amountPaid;
+     * pass 0 for everyone with something left to pay)
      */
-    List<Student> findByAmountPaidLessThan(double totalFees);
+    List<Student> findByBalanceDueGreaterThan(double amount);
 
     /**
      * Overdue / pending payments sorted by amount remaining
      */
-    List<Student> findByPaymentStatusOrderByTotalFeesDesc(Student.PaymentStatus status);
+    List<Student> findByPaymentStatusOrderByBalanceDueDesc(Student.PaymentStatus status);
 
     // ────────────────────────────────────────────────
     //  Active / Inactive students
@@ -125,10 +126,11 @@ public interface StudentRepository extends MongoRepository<Student, String> {
     // ────────────────────────────────────────────────
 
     /**
-     * Students who have not attended for the last N days
-     * (can be used for absence alerts)
+     * Active students with no attendance since the given time, never-seen students included
+     * (lastSeenAt index; used by the absence alerts – for class follow-up lists over school
+     * days see PresenceBitmapService#noAttendanceSince)
      */
-    @Query("{ 'attendanceRecords.dateTime' : { $lt : ?0 } }")
+    @Query("{ 'active' : true, $or : [ { 'lastSeenAt' : { $lt : ?0 } }, { 'lastSeenAt' : null } ] }")
     List<Student> findStudentsWithNoAttendanceSince(LocalDateTime since);
 
     /**
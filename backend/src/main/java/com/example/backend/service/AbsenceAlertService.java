@@ -0,0 +1,182 @@
+package com.example.backend.service;
+
+import com.example.backend.model.OutboxNotification;
+import com.example.backend.model.Student;
+import com.mongodb.bulk.BulkWriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Guardian alerts for students absent {@code notifications.absence.days} school days in a row.
+ * <p>
+ * The candidates are one indexed range read on {@code Student.lastSeenAt} (kept up to date by
+ * every attendance write); each becomes an {@link OutboxNotification} keyed by the student and
+ * the day they were last seen, inserted with an upsert-if-missing in unordered bulks. One
+ * absence episode therefore produces exactly one alert, however often the job runs, and a
+ * new one only after the student attended again. Delivery is left to
+ * {@link NotificationDispatcher}.
+ * <p>
+ * Runs once a day ({@code notifications.absence.cron}, school days only); students saved
+ * before {@code lastSeenAt} existed are backfilled from their records on startup.
+ */
+@Service
+public class AbsenceAlertService {
+
+    private static final Logger log = LoggerFactory.getLogger(AbsenceAlertService.class);
+
+    private static final String TYPE = "ABSENCE_ALERT";
+    private static final int BULK_SIZE = 1000;
+
+    @Value("${notifications.absence.enabled:true}")
+    private boolean enabled;
+
+    /** Consecutive school days without attendance before the guardian is notified */
+    @Value("${notifications.absence.days:3}")
+    private int absenceDays;
+
+    @Value("${notifications.absence.channel:log}")
+    private String channel;
+
+    private final MongoTemplate mongoTemplate;
+    private final SchoolCalendarService calendar;
+    private final NotificationDispatcher dispatcher;
+
+    public AbsenceAlertService(MongoTemplate mongoTemplate, SchoolCalendarService calendar,
+                               NotificationDispatcher dispatcher) {
+        this.mongoTemplate = mongoTemplate;
+        this.calendar = calendar;
+        this.dispatcher = dispatcher;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @param since   start of the first school day of the absence window (null: not enough school days yet)
+     * @param absent  students absent since then (with a guardian phone)
+     * @param queued  new outbox entries – the rest were alerted before
+     */
+    public record AlertRun(LocalDate since, int absent, int queued, long millis) {
+    }
+
+    /**
+     * Queue alerts for everyone absent the last {@code notifications.absence.days} school days up to {@code today}
+     */
+    public synchronized AlertRun generate(LocalDate today) {
+        long start = System.currentTimeMillis();
+        List<LocalDate> schoolDays = calendar.schoolDays(today.minusDays(absenceDays * 2L + 14), today);
+        if (schoolDays.size() < absenceDays) {
+            return new AlertRun(null, 0, 0, System.currentTimeMillis() - start);
+        }
+        LocalDate firstDay = schoolDays.get(schoolDays.size() - absenceDays);
+        LocalDateTime since = firstDay.atStartOfDay();
+
+        Query query = new Query(Criteria.where("active").is(true)
+                .and("createdAt").lt(since)
+                .and("guardianPhonePrimary").nin(null, "")
+                .orOperator(Criteria.where("lastSeenAt").lt(since), Criteria.where("lastSeenAt").is(null)));
+        query.fields().include("studentCode", "fullName", "className", "division",
+                "guardianName", "guardianPhonePrimary", "lastSeenAt");
+
+        int absent = 0;
+        int queued = 0;
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (Stream<Student> students = mongoTemplate.stream(query, Student.class)) {
+            for (Student student : (Iterable<Student>) students::iterator) {
+                if (bulk == null) bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxNotification.class);
+                bulk.upsert(new Query(Criteria.where("dedupKey").is(dedupKey(student))), newAlert(student, now));
+                absent++;
+                if (++pending == BULK_SIZE) {
+                    queued += bulk.execute().getUpserts().size();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            BulkWriteResult result = bulk.execute();
+            queued += result.getUpserts().size();
+        }
+        if (queued > 0) dispatcher.wakeUp();
+
+        AlertRun run = new AlertRun(firstDay, absent, queued, System.currentTimeMillis() - start);
+        log.info("Absence alerts since {}: {} absent students, {} new notifications in {} ms",
+                firstDay, absent, queued, run.millis());
+        return run;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static String dedupKey(Student student) {
+        LocalDateTime lastSeen = student.getLastSeenAt();
+        return "absence|" + student.getStudentCode() + "|" + (lastSeen != null ? lastSeen.toLocalDate() : "never");
+    }
+
+    private Update newAlert(Student student, LocalDateTime now) {
+        String section = student.getClassName() != null
+                ? " (" + student.getClassName() + (student.getDivision() != null ? "/" + student.getDivision() : "") + ")"
+                : "";
+        String lastSeen = student.getLastSeenAt() != null
+                ? "آخر حضور: " + student.getLastSeenAt().toLocalDate()
+                : "لم يسجل حضور بعد";
+        String message = "ولي أمر الطالب " + student.getFullName() + section + ": الطالب غائب آخر "
+                + absenceDays + " أيام دراسية (" + lastSeen + "). برجاء التواصل مع المدرسة.";
+        return new Update()
+                .setOnInsert("type", TYPE)
+                .setOnInsert("channel", channel)
+                .setOnInsert("recipient", student.getGuardianPhonePrimary())
+                .setOnInsert("recipientName", student.getGuardianName())
+                .setOnInsert("studentCode", student.getStudentCode())
+                .setOnInsert("message", message)
+                .setOnInsert("status", OutboxNotification.Status.PENDING)
+                .setOnInsert("attempts", 0)
+                .setOnInsert("nextAttemptAt", now)
+                .setOnInsert("createdAt", now);
+    }
+
+    @Scheduled(cron = "${notifications.absence.cron:0 0 19 * * *}")
+    private void runDueQuietly() {
+        if (!enabled) return;
+        try {
+            LocalDate today = LocalDate.now();
+            if (calendar.isSchoolDay(today)) {
+                generate(today);
+            }
+        } catch (Exception e) {
+            log.error("Absence alert job failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // lastSeenAt = أحدث dateTime في attendanceRecords، للطلاب اللي اتحفظوا قبل الحقل ده
+    @Scheduled(initialDelay = 0)
+    private void backfillLastSeenQuietly() {
+        try {
+            long updated = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("lastSeenAt").is(null).and("attendanceRecords.0").exists(true)),
+                    AggregationUpdate.update().set("lastSeenAt")
+                            .toValue(AccumulatorOperators.Max.maxOf("attendanceRecords.dateTime")),
+                    Student.class).getModifiedCount();
+            if (updated > 0) log.info("Backfilled lastSeenAt for {} students", updated);
+        } catch (Exception e) {
+            log.warn("lastSeenAt backfill failed: {}", e.getMessage());
+        }
+    }
+}
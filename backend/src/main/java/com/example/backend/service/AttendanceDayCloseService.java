@@ -0,0 +1,317 @@
+package com.example.backend.service;
+
+import com.example.backend.model.AttendanceDayClose;
+import com.example.backend.model.AttendanceRollup;
+import com.example.backend.model.Student;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-of-day attendance close: turns "no record today" into absences and late arrivals
+ * into {@code lateDays}, so {@code absentDays} / {@code lateDays} (and the reports built on
+ * them) are actually maintained.
+ * <p>
+ * A school day (see {@link SchoolCalendarService}) is closed with one bulk write of three
+ * server-side multi-updates over the students enrolled that day – absent (no record),
+ * late (first record after {@code attendance.late-cutoff}) and on time – each guarded by
+ * {@code lastClosedDay < day} and setting it to the day. Nothing is loaded into the JVM, a
+ * re-run touches nobody twice, so a crash mid-way is recovered by closing the day again.
+ * The day's class rollups are then recomputed with one aggregation and overwritten, and the
+ * day's presence bitmap is re-read from the records ({@link PresenceBitmapService#refresh}).
+ * <p>
+ * A scheduled run ({@code attendance.close.cron}, after {@code attendance.close-time}) and
+ * one shortly after startup close every school day that is due and not closed yet, oldest
+ * first; days missed while the server was down or a run failed are caught up (at most
+ * {@code attendance.close.max-catch-up-days} back).
+ */
+@Service
+public class AttendanceDayCloseService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceDayCloseService.class);
+
+    private static final String STUDENTS = "students";
+
+    @Value("${attendance.close.enabled:true}")
+    private boolean enabled;
+
+    /** Arrival after this time counts as late */
+    @Value("${attendance.late-cutoff:08:00}")
+    private String lateCutoffValue;
+
+    /** A day can be closed from this time on */
+    @Value("${attendance.close-time:18:00}")
+    private String closeTimeValue;
+
+    @Value("${attendance.close.max-catch-up-days:14}")
+    private int maxCatchUpDays;
+
+    private final MongoTemplate mongoTemplate;
+    private final SchoolCalendarService calendar;
+    private final PresenceBitmapService presenceService;
+
+    private LocalTime lateCutoff;
+    private LocalTime closeTime;
+
+    private final AtomicLong daysClosed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public AttendanceDayCloseService(MongoTemplate mongoTemplate, SchoolCalendarService calendar,
+                                     PresenceBitmapService presenceService) {
+        this.mongoTemplate = mongoTemplate;
+        this.calendar = calendar;
+        this.presenceService = presenceService;
+    }
+
+    @PostConstruct
+    public void init() {
+        lateCutoff = LocalTime.parse(lateCutoffValue.trim());
+        closeTime = LocalTime.parse(closeTimeValue.trim());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    public record DayCloseResult(LocalDate date, long enrolled, long present, long late, long absent,
+                                 long studentsUpdated, long millis) {
+    }
+
+    /**
+     * Close every pending school day up to {@code day} (oldest first), then {@code day} itself –
+     * closing an already closed day only recomputes its rollups
+     *
+     * @throws IllegalArgumentException if {@code day} is not a school day or has not ended yet
+     */
+    public synchronized List<DayCloseResult> closeThrough(LocalDate day) {
+        if (day.isAfter(lastDueDay())) {
+            throw new IllegalArgumentException("اليوم ده لسه مخلصش (القفل بعد " + closeTime + ")");
+        }
+        if (!calendar.isSchoolDay(day)) {
+            throw new IllegalArgumentException(day + " مش يوم دراسي");
+        }
+        List<DayCloseResult> results = new ArrayList<>();
+        for (LocalDate pending : pendingDays(day)) {
+            results.add(close(pending));
+        }
+        if (results.isEmpty() || !results.get(results.size() - 1).date().equals(day)) {
+            results.add(close(day));
+        }
+        return results;
+    }
+
+    /**
+     * Close the school days that are due and not closed yet
+     */
+    public synchronized List<DayCloseResult> closeDueDays() {
+        List<DayCloseResult> results = new ArrayList<>();
+        for (LocalDate day : pendingDays(lastDueDay())) {
+            results.add(close(day));
+        }
+        return results;
+    }
+
+    public Map<String, Object> getStats() {
+        AttendanceDayClose last = lastDone();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lateCutoff", lateCutoff.toString());
+        stats.put("closeTime", closeTime.toString());
+        stats.put("lastClosedDay", last != null ? last.getDate() : null);
+        stats.put("daysClosed", daysClosed.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    // ────────────────── Closing one day ──────────────────
+
+    private DayCloseResult close(LocalDate day) {
+        long start = System.currentTimeMillis();
+        LocalDateTime dayStart = day.atStartOfDay();
+        LocalDateTime cutoff = day.atTime(lateCutoff);
+        LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(day.toString())),
+                new Update().setOnInsert("date", day)
+                        .set("status", AttendanceDayClose.Status.RUNNING)
+                        .set("startedAt", LocalDateTime.now())
+                        .inc("attempts", 1),
+                AttendanceDayClose.class);
+
+        // 1. عدادات الطلاب – 3 updateMulti في bulk واحد؛ lastClosedDay بيمنع العد مرتين
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class);
+        bulk.updateMulti(new Query(notClosedYet(day, dayEnd)
+                        .and("attendanceRecords").not().elemMatch(between(dayStart, dayEnd))),
+                new Update().inc("absentDays", 1).set("lastClosedDay", day));
+        bulk.updateMulti(new Query(notClosedYet(day, dayEnd)
+                        .and("attendanceRecords").elemMatch(between(cutoff, dayEnd))),
+                new Update().inc("lateDays", 1).set("lastClosedDay", day));
+        bulk.updateMulti(new Query(notClosedYet(day, dayEnd)
+                        .and("attendanceRecords").elemMatch(between(dayStart, cutoff))),
+                new Update().set("lastClosedDay", day));
+        BulkWriteResult written = bulk.execute();
+
+        // 2. الـ rollups بتاعة اليوم من الأول (set مش inc → إعادة التشغيل آمنة)
+        long enrolled = 0, present = 0, late = 0;
+        List<Document> sections = countSections(dayStart, cutoff, dayEnd);
+        if (!sections.isEmpty()) {
+            BulkOperations rollups = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AttendanceRollup.class);
+            for (Document section : sections) {
+                Document key = section.get("_id", Document.class);
+                String className = key.getString("className");
+                String division = key.getString("division");
+                int sectionEnrolled = ((Number) section.get("enrolled")).intValue();
+                int sectionPresent = ((Number) section.get("present")).intValue();
+                int sectionLate = ((Number) section.get("late")).intValue();
+                rollups.upsert(new Query(Criteria.where("_id").is(AttendanceRollup.idOf(day, className, division))),
+                        new Update().setOnInsert("date", day)
+                                .setOnInsert("className", className)
+                                .setOnInsert("division", division)
+                                .set("present", sectionPresent)
+                                .set("late", sectionLate)
+                                .set("absent", sectionEnrolled - sectionPresent)
+                                .set("updatedAt", LocalDateTime.now()));
+                enrolled += sectionEnrolled;
+                present += sectionPresent;
+                late += sectionLate;
+            }
+            rollups.execute();
+        }
+
+        // 3. الـ bitmap المتخزن ممكن يكون ناقص (flush اتفقد / markPresent فشل) → من السجلات قبل ما اليوم يتقفل
+        presenceService.refresh(day);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(day.toString())),
+                new Update().set("status", AttendanceDayClose.Status.DONE)
+                        .set("enrolled", enrolled)
+                        .set("present", present)
+                        .set("late", late)
+                        .set("absent", enrolled - present)
+                        .set("finishedAt", LocalDateTime.now()),
+                AttendanceDayClose.class);
+        daysClosed.incrementAndGet();
+
+        DayCloseResult result = new DayCloseResult(day, enrolled, present, late, enrolled - present,
+                written.getModifiedCount(), System.currentTimeMillis() - start);
+        log.info("Attendance day {} closed: {} enrolled, {} present ({} late), {} absent; {} students updated in {} ms",
+                day, enrolled, present, late, enrolled - present, result.studentsUpdated(), result.millis());
+        return result;
+    }
+
+    // enrolled / present / late per (className, division) for the day
+    private List<Document> countSections(LocalDateTime dayStart, LocalDateTime cutoff, LocalDateTime dayEnd) {
+        Document hasRecord = new Document("$cond", List.of(
+                new Document("$gt", List.of(new Document("$size", recordsBetween(dayStart, dayEnd)), 0)), 1, 0));
+        Document lateRecord = new Document("$cond", List.of(
+                new Document("$gt", List.of(new Document("$size", recordsBetween(cutoff, dayEnd)), 0)), 1, 0));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(enrolledOn(dayEnd)),
+                Aggregation.stage(new Document("$project", new Document("className", 1)
+                        .append("division", 1)
+                        .append("present", hasRecord)
+                        .append("late", lateRecord))),
+                Aggregation.stage(new Document("$group", new Document("_id",
+                        new Document("className", "$className").append("division", "$division"))
+                        .append("enrolled", new Document("$sum", 1))
+                        .append("present", new Document("$sum", "$present"))
+                        .append("late", new Document("$sum", "$late"))))
+        ).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        return mongoTemplate.aggregate(aggregation, STUDENTS, Document.class).getMappedResults();
+    }
+
+    // ────────────────── Scheduling ──────────────────
+
+    @Scheduled(cron = "${attendance.close.cron:0 0 18 * * *}")
+    @Scheduled(initialDelay = 1, timeUnit = TimeUnit.MINUTES)
+    private void closeDueDaysQuietly() {
+        if (!enabled) return;
+        try {
+            closeDueDays();
+        } catch (Exception e) {
+            // اليوم هيتقفل في الـ run الجاي (catch-up)
+            failures.incrementAndGet();
+            log.error("Attendance day close failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private LocalDate lastDueDay() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.toLocalTime().isBefore(closeTime) ? now.toLocalDate().minusDays(1) : now.toLocalDate();
+    }
+
+    // school days after the last closed one, up to {@code through}; first run starts at the term start (or today)
+    private List<LocalDate> pendingDays(LocalDate through) {
+        LocalDate earliest = through.minusDays(maxCatchUpDays - 1L);
+        AttendanceDayClose last = lastDone();
+        LocalDate from;
+        if (last != null) {
+            from = last.getDate().plusDays(1);
+        } else {
+            LocalDate termStart = calendar.getTermStart();
+            from = termStart != null ? termStart : through;
+        }
+        if (from.isBefore(earliest)) from = earliest;
+        return from.isAfter(through) ? List.of() : calendar.schoolDays(from, through);
+    }
+
+    private AttendanceDayClose lastDone() {
+        Query query = new Query(Criteria.where("status").is(AttendanceDayClose.Status.DONE))
+                .with(Sort.by(Sort.Direction.DESC, "date"))
+                .limit(1);
+        return mongoTemplate.findOne(query, AttendanceDayClose.class);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static Criteria enrolledOn(LocalDateTime dayEnd) {
+        return Criteria.where("active").is(true).and("createdAt").lt(dayEnd);
+    }
+
+    private static Criteria notClosedYet(LocalDate day, LocalDateTime dayEnd) {
+        return enrolledOn(dayEnd).orOperator(
+                Criteria.where("lastClosedDay").lt(day),
+                Criteria.where("lastClosedDay").is(null));
+    }
+
+    private static Criteria between(LocalDateTime from, LocalDateTime to) {
+        return Criteria.where("dateTime").gte(from).lt(to);
+    }
+
+    // raw stage → the dates are converted here the same way LocalDateTime is stored (server zone)
+    private static Document recordsBetween(LocalDateTime from, LocalDateTime to) {
+        return new Document("$filter", new Document("input", new Document("$ifNull", List.of("$attendanceRecords", List.of())))
+                .append("as", "r")
+                .append("cond", new Document("$and", List.of(
+                        new Document("$gte", List.of("$$r.dateTime", toDate(from))),
+                        new Document("$lt", List.of("$$r.dateTime", toDate(to)))))));
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
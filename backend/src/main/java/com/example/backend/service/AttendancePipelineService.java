@@ -0,0 +1,305 @@
+package com.example.backend.service;
+
+import com.example.backend.index.SearchHit;
+import com.example.backend.model.Student;
+import com.example.backend.model.Student.AttendanceRecord;
+import com.example.backend.service.AttendanceService.AttendanceResult;
+import com.example.backend.service.FaceRecognitionClient.ExtractedFace;
+import com.example.backend.service.FaceRecognitionClient.FaceMatch;
+import com.example.backend.service.FaceRecognitionClient.RecognitionResponse;
+import com.example.backend.service.MotionGateService.GateDecision;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side "frame in → attendance out" pipeline.
+ * <p>
+ * frame → motion gate → face service (embed) → gallery search → dedup window → atomic attendance write
+ * → (async) evidence snapshot.
+ * <p>
+ * Every (camera, label) pair passes the dedup window at most once per
+ * {@code face.attend.dedup-window-ms}; repeats of a student standing in front of the
+ * camera are answered from memory without touching MongoDB. The same pipeline can be
+ * driven continuously from the server webcam via {@link #startCameraJob(long)}.
+ */
+@Service
+public class AttendancePipelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendancePipelineService.class);
+
+    public static final String SERVER_CAMERA_ID = "webcam-0";
+    private static final String UNKNOWN_LABEL = "Unknown";
+    private static final String[] SUMMARY_FIELDS = {"studentCode", "fullName"};
+
+    @Value("${face.attend.dedup-window-ms:60000}")
+    private long dedupWindowMs;
+
+    /** sidecar (face.py /recognize, default) | index (JVM gallery, once it has been reconciled) */
+    @Value("${face.attend.matcher:sidecar}")
+    private String matcher;
+
+    @Value("${face.attend.min-confidence:0.0}")
+    private double minConfidence;
+
+    @Value("${face.attend.camera-interval-ms:1000}")
+    private long defaultCameraIntervalMs;
+
+    private final MotionGateService motionGate;
+    private final FaceRecognitionClient faceClient;
+    private final FaceIndexService faceIndexService;
+    private final AttendanceService attendanceService;
+    private final WebcamService webcamService;
+    private final AttendanceSnapshotService snapshotService;
+
+    private DedupWindow dedup;
+    private ScheduledExecutorService cameraScheduler;
+    private ScheduledFuture<?> cameraJob;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong gated = new AtomicLong();
+    private final AtomicLong recognitionCalls = new AtomicLong();
+    private final AtomicLong recognitionErrors = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong alreadyPresent = new AtomicLong();
+    private final AtomicLong unknownStudents = new AtomicLong();
+
+    public AttendancePipelineService(
+            MotionGateService motionGate,
+            FaceRecognitionClient faceClient,
+            FaceIndexService faceIndexService,
+            AttendanceService attendanceService,
+            WebcamService webcamService,
+            AttendanceSnapshotService snapshotService) {
+        this.motionGate = motionGate;
+        this.faceClient = faceClient;
+        this.faceIndexService = faceIndexService;
+        this.attendanceService = attendanceService;
+        this.webcamService = webcamService;
+        this.snapshotService = snapshotService;
+    }
+
+    @PostConstruct
+    public void init() {
+        dedup = new DedupWindow(dedupWindowMs);
+        cameraScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attendance-camera");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Pipeline
+    // ────────────────────────────────────────────────────────────────
+
+    public PipelineResult process(String cameraId, byte[] frame, String recordedBy) {
+        frames.incrementAndGet();
+        String camera = cameraId == null || cameraId.isBlank() ? "default" : cameraId;
+
+        GateDecision decision = motionGate.evaluate(camera, frame);
+        if (!decision.forward()) {
+            gated.incrementAndGet();
+            return new PipelineResult(camera, decision.reason().name(), 0, List.of());
+        }
+
+        recognitionCalls.incrementAndGet();
+        // أكتر من طالب في نفس الفريم → كل واحد يتسجل مرة واحدة
+        Map<String, Match> labels = new LinkedHashMap<>();
+        int facesDetected;
+        try {
+            facesDetected = "sidecar".equalsIgnoreCase(matcher)
+                    ? matchInSidecar(frame, labels)
+                    : matchInIndex(frame, labels);
+        } catch (FaceServiceException e) {
+            recognitionErrors.incrementAndGet();
+            throw e;
+        }
+
+        List<AttendOutcome> outcomes = new ArrayList<>(labels.size());
+        labels.forEach((label, match) -> outcomes.add(attend(camera, label, match, frame, recordedBy)));
+        return new PipelineResult(camera, decision.reason().name(), facesDetected, outcomes);
+    }
+
+    // face.py only extracts embeddings; matching runs against the JVM gallery
+    private int matchInIndex(byte[] frame, Map<String, Match> labels) {
+        List<ExtractedFace> faces = faceClient.embed(frame);
+        for (ExtractedFace face : faces) {
+            if (face.embedding == null) continue;
+            List<SearchHit> hits = faceIndexService.search(face.embedding, 1);
+            if (hits.isEmpty() || hits.get(0).score() < minConfidence) continue;
+            labels.merge(hits.get(0).label(), new Match(hits.get(0).score(), face.bbox), Match::best);
+        }
+        return faces.size();
+    }
+
+    // legacy: face.py matches against its own folder-based gallery
+    private int matchInSidecar(byte[] frame, Map<String, Match> labels) {
+        RecognitionResponse recognition = faceClient.recognize(frame);
+        if (recognition == null || recognition.results == null) return 0;
+        for (FaceMatch match : recognition.results) {
+            if (match.name == null || UNKNOWN_LABEL.equals(match.name) || match.confidence < minConfidence) continue;
+            labels.merge(match.name, new Match(match.confidence, match.bbox), Match::best);
+        }
+        return recognition.facesDetected;
+    }
+
+    private AttendOutcome attend(String camera, String label, Match match, byte[] frame, String recordedBy) {
+        double confidence = match.confidence();
+        String key = camera + '|' + label;
+        if (!dedup.tryAcquire(key)) {
+            deduplicated.incrementAndGet();
+            return new AttendOutcome(label, label, null, confidence, OutcomeStatus.DUPLICATE, null);
+        }
+
+        // اسم الصورة بيتكتب مع سجل الحضور في نفس العملية؛ الصورة نفسها بتتحفظ بعدين في الخلفية
+        AttendanceRecord record = new AttendanceRecord(LocalDateTime.now(), "face", recordedBy);
+        record.setConfidence(confidence);
+        if (snapshotService.isEnabled()) {
+            record.setSnapshot(snapshotService.nameFor(label, record.getDateTime()));
+        }
+
+        AttendanceResult result;
+        try {
+            result = attendanceService.recordAttendance(label, record, SUMMARY_FIELDS);
+        } catch (RuntimeException e) {
+            // الكتابة فشلت → نسمح بالمحاولة في الفريم الجاي
+            dedup.release(key);
+            throw e;
+        }
+
+        Student student = result.student();
+        return switch (result.status()) {
+            case RECORDED -> {
+                recorded.incrementAndGet();
+                if (record.getSnapshot() != null) {
+                    snapshotService.saveAsync(record.getSnapshot(), frame, match.bbox());
+                }
+                yield new AttendOutcome(label, student.getStudentCode(), student.getFullName(),
+                        confidence, OutcomeStatus.RECORDED, result.recordedAt());
+            }
+            case ALREADY_PRESENT -> {
+                alreadyPresent.incrementAndGet();
+                yield new AttendOutcome(label, student.getStudentCode(), student.getFullName(),
+                        confidence, OutcomeStatus.ALREADY_PRESENT, null);
+            }
+            case STUDENT_NOT_FOUND -> {
+                unknownStudents.incrementAndGet();
+                log.warn("Face label '{}' recognized on {} has no matching student", label, camera);
+                yield new AttendOutcome(label, null, null, confidence, OutcomeStatus.STUDENT_NOT_FOUND, null);
+            }
+        };
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Continuous job on the server webcam
+    // ────────────────────────────────────────────────────────────────
+
+    public synchronized boolean startCameraJob(long intervalMs) {
+        if (cameraJob != null && !cameraJob.isDone()) {
+            return false;
+        }
+        long interval = intervalMs > 0 ? intervalMs : defaultCameraIntervalMs;
+        cameraJob = cameraScheduler.scheduleWithFixedDelay(this::cameraTick, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("Attendance camera job started on {} every {}ms", SERVER_CAMERA_ID, interval);
+        return true;
+    }
+
+    public synchronized boolean stopCameraJob() {
+        if (cameraJob == null) {
+            return false;
+        }
+        cameraJob.cancel(false);
+        cameraJob = null;
+        log.info("Attendance camera job stopped");
+        return true;
+    }
+
+    public synchronized boolean isCameraJobRunning() {
+        return cameraJob != null && !cameraJob.isDone();
+    }
+
+    private void cameraTick() {
+        try {
+            byte[] frame = webcamService.getFrameAsBytes();
+            if (frame == null) return;
+            PipelineResult result = process(SERVER_CAMERA_ID, frame, "camera:" + SERVER_CAMERA_ID);
+            for (AttendOutcome outcome : result.outcomes()) {
+                if (outcome.status() == OutcomeStatus.RECORDED) {
+                    log.info("Camera attendance: {} ({})", outcome.fullName(), outcome.studentCode());
+                }
+            }
+        } catch (FaceServiceException e) {
+            log.debug("Camera tick skipped, face service unavailable: {}", e.getMessage());
+        } catch (Exception e) {
+            // scheduleWithFixedDelay يوقف المهمة لو خرج استثناء → لازم نمسكه هنا
+            log.error("Camera attendance tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("frames", frames.get());
+        stats.put("gated", gated.get());
+        stats.put("recognitionCalls", recognitionCalls.get());
+        stats.put("recognitionErrors", recognitionErrors.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("recorded", recorded.get());
+        stats.put("alreadyPresent", alreadyPresent.get());
+        stats.put("unknownStudents", unknownStudents.get());
+        stats.put("dedupEntries", dedup.size());
+        stats.put("dedupWindowMs", dedupWindowMs);
+        stats.put("cameraJobRunning", isCameraJobRunning());
+        stats.put("snapshots", snapshotService.getStats());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopCameraJob();
+        cameraScheduler.shutdownNow();
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Result types
+    // ────────────────────────────────────────────────────────────────
+
+    // best face per label in a frame; bbox is what the evidence snapshot crops
+    private record Match(double confidence, int[] bbox) {
+        static Match best(Match a, Match b) {
+            return b.confidence > a.confidence ? b : a;
+        }
+    }
+
+    public enum OutcomeStatus {
+        RECORDED,
+        ALREADY_PRESENT,
+        DUPLICATE,
+        STUDENT_NOT_FOUND
+    }
+
+    public record AttendOutcome(String label, String studentCode, String fullName, double confidence,
+                                OutcomeStatus status, LocalDateTime recordedAt) {
+    }
+
+    /**
+     * @param gate gate reason (MOTION, FACE_REGION, NO_CHANGE, ...); frames with NO_CHANGE never reach recognition
+     */
+    public record PipelineResult(String cameraId, String gate, int facesDetected, List<AttendOutcome> outcomes) {
+    }
+}
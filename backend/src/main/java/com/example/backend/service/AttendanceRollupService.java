@@ -0,0 +1,205 @@
+package com.example.backend.service;
+
+import com.example.backend.model.AttendanceRollup;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Daily attendance counts per (date, className, division) – see {@link AttendanceRollup}.
+ * <p>
+ * Attendance writes call {@link #increment} right after the student update; a failure
+ * there is only logged (the attendance itself is already recorded) and
+ * {@link #rebuild} recomputes any date range from the raw records. {@code late} and
+ * {@code absent} are written by the end-of-day close ({@link AttendanceDayCloseService});
+ * closing a day again recomputes them.
+ */
+@Service
+public class AttendanceRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceRollupService.class);
+
+    private static final String STUDENTS = "students";
+
+    private final MongoTemplate mongoTemplate;
+
+    public AttendanceRollupService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Incremental maintenance
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Add to the counts of one class section on one day (upsert)
+     */
+    public void increment(LocalDate date, String className, String division, int present, int late, int absent) {
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(AttendanceRollup.idOf(date, className, division))),
+                    rollupKey(new Update(), date, className, division)
+                            .inc("present", present)
+                            .inc("late", late)
+                            .inc("absent", absent)
+                            .set("updatedAt", LocalDateTime.now()),
+                    AttendanceRollup.class);
+        } catch (RuntimeException e) {
+            // الحضور نفسه اتسجل؛ الـ rollup يتصلح بـ rebuild
+            log.warn("Attendance rollup update failed for {} {}/{}: {}", date, className, division, e.getMessage());
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Rebuild from raw attendanceRecords
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @param to      last day actually rebuilt (today is never rebuilt); null if none was
+     * @param rollups rollup documents written
+     */
+    public record Rebuilt(LocalDate from, LocalDate to, int rollups) {
+    }
+
+    /**
+     * Recompute {@code present} of {@code from..to} (inclusive) from the students' records.
+     * Counts are overwritten in place, then rollups of the range that no longer have any
+     * record get {@code present = 0} (their late / absent counts from the day close stay) –
+     * reports never see an empty range meanwhile.
+     * <p>
+     * Only past days: today's rollups still get {@link #increment}s, and a {@code $set} of
+     * a count aggregated a moment earlier would drop the attendance recorded in between.
+     */
+    public Rebuilt rebuild(LocalDate from, LocalDate to) {
+        LocalDateTime started = LocalDateTime.now();
+        LocalDate yesterday = started.toLocalDate().minusDays(1);
+        if (to.isAfter(yesterday)) to = yesterday;
+        if (to.isBefore(from)) {
+            log.info("Attendance rollup rebuild skipped: {} is today or later", from);
+            return new Rebuilt(from, null, 0);
+        }
+
+        Criteria inRange = Criteria.where("attendanceRecords.dateTime")
+                .gte(from.atStartOfDay())
+                .lt(to.plusDays(1).atStartOfDay());
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(inRange),
+                Aggregation.project("className", "division", "attendanceRecords"),
+                Aggregation.unwind("attendanceRecords"),
+                Aggregation.match(inRange),
+                // اليوم بتوقيت السيرفر – نفس التوقيت اللي LocalDateTime اتخزن بيه
+                Aggregation.project("className", "division")
+                        .and(DateOperators.dateOf("attendanceRecords.dateTime")
+                                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                                .toString("%Y-%m-%d")).as("day"),
+                Aggregation.group("day", "className", "division").count().as("present")
+        ).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+
+        List<Document> groups = mongoTemplate.aggregate(aggregation, STUDENTS, Document.class).getMappedResults();
+
+        int written = 0;
+        if (!groups.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AttendanceRollup.class);
+            for (Document group : groups) {
+                Document key = group.get("_id", Document.class);
+                LocalDate date = LocalDate.parse(key.getString("day"));
+                String className = key.getString("className");
+                String division = key.getString("division");
+                bulk.upsert(new Query(Criteria.where("_id").is(AttendanceRollup.idOf(date, className, division))),
+                        rollupKey(new Update(), date, className, division)
+                                .set("present", ((Number) group.get("present")).intValue())
+                                .set("updatedAt", LocalDateTime.now()));
+                written++;
+            }
+            bulk.execute();
+        }
+
+        long reset = mongoTemplate.updateMulti(new Query(Criteria.where("date").gte(from).lte(to)
+                        .and("updatedAt").lt(started)),
+                new Update().set("present", 0).set("updatedAt", LocalDateTime.now()),
+                AttendanceRollup.class).getModifiedCount();
+        log.info("Attendance rollups rebuilt for {}..{}: {} written, {} stale reset", from, to, written, reset);
+        return new Rebuilt(from, to, written);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Reports
+    // ────────────────────────────────────────────────────────────────
+
+    public record Counts(int present, int late, int absent) {
+        static final Counts ZERO = new Counts(0, 0, 0);
+
+        Counts plus(AttendanceRollup r) {
+            return new Counts(present + r.getPresent(), late + r.getLate(), absent + r.getAbsent());
+        }
+
+        static Counts sum(Counts a, Counts b) {
+            return new Counts(a.present + b.present, a.late + b.late, a.absent + b.absent);
+        }
+
+        /** present / (present + absent); absences only count once a day is closed */
+        public Double getRate() {
+            int known = present + absent;
+            return known == 0 ? null : (double) present / known;
+        }
+    }
+
+    /**
+     * @param days    totals per day (all matching sections summed)
+     * @param classes totals per "className/division" over the whole range
+     */
+    public record Report(LocalDate from, LocalDate to, String className, String division,
+                         Counts total, Map<LocalDate, Counts> days, Map<String, Counts> classes) {
+    }
+
+    /**
+     * Attendance of {@code from..to} (inclusive), optionally for one class / section –
+     * one index range read on the rollups
+     */
+    public Report report(LocalDate from, LocalDate to, String className, String division) {
+        Criteria criteria = Criteria.where("date").gte(from).lte(to);
+        if (className != null && !className.isBlank()) {
+            criteria = criteria.and("className").is(className);
+            if (division != null && !division.isBlank()) {
+                criteria = criteria.and("division").is(division);
+            }
+        }
+        Query query = new Query(criteria).with(Sort.by("date"));
+
+        Counts total = Counts.ZERO;
+        Map<LocalDate, Counts> days = new TreeMap<>();
+        Map<String, Counts> classes = new TreeMap<>();
+        for (AttendanceRollup rollup : mongoTemplate.find(query, AttendanceRollup.class)) {
+            total = total.plus(rollup);
+            days.merge(rollup.getDate(), Counts.ZERO.plus(rollup), Counts::sum);
+            String section = (rollup.getClassName() != null ? rollup.getClassName() : "-")
+                    + (rollup.getDivision() != null ? "/" + rollup.getDivision() : "");
+            classes.merge(section, Counts.ZERO.plus(rollup), Counts::sum);
+        }
+        return new Report(from, to, className, division, total, days, classes);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static Update rollupKey(Update update, LocalDate date, String className, String division) {
+        return update.setOnInsert("date", date)
+                .setOnInsert("className", className)
+                .setOnInsert("division", division);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Student;
+import com.example.backend.model.Student.AttendanceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Records attendance for a student.
+ * <p>
+ * The "once per day" rule is part of the update filter itself, so the check and the
+ * write are a single atomic findAndModify: two cameras (or a camera and a teacher)
+ * seeing the same student at the same moment can never produce two records.
+ * <p>
+ * Each recorded attendance also bumps the day's class rollup ({@link AttendanceRollupService})
+ * and sets the student's bit in the day's presence bitmap ({@link PresenceBitmapService}).
+ */
+@Service
+public class AttendanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceService.class);
+
+    // الفصل والـ ordinal لازم يرجعوا مع الطالب حتى لو الـ projection محدود، عشان الـ rollup والـ bitmap
+    private static final String[] ROLLUP_FIELDS = {"className", "division", "ordinal"};
+
+    private final MongoTemplate mongoTemplate;
+    private final AttendanceRollupService rollupService;
+    private final PresenceBitmapService presenceService;
+
+    public AttendanceService(MongoTemplate mongoTemplate, AttendanceRollupService rollupService,
+                             PresenceBitmapService presenceService) {
+        this.mongoTemplate = mongoTemplate;
+        this.rollupService = rollupService;
+        this.presenceService = presenceService;
+    }
+
+    public enum Status {
+        RECORDED,
+        ALREADY_PRESENT,
+        STUDENT_NOT_FOUND
+    }
+
+    /**
+     * @param student the updated document (RECORDED) or the current one (ALREADY_PRESENT); null if not found
+     */
+    public record AttendanceResult(Status status, Student student, LocalDateTime recordedAt) {
+    }
+
+    public AttendanceResult recordAttendance(String studentCode, String method, String recordedBy) {
+        return recordAttendance(studentCode, method, recordedBy, (String[]) null);
+    }
+
+    /**
+     * @param fields optional projection for the returned student (e.g. only code + name for the camera path);
+     *               null returns the whole document
+     */
+    public AttendanceResult recordAttendance(String studentCode, String method, String recordedBy, String... fields) {
+        return recordAttendance(studentCode, new AttendanceRecord(LocalDateTime.now(), method, recordedBy), fields);
+    }
+
+    /**
+     * Same as above with a caller-built record (e.g. face attendance carrying its evidence
+     * snapshot); {@code record.dateTime} is the attendance time
+     */
+    public AttendanceResult recordAttendance(String studentCode, AttendanceRecord record, String... fields) {
+        LocalDateTime now = record.getDateTime();
+        LocalDate today = now.toLocalDate();
+
+        Query notYetToday = new Query(Criteria.where("studentCode").is(studentCode)
+                .and("attendanceRecords").not().elemMatch(Criteria.where("dateTime")
+                        .gte(today.atStartOfDay())
+                        .lt(today.plusDays(1).atStartOfDay())));
+        project(notYetToday, fields);
+        project(notYetToday, fields != null ? ROLLUP_FIELDS : null);
+
+        Update update = new Update()
+                .push("attendanceRecords", record)
+                .inc("presentDays", 1)
+                .max("lastSeenAt", now)
+                .set("updatedAt", now);
+
+        Student updated = mongoTemplate.findAndModify(notYetToday, update,
+                FindAndModifyOptions.options().returnNew(true), Student.class);
+        if (updated != null) {
+            log.info("Attendance recorded for {} at {} by {} ({})", studentCode, now, record.getRecordedBy(), record.getMethod());
+            rollupService.increment(today, updated.getClassName(), updated.getDivision(), 1, 0, 0);
+            presenceService.markPresent(today, updated);
+            return new AttendanceResult(Status.RECORDED, updated, now);
+        }
+
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        project(byCode, fields);
+        Student existing = mongoTemplate.findOne(byCode, Student.class);
+        if (existing == null) {
+            return new AttendanceResult(Status.STUDENT_NOT_FOUND, null, null);
+        }
+        return new AttendanceResult(Status.ALREADY_PRESENT, existing, null);
+    }
+
+    private static void project(Query query, String... fields) {
+        if (fields == null) return;
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Evidence for face attendance: the face crop that produced each record.
+ * <p>
+ * The snapshot name is decided up front ({@link #nameFor}) so it goes into the same
+ * atomic attendance write; cropping, JPEG encoding and the disk write happen afterwards
+ * on a small bounded pool ({@link #saveAsync}), never on the request / camera thread.
+ * When the queue is full the snapshot is dropped (counted) – attendance is never slowed
+ * down or failed for the sake of evidence, so a record may point at a missing file.
+ * <p>
+ * Layout: {@code <face.snapshot.folder>/<yyyy-MM-dd>/<code>-<HHmmssSSS>.jpg}. One directory
+ * per day makes retention a directory delete: day folders older than
+ * {@code face.snapshot.retention-days} are removed shortly after startup and then once a day
+ * ({@code face.snapshot.prune-cron}).
+ */
+@Service
+public class AttendanceSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceSnapshotService.class);
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HHmmssSSS");
+    private static final Pattern UNSAFE = Pattern.compile("[^A-Za-z0-9_-]");
+    private static final Pattern NAME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}/[A-Za-z0-9_-]+-\\d{9}\\.jpg");
+
+    @Value("${face.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${face.snapshot.folder:attendance_snapshots}")
+    private String folder;
+
+    @Value("${face.snapshot.retention-days:90}")
+    private int retentionDays;
+
+    /** longest side of the stored crop */
+    @Value("${face.snapshot.side:200}")
+    private int side;
+
+    /** margin around the detected box, as a fraction of its size */
+    @Value("${face.snapshot.padding:0.25}")
+    private double padding;
+
+    @Value("${face.snapshot.jpeg-quality:80}")
+    private int jpegQuality;
+
+    @Value("${face.snapshot.workers:1}")
+    private int workers;
+
+    @Value("${face.snapshot.queue-size:256}")
+    private int queueSize;
+
+    private final FaceImageProcessor imageProcessor;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong prunedDays = new AtomicLong();
+
+    public AttendanceSnapshotService(FaceImageProcessor imageProcessor) {
+        this.imageProcessor = imageProcessor;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "attendance-snapshot-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Snapshot name for an attendance of {@code studentCode} at {@code at}
+     * (relative to the snapshot folder; stored on the attendance record)
+     */
+    public String nameFor(String studentCode, LocalDateTime at) {
+        return DAY.format(at) + "/" + UNSAFE.matcher(studentCode).replaceAll("_") + "-" + TIME.format(at) + ".jpg";
+    }
+
+    /**
+     * Crop {@code bbox} out of {@code frame} and write it as {@code name} in the background.
+     * {@code frame} must not be modified afterwards.
+     *
+     * @return false if the snapshot was dropped (disabled or queue full)
+     */
+    public boolean saveAsync(String name, byte[] frame, int[] bbox) {
+        if (!enabled) return false;
+        try {
+            executor.execute(() -> save(name, frame, bbox));
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+            log.debug("Attendance snapshot {} dropped, queue full", name);
+            return false;
+        }
+    }
+
+    /**
+     * Stored snapshot file, if {@code name} is a snapshot name and it still exists
+     */
+    public Optional<Path> resolve(String name) {
+        if (name == null || !NAME.matcher(name).matches()) return Optional.empty();
+        Path file = Paths.get(folder).resolve(name);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Delete day folders older than the retention period
+     *
+     * @return number of day folders removed
+     */
+    public int prune() throws IOException {
+        Path root = Paths.get(folder);
+        if (retentionDays <= 0 || !Files.isDirectory(root)) return 0;
+        LocalDate oldestKept = LocalDate.now().minusDays(retentionDays);
+
+        int removed = 0;
+        try (DirectoryStream<Path> days = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path day : days) {
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(day.getFileName().toString(), DAY);
+                } catch (DateTimeParseException e) {
+                    continue;   // مش فولدر يوم → نسيبه
+                }
+                if (date.isBefore(oldestKept)) {
+                    deleteTree(day);
+                    removed++;
+                }
+            }
+        }
+        prunedDays.addAndGet(removed);
+        if (removed > 0) {
+            log.info("Pruned {} day(s) of attendance snapshots older than {}", removed, oldestKept);
+        }
+        return removed;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("saved", saved.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("retentionDays", retentionDays);
+        stats.put("prunedDays", prunedDays.get());
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private void save(String name, byte[] frame, int[] bbox) {
+        try {
+            byte[] jpeg = imageProcessor.crop(frame, bbox, padding, side, jpegQuality);
+            if (jpeg == null) {
+                failed.incrementAndGet();
+                return;
+            }
+            Path target = Paths.get(folder).resolve(name);
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), ".snapshot-", ".part");
+            try {
+                Files.write(temp, jpeg);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            saved.incrementAndGet();
+            bytesWritten.addAndGet(jpeg.length);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Cannot save attendance snapshot {}: {}", name, e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${face.snapshot.prune-cron:0 30 4 * * *}")
+    @Scheduled(initialDelay = 1, timeUnit = TimeUnit.MINUTES)
+    private void pruneQuietly() {
+        if (!enabled || retentionDays <= 0) return;
+        try {
+            prune();
+        } catch (Exception e) {
+            log.error("Attendance snapshot prune failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();   // الصور اللي في الطابور تكمل كتابة
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
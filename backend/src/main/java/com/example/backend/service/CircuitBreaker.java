@@ -0,0 +1,90 @@
+package com.example.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimal consecutive-failure circuit breaker.
+ * <ul>
+ *   <li>CLOSED – calls pass; {@code failureThreshold} failures in a row open the circuit</li>
+ *   <li>OPEN – calls are rejected immediately for {@code openDurationMs}</li>
+ *   <li>HALF_OPEN – one trial call is let through; success closes, failure re-opens</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMs = Math.max(0, openDurationMs);
+    }
+
+    /**
+     * @return true if the caller may proceed with the call
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+                log.info("Circuit '{}' → HALF_OPEN", name);
+                // fall through
+            case HALF_OPEN:
+            default:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Circuit '{}' → CLOSED", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Circuit '{}' → OPEN after {} consecutive failures", name, consecutiveFailures);
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        // report OPEN → HALF_OPEN transition lazily, like tryAcquire would
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
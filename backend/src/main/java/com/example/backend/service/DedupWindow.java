@@ -0,0 +1,53 @@
+package com.example.backend.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small TTL set: {@link #tryAcquire(String)} returns true the first time a key is seen
+ * and false for every repeat until the window for that key expires.
+ * <p>
+ * Expired entries are swept lazily every {@value #SWEEP_EVERY} calls, so memory stays
+ * bounded by the number of distinct keys seen inside one window.
+ */
+public final class DedupWindow {
+
+    private static final int SWEEP_EVERY = 256;
+
+    private final long windowMs;
+    private final Map<String, Long> expiresAt = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+
+    public DedupWindow(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public boolean tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        if (calls.incrementAndGet() % SWEEP_EVERY == 0) {
+            sweep(now);
+        }
+        boolean[] acquired = {false};
+        expiresAt.compute(key, (k, until) -> {
+            if (until != null && until > now) {
+                return until;
+            }
+            acquired[0] = true;
+            return now + windowMs;
+        });
+        return acquired[0];
+    }
+
+    public void release(String key) {
+        expiresAt.remove(key);
+    }
+
+    public int size() {
+        return expiresAt.size();
+    }
+
+    private void sweep(long now) {
+        expiresAt.values().removeIf(until -> until <= now);
+    }
+}
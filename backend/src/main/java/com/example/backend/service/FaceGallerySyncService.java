@@ -0,0 +1,402 @@
+package com.example.backend.service;
+
+import com.example.backend.model.FaceGalleryManifest;
+import com.example.backend.model.FaceGalleryManifest.FileStamp;
+import com.example.backend.repository.FaceGalleryManifestRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the embedding gallery in step with the {@code face.register.folder} tree.
+ * <p>
+ * A {@link WatchService} watches the root, every student folder and its hash-shard
+ * sub-folders ({@link FaceImageStore}); events only mark a
+ * student as dirty, and a debounced sync (one per student, bursts coalesced) diffs the
+ * folder against its {@link FaceGalleryManifest}:
+ * <ul>
+ *   <li>new / changed images → one registration job with just those files</li>
+ *   <li>deleted / changed images → their old embeddings are dropped</li>
+ * </ul>
+ * At startup a reconciliation pass compares every folder's metadata fingerprint with
+ * the stored one and only syncs students whose folder actually changed while the
+ * backend was down.
+ */
+@Service
+public class FaceGallerySyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceGallerySyncService.class);
+
+    @Value("${face.register.folder}")
+    private String registerFolder;
+
+    @Value("${face.gallery.watch-enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${face.gallery.reconcile-on-startup:true}")
+    private boolean reconcileOnStartup;
+
+    @Value("${face.gallery.debounce-ms:2000}")
+    private long debounceMs;
+
+    private final FaceGalleryManifestRepository manifestRepository;
+    private final FaceRegistrationService faceRegistration;
+    private final FaceIndexService faceIndexService;
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final Map<WatchKey, String> watchedStudents = new ConcurrentHashMap<>();
+    private ScheduledExecutorService syncExecutor;
+    private WatchService watchService;
+    private WatchKey rootKey;
+    private Thread watchThread;
+
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong unchangedSkips = new AtomicLong();
+    private final AtomicLong imagesQueued = new AtomicLong();
+    private final AtomicLong imagesRemoved = new AtomicLong();
+    private volatile long lastReconcileMillis;
+
+    public FaceGallerySyncService(
+            FaceGalleryManifestRepository manifestRepository,
+            FaceRegistrationService faceRegistration,
+            FaceIndexService faceIndexService,
+            MongoTemplate mongoTemplate) {
+        this.manifestRepository = manifestRepository;
+        this.faceRegistration = faceRegistration;
+        this.faceIndexService = faceIndexService;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // single thread → syncs never run concurrently, manifests need no locking
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "face-gallery-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        Path root = root();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            log.error("Face gallery folder {} is not usable: {}", root, e.getMessage());
+            return;
+        }
+        if (watchEnabled) {
+            startWatching(root);
+        }
+        if (reconcileOnStartup) {
+            requestReconcile();
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Schedule a sync of one student folder; calls within the debounce window collapse into one
+     */
+    public void requestSync(String studentCode) {
+        if (syncExecutor == null || studentCode == null || studentCode.isBlank()) return;
+        pending.compute(studentCode, (code, previous) -> {
+            if (previous != null) previous.cancel(false);
+            return syncExecutor.schedule(() -> {
+                pending.remove(code);
+                syncStudent(code);
+            }, debounceMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Run {@link #reconcile()} on the sync thread (returns immediately)
+     */
+    public void requestReconcile() {
+        if (syncExecutor != null) syncExecutor.execute(this::reconcile);
+    }
+
+    /**
+     * Compare every folder fingerprint with its manifest; sync only what differs
+     */
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Map<String, String> stored = storedFingerprints();
+        Path root = root();
+        int checked = 0, changed = 0;
+
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                String code = dir.getFileName().toString();
+                checked++;
+                String fingerprint = fingerprint(scan(dir));
+                if (fingerprint.equals(stored.remove(code))) {
+                    unchangedSkips.incrementAndGet();
+                    continue;
+                }
+                changed++;
+                syncStudent(code);
+            }
+        } catch (IOException e) {
+            log.error("Face gallery reconciliation failed: {}", e.getMessage(), e);
+            return;
+        }
+
+        // manifests whose folder is gone → embeddings of those images go too
+        for (String code : stored.keySet()) {
+            changed++;
+            syncStudent(code);
+        }
+
+        lastReconcileMillis = System.currentTimeMillis() - start;
+        log.info("Face gallery reconciled in {} ms: {} folders checked, {} changed", lastReconcileMillis, checked, changed);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("watching", watchService != null);
+        stats.put("watchedFolders", watchedStudents.size());
+        stats.put("pendingSyncs", pending.size());
+        stats.put("syncs", syncs.get());
+        stats.put("unchangedSkips", unchangedSkips.get());
+        stats.put("imagesQueued", imagesQueued.get());
+        stats.put("imagesRemoved", imagesRemoved.get());
+        stats.put("lastReconcileMillis", lastReconcileMillis);
+        return stats;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Sync one student
+    // ────────────────────────────────────────────────────────────────
+
+    private void syncStudent(String code) {
+        try {
+            syncs.incrementAndGet();
+            Path dir = root().resolve(code);
+            List<FileStamp> current = Files.isDirectory(dir) ? scan(dir) : List.of();
+            FaceGalleryManifest manifest = manifestRepository.findById(code).orElseGet(() -> new FaceGalleryManifest(code));
+            Map<String, FileStamp> previous = manifest.filesByName();
+
+            List<String> toEmbed = new ArrayList<>();
+            List<String> staleSources = new ArrayList<>();
+            for (FileStamp file : current) {
+                FileStamp before = previous.remove(file.getName());
+                if (before == null) {
+                    toEmbed.add(file.getName());
+                } else if (!file.sameAs(before)) {
+                    // same name, new content → old vector is wrong
+                    staleSources.add(FaceRegistrationService.sourceId(code, file.getName()));
+                    toEmbed.add(file.getName());
+                }
+            }
+            for (String removed : previous.keySet()) {
+                staleSources.add(FaceRegistrationService.sourceId(code, removed));
+            }
+
+            if (!staleSources.isEmpty()) {
+                imagesRemoved.addAndGet(faceIndexService.removeSources(code, staleSources));
+            }
+            if (!toEmbed.isEmpty()) {
+                faceRegistration.enqueue(code, toEmbed);
+                imagesQueued.addAndGet(toEmbed.size());
+            }
+
+            if (current.isEmpty() && !Files.isDirectory(dir)) {
+                manifestRepository.deleteById(code);
+            } else {
+                // field-level write → upload digests recorded by FaceImageStore are kept
+                mongoTemplate.upsert(new Query(Criteria.where("_id").is(code)),
+                        new Update().set("files", current)
+                                .set("fingerprint", fingerprint(current))
+                                .set("updatedAt", LocalDateTime.now()),
+                        FaceGalleryManifest.class);
+            }
+            if (!toEmbed.isEmpty() || !staleSources.isEmpty()) {
+                log.info("Gallery sync {}: {} to embed, {} stale", code, toEmbed.size(), staleSources.size());
+            }
+        } catch (Exception e) {
+            log.error("Gallery sync failed for {}: {}", code, e.getMessage(), e);
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // WatchService
+    // ────────────────────────────────────────────────────────────────
+
+    private void startWatching(Path root) {
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            rootKey = root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            try (Stream<Path> dirs = Files.list(root)) {
+                dirs.filter(Files::isDirectory).forEach(this::watchStudent);
+            }
+        } catch (IOException e) {
+            log.warn("Face gallery watcher disabled: {}", e.getMessage());
+            watchService = null;
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "face-gallery-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("Watching face gallery {} ({} student folders)", root, watchedStudents.size());
+    }
+
+    private void watchStudent(Path dir) {
+        String code = dir.getFileName().toString();
+        watchFolder(dir, code);
+        try (Stream<Path> shards = Files.list(dir)) {
+            shards.filter(Files::isDirectory).forEach(shard -> watchFolder(shard, code));
+        } catch (IOException e) {
+            log.warn("Cannot list {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void watchFolder(Path dir, String code) {
+        try {
+            WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedStudents.put(key, code);
+        } catch (IOException e) {
+            log.warn("Cannot watch {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were lost → fall back to a full (cheap, fingerprint-based) pass
+                    requestReconcile();
+                    continue;
+                }
+                Path name = (Path) event.context();
+                if (key == rootKey) {
+                    Path dir = root().resolve(name);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        if (!Files.isDirectory(dir)) continue;
+                        watchStudent(dir);
+                    }
+                    requestSync(name.toString());
+                } else {
+                    String code = watchedStudents.get(key);
+                    if (code == null) continue;
+                    Path child = ((Path) key.watchable()).resolve(name);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                        // new hash shard – files may already be in it before the key exists
+                        watchFolder(child, code);
+                        requestSync(code);
+                    } else if (FaceRegistrationService.isImage(name.toString())) {
+                        requestSync(code);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedStudents.remove(key);
+            }
+        }
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private Path root() {
+        return Paths.get(registerFolder);
+    }
+
+    // student folder + one level of hash shards; names are relative ("ab/ab12….jpg")
+    private static List<FileStamp> scan(Path dir) throws IOException {
+        List<FileStamp> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.walk(dir, 2)) {
+            for (Path file : (Iterable<Path>) entries::iterator) {
+                if (!FaceRegistrationService.isImage(file.getFileName().toString())) continue;
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) continue;
+                String name = FaceRegistrationService.relativeName(dir, file);
+                files.add(new FileStamp(name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+            }
+        }
+        files.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private static String fingerprint(List<FileStamp> files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (FileStamp file : files) {
+                digest.update((file.getName() + ':' + file.getSize() + ':' + file.getModifiedAt() + '\n')
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // _id + fingerprint only, so the startup pass never loads file lists
+    private Map<String, String> storedFingerprints() {
+        Map<String, String> out = new HashMap<>();
+        String collection = mongoTemplate.getCollectionName(FaceGalleryManifest.class);
+        for (Document doc : mongoTemplate.getCollection(collection)
+                .find().projection(new Document("fingerprint", 1))) {
+            out.put(doc.getString("_id"), doc.getString("fingerprint"));
+        }
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchThread != null) watchThread.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // shutting down anyway
+            }
+        }
+        if (syncExecutor != null) syncExecutor.shutdownNow();
+    }
+}
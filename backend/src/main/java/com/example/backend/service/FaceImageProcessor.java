@@ -0,0 +1,395 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_64F;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.meanStdDev;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_COLOR_2;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_COLOR_4;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_COLOR_8;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMWRITE_JPEG_QUALITY;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imencode;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.Laplacian;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Upload-time normalization of registration photos.
+ * <p>
+ * Each image is decoded once (EXIF orientation applied by OpenCV; large photos are
+ * decoded straight at 1/2, 1/4 or 1/8 scale via JPEG DCT scaling), downscaled to the
+ * recognizer's working size, checked for blur (variance of the Laplacian, same idea
+ * as {@code FaceQualityChecker} in face.py) and – when a Haar cascade is configured –
+ * for at least one face, then re-encoded as JPEG. Work runs on a bounded pool so a
+ * batch of phone photos is processed in parallel without unbounded memory use.
+ */
+@Service
+public class FaceImageProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceImageProcessor.class);
+
+    /** Longest side of the stored image */
+    @Value("${face.upload.max-side:1024}")
+    private int maxSide;
+
+    @Value("${face.upload.jpeg-quality:90}")
+    private int jpegQuality;
+
+    /** Minimum variance of the Laplacian (face.py uses 50 on the face crop) */
+    @Value("${face.upload.blur-threshold:50}")
+    private double blurThreshold;
+
+    @Value("${face.upload.min-side:160}")
+    private int minSide;
+
+    /** Reject images without a face-like region (only when a cascade is configured) */
+    @Value("${face.upload.require-face:true}")
+    private boolean requireFace;
+
+    @Value("${face.upload.workers:4}")
+    private int workers;
+
+    @Value("${face.upload.queue-size:64}")
+    private int queueSize;
+
+    @Value("${face.upload.timeout-ms:20000}")
+    private long timeoutMs;
+
+    private final FaceRegionDetector faceDetector;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public FaceImageProcessor(FaceRegionDetector faceDetector) {
+        this.faceDetector = faceDetector;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "face-image-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Process several uploads in parallel; result i belongs to input i.
+     *
+     * @throws RejectedExecutionException if the pool is saturated (caller should answer 503)
+     */
+    public List<ProcessedImage> processAll(List<byte[]> images) {
+        List<CompletableFuture<ProcessedImage>> futures = new ArrayList<>(images.size());
+        for (byte[] image : images) {
+            futures.add(submit(image));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<ProcessedImage> out = new ArrayList<>(images.size());
+        for (CompletableFuture<ProcessedImage> future : futures) {
+            out.add(result(future, deadline - System.nanoTime()));
+        }
+        return out;
+    }
+
+    /**
+     * Queue one image; pair with {@link #await} (used by streaming uploads to overlap
+     * parsing of the next part with normalization of this one)
+     *
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public CompletableFuture<ProcessedImage> submit(byte[] image) {
+        return CompletableFuture.supplyAsync(() -> process(image), executor);
+    }
+
+    /**
+     * Result of a {@link #submit}ted image, at most {@code face.upload.timeout-ms} from now
+     */
+    public ProcessedImage await(CompletableFuture<ProcessedImage> future) {
+        return result(future, TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    /**
+     * Normalize one image on the calling thread
+     */
+    public ProcessedImage process(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            return reject(Rejection.UNDECODABLE, 0);
+        }
+        bytesIn.addAndGet(encoded.length);
+
+        try (BytePointer data = new BytePointer(encoded);
+             Mat buf = new Mat(1, encoded.length, CV_8UC1, data);
+             Mat decoded = imdecode(buf, decodeFlag(encoded, maxSide))) {
+
+            if (decoded == null || decoded.empty()) {
+                return reject(Rejection.UNDECODABLE, 0);
+            }
+
+            Mat image = decoded;
+            Mat scaled = null;
+            try {
+                int longest = Math.max(decoded.cols(), decoded.rows());
+                if (longest > maxSide) {
+                    double scale = (double) maxSide / longest;
+                    scaled = new Mat();
+                    try (Size target = new Size((int) Math.round(decoded.cols() * scale), (int) Math.round(decoded.rows() * scale))) {
+                        resize(decoded, scaled, target, 0, 0, INTER_AREA);
+                    }
+                    image = scaled;
+                }
+
+                if (Math.min(image.cols(), image.rows()) < minSide) {
+                    return reject(Rejection.TOO_SMALL, 0);
+                }
+
+                double sharpness;
+                int faces;
+                try (Mat gray = new Mat()) {
+                    cvtColor(image, gray, COLOR_BGR2GRAY);
+                    sharpness = laplacianVariance(gray);
+                    faces = faceDetector.countFaces(gray);
+                }
+                if (sharpness < blurThreshold) {
+                    return reject(Rejection.BLURRY, sharpness);
+                }
+                if (requireFace && faceDetector.isAvailable() && faces == 0) {
+                    return reject(Rejection.NO_FACE, sharpness);
+                }
+
+                byte[] jpeg = encodeJpeg(image);
+                accepted.incrementAndGet();
+                bytesOut.addAndGet(jpeg.length);
+                return new ProcessedImage(jpeg, image.cols(), image.rows(), sharpness, faces, null);
+            } finally {
+                if (scaled != null) scaled.close();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot normalize image: {}", e.getMessage());
+            return reject(Rejection.UNDECODABLE, 0);
+        }
+    }
+
+    /**
+     * Plain resize for display variants (thumbnails): decode at the smallest DCT scale
+     * that still covers {@code side}, fit into side×side, re-encode. No quality checks.
+     *
+     * @return JPEG bytes, or null if the image cannot be decoded
+     */
+    public byte[] downscale(byte[] encoded, int side) {
+        try (BytePointer data = new BytePointer(encoded);
+             Mat buf = new Mat(1, encoded.length, CV_8UC1, data);
+             Mat decoded = imdecode(buf, decodeFlag(encoded, side))) {
+            if (decoded == null || decoded.empty()) return null;
+            return fitJpeg(decoded, side, jpegQuality);
+        } catch (RuntimeException e) {
+            log.warn("Cannot downscale image: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Face crop for attendance evidence: {@code bbox} ([x1, y1, x2, y2] as face.py reports it)
+     * grown by {@code padding} × its size on every side and clamped to the frame, then fit
+     * into side×side. A null bbox keeps the whole frame.
+     *
+     * @return JPEG bytes, or null if the frame cannot be decoded
+     */
+    public byte[] crop(byte[] encoded, int[] bbox, double padding, int side, int quality) {
+        try (BytePointer data = new BytePointer(encoded);
+             Mat buf = new Mat(1, encoded.length, CV_8UC1, data);
+             Mat decoded = imdecode(buf, IMREAD_COLOR)) {
+            if (decoded == null || decoded.empty()) return null;
+            if (bbox == null || bbox.length < 4) return fitJpeg(decoded, side, quality);
+
+            int padX = (int) Math.round((bbox[2] - bbox[0]) * padding);
+            int padY = (int) Math.round((bbox[3] - bbox[1]) * padding);
+            int x1 = Math.max(0, bbox[0] - padX);
+            int y1 = Math.max(0, bbox[1] - padY);
+            int x2 = Math.min(decoded.cols(), bbox[2] + padX);
+            int y2 = Math.min(decoded.rows(), bbox[3] + padY);
+            if (x2 <= x1 || y2 <= y1) return fitJpeg(decoded, side, quality);
+
+            try (Rect rect = new Rect(x1, y1, x2 - x1, y2 - y1);
+                 Mat face = decoded.apply(rect)) {
+                return fitJpeg(face, side, quality);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot crop image: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("bytesIn", bytesIn.get());
+        stats.put("bytesOut", bytesOut.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("faceCheck", faceDetector.isAvailable() && requireFace);
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private ProcessedImage result(CompletableFuture<ProcessedImage> future, long timeoutNanos) {
+        try {
+            return future.get(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return ProcessedImage.rejected(Rejection.TIMEOUT, 0);
+        } catch (ExecutionException e) {
+            log.warn("Image processing failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return ProcessedImage.rejected(Rejection.UNDECODABLE, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ProcessedImage.rejected(Rejection.TIMEOUT, 0);
+        }
+    }
+
+    private ProcessedImage reject(Rejection reason, double sharpness) {
+        rejected.incrementAndGet();
+        return ProcessedImage.rejected(reason, sharpness);
+    }
+
+    // header only → pick the largest DCT reduction that still leaves >= side pixels
+    private static int decodeFlag(byte[] encoded, int side) {
+        int longest = longestSide(encoded);
+        if (longest <= 0) return IMREAD_COLOR;
+        if (longest / 8 >= side) return IMREAD_REDUCED_COLOR_8;
+        if (longest / 4 >= side) return IMREAD_REDUCED_COLOR_4;
+        if (longest / 2 >= side) return IMREAD_REDUCED_COLOR_2;
+        return IMREAD_COLOR;
+    }
+
+    private static int longestSide(byte[] encoded) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return -1;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return Math.max(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static double laplacianVariance(Mat gray) {
+        try (Mat lap = new Mat();
+             Mat mean = new Mat();
+             Mat stddev = new Mat()) {
+            Laplacian(gray, lap, CV_64F);
+            meanStdDev(lap, mean, stddev);
+            try (DoubleIndexer idx = stddev.createIndexer()) {
+                double sd = idx.get(0);
+                return sd * sd;
+            }
+        }
+    }
+
+    private static byte[] fitJpeg(Mat image, int side, int quality) {
+        int longest = Math.max(image.cols(), image.rows());
+        if (longest <= side) return encodeJpeg(image, quality);
+        double scale = (double) side / longest;
+        try (Mat scaled = new Mat();
+             Size target = new Size(Math.max(1, (int) Math.round(image.cols() * scale)),
+                     Math.max(1, (int) Math.round(image.rows() * scale)))) {
+            resize(image, scaled, target, 0, 0, INTER_AREA);
+            return encodeJpeg(scaled, quality);
+        }
+    }
+
+    private byte[] encodeJpeg(Mat image) {
+        return encodeJpeg(image, jpegQuality);
+    }
+
+    private static byte[] encodeJpeg(Mat image, int quality) {
+        try (BytePointer out = new BytePointer();
+             IntPointer params = new IntPointer(IMWRITE_JPEG_QUALITY, quality)) {
+            if (!imencode(".jpg", image, out, params)) {
+                throw new IllegalStateException("JPEG encoding failed");
+            }
+            byte[] bytes = new byte[(int) out.limit()];
+            out.get(bytes);
+            return bytes;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ────────────────── Types ──────────────────
+
+    public enum Rejection {
+        UNDECODABLE, TOO_SMALL, BLURRY, NO_FACE, TIMEOUT
+    }
+
+    /**
+     * @param jpeg      normalized bytes, null when rejected
+     * @param rejection null when accepted
+     */
+    public record ProcessedImage(byte[] jpeg, int width, int height, double sharpness, int faces, Rejection rejection) {
+
+        static ProcessedImage rejected(Rejection reason, double sharpness) {
+            return new ProcessedImage(null, 0, 0, sharpness, 0, reason);
+        }
+
+        public boolean accepted() {
+            return rejection == null;
+        }
+    }
+}
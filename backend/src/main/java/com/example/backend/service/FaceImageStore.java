@@ -0,0 +1,191 @@
+package com.example.backend.service;
+
+import com.example.backend.model.FaceGalleryManifest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed storage for registration photos.
+ * <p>
+ * Every image lives at {@code <face.register.folder>/<studentCode>/<hh>/<sha256>.jpg},
+ * where {@code hh} is the first byte of the hash – so a folder never grows past 256
+ * entries however many photos a student has. Bytes are streamed to a temp file in the
+ * student folder while the digest is computed, then moved into place atomically; an
+ * image whose hash is already stored is dropped without touching the gallery.
+ * <p>
+ * Because the name is the hash, the same name always means the same pixels: the gallery
+ * manifest never sees "same name, new content", and face-service results can be cached
+ * per hash ({@link com.example.backend.model.EmbeddingCacheEntry}).
+ */
+@Service
+public class FaceImageStore {
+
+    private static final Pattern HASH_NAME = Pattern.compile("(?:[0-9a-f]{2}/)?([0-9a-f]{64})\\.jpg");
+    private static final String TEMP_SUFFIX = ".part";
+
+    @Value("${face.register.folder}")
+    private String registerFolder;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong knownUploads = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public FaceImageStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Stream {@code content} into the student's folder under its SHA-256 name
+     *
+     * @return where it lives; {@code duplicate} is true when the same bytes were already stored
+     */
+    public StoredImage store(String studentCode, InputStream content) throws IOException {
+        Path dir = studentDir(studentCode);
+        Files.createDirectories(dir);
+
+        // temp file next to the target → same file system, so the move below is atomic
+        Path temp = Files.createTempFile(dir, ".upload-", TEMP_SUFFIX);
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = content.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String name = nameOf(hash);
+            Path target = dir.resolve(name);
+
+            if (Files.exists(target)) {
+                duplicates.incrementAndGet();
+                return new StoredImage(name, hash, size, true);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            stored.incrementAndGet();
+            bytesWritten.addAndGet(size);
+            return new StoredImage(name, hash, size, false);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public StoredImage store(String studentCode, byte[] content) throws IOException {
+        return store(studentCode, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Image previously produced from an upload with this digest, if it is still on disk
+     */
+    public Optional<String> findUpload(String studentCode, String uploadDigest) {
+        Query query = new Query(Criteria.where("_id").is(studentCode));
+        query.fields().include("uploads." + uploadDigest);
+        FaceGalleryManifest manifest = mongoTemplate.findOne(query, FaceGalleryManifest.class);
+        if (manifest == null) return Optional.empty();
+        String hash = manifest.getUploads().get(uploadDigest);
+        if (hash == null || !Files.isRegularFile(studentDir(studentCode).resolve(nameOf(hash)))) {
+            return Optional.empty();
+        }
+        knownUploads.incrementAndGet();
+        return Optional.of(nameOf(hash));
+    }
+
+    /**
+     * Remember which stored image an upload produced (field-level upsert, safe next to gallery syncs)
+     */
+    public void rememberUpload(String studentCode, String uploadDigest, StoredImage image) {
+        mongoTemplate.upsert(
+                new Query(Criteria.where("_id").is(studentCode)),
+                new Update().set("uploads." + uploadDigest, image.contentHash())
+                        .setOnInsert("updatedAt", LocalDateTime.now()),
+                FaceGalleryManifest.class);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stored", stored.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("knownUploads", knownUploads.get());
+        stats.put("bytesWritten", bytesWritten.get());
+        return stats;
+    }
+
+    // ────────────────── Static helpers ──────────────────
+
+    /** Relative path of an image inside its student folder: {@code <hh>/<hash>.jpg} */
+    public static String nameOf(String contentHash) {
+        return contentHash.substring(0, 2) + "/" + contentHash + ".jpg";
+    }
+
+    /** Hash encoded in a stored image name, or null for legacy (non content-addressed) files */
+    public static String contentHashOf(String fileName) {
+        var m = HASH_NAME.matcher(fileName);
+        return m.matches() ? m.group(1) : null;
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private Path studentDir(String studentCode) {
+        Path root = Paths.get(registerFolder).toAbsolutePath().normalize();
+        Path dir = root.resolve(studentCode).normalize();
+        if (!dir.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid student code: " + studentCode);
+        }
+        return dir;
+    }
+
+    // ────────────────── Types ──────────────────
+
+    /**
+     * @param name      path relative to the student folder ({@code <hh>/<hash>.jpg})
+     * @param duplicate true when the content was already stored (nothing written)
+     */
+    public record StoredImage(String name, String contentHash, long size, boolean duplicate) {
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.backend.service;
+
+import com.example.backend.index.FlatVectorIndex;
+import com.example.backend.index.HnswVectorIndex;
+import com.example.backend.index.SearchHit;
+import com.example.backend.index.VectorIndex;
+import com.example.backend.index.VectorMath;
+import com.example.backend.model.FaceEmbedding;
+import com.example.backend.model.PackedEmbedding;
+import com.example.backend.repository.FaceEmbeddingRepository;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM-resident face gallery.
+ * <p>
+ * Embeddings are persisted in Mongo ({@link FaceEmbedding}) and mirrored into a
+ * {@link VectorIndex} at startup, so the Python sidecar only has to turn images into
+ * vectors – matching happens here and survives restarts.
+ */
+@Service
+public class FaceIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceIndexService.class);
+
+    @Value("${face.index.dimension:512}")
+    private int dimension;
+
+    /** flat | hnsw | auto (auto = hnsw once the gallery exceeds hnsw-threshold) */
+    @Value("${face.index.mode:auto}")
+    private String mode;
+
+    @Value("${face.index.hnsw-threshold:20000}")
+    private int hnswThreshold;
+
+    @Value("${face.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${face.index.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${face.index.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    /** FLOAT32 | FLOAT16 | INT8 – precision used for newly stored embeddings */
+    @Value("${face.index.storage-encoding:FLOAT32}")
+    private PackedEmbedding.Encoding storageEncoding;
+
+    @Value("${face.recognition.threshold:0.45}")
+    private float defaultMinScore;
+
+    private final FaceEmbeddingRepository embeddingRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private volatile VectorIndex index;
+    private volatile long lastLoadMillis;
+
+    public FaceIndexService(FaceEmbeddingRepository embeddingRepository, MongoTemplate mongoTemplate) {
+        this.embeddingRepository = embeddingRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("فشل تحميل معرض الوجوه من قاعدة البيانات: {}", e.getMessage(), e);
+            index = newIndex(0);
+        }
+    }
+
+    /**
+     * Rebuild the in-memory index from the {@code face_embeddings} collection.
+     * Reads raw BSON (label + packed vector only) to skip entity mapping; each
+     * binary is decoded once into a reusable buffer that the index copies from.
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        String collection = mongoTemplate.getCollectionName(FaceEmbedding.class);
+        long expected = mongoTemplate.getCollection(collection).estimatedDocumentCount();
+        VectorIndex fresh = newIndex(expected);
+
+        int loaded = 0, skipped = 0;
+        float[] buffer = new float[dimension];
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(collection)
+                .find()
+                .projection(new Document("label", 1).append("vector", 1))
+                .batchSize(2000)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                String label = doc.getString("label");
+                Binary packed = doc.get("vector", Binary.class);
+                PackedEmbedding embedding = decode(packed);
+                if (label == null || embedding == null || embedding.getDimension() != dimension) {
+                    skipped++;
+                    continue;
+                }
+                embedding.decodeInto(buffer, 0);
+                if (embedding.getEncoding() == PackedEmbedding.Encoding.FLOAT32) {
+                    fresh.addNormalized(label, buffer);
+                } else {
+                    fresh.add(label, buffer);      // quantized → re-normalize
+                }
+                loaded++;
+            }
+        }
+
+        index = fresh;
+        lastLoadMillis = System.currentTimeMillis() - start;
+        log.info("Face index loaded: {} embeddings ({} skipped) into {} index in {} ms",
+                loaded, skipped, fresh.type(), lastLoadMillis);
+    }
+
+    /**
+     * Persist a new embedding for {@code label} and make it searchable immediately
+     */
+    public synchronized FaceEmbedding addEmbedding(String label, String personType, float[] vector, String source) {
+        if (label == null || label.isBlank()) {
+            throw new IllegalArgumentException("label is required");
+        }
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding must have " + dimension + " dimensions");
+        }
+        PackedEmbedding packed = PackedEmbedding.of(VectorMath.normalize(vector), storageEncoding);
+        FaceEmbedding saved = embeddingRepository.save(new FaceEmbedding(
+                label, personType != null ? personType : FaceEmbedding.PERSON_STUDENT, packed, source));
+        // index what was stored, so search results match a later reload exactly
+        currentIndex().add(label, packed.toFloatArray());
+        log.debug("Embedding added for {} (source={})", label, source);
+        return saved;
+    }
+
+    /**
+     * Drop every embedding of a person (DB + index)
+     */
+    public synchronized long removeLabel(String label) {
+        long deleted = embeddingRepository.deleteByLabel(label);
+        currentIndex().remove(label);
+        maybeCompact();
+        log.info("Removed {} embeddings for {}", deleted, label);
+        return deleted;
+    }
+
+    /**
+     * Drop the embeddings that came from specific images of one person (e.g. a deleted
+     * or replaced photo). The person's remaining embeddings are re-indexed.
+     */
+    public synchronized long removeSources(String label, Collection<String> sources) {
+        if (sources == null || sources.isEmpty()) return 0;
+        long deleted = embeddingRepository.deleteByLabelAndSourceIn(label, sources);
+        if (deleted > 0) {
+            VectorIndex current = currentIndex();
+            current.remove(label);
+            for (FaceEmbedding remaining : embeddingRepository.findByLabel(label)) {
+                if (remaining.getVector() != null && remaining.getDimension() == dimension) {
+                    current.add(label, remaining.getVector().toFloatArray());
+                }
+            }
+            maybeCompact();
+            log.info("Removed {} embeddings of {} ({} sources)", deleted, label, sources.size());
+        }
+        return deleted;
+    }
+
+    /**
+     * Sources (image ids) already embedded for each label – one query for many labels,
+     * used to skip images that are already in the gallery.
+     */
+    public Map<String, Set<String>> sourcesByLabel(Collection<String> labels) {
+        Map<String, Set<String>> out = new HashMap<>();
+        if (labels == null || labels.isEmpty()) return out;
+        String collection = mongoTemplate.getCollectionName(FaceEmbedding.class);
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(collection)
+                .find(new Document("label", new Document("$in", labels)))
+                .projection(new Document("label", 1).append("source", 1).append("_id", 0))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                String source = doc.getString("source");
+                if (source != null) {
+                    out.computeIfAbsent(doc.getString("label"), k -> new HashSet<>()).add(source);
+                }
+            }
+        }
+        return out;
+    }
+
+    public Set<String> sourcesOf(String label) {
+        return sourcesByLabel(List.of(label)).getOrDefault(label, Set.of());
+    }
+
+    public List<SearchHit> search(float[] query, int k) {
+        return search(query, k, defaultMinScore);
+    }
+
+    /**
+     * Top-k labels by cosine similarity, filtered by {@code minScore}
+     */
+    public List<SearchHit> search(float[] query, int k, float minScore) {
+        if (query == null || query.length != dimension) {
+            throw new IllegalArgumentException("Query must have " + dimension + " dimensions");
+        }
+        return currentIndex().search(query, Math.max(1, k)).stream()
+                .filter(hit -> hit.score() >= minScore)
+                .toList();
+    }
+
+    public Map<String, Object> getStats() {
+        VectorIndex current = currentIndex();
+        return Map.of(
+                "type", current.type(),
+                "size", current.size(),
+                "dimension", current.dimension(),
+                "lastLoadMillis", lastLoadMillis
+        );
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private VectorIndex currentIndex() {
+        VectorIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) index = newIndex(0);
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private static PackedEmbedding decode(Binary packed) {
+        if (packed == null) return null;
+        try {
+            return PackedEmbedding.fromBytes(packed.getData());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private VectorIndex newIndex(long expectedSize) {
+        boolean useHnsw = "hnsw".equalsIgnoreCase(mode)
+                || ("auto".equalsIgnoreCase(mode) && expectedSize >= hnswThreshold);
+        if (useHnsw) {
+            return new HnswVectorIndex(dimension, hnswM, hnswEfConstruction, hnswEfSearch);
+        }
+        return new FlatVectorIndex(dimension, (int) Math.min(Integer.MAX_VALUE / dimension, expectedSize + 1024));
+    }
+
+    // HNSW deletes are tombstones → rebuild once they pile up
+    private void maybeCompact() {
+        if (index instanceof HnswVectorIndex hnsw && hnsw.deletedRatio() > 0.2) {
+            log.info("HNSW tombstones above 20% → rebuilding face index");
+            reload();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.backend.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Backend client for the face-recognition sidecar (face.py).
+ * <p>
+ * - Pooled keep-alive connections via {@code faceRestTemplate}
+ * - Circuit breaker: after repeated failures calls fail fast instead of piling up
+ * - Hedging (opt-in, off by default since it can double the sidecar load): idempotent calls
+ *   (recognize/embed) slower than {@code face.client.hedge-delay-ms} get a second, parallel
+ *   attempt; first success wins
+ * - Batching: several frames / face crops per HTTP call
+ */
+@Service
+public class FaceRecognitionClient {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceRecognitionClient.class);
+
+    @Value("${face.client.base-url:http://localhost:8000}")
+    private String baseUrl;
+
+    /** 0 disables hedging (default) */
+    @Value("${face.client.hedge-delay-ms:0}")
+    private long hedgeDelayMs;
+
+    @Value("${face.client.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    @Value("${face.client.max-batch-size:16}")
+    private int maxBatchSize;
+
+    @Value("${face.client.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${face.client.breaker.open-ms:10000}")
+    private long breakerOpenMs;
+
+    @Value("${face.client.hedge-threads:8}")
+    private int hedgeThreads;
+
+    private final RestTemplate restTemplate;
+
+    private CircuitBreaker breaker;
+    private ThreadPoolExecutor executor;
+    // register_new_face بيشتغل على pool لوحده – مايستناش ورا الـ hedging ومايزاحمهوش
+    private ThreadPoolExecutor registerExecutor;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public FaceRecognitionClient(@Qualifier("faceRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        breaker = new CircuitBreaker("face-service", breakerFailureThreshold, breakerOpenMs);
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hedgeThreads, hedgeThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(hedgeThreads * 8),
+                r -> {
+                    Thread t = new Thread(r, "face-client-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        registerExecutor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                r -> {
+                    Thread t = new Thread(r, "face-register-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        registerExecutor.allowCoreThreadTimeOut(true);
+        log.info("Face client → {} (hedge={}ms, batch={}, breaker={}x/{}ms)",
+                baseUrl, hedgeDelayMs, maxBatchSize, breakerFailureThreshold, breakerOpenMs);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Full recognition (detection + matching in the sidecar) for one frame
+     */
+    public RecognitionResponse recognize(byte[] image) {
+        return execute(() -> post("/recognize", Map.of("image", encode(image)), RecognitionResponse.class), true);
+    }
+
+    /**
+     * Recognition for several frames; split into chunks of {@code face.client.max-batch-size}
+     */
+    public List<RecognitionResponse> recognizeBatch(List<byte[]> images) {
+        List<RecognitionResponse> out = new ArrayList<>(images.size());
+        for (List<byte[]> chunk : chunks(images)) {
+            BatchRecognitionResponse resp = execute(() -> post("/recognize_batch",
+                    Map.of("images", encodeAll(chunk)), BatchRecognitionResponse.class), true);
+            out.addAll(resp != null && resp.items != null ? resp.items : List.of());
+        }
+        return out;
+    }
+
+    /**
+     * Embeddings of every acceptable face in the image (no matching)
+     */
+    public List<ExtractedFace> embed(byte[] image) {
+        EmbedResponse resp = execute(() -> post("/embed", Map.of("image", encode(image)), EmbedResponse.class), true);
+        return resp != null && resp.faces != null ? resp.faces : List.of();
+    }
+
+    /**
+     * Embeddings for several images (or face crops); result i belongs to image i
+     */
+    public List<List<ExtractedFace>> embedBatch(List<byte[]> images) {
+        List<List<ExtractedFace>> out = new ArrayList<>(images.size());
+        for (List<byte[]> chunk : chunks(images)) {
+            BatchEmbedResponse resp = execute(() -> post("/embed_batch",
+                    Map.of("images", encodeAll(chunk)), BatchEmbedResponse.class), true);
+            if (resp == null || resp.items == null) {
+                chunk.forEach(img -> out.add(List.of()));
+                continue;
+            }
+            for (EmbedResponse item : resp.items) {
+                out.add(item.faces != null ? item.faces : List.of());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Ask the sidecar to (re)load a student's folder into its own gallery.
+     * Not idempotent on the sidecar side → never hedged.
+     */
+    public void registerNewFace(String studentCode) {
+        execute(() -> post("/register_new_face", Map.of("student_code", studentCode), Map.class), false);
+    }
+
+    /**
+     * Same as {@link #registerNewFace(String)} but off the caller's thread
+     */
+    public CompletableFuture<Void> registerNewFaceAsync(String studentCode) {
+        try {
+            return CompletableFuture.runAsync(() -> registerNewFace(studentCode), registerExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new FaceServiceException("Face client queue is full", e));
+        }
+    }
+
+    public boolean isHealthy() {
+        try {
+            restTemplate.getForObject(baseUrl + "/health", Map.class);
+            return true;
+        } catch (RestClientException e) {
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("baseUrl", baseUrl);
+        stats.put("circuit", breaker.getState().name());
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        stats.put("rejectedByBreaker", rejectedByBreaker.get());
+        stats.put("hedged", hedged.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        return stats;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Resilience plumbing
+    // ────────────────────────────────────────────────────────────────
+
+    private <T> T execute(Supplier<T> call, boolean hedge) {
+        if (!breaker.tryAcquire()) {
+            rejectedByBreaker.incrementAndGet();
+            throw new FaceServiceException("خادم التعرف غير متاح حاليًا (circuit open)", null, true);
+        }
+        requests.incrementAndGet();
+        try {
+            T result = hedge && hedgeDelayMs > 0 ? hedged(call) : call.get();
+            breaker.onSuccess();
+            return result;
+        } catch (HttpClientErrorException e) {
+            // 4xx = the sidecar is up but rejected this input (e.g. undecodable image) → not a breaker failure
+            breaker.onSuccess();
+            throw new FaceServiceException("رفض خادم التعرف الطلب: " + e.getStatusCode(), e);
+        } catch (FaceServiceException e) {
+            failures.incrementAndGet();
+            breaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            breaker.onFailure();
+            throw new FaceServiceException("فشل الاتصال بخادم التعرف: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> T hedged(Supplier<T> call) {
+        CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return call.get();        // pool saturated → plain call on this thread
+        }
+
+        try {
+            return primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            CompletableFuture<T> backup;
+            try {
+                backup = CompletableFuture.supplyAsync(call, executor);
+                hedged.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                backup = null;
+            }
+            return await(backup == null ? primary : firstSuccessful(primary, backup), backup);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FaceServiceException("Interrupted while waiting for face service", e);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, CompletableFuture<T> backup) {
+        try {
+            T result = future.get(readTimeoutMs * 2, TimeUnit.MILLISECONDS);
+            if (backup != null && backup.isDone() && !backup.isCompletedExceptionally()
+                    && backup.getNow(null) == result) {
+                hedgeWins.incrementAndGet();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            throw new FaceServiceException("انتهت مهلة خادم التعرف", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FaceServiceException("Interrupted while waiting for face service", e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<T> f : List.of(a, b)) {
+            f.whenComplete((value, error) -> {
+                if (error == null) {
+                    winner.complete(value);
+                } else if (failed.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof java.util.concurrent.CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException re) return re;
+        return new FaceServiceException("Face service call failed", cause);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // HTTP helpers
+    // ────────────────────────────────────────────────────────────────
+
+    private <T> T post(String path, Object body, Class<T> type) {
+        return restTemplate.postForObject(baseUrl + path, body, type);
+    }
+
+    private List<List<byte[]>> chunks(List<byte[]> images) {
+        List<List<byte[]>> out = new ArrayList<>();
+        int size = Math.max(1, maxBatchSize);
+        for (int i = 0; i < images.size(); i += size) {
+            out.add(images.subList(i, Math.min(images.size(), i + size)));
+        }
+        return out;
+    }
+
+    private static String encode(byte[] image) {
+        return Base64.getEncoder().encodeToString(image);
+    }
+
+    private static List<String> encodeAll(List<byte[]> images) {
+        return images.stream().map(FaceRecognitionClient::encode).toList();
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (registerExecutor != null) {
+            registerExecutor.shutdownNow();
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // DTOs (snake_case like face.py)
+    // ────────────────────────────────────────────────────────────────
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class RecognitionResponse {
+        public String status;
+        @JsonProperty("faces_detected")
+        public int facesDetected;
+        public List<FaceMatch> results = List.of();
+        @JsonProperty("match_success")
+        public boolean matchSuccess;
+        @JsonProperty("best_match")
+        public BestMatch bestMatch;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class FaceMatch {
+        public int[] bbox;
+        public String name;
+        public double confidence;
+        public double similarity;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BestMatch {
+        public String name;
+        public double confidence;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ExtractedFace {
+        public int[] bbox;
+        @JsonProperty("det_score")
+        public Double detScore;
+        public float[] embedding;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EmbedResponse {
+        public String status;
+        public List<ExtractedFace> faces;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BatchEmbedResponse {
+        public List<EmbedResponse> items;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BatchRecognitionResponse {
+        public List<RecognitionResponse> items;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Cheap "is there a face-like region?" check using an OpenCV Haar cascade.
+ * <p>
+ * This is NOT recognition – it only tells the pipeline whether a frame is worth
+ * sending to the (expensive) insightface sidecar. If no cascade file is configured
+ * the detector reports itself as unavailable and callers fall back to other signals.
+ */
+@Service
+public class FaceRegionDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceRegionDetector.class);
+
+    @Value("${face.detector.cascade-path:}")
+    private String cascadePath;
+
+    @Value("${face.detector.min-face-size:24}")
+    private int minFaceSize;
+
+    // CascadeClassifier is not thread-safe → one instance per thread
+    private ThreadLocal<CascadeClassifier> classifiers;
+    private volatile boolean available = false;
+
+    @PostConstruct
+    public void init() {
+        if (cascadePath == null || cascadePath.isBlank()) {
+            log.info("No face cascade configured (face.detector.cascade-path) – face-region check disabled");
+            return;
+        }
+        if (!Files.isReadable(Paths.get(cascadePath))) {
+            log.warn("Face cascade not readable: {} – face-region check disabled", cascadePath);
+            return;
+        }
+        classifiers = ThreadLocal.withInitial(() -> new CascadeClassifier(cascadePath));
+        available = !classifiers.get().empty();
+        log.info("Face-region detector {} (cascade={})", available ? "ready" : "failed to load", cascadePath);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * @param gray 8-bit single channel image (may be downscaled)
+     * @return number of face-like regions found, or 0 if the detector is unavailable
+     */
+    public int countFaces(Mat gray) {
+        if (!available || gray == null || gray.empty()) return 0;
+
+        try (RectVector faces = new RectVector();
+             Size minSize = new Size(minFaceSize, minFaceSize);
+             Size maxSize = new Size()) {
+            classifiers.get().detectMultiScale(gray, faces, 1.2, 3, 0, minSize, maxSize);
+            return (int) faces.size();
+        }
+    }
+
+    public boolean hasFace(Mat gray) {
+        return countFaces(gray) > 0;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (classifiers != null) {
+            classifiers.remove();
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmbeddingCacheEntry;
+import com.example.backend.model.FaceEmbedding;
+import com.example.backend.model.FaceJob;
+import com.example.backend.model.Student;
+import com.example.backend.repository.EmbeddingCacheRepository;
+import com.example.backend.repository.FaceJobRepository;
+import com.example.backend.service.FaceRecognitionClient.ExtractedFace;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent face-registration queue.
+ * <p>
+ * Saving images only enqueues a {@link FaceJob}; a small, fixed pool of workers claims
+ * jobs from Mongo (findAndModify, so several backend instances can share the queue),
+ * embeds only the images listed in the job via the face service – batched per call –
+ * and appends the vectors to the gallery through {@link FaceIndexService}. Progress
+ * is written after each batch, failures are retried with exponential backoff, and
+ * a job whose worker died is picked up again once its lease expires. Content-addressed
+ * images ({@link FaceImageStore}) are embedded at most once: results are cached per hash.
+ */
+@Service
+public class FaceRegistrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceRegistrationService.class);
+
+    private static final List<String> IMAGE_EXTENSIONS = List.of(".jpg", ".jpeg", ".png");
+
+    @Value("${face.register.folder}")
+    private String registerFolder;
+
+    @Value("${face.jobs.workers:2}")
+    private int workers;
+
+    @Value("${face.jobs.poll-ms:2000}")
+    private long pollMs;
+
+    @Value("${face.jobs.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${face.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${face.jobs.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Value("${face.jobs.images-per-call:8}")
+    private int imagesPerCall;
+
+    /** Also reload the student in face.py's own gallery (needed while face.attend.matcher=sidecar) */
+    @Value("${face.register.notify-sidecar:true}")
+    private boolean notifySidecar;
+
+    private final MongoTemplate mongoTemplate;
+    private final FaceJobRepository jobRepository;
+    private final FaceRecognitionClient faceClient;
+    private final FaceIndexService faceIndexService;
+    private final EmbeddingCacheRepository embeddingCache;
+
+    // lockedBy = "<instance>/<thread>" – thread names are the same on every backend instance
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Object wakeup = new Object();
+    private volatile boolean running;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong jobsCompleted = new AtomicLong();
+    private final AtomicLong jobsFailed = new AtomicLong();
+    private final AtomicLong jobsRetried = new AtomicLong();
+    private final AtomicLong imagesEmbedded = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    public FaceRegistrationService(
+            MongoTemplate mongoTemplate,
+            FaceJobRepository jobRepository,
+            FaceRecognitionClient faceClient,
+            FaceIndexService faceIndexService,
+            EmbeddingCacheRepository embeddingCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobRepository = jobRepository;
+        this.faceClient = faceClient;
+        this.faceIndexService = faceIndexService;
+        this.embeddingCache = embeddingCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        running = true;
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers),
+                r -> {
+                    Thread t = new Thread(r, "face-job-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::workerLoop);
+        }
+        log.info("Face registration queue started: {} workers, lease={}ms, maxAttempts={}", workers, leaseMs, maxAttempts);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Enqueue
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Queue the given (already saved) images of one student; returns immediately
+     */
+    public FaceJob enqueue(String studentCode, List<String> imageNames) {
+        return enqueue(studentCode, imageNames, null);
+    }
+
+    public FaceJob enqueue(String studentCode, List<String> imageNames, String batchId) {
+        FaceJob job = jobRepository.save(new FaceJob(studentCode, imageNames, batchId, maxAttempts));
+        log.info("Face job {} queued for {} ({} images)", job.getId(), studentCode, job.getTotal());
+        signal();
+        return job;
+    }
+
+    /**
+     * Bulk enrolment: one job per student of the class that has images not yet in the gallery
+     */
+    public BatchSummary enqueueClass(String className, String division) {
+        Criteria criteria = Criteria.where("className").is(className);
+        if (division != null && !division.isBlank()) {
+            criteria = criteria.and("division").is(division);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("studentCode");
+        List<String> codes = mongoTemplate.find(query, Student.class).stream()
+                .map(Student::getStudentCode)
+                .toList();
+
+        String batchId = UUID.randomUUID().toString();
+        Map<String, Set<String>> known = faceIndexService.sourcesByLabel(codes);
+        List<FaceJob> jobs = new ArrayList<>();
+        for (String code : codes) {
+            Set<String> done = known.getOrDefault(code, Set.of());
+            List<String> fresh = listImages(code).stream()
+                    .filter(name -> !done.contains(sourceId(code, name)))
+                    .toList();
+            if (!fresh.isEmpty()) {
+                jobs.add(new FaceJob(code, fresh, batchId, maxAttempts));
+            }
+        }
+        if (!jobs.isEmpty()) {
+            jobRepository.insert(jobs);
+            signal();
+        }
+        log.info("Bulk face enrolment {} for class {}{}: {} students, {} jobs",
+                batchId, className, division != null ? "/" + division : "", codes.size(), jobs.size());
+        return batchSummary(batchId);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Status
+    // ────────────────────────────────────────────────────────────────
+
+    public Optional<FaceJob> getJob(String id) {
+        return jobRepository.findById(id);
+    }
+
+    public List<FaceJob> getJobsForStudent(String studentCode) {
+        return jobRepository.findByStudentCodeOrderByCreatedAtDesc(studentCode);
+    }
+
+    public BatchSummary batchSummary(String batchId) {
+        List<FaceJob> jobs = jobRepository.findByBatchId(batchId);
+        Map<FaceJob.Status, Integer> byStatus = new EnumMap<>(FaceJob.Status.class);
+        int total = 0, processed = 0;
+        for (FaceJob job : jobs) {
+            byStatus.merge(job.getStatus(), 1, Integer::sum);
+            total += job.getTotal();
+            processed += job.getProcessed();
+        }
+        return new BatchSummary(batchId, jobs.size(), byStatus, total, processed);
+    }
+
+    /**
+     * Put a FAILED job back in the queue (attempt counter starts over)
+     */
+    public Optional<FaceJob> retry(String id) {
+        Query query = new Query(Criteria.where("_id").is(id).and("status").is(FaceJob.Status.FAILED));
+        Update update = new Update()
+                .set("status", FaceJob.Status.PENDING)
+                .set("attempts", 0)
+                .set("nextAttemptAt", LocalDateTime.now())
+                .unset("finishedAt");
+        FaceJob job = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), FaceJob.class);
+        if (job != null) signal();
+        return Optional.ofNullable(job);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (FaceJob.Status status : FaceJob.Status.values()) {
+            stats.put(status.name().toLowerCase(Locale.ROOT), jobRepository.countByStatus(status));
+        }
+        stats.put("workers", workers);
+        stats.put("activeWorkers", executor != null ? executor.getActiveCount() : 0);
+        stats.put("jobsCompleted", jobsCompleted.get());
+        stats.put("jobsFailed", jobsFailed.get());
+        stats.put("jobsRetried", jobsRetried.get());
+        stats.put("imagesEmbedded", imagesEmbedded.get());
+        stats.put("embeddingCacheHits", cacheHits.get());
+        return stats;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Workers
+    // ────────────────────────────────────────────────────────────────
+
+    private void workerLoop() {
+        String worker = instanceId + "/" + Thread.currentThread().getName();
+        while (running) {
+            FaceJob job;
+            try {
+                job = claim(worker);
+            } catch (Exception e) {
+                log.warn("Face job claim failed: {}", e.getMessage());
+                job = null;
+            }
+            if (job != null) {
+                try {
+                    process(job, worker);
+                    continue;
+                } catch (Exception e) {
+                    // fail() نفسه ممكن يقع لو Mongo واقفة → الـ lease بيخلص والـ job بترجع تتاخد
+                    log.warn("Face job {} could not be finished: {}", job.getId(), e.getMessage());
+                }
+            }
+            synchronized (wakeup) {
+                try {
+                    wakeup.wait(pollMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // PENDING and due, or RUNNING with an expired lease (worker died / instance restarted)
+    private FaceJob claim(String worker) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(FaceJob.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(FaceJob.Status.RUNNING).and("lockedUntil").lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        Update update = new Update()
+                .set("status", FaceJob.Status.RUNNING)
+                .set("lockedBy", worker)
+                .set("lockedUntil", now.plusNanos(leaseMs * 1_000_000))
+                .set("startedAt", now)
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), FaceJob.class);
+    }
+
+    private void process(FaceJob job, String worker) {
+        String code = job.getStudentCode();
+        try {
+            // images embedded by an earlier attempt (or already in the gallery) are skipped
+            Set<String> done = new HashSet<>(job.getDoneImages());
+            Set<String> inGallery = faceIndexService.sourcesOf(code);
+            List<String> remaining = job.getImages().stream()
+                    .filter(name -> !done.contains(name) && !inGallery.contains(sourceId(code, name)))
+                    .toList();
+
+            for (int from = 0; from < remaining.size(); from += imagesPerCall) {
+                List<String> chunk = remaining.subList(from, Math.min(remaining.size(), from + imagesPerCall));
+                ChunkResult result = embedChunk(code, chunk);
+                recordProgress(job.getId(), worker, chunk, result);
+            }
+
+            // images that were in the gallery already count as done too
+            Update finish = new Update()
+                    .addToSet("doneImages").each(job.getImages().toArray())
+                    .set("status", FaceJob.Status.DONE)
+                    .set("finishedAt", LocalDateTime.now())
+                    .unset("lockedBy")
+                    .unset("lockedUntil")
+                    .unset("lastError");
+            mongoTemplate.updateFirst(ownedBy(job.getId(), worker), finish, FaceJob.class);
+            jobsCompleted.incrementAndGet();
+            log.info("Face job {} done for {}", job.getId(), code);
+
+            if (notifySidecar) {
+                faceClient.registerNewFaceAsync(code).exceptionally(e -> {
+                    log.warn("Sidecar reload for {} failed: {}", code, e.getMessage());
+                    return null;
+                });
+            }
+        } catch (Exception e) {
+            fail(job, worker, e);
+        }
+    }
+
+    private ChunkResult embedChunk(String code, List<String> names) throws IOException {
+        Path dir = Paths.get(registerFolder, code);
+        List<String> present = new ArrayList<>(names.size());
+        List<String> skipped = new ArrayList<>();
+        for (String name : names) {
+            if (Files.isRegularFile(dir.resolve(name))) {
+                present.add(name);
+            } else {
+                skipped.add(name);
+            }
+        }
+
+        // content-addressed images → results of earlier face-service calls are reused
+        Map<String, EmbeddingCacheEntry> cached = new HashMap<>();
+        List<String> hashes = present.stream().map(FaceImageStore::contentHashOf).filter(Objects::nonNull).toList();
+        if (!hashes.isEmpty()) {
+            embeddingCache.findAllById(hashes).forEach(entry -> cached.put(entry.getContentHash(), entry));
+        }
+
+        int added = 0;
+        List<String> readable = new ArrayList<>(present.size());
+        List<byte[]> images = new ArrayList<>(present.size());
+        for (String name : present) {
+            String hash = FaceImageStore.contentHashOf(name);
+            EmbeddingCacheEntry hit = hash != null ? cached.get(hash) : null;
+            if (hit == null) {
+                readable.add(name);
+                images.add(Files.readAllBytes(dir.resolve(name)));
+                continue;
+            }
+            cacheHits.incrementAndGet();
+            if (hit.isNoFace() || hit.getVector() == null) {
+                skipped.add(name);
+                continue;
+            }
+            faceIndexService.addEmbedding(code, FaceEmbedding.PERSON_STUDENT, hit.getVector().toFloatArray(), sourceId(code, name));
+            added++;
+        }
+
+        if (!images.isEmpty()) {
+            List<List<ExtractedFace>> faces = faceClient.embedBatch(images);
+            List<EmbeddingCacheEntry> fresh = new ArrayList<>();
+            for (int i = 0; i < readable.size(); i++) {
+                String hash = FaceImageStore.contentHashOf(readable.get(i));
+                ExtractedFace best = i < faces.size() ? bestFace(faces.get(i)) : null;
+                if (best == null) {
+                    skipped.add(readable.get(i));
+                    // only a real "no face" answer is cached, not a short response
+                    if (hash != null && i < faces.size()) fresh.add(EmbeddingCacheEntry.noFace(hash));
+                    continue;
+                }
+                faceIndexService.addEmbedding(code, FaceEmbedding.PERSON_STUDENT, best.embedding, sourceId(code, readable.get(i)));
+                if (hash != null) fresh.add(EmbeddingCacheEntry.of(hash, best.embedding, best.detScore));
+                added++;
+            }
+            if (!fresh.isEmpty()) {
+                embeddingCache.saveAll(fresh);
+            }
+        }
+        imagesEmbedded.addAndGet(added);
+        return new ChunkResult(added, skipped);
+    }
+
+    private void recordProgress(String jobId, String worker, List<String> chunk, ChunkResult result) {
+        Update update = new Update()
+                .addToSet("doneImages").each(chunk.toArray())
+                .inc("embeddingsAdded", result.added())
+                .set("lockedUntil", LocalDateTime.now().plusNanos(leaseMs * 1_000_000));
+        if (!result.skipped().isEmpty()) {
+            update.addToSet("skippedImages").each(result.skipped().toArray());
+        }
+        mongoTemplate.updateFirst(ownedBy(jobId, worker), update, FaceJob.class);
+    }
+
+    private void fail(FaceJob job, String worker, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        Update update = new Update()
+                .set("lastError", error)
+                .unset("lockedBy")
+                .unset("lockedUntil");
+        if (job.getAttempts() >= job.getMaxAttempts()) {
+            update.set("status", FaceJob.Status.FAILED).set("finishedAt", LocalDateTime.now());
+            jobsFailed.incrementAndGet();
+            log.error("Face job {} for {} failed permanently after {} attempts: {}",
+                    job.getId(), job.getStudentCode(), job.getAttempts(), error);
+        } else {
+            long delay = retryBackoffMs << Math.min(job.getAttempts() - 1, 10);
+            update.set("status", FaceJob.Status.PENDING)
+                    .set("nextAttemptAt", LocalDateTime.now().plusNanos(delay * 1_000_000));
+            jobsRetried.incrementAndGet();
+            log.warn("Face job {} for {} failed (attempt {}/{}), retry in {}ms: {}",
+                    job.getId(), job.getStudentCode(), job.getAttempts(), job.getMaxAttempts(), delay, error);
+        }
+        mongoTemplate.updateFirst(ownedBy(job.getId(), worker), update, FaceJob.class);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    // only the worker holding the lease may write the job
+    private static Query ownedBy(String jobId, String worker) {
+        return new Query(Criteria.where("_id").is(jobId).and("lockedBy").is(worker));
+    }
+
+    // largest detection confidence wins (registration photos should hold one face)
+    private static ExtractedFace bestFace(List<ExtractedFace> faces) {
+        ExtractedFace best = null;
+        for (ExtractedFace face : faces) {
+            if (face.embedding == null) continue;
+            double score = face.detScore != null ? face.detScore : 0;
+            if (best == null || score > (best.detScore != null ? best.detScore : 0)) {
+                best = face;
+            }
+        }
+        return best;
+    }
+
+    /** Gallery source id of a registration image: {@code <studentCode>/<fileName>} */
+    public static String sourceId(String studentCode, String fileName) {
+        return studentCode + "/" + fileName;
+    }
+
+    private List<String> listImages(String studentCode) {
+        Path dir = Paths.get(registerFolder, studentCode);
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> isImage(p.getFileName().toString()))
+                    .map(p -> relativeName(dir, p))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Cannot list face images of {}: {}", studentCode, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /** Image name relative to its student folder, '/'-separated (legacy flat files or {@code <hh>/<hash>.jpg}) */
+    static String relativeName(Path studentDir, Path file) {
+        return studentDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    static boolean isImage(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return IMAGE_EXTENSIONS.stream().anyMatch(lower::endsWith);
+    }
+
+    private void signal() {
+        synchronized (wakeup) {
+            wakeup.notifyAll();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        signal();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Result types
+    // ────────────────────────────────────────────────────────────────
+
+    private record ChunkResult(int added, List<String> skipped) {
+    }
+
+    public record BatchSummary(String batchId, int jobs, Map<FaceJob.Status, Integer> byStatus,
+                               int totalImages, int processedImages) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.backend.service;
+
+/**
+ * Raised when the face-recognition sidecar cannot be reached, times out,
+ * returns an error, or the circuit breaker in front of it is open.
+ */
+public class FaceServiceException extends RuntimeException {
+
+    private final boolean circuitOpen;
+
+    public FaceServiceException(String message) {
+        this(message, null, false);
+    }
+
+    public FaceServiceException(String message, Throwable cause) {
+        this(message, cause, false);
+    }
+
+    public FaceServiceException(String message, Throwable cause, boolean circuitOpen) {
+        super(message, cause);
+        this.circuitOpen = circuitOpen;
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitOpen;
+    }
+}
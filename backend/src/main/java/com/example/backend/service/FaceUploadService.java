@@ -0,0 +1,360 @@
+package com.example.backend.service;
+
+import com.example.backend.repository.StudentRepository;
+import com.example.backend.service.FaceImageProcessor.ProcessedImage;
+import com.example.backend.service.FaceImageStore.StoredImage;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.FileUpload;
+import org.apache.tomcat.util.http.fileupload.impl.FileCountLimitExceededException;
+import org.apache.tomcat.util.http.fileupload.impl.InvalidContentTypeException;
+import org.apache.tomcat.util.http.fileupload.impl.SizeException;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Face-image upload pipeline: read → dedup → normalize ({@link FaceImageProcessor}) →
+ * content-addressed store ({@link FaceImageStore}) → gallery sync.
+ * <p>
+ * Besides Spring's {@link MultipartFile}s (student creation form), requests on the
+ * streaming paths (see {@code MultipartConfig}) are parsed here straight from the
+ * request body: each part is read once into a buffer capped at
+ * {@code face.upload.max-file-bytes}, handed to the normalization pool while the next
+ * part is being received, and never touches a temp file. At most
+ * {@code face.upload.stream.max-in-flight} parts are buffered at a time, and the whole
+ * request is bounded by byte and file-count limits. The parser is the streaming
+ * commons-fileupload API that ships inside the embedded Tomcat (GA, no extra dependency).
+ * <p>
+ * The client's file name is only echoed back (sanitized) in the summary; the format is
+ * decided by the file's magic bytes and the stored name by its content hash.
+ */
+@Service
+public class FaceUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceUploadService.class);
+
+    private static final int MAX_NAME_LENGTH = 100;
+
+    @Value("${face.upload.max-file-bytes:5242880}")
+    private long maxFileBytes;
+
+    @Value("${face.upload.max-images-per-student:10}")
+    private int maxImagesPerStudent;
+
+    @Value("${face.upload.stream.max-request-bytes:268435456}")
+    private long maxRequestBytes;
+
+    @Value("${face.upload.stream.max-files:600}")
+    private long maxFiles;
+
+    @Value("${face.upload.stream.max-in-flight:8}")
+    private int maxInFlight;
+
+    private final FaceImageProcessor imageProcessor;
+    private final FaceImageStore imageStore;
+    private final FaceGallerySyncService gallerySync;
+    private final StudentRepository studentRepository;
+
+    private final AtomicLong streamedRequests = new AtomicLong();
+    private final AtomicLong streamedParts = new AtomicLong();
+    private final AtomicLong streamedBytes = new AtomicLong();
+
+    public FaceUploadService(
+            FaceImageProcessor imageProcessor,
+            FaceImageStore imageStore,
+            FaceGallerySyncService gallerySync,
+            StudentRepository studentRepository) {
+        this.imageProcessor = imageProcessor;
+        this.imageStore = imageStore;
+        this.gallerySync = gallerySync;
+        this.studentRepository = studentRepository;
+    }
+
+    public int getMaxImagesPerStudent() {
+        return maxImagesPerStudent;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Buffered (Spring MultipartFile) uploads
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Normalize and store images that Spring already parsed (student creation form)
+     *
+     * @throws RejectedExecutionException if the normalization pool is saturated
+     */
+    public FaceUploadSummary storeFiles(String code, MultipartFile[] files) throws IOException {
+        FaceUploadSummary summary = new FaceUploadSummary();
+        List<Upload> uploads = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int n = 0;
+        for (MultipartFile file : files) {
+            n++;
+            if (file == null || file.isEmpty()) continue;
+            String name = displayName(file.getOriginalFilename(), n);
+            if (file.getSize() > maxFileBytes) {
+                summary.reject(name, "TOO_LARGE");
+                continue;
+            }
+            Upload upload = accept(code, name, file.getBytes(), seen, summary);
+            if (upload != null) uploads.add(upload);
+        }
+        if (uploads.isEmpty()) return summary;
+
+        List<ProcessedImage> processed = imageProcessor.processAll(uploads.stream().map(Upload::bytes).toList());
+        for (int i = 0; i < processed.size(); i++) {
+            save(code, uploads.get(i), processed.get(i), summary);
+        }
+        finish(code, summary);
+        return summary;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Streaming uploads
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Parse a multipart body part by part.
+     *
+     * @param fixedCode student all file parts belong to; when null each part's field name
+     *                  is the student code (bulk photo-day upload)
+     * @return one summary per student code, in order of first appearance
+     * @throws UploadLimitException       if the request exceeds the byte / file-count limits
+     * @throws IllegalArgumentException   if the body is not multipart
+     * @throws RejectedExecutionException if the normalization pool stays saturated
+     */
+    public Map<String, FaceUploadSummary> storeStream(HttpServletRequest request, String fixedCode) throws IOException {
+        FileUpload upload = new FileUpload();
+        upload.setSizeMax(maxRequestBytes);
+
+        Map<String, FaceUploadSummary> summaries = new LinkedHashMap<>();
+        Map<String, Boolean> knownStudents = new HashMap<>();
+        Map<String, Set<String>> seen = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        Deque<Pending> inFlight = new ArrayDeque<>();
+        int n = 0;
+        streamedRequests.incrementAndGet();
+
+        try {
+            FileItemIterator parts = upload.getItemIterator(new ServletRequestContext(request));
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (part.isFormField()) continue;
+                // fileCountMax بيتطبق في parseRequest بس، مش في الـ iterator
+                if (++n > maxFiles) {
+                    throw new FileCountLimitExceededException("Request has more than " + maxFiles + " files", maxFiles);
+                }
+                String code = fixedCode != null ? fixedCode : part.getFieldName();
+                String name = displayName(part.getName(), n);
+                FaceUploadSummary summary = summaries.computeIfAbsent(code, c -> new FaceUploadSummary());
+
+                if (fixedCode == null && !knownStudents.computeIfAbsent(code, studentRepository::existsByStudentCode)) {
+                    drain(part);
+                    summary.reject(name, "UNKNOWN_STUDENT");
+                    continue;
+                }
+                if (counts.merge(code, 1, Integer::sum) > maxImagesPerStudent) {
+                    drain(part);
+                    summary.reject(name, "TOO_MANY");
+                    continue;
+                }
+                byte[] bytes = readCapped(part);
+                if (bytes == null) {
+                    summary.reject(name, "TOO_LARGE");
+                    continue;
+                }
+                streamedParts.incrementAndGet();
+                streamedBytes.addAndGet(bytes.length);
+
+                Upload accepted = accept(code, name, bytes, seen.computeIfAbsent(code, c -> new HashSet<>()), summary);
+                if (accepted == null) continue;
+
+                // keep at most maxInFlight buffers alive; the oldest is stored first
+                while (inFlight.size() >= maxInFlight) {
+                    complete(inFlight.poll(), summaries);
+                }
+                inFlight.add(new Pending(code, accepted, submit(accepted.bytes(), inFlight, summaries)));
+            }
+            while (!inFlight.isEmpty()) {
+                complete(inFlight.poll(), summaries);
+            }
+        } catch (SizeException | FileCountLimitExceededException e) {
+            throw new UploadLimitException(e.getMessage(), e);
+        } catch (InvalidContentTypeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        } catch (IOException e) {
+            if (e.getCause() instanceof SizeException limit) {
+                throw new UploadLimitException(limit.getMessage(), limit);
+            }
+            throw e;
+        } finally {
+            // aborted mid-way → unfinished parts are dropped, stored ones still get synced
+            while (!inFlight.isEmpty()) {
+                Pending pending = inFlight.poll();
+                pending.future().cancel(true);
+            }
+            summaries.forEach(this::finish);
+        }
+        return summaries;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("streamedRequests", streamedRequests.get());
+        stats.put("streamedParts", streamedParts.get());
+        stats.put("streamedBytes", streamedBytes.get());
+        stats.put("maxRequestBytes", maxRequestBytes);
+        stats.put("maxFileBytes", maxFileBytes);
+        stats.put("maxInFlight", maxInFlight);
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    // format + dedup checks shared by both paths; null when the image is skipped
+    private Upload accept(String code, String name, byte[] bytes, Set<String> seen, FaceUploadSummary summary) {
+        if (!isSupportedImage(bytes)) {
+            summary.reject(name, "UNSUPPORTED_TYPE");
+            return null;
+        }
+        String digest = FaceImageStore.sha256Hex(bytes);
+        // نفس الصورة اترفعت قبل كده (أو مرتين في نفس الطلب) → مش محتاجة معالجة تاني
+        if (!seen.add(digest) || imageStore.findUpload(code, digest).isPresent()) {
+            summary.duplicates++;
+            return null;
+        }
+        return new Upload(name, digest, bytes);
+    }
+
+    private void save(String code, Upload upload, ProcessedImage image, FaceUploadSummary summary) throws IOException {
+        if (!image.accepted()) {
+            summary.reject(upload.name(), image.rejection().name());
+            return;
+        }
+        StoredImage stored = imageStore.store(code, image.jpeg());
+        imageStore.rememberUpload(code, upload.digest(), stored);
+        if (stored.duplicate()) {
+            summary.duplicates++;
+        } else {
+            summary.saved++;
+        }
+    }
+
+    private void finish(String code, FaceUploadSummary summary) {
+        if (summary.getSaved() > 0) {
+            log.info("Saved {} face images for student {} ({} duplicates, {} rejected)",
+                    summary.getSaved(), code, summary.getDuplicates(), summary.getRejected().size());
+            gallerySync.requestSync(code);
+        }
+    }
+
+    // pool full → finish our own oldest image first; only give up if that does not help
+    private CompletableFuture<ProcessedImage> submit(byte[] bytes, Deque<Pending> inFlight,
+                                                     Map<String, FaceUploadSummary> summaries) throws IOException {
+        while (true) {
+            try {
+                return imageProcessor.submit(bytes);
+            } catch (RejectedExecutionException e) {
+                if (inFlight.isEmpty()) throw e;
+                complete(inFlight.poll(), summaries);
+            }
+        }
+    }
+
+    private void complete(Pending pending, Map<String, FaceUploadSummary> summaries) throws IOException {
+        ProcessedImage image = imageProcessor.await(pending.future());
+        save(pending.code(), pending.upload(), image, summaries.get(pending.code()));
+    }
+
+    // null when the part is larger than maxFileBytes (the rest of it is skipped)
+    private byte[] readCapped(FileItemStream part) throws IOException {
+        try (InputStream in = part.openStream()) {
+            byte[] bytes = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxFileBytes + 1));
+            if (bytes.length <= maxFileBytes) return bytes;
+            in.transferTo(OutputStream.nullOutputStream());
+            return null;
+        }
+    }
+
+    private static void drain(FileItemStream part) throws IOException {
+        try (InputStream in = part.openStream()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /** JPEG or PNG by magic bytes – the client's file name and content type are not trusted */
+    static boolean isSupportedImage(byte[] b) {
+        boolean jpeg = b.length > 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF;
+        boolean png = b.length > 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G';
+        return jpeg || png;
+    }
+
+    // file name for the report only: no path, no control characters, bounded length
+    static String displayName(String original, int index) {
+        if (original == null) return "file-" + index;
+        String name = original.substring(Math.max(original.lastIndexOf('/'), original.lastIndexOf('\\')) + 1)
+                .replaceAll("\\p{Cntrl}", "")
+                .strip();
+        if (name.isEmpty()) return "file-" + index;
+        return name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+    }
+
+    // ────────────────── Types ──────────────────
+
+    private record Upload(String name, String digest, byte[] bytes) {
+    }
+
+    private record Pending(String code, Upload upload, CompletableFuture<ProcessedImage> future) {
+    }
+
+    /**
+     * Request-wide limit (total bytes / number of files) exceeded; the caller should answer 413
+     */
+    public static class UploadLimitException extends RuntimeException {
+        public UploadLimitException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static class FaceUploadSummary {
+        private int saved;
+        private int duplicates;       // already stored for this student → skipped
+        private final List<Map<String, String>> rejected = new ArrayList<>();
+
+        void reject(String fileName, String reason) {
+            rejected.add(Map.of("file", fileName, "reason", reason));
+        }
+
+        public String describeRejections() {
+            return rejected.stream()
+                    .map(r -> r.get("file") + " (" + r.get("reason") + ")")
+                    .collect(Collectors.joining(", "));
+        }
+
+        public int getSaved() { return saved; }
+        public int getDuplicates() { return duplicates; }
+        public List<Map<String, String>> getRejected() { return rejected; }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Student;
+import com.example.backend.model.Student.ExamResult;
+import com.example.backend.model.Student.Grade;
+import com.mongodb.bulk.BulkWriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Grades and exam results.
+ * <p>
+ * Every append is a server-side {@code $push} – the student document is never loaded and
+ * saved back, so marks entered in parallel (or attendance recorded meanwhile) are never lost.
+ * A whole class sheet for one exam goes to MongoDB as a single unordered bulk write.
+ * <p>
+ * Entering the same exam (name + date) twice for a student is a no-op: the "not entered yet"
+ * check is part of the update filter, the same way attendance guards "once per day", so a
+ * re-submitted sheet only fills in the students that are still missing.
+ * <p>
+ * Every stored grade / exam is also passed on to the class rankings ({@link RankingService}).
+ */
+@Service
+public class GradeService {
+
+    private static final Logger log = LoggerFactory.getLogger(GradeService.class);
+
+    @Value("${grades.sheet.max-rows:1000}")
+    private int maxSheetRows;
+
+    private final MongoTemplate mongoTemplate;
+    private final RankingService rankingService;
+
+    public GradeService(MongoTemplate mongoTemplate, RankingService rankingService) {
+        this.mongoTemplate = mongoTemplate;
+        this.rankingService = rankingService;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Single student
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @return the updated student, or null if not found
+     */
+    public Student addGrade(String studentCode, Grade grade) {
+        if (grade.getDate() == null) grade.setDate(LocalDate.now());
+        Student updated = push(Criteria.where("studentCode").is(studentCode), "grades", grade);
+        if (updated != null) {
+            rankingService.record(RankingService.gradeScore(updated.getClassName(), studentCode, grade));
+        }
+        return updated;
+    }
+
+    /**
+     * Appends the result; the grade letter is computed from the marks unless given. If the
+     * student already has this exam (name + date) nothing changes and the student is returned as is
+     *
+     * @return the updated student, or null if not found
+     * @throws IllegalArgumentException if the marks are out of range
+     */
+    public Student addExamResult(String studentCode, ExamResult exam) {
+        checkMarks(exam.getObtainedMarks(), exam.getTotalMarks());
+        if (exam.getDate() == null) exam.setDate(LocalDate.now());
+        if (exam.getGradeLetter() == null || exam.getGradeLetter().isBlank()) {
+            exam.setGradeLetter(gradeLetter(exam.getObtainedMarks(), exam.getTotalMarks()));
+        }
+        Criteria notYetEntered = Criteria.where("studentCode").is(studentCode)
+                .and("examResults").not().elemMatch(Criteria.where("examName").is(exam.getExamName()).and("date").is(exam.getDate()));
+        Student updated = push(notYetEntered, "examResults", exam);
+        if (updated == null) {
+            // يا إما الطالب مش موجود يا إما الامتحان متسجل قبل كده
+            return mongoTemplate.findOne(new Query(Criteria.where("studentCode").is(studentCode)), Student.class);
+        }
+        rankingService.record(RankingService.examScore(updated.getClassName(), studentCode, exam));
+        return updated;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Class grade sheet
+    // ────────────────────────────────────────────────────────────────
+
+    public record SheetRow(String studentCode, double obtainedMarks) {
+    }
+
+    /**
+     * @param alreadyEntered students that already had this exam (name + date) – left untouched
+     * @param unknownStudents codes with no matching student (or not in {@code className})
+     */
+    public record SheetResult(String examName, LocalDate date, int applied, int alreadyEntered,
+                              List<String> unknownStudents) {
+    }
+
+    /**
+     * Add one exam for many students in a single bulk write
+     *
+     * @param className optional: only students of this class are updated
+     * @throws IllegalArgumentException for a missing exam name, bad marks, duplicate or too many rows
+     */
+    public SheetResult applyGradeSheet(String examName, double totalMarks, LocalDate date, String className,
+                                       List<SheetRow> rows) {
+        if (examName == null || examName.isBlank()) {
+            throw new IllegalArgumentException("اسم الامتحان مطلوب");
+        }
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("لا توجد درجات");
+        }
+        if (rows.size() > maxSheetRows) {
+            throw new IllegalArgumentException("الحد الأقصى للصفوف في الشيت هو " + maxSheetRows);
+        }
+        String exam = examName.trim();
+        LocalDate examDate = date != null ? date : LocalDate.now();
+
+        Set<String> codes = new LinkedHashSet<>();
+        for (SheetRow row : rows) {
+            if (row.studentCode() == null || row.studentCode().isBlank()) {
+                throw new IllegalArgumentException("كود الطالب مطلوب في كل صف");
+            }
+            if (!codes.add(row.studentCode())) {
+                throw new IllegalArgumentException("الطالب " + row.studentCode() + " مكرر في الشيت");
+            }
+            checkMarks(row.obtainedMarks(), totalMarks);
+        }
+
+        // قراءة واحدة عشان نفرق بين "طالب مش موجود" و"الدرجة متسجلة قبل كده" (ونعرف فصل كل طالب للترتيب)
+        Query existingQuery = new Query(classFilter(Criteria.where("studentCode").in(codes), className));
+        existingQuery.fields().include("studentCode", "className")
+                .elemMatch("examResults", Criteria.where("examName").is(exam).and("date").is(examDate));
+        Map<String, Student> existing = mongoTemplate.find(existingQuery, Student.class).stream()
+                .collect(Collectors.toMap(Student::getStudentCode, Function.identity(), (a, b) -> a));
+
+        List<String> unknown = new ArrayList<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class);
+        int queued = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (SheetRow row : rows) {
+            if (!existing.containsKey(row.studentCode())) {
+                unknown.add(row.studentCode());
+                continue;
+            }
+            Criteria notYetEntered = classFilter(Criteria.where("studentCode").is(row.studentCode()), className)
+                    .and("examResults").not().elemMatch(Criteria.where("examName").is(exam).and("date").is(examDate));
+            ExamResult result = new ExamResult(exam, row.obtainedMarks(), totalMarks, examDate,
+                    gradeLetter(row.obtainedMarks(), totalMarks));
+            bulk.updateOne(new Query(notYetEntered), new Update().push("examResults", result).set("updatedAt", now));
+            queued++;
+        }
+
+        int applied = 0;
+        if (queued > 0) {
+            BulkWriteResult result = bulk.execute();
+            applied = result.getModifiedCount();
+            for (SheetRow row : rows) {
+                Student student = existing.get(row.studentCode());
+                // اللي كان عنده الامتحان ده قبل كده الـ filter سابه زي ما هو
+                if (student == null || !student.getExamResults().isEmpty()) continue;
+                rankingService.record(RankingService.examScore(student.getClassName(), row.studentCode(),
+                        new ExamResult(exam, row.obtainedMarks(), totalMarks, examDate, null)));
+            }
+        }
+        log.info("Grade sheet '{}' ({}): {} applied, {} already entered, {} unknown",
+                exam, examDate, applied, queued - applied, unknown.size());
+        return new SheetResult(exam, examDate, applied, queued - applied, unknown);
+    }
+
+    /**
+     * Letter for a percentage: A ≥ 90, B ≥ 80, C ≥ 70, D ≥ 60, otherwise F
+     */
+    public static String gradeLetter(double obtainedMarks, double totalMarks) {
+        double percent = obtainedMarks * 100.0 / totalMarks;
+        if (percent >= 90) return "A";
+        if (percent >= 80) return "B";
+        if (percent >= 70) return "C";
+        if (percent >= 60) return "D";
+        return "F";
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private Student push(Criteria filter, String field, Object entry) {
+        Update update = new Update().push(field, entry).set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(new Query(filter), update,
+                FindAndModifyOptions.options().returnNew(true), Student.class);
+    }
+
+    private static Criteria classFilter(Criteria criteria, String className) {
+        return className != null && !className.isBlank() ? criteria.and("className").is(className) : criteria;
+    }
+
+    private static void checkMarks(double obtainedMarks, double totalMarks) {
+        if (!(totalMarks > 0)) {
+            throw new IllegalArgumentException("الدرجة النهائية لازم تكون أكبر من صفر");
+        }
+        if (obtainedMarks < 0 || obtainedMarks > totalMarks) {
+            throw new IllegalArgumentException("الدرجة لازم تكون بين 0 و " + totalMarks);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.backend.service;
+
+import com.example.backend.idcard.IdCardRenderer;
+import com.example.backend.idcard.IdCardRenderer.Card;
+import com.example.backend.idcard.PdfSheetWriter;
+import com.example.backend.model.Student;
+import com.example.backend.service.StudentPhotoService.Photo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Batch ID-card printing.
+ * <p>
+ * Students (a class, or an explicit list of codes) are laid out {@value IdCardRenderer#CARDS_PER_SHEET}
+ * per A4 sheet; sheets are rendered and encoded in parallel on a pool sized to the CPU,
+ * and written to the response in order as soon as each is ready – a PDF (one JPEG page
+ * per sheet, {@link PdfSheetWriter}) or a ZIP of PNG sheets. Only a bounded window of
+ * sheets is in memory at once. Photos come from {@link StudentPhotoService}'s cached
+ * 256px variants, so 3000 cards never decode 3000 originals.
+ */
+@Service
+public class IdCardService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdCardService.class);
+
+    public static final int PHOTO_SIZE = 256;
+
+    @Value("${idcard.workers:0}")
+    private int workers;
+
+    @Value("${idcard.max-cards:5000}")
+    private int maxCards;
+
+    @Value("${idcard.jpeg-quality:0.92}")
+    private float jpegQuality;
+
+    @Value("${idcard.school-name:Future Generation School}")
+    private String defaultSchoolName;
+
+    // الـ response بيتكتب async؛ الـ default بتاع Tomcat (30 ثانية) ميكفيش فصل كامل
+    @Value("${idcard.render-timeout-ms:1800000}")
+    private long renderTimeoutMs;
+
+    private final MongoTemplate mongoTemplate;
+    private final StudentPhotoService studentPhotoService;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong cardsRendered = new AtomicLong();
+    private final AtomicLong sheetsRendered = new AtomicLong();
+
+    public IdCardService(MongoTemplate mongoTemplate, StudentPhotoService studentPhotoService) {
+        this.mongoTemplate = mongoTemplate;
+        this.studentPhotoService = studentPhotoService;
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        workers = threads;
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "id-card-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    public enum Format {
+        PDF, PNG;
+
+        public static Format parse(String value) {
+            return value == null || value.isBlank() ? PDF : Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Students to print, in print order: the given codes as listed, or a whole class
+     * sorted by division and name
+     *
+     * @throws IllegalArgumentException if nothing is selected or the batch exceeds {@code idcard.max-cards}
+     */
+    public List<Student> selectStudents(String className, String division, List<String> codes) {
+        List<Student> students;
+        if (codes != null && !codes.isEmpty()) {
+            if (codes.size() > maxCards) {
+                throw new IllegalArgumentException("الحد الأقصى للكروت في الطلب الواحد هو " + maxCards);
+            }
+            Query query = cardQuery(Criteria.where("studentCode").in(codes));
+            Map<String, Student> byCode = mongoTemplate.find(query, Student.class).stream()
+                    .collect(Collectors.toMap(Student::getStudentCode, Function.identity(), (a, b) -> a));
+            students = codes.stream().distinct().map(byCode::get).filter(s -> s != null).toList();
+        } else if (className != null && !className.isBlank()) {
+            Criteria criteria = Criteria.where("className").is(className);
+            if (division != null && !division.isBlank()) {
+                criteria = criteria.and("division").is(division);
+            }
+            Query query = cardQuery(criteria).with(Sort.by("division", "fullName"));
+            query.limit(maxCards + 1);
+            students = mongoTemplate.find(query, Student.class);
+            if (students.size() > maxCards) {
+                throw new IllegalArgumentException("الحد الأقصى للكروت في الطلب الواحد هو " + maxCards);
+            }
+        } else {
+            throw new IllegalArgumentException("حدد الفصل أو قائمة أكواد الطلاب");
+        }
+        return students;
+    }
+
+    /**
+     * Render {@code students} and stream the sheets to {@code out} in order
+     */
+    public void render(List<Student> students, String schoolName, Format format, OutputStream out) throws IOException {
+        String school = schoolName != null && !schoolName.isBlank() ? schoolName : defaultSchoolName;
+        long start = System.currentTimeMillis();
+
+        List<List<Student>> sheets = new ArrayList<>();
+        for (int from = 0; from < students.size(); from += IdCardRenderer.CARDS_PER_SHEET) {
+            sheets.add(students.subList(from, Math.min(students.size(), from + IdCardRenderer.CARDS_PER_SHEET)));
+        }
+
+        // at most two sheets per worker waiting to be written → bounded memory, pool stays busy
+        int window = Math.max(2, workers * 2);
+        Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        int next = 0;
+
+        try (SheetSink sink = format == Format.PDF ? new PdfSink(out) : new PngZipSink(out)) {
+            for (int written = 0; written < sheets.size(); written++) {
+                while (next < sheets.size() && inFlight.size() < window) {
+                    List<Student> sheet = sheets.get(next++);
+                    inFlight.add(CompletableFuture.supplyAsync(() -> renderSheet(sheet, school, format), executor));
+                }
+                sink.add(join(inFlight.poll()));
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+        log.info("Rendered {} ID cards on {} {} sheets in {} ms", students.size(), sheets.size(), format,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * How long one render response may take to stream (async request timeout of the route)
+     */
+    public long getRenderTimeoutMs() {
+        return renderTimeoutMs;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("active", executor.getActiveCount());
+        stats.put("cardsRendered", cardsRendered.get());
+        stats.put("sheetsRendered", sheetsRendered.get());
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static Query cardQuery(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("studentCode", "fullName", "className", "division");
+        return query;
+    }
+
+    private byte[] renderSheet(List<Student> students, String school, Format format) {
+        List<Card> cards = new ArrayList<>(students.size());
+        for (Student s : students) {
+            String className = s.getDivision() != null && !s.getDivision().isBlank()
+                    ? s.getClassName() + " / " + s.getDivision()
+                    : s.getClassName();
+            cards.add(new Card(s.getStudentCode(), s.getFullName(), className, loadPhoto(s.getStudentCode())));
+        }
+        BufferedImage sheet = IdCardRenderer.renderSheet(cards, school);
+        try {
+            byte[] encoded = format == Format.PDF ? encodeJpeg(sheet) : encodePng(sheet);
+            cardsRendered.addAndGet(cards.size());
+            sheetsRendered.incrementAndGet();
+            return encoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // no photo (or unreadable) → the renderer draws initials
+    private BufferedImage loadPhoto(String code) {
+        try {
+            Optional<Photo> photo = studentPhotoService.photo(code, PHOTO_SIZE);
+            return photo.isPresent() ? ImageIO.read(photo.get().file().toFile()) : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("No photo for ID card {}: {}", code, e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ────────────────── Output formats ──────────────────
+
+    private interface SheetSink extends AutoCloseable {
+        void add(byte[] sheet) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class PdfSink implements SheetSink {
+        private final PdfSheetWriter pdf;
+
+        PdfSink(OutputStream out) throws IOException {
+            this.pdf = new PdfSheetWriter(out);
+        }
+
+        public void add(byte[] jpeg) throws IOException {
+            pdf.addJpegPage(jpeg, IdCardRenderer.SHEET_WIDTH, IdCardRenderer.SHEET_HEIGHT);
+        }
+
+        public void close() throws IOException {
+            pdf.close();
+        }
+    }
+
+    private static final class PngZipSink implements SheetSink {
+        private final ZipOutputStream zip;
+        private int sheetNo;
+
+        PngZipSink(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+            this.zip.setLevel(0);   // PNG is already deflated
+        }
+
+        public void add(byte[] png) throws IOException {
+            zip.putNextEntry(new ZipEntry(String.format(Locale.ROOT, "sheet-%03d.png", ++sheetNo)));
+            zip.write(png);
+            zip.closeEntry();
+            zip.flush();
+        }
+
+        public void close() throws IOException {
+            zip.finish();
+            zip.flush();
+        }
+    }
+}
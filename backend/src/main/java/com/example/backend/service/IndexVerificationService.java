@@ -0,0 +1,281 @@
+package com.example.backend.service;
+
+import com.example.backend.config.MongoIndexes;
+import com.example.backend.config.MongoIndexes.IndexSpec;
+import com.example.backend.config.MongoIndexes.QueryShape;
+import com.mongodb.MongoCommandException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates / verifies every index on startup and checks the query plans.
+ * <p>
+ * Spring Boot does not create {@code @Indexed} / {@code @CompoundIndex} indexes by itself
+ * ({@code auto-index-creation} is off), so this service resolves the annotated ones from the
+ * mapping context, adds {@link MongoIndexes#INDEXES} and ensures all of them – an index that
+ * already exists is left alone, one that conflicts with an existing index (same keys under
+ * another name, or the same name with other keys, directions, {@code unique}, {@code sparse},
+ * TTL or partial filter) is reported, not dropped.
+ * <p>
+ * The plan check runs {@code explain} (queryPlanner only, nothing is executed) for each
+ * {@link MongoIndexes#QUERY_SHAPES} and reports shapes whose winning plan is a collection
+ * scan or an in-memory sort.
+ */
+@Service
+public class IndexVerificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexVerificationService.class);
+
+    @Value("${mongo.indexes.ensure-on-startup:true}")
+    private boolean ensureOnStartup;
+
+    @Value("${mongo.indexes.check-plans:true}")
+    private boolean checkPlans;
+
+    private final MongoTemplate mongoTemplate;
+
+    private ExecutorService worker;
+    private volatile List<IndexStatus> lastIndexes = List.of();
+    private volatile List<PlanCheck> lastPlans = List.of();
+
+    public IndexVerificationService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "index-verification");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!ensureOnStartup && !checkPlans) return;
+        worker.execute(() -> {
+            try {
+                if (ensureOnStartup) ensureIndexes();
+                if (checkPlans) checkPlans();
+            } catch (Exception e) {
+                log.error("Index verification failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Indexes
+    // ────────────────────────────────────────────────────────────────
+
+    public enum Status {
+        CREATED,
+        EXISTS,
+        CONFLICT,
+        FAILED
+    }
+
+    public record IndexStatus(String collection, String name, Document keys, Status status, String message) {
+    }
+
+    /**
+     * Ensure every declared index (annotations + {@link MongoIndexes#INDEXES})
+     */
+    public synchronized List<IndexStatus> ensureIndexes() {
+        long start = System.currentTimeMillis();
+        Map<String, List<IndexDefinition>> byCollection = declared();
+
+        List<IndexStatus> out = new ArrayList<>();
+        byCollection.forEach((collection, definitions) -> {
+            IndexOperations ops = mongoTemplate.indexOps(collection);
+            // الـ index كما هو على السيرفر (key بالاتجاهات + unique/sparse/partialFilterExpression)
+            Map<String, Document> existing = new HashMap<>();
+            if (mongoTemplate.collectionExists(collection)) {
+                mongoTemplate.getCollection(collection).listIndexes().forEach(index -> existing.put(index.getString("name"), index));
+            }
+            for (IndexDefinition definition : definitions) {
+                String name = definition.getIndexOptions().getString("name");
+                Document keys = definition.getIndexKeys();
+                Document current = existing.get(name);
+                if (current != null) {
+                    String difference = difference(current, keys, definition.getIndexOptions());
+                    out.add(new IndexStatus(collection, name, keys, difference == null ? Status.EXISTS : Status.CONFLICT,
+                            difference));
+                    if (difference != null) {
+                        log.error("Index {}.{} exists but differs from {}: {}", collection, name, keys.toJson(), difference);
+                    }
+                    continue;
+                }
+                try {
+                    ops.ensureIndex(definition);
+                    out.add(new IndexStatus(collection, name, keys, Status.CREATED, null));
+                    log.info("Created index {}.{} {}", collection, name, keys.toJson());
+                } catch (DataAccessException e) {
+                    // 85 / 86 = IndexOptionsConflict / IndexKeySpecsConflict – index قديم بنفس المفاتيح أو الاسم
+                    boolean conflict = e.getMostSpecificCause() instanceof MongoCommandException command
+                            && (command.getErrorCode() == 85 || command.getErrorCode() == 86);
+                    out.add(new IndexStatus(collection, name, keys, conflict ? Status.CONFLICT : Status.FAILED, e.getMessage()));
+                    log.error("Index {}.{} {}: {}", collection, name, conflict ? "conflicts with an existing index" : "failed",
+                            e.getMessage());
+                }
+            }
+        });
+        lastIndexes = out;
+        long created = out.stream().filter(s -> s.status() == Status.CREATED).count();
+        long problems = out.stream().filter(s -> s.status() == Status.CONFLICT || s.status() == Status.FAILED).count();
+        log.info("Indexes verified: {} declared, {} created, {} problems in {} ms",
+                out.size(), created, problems, System.currentTimeMillis() - start);
+        return out;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Query plans
+    // ────────────────────────────────────────────────────────────────
+
+    public enum PlanStatus {
+        INDEXED,
+        COLLSCAN,
+        IN_MEMORY_SORT,
+        NO_COLLECTION
+    }
+
+    public record PlanCheck(String shape, String collection, PlanStatus status, List<String> indexes, List<String> stages) {
+    }
+
+    /**
+     * Explain every {@link MongoIndexes#QUERY_SHAPES} and classify its winning plan
+     */
+    public synchronized List<PlanCheck> checkPlans() {
+        List<PlanCheck> out = new ArrayList<>();
+        for (QueryShape shape : MongoIndexes.QUERY_SHAPES) {
+            Document find = new Document("find", shape.collection()).append("filter", shape.filter());
+            if (!shape.sort().isEmpty()) find.append("sort", shape.sort());
+            Document explain = mongoTemplate.getDb().runCommand(
+                    new Document("explain", find).append("verbosity", "queryPlanner"));
+
+            Document planner = explain.get("queryPlanner", Document.class);
+            Document winning = planner != null ? planner.get("winningPlan", Document.class) : null;
+            // SBE (MongoDB 7+) بيحط الـ plan جوه queryPlan
+            if (winning != null && winning.get("queryPlan") instanceof Document queryPlan) winning = queryPlan;
+
+            List<String> stages = new ArrayList<>();
+            Set<String> indexes = new LinkedHashSet<>();
+            walk(winning, stages, indexes);
+
+            PlanStatus status;
+            if (stages.contains("COLLSCAN")) status = PlanStatus.COLLSCAN;
+            else if (stages.contains("SORT")) status = PlanStatus.IN_MEMORY_SORT;
+            else if (indexes.isEmpty() && stages.contains("EOF")) status = PlanStatus.NO_COLLECTION;
+            else status = PlanStatus.INDEXED;
+
+            out.add(new PlanCheck(shape.name(), shape.collection(), status, List.copyOf(indexes), stages));
+            if (status == PlanStatus.COLLSCAN || status == PlanStatus.IN_MEMORY_SORT) {
+                log.warn("Query shape {} on {} is not served by an index: {} {}", shape.name(), shape.collection(),
+                        status, stages);
+            }
+        }
+        lastPlans = out;
+        return out;
+    }
+
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("indexes", lastIndexes);
+        report.put("plans", lastPlans);
+        return report;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private Map<String, List<IndexDefinition>> declared() {
+        Map<String, List<IndexDefinition>> byCollection = new LinkedHashMap<>();
+        var mappingContext = mongoTemplate.getConverter().getMappingContext();
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) continue;
+            for (var holder : resolver.resolveIndexForEntity(entity)) {
+                byCollection.computeIfAbsent(holder.getCollection(), k -> new ArrayList<>()).add(holder.getIndexDefinition());
+            }
+        }
+        for (IndexSpec spec : MongoIndexes.INDEXES) {
+            byCollection.computeIfAbsent(spec.collection(), k -> new ArrayList<>()).add(spec.toDefinition());
+        }
+        return byCollection;
+    }
+
+    /**
+     * @return what the existing index does differently from the declared one, or null if it matches
+     */
+    private static String difference(Document existing, Document keys, Document options) {
+        Document existingKeys = existing.get("key", Document.class);
+        if (existingKeys == null || !new ArrayList<>(existingKeys.keySet()).equals(new ArrayList<>(keys.keySet()))) {
+            return "an index with this name has other keys: " + (existingKeys != null ? existingKeys.toJson() : "{}");
+        }
+        for (String key : keys.keySet()) {
+            if (!sameValue(existingKeys.get(key), keys.get(key))) {
+                return "an index with this name has another direction / type for " + key + ": " + existingKeys.toJson();
+            }
+        }
+        for (String option : List.of("unique", "sparse")) {
+            if (flag(existing.get(option)) != flag(options.get(option))) {
+                return "an index with this name has " + option + "=" + flag(existing.get(option));
+            }
+        }
+        if (!sameValue(existing.get("expireAfterSeconds"), options.get("expireAfterSeconds"))) {
+            return "an index with this name has expireAfterSeconds=" + existing.get("expireAfterSeconds");
+        }
+        String partial = json(existing.get("partialFilterExpression"));
+        if (!Objects.equals(partial, json(options.get("partialFilterExpression")))) {
+            return "an index with this name has another partial filter: " + (partial != null ? partial : "none");
+        }
+        return null;
+    }
+
+    // 1 / 1.0 / 1L are the same key direction / TTL; strings ("2dsphere", "text") compare as is
+    private static boolean sameValue(Object a, Object b) {
+        if (a == null || b == null) return a == b;
+        if (a instanceof Number x && b instanceof Number y) return x.doubleValue() == y.doubleValue();
+        return a.equals(b);
+    }
+
+    private static String json(Object filter) {
+        return filter instanceof Document document ? document.toJson() : null;
+    }
+
+    private static boolean flag(Object value) {
+        return value instanceof Boolean b ? b : value instanceof Number n && n.intValue() != 0;
+    }
+
+    private static void walk(Document stage, List<String> stages, Set<String> indexes) {
+        if (stage == null) return;
+        stages.add(stage.getString("stage"));
+        if (stage.getString("indexName") != null) indexes.add(stage.getString("indexName"));
+        if (stage.get("inputStage") instanceof Document input) walk(input, stages, indexes);
+        if (stage.get("inputStages") instanceof List<?> inputs) {
+            for (Object input : inputs) walk((Document) input, stages, indexes);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.absdiff;
+import static org.bytedeco.opencv.global.opencv_core.countNonZero;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_GRAYSCALE_4;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+import static org.bytedeco.opencv.global.opencv_imgproc.GaussianBlur;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.THRESH_BINARY;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+import static org.bytedeco.opencv.global.opencv_imgproc.threshold;
+
+/**
+ * Change-detection gate that sits in front of face recognition.
+ * <p>
+ * Every frame is decoded straight to a reduced grayscale image (JPEG DCT scaling, so
+ * a 640x480 frame costs roughly the same as a 160x120 one), blurred, and diffed against
+ * the previous frame of the same camera. Only frames with significant change – or with
+ * a face-like region when {@link FaceRegionDetector} is available – are forwarded to
+ * the recognizer. Everything else is suppressed and counted.
+ * <p>
+ * Camera ids come from the client, so the per-camera state (one native reference frame
+ * each) is bounded: cameras idle for {@code face.motion.camera-idle-ms} are dropped, and
+ * beyond {@code face.motion.max-cameras} the least recently seen one is dropped too.
+ */
+@Service
+public class MotionGateService {
+
+    private static final Logger log = LoggerFactory.getLogger(MotionGateService.class);
+
+    @Value("${face.motion.width:160}")
+    private int width;
+
+    @Value("${face.motion.height:120}")
+    private int height;
+
+    /** Per-pixel gray level difference that counts as "changed" */
+    @Value("${face.motion.pixel-threshold:25}")
+    private double pixelThreshold;
+
+    /** Fraction of changed pixels above which the frame is forwarded */
+    @Value("${face.motion.change-ratio:0.02}")
+    private double changeRatio;
+
+    @Value("${face.motion.enabled:true}")
+    private boolean enabled;
+
+    @Value("${face.motion.max-cameras:64}")
+    private int maxCameras;
+
+    @Value("${face.motion.camera-idle-ms:600000}")
+    private long cameraIdleMs;
+
+    private final FaceRegionDetector faceDetector;
+    private final Map<String, CameraState> cameras = new ConcurrentHashMap<>();
+
+    // counters of dropped cameras, so "_total" stays complete
+    private final AtomicLong droppedSeen = new AtomicLong();
+    private final AtomicLong droppedMotion = new AtomicLong();
+    private final AtomicLong droppedFace = new AtomicLong();
+    private final AtomicLong droppedSuppressed = new AtomicLong();
+
+    public MotionGateService(FaceRegionDetector faceDetector) {
+        this.faceDetector = faceDetector;
+    }
+
+    /**
+     * Decide whether a JPEG/PNG frame from {@code cameraId} should go to recognition.
+     */
+    public GateDecision evaluate(String cameraId, byte[] encodedFrame) {
+        String id = cameraId == null ? "default" : cameraId;
+        CameraState state = cameras.get(id);
+        if (state == null) {
+            state = cameras.computeIfAbsent(id, CameraState::new);
+            evictCameras();
+        }
+        state.lastSeen = System.currentTimeMillis();
+        state.framesSeen.incrementAndGet();
+
+        if (!enabled) {
+            state.forwardedMotion.incrementAndGet();
+            return new GateDecision(true, GateReason.DISABLED, 1.0);
+        }
+        if (encodedFrame == null || encodedFrame.length == 0) {
+            state.suppressed.incrementAndGet();
+            return new GateDecision(false, GateReason.UNDECODABLE, 0.0);
+        }
+
+        try (BytePointer data = new BytePointer(encodedFrame);
+             Mat buf = new Mat(1, encodedFrame.length, CV_8UC1, data);
+             Mat reduced = imdecode(buf, IMREAD_REDUCED_GRAYSCALE_4)) {
+
+            if (reduced == null || reduced.empty()) {
+                state.suppressed.incrementAndGet();
+                return new GateDecision(false, GateReason.UNDECODABLE, 0.0);
+            }
+
+            Gated gated;
+            Mat small = new Mat();
+            boolean kept = false;
+            try {
+                try (Size target = new Size(width, height);
+                     Size kernel = new Size(5, 5)) {
+                    resize(reduced, small, target, 0, 0, INTER_AREA);
+                    GaussianBlur(small, small, kernel, 0);
+                }
+                gated = gate(state, small);
+                kept = gated.keptAsReference();
+            } finally {
+                if (!kept) small.close();
+            }
+
+            log.trace("Gate camera={} forward={} reason={} ratio={}",
+                    state.cameraId, gated.decision().forward(), gated.decision().reason(), gated.decision().changeRatio());
+            return gated.decision();
+        } catch (RuntimeException e) {
+            log.warn("Motion gate failed for camera {}: {}", cameraId, e.getMessage());
+            state.forwardedMotion.incrementAndGet();
+            // لو البوابة نفسها فشلت، نمرر الفريم بدل ما نضيع حضور
+            return new GateDecision(true, GateReason.GATE_ERROR, 1.0);
+        }
+    }
+
+    private record Gated(GateDecision decision, boolean keptAsReference) {
+    }
+
+    // compares with the previous frame and keeps small as the new reference (unless the camera was dropped meanwhile)
+    private Gated gate(CameraState state, Mat small) {
+        synchronized (state) {
+            double ratio = state.previous == null ? 1.0 : changedRatio(state.previous, small);
+            boolean keep = !state.dropped;
+            if (keep) {
+                if (state.previous != null) {
+                    state.previous.close();
+                }
+                state.previous = small;
+            }
+
+            GateDecision decision;
+            if (ratio >= changeRatio) {
+                state.forwardedMotion.incrementAndGet();
+                decision = new GateDecision(true, GateReason.MOTION, ratio);
+            } else if (faceDetector.hasFace(small)) {
+                state.forwardedFace.incrementAndGet();
+                decision = new GateDecision(true, GateReason.FACE_REGION, ratio);
+            } else {
+                state.suppressed.incrementAndGet();
+                decision = new GateDecision(false, GateReason.NO_CHANGE, ratio);
+            }
+            return new Gated(decision, keep);
+        }
+    }
+
+    // on every new camera: drop idle ones, then the least recently seen above the cap
+    private void evictCameras() {
+        long idleBefore = System.currentTimeMillis() - cameraIdleMs;
+        cameras.values().stream()
+                .filter(s -> s.lastSeen < idleBefore)
+                .toList()
+                .forEach(this::drop);
+        while (cameras.size() > Math.max(1, maxCameras)) {
+            cameras.values().stream()
+                    .min(Comparator.comparingLong(s -> s.lastSeen))
+                    .ifPresent(this::drop);
+        }
+    }
+
+    private void drop(CameraState state) {
+        if (!cameras.remove(state.cameraId, state)) return;
+        synchronized (state) {
+            state.dropped = true;
+            if (state.previous != null) {
+                state.previous.close();
+                state.previous = null;
+            }
+        }
+        droppedSeen.addAndGet(state.framesSeen.get());
+        droppedMotion.addAndGet(state.forwardedMotion.get());
+        droppedFace.addAndGet(state.forwardedFace.get());
+        droppedSuppressed.addAndGet(state.suppressed.get());
+        log.debug("Motion gate dropped camera {}", state.cameraId);
+    }
+
+    private double changedRatio(Mat previous, Mat current) {
+        try (Mat diff = new Mat()) {
+            absdiff(previous, current, diff);
+            threshold(diff, diff, pixelThreshold, 255, THRESH_BINARY);
+            return (double) countNonZero(diff) / (double) (diff.rows() * diff.cols());
+        }
+    }
+
+    /**
+     * Forget the reference frame of a camera (e.g. after the camera was restarted)
+     */
+    public void reset(String cameraId) {
+        CameraState state = cameras.get(cameraId);
+        if (state != null) {
+            synchronized (state) {
+                if (state.previous != null) {
+                    state.previous.close();
+                    state.previous = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Suppression counters per camera plus an aggregate under "_total"
+     */
+    public Map<String, GateStats> getStats() {
+        Map<String, GateStats> result = new LinkedHashMap<>();
+        long seen = droppedSeen.get(), motion = droppedMotion.get(), face = droppedFace.get(),
+                suppressed = droppedSuppressed.get();
+        for (CameraState s : cameras.values()) {
+            GateStats stats = s.snapshot();
+            result.put(s.cameraId, stats);
+            seen += stats.framesSeen();
+            motion += stats.forwardedMotion();
+            face += stats.forwardedFace();
+            suppressed += stats.suppressed();
+        }
+        result.put("_total", new GateStats(seen, motion, face, suppressed, ratio(suppressed, seen)));
+        return result;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0.0 : (double) part / total;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        cameras.keySet().forEach(this::reset);
+    }
+
+    // ────────────────── Types ──────────────────
+
+    public enum GateReason {
+        MOTION, FACE_REGION, NO_CHANGE, UNDECODABLE, DISABLED, GATE_ERROR
+    }
+
+    public record GateDecision(boolean forward, GateReason reason, double changeRatio) {}
+
+    public record GateStats(long framesSeen, long forwardedMotion, long forwardedFace,
+                            long suppressed, double suppressionRatio) {}
+
+    private static final class CameraState {
+        private final String cameraId;
+        private final AtomicLong framesSeen = new AtomicLong();
+        private final AtomicLong forwardedMotion = new AtomicLong();
+        private final AtomicLong forwardedFace = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+        private volatile long lastSeen;
+        private Mat previous;
+        private boolean dropped;
+
+        private CameraState(String cameraId) {
+            this.cameraId = cameraId;
+            this.lastSeen = System.currentTimeMillis();
+        }
+
+        private GateStats snapshot() {
+            long seen = framesSeen.get();
+            long supp = suppressed.get();
+            return new GateStats(seen, forwardedMotion.get(), forwardedFace.get(), supp, ratio(supp, seen));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.backend.service;
+
+import com.example.backend.model.OutboxNotification;
+import com.example.backend.model.OutboxNotification.Status;
+import com.example.backend.notification.NotificationChannel;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers the notification outbox ({@link OutboxNotification}) in batches.
+ * <p>
+ * Each round claims up to {@code notifications.dispatch.batch-size} due PENDING entries with
+ * one multi-update (SENDING + a claim token + a lease in {@code nextAttemptAt}), sends them
+ * through their {@link NotificationChannel} and writes all outcomes back in one bulk.
+ * A failed send is retried with exponential backoff up to
+ * {@code notifications.dispatch.max-attempts}; an entry left SENDING by a crash goes back to
+ * PENDING when its lease expires, so a message is never lost (at-least-once).
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    @Value("${notifications.dispatch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notifications.dispatch.batch-size:200}")
+    private int batchSize;
+
+    @Value("${notifications.dispatch.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notifications.dispatch.retry-base-seconds:60}")
+    private long retryBaseSeconds;
+
+    /** How long a claimed (SENDING) entry is reserved before another round may take it back */
+    @Value("${notifications.dispatch.lease-minutes:10}")
+    private long leaseMinutes;
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, NotificationChannel> channels;
+    private final TaskScheduler taskScheduler;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public NotificationDispatcher(MongoTemplate mongoTemplate, List<NotificationChannel> channels,
+                                  TaskScheduler taskScheduler) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskScheduler = taskScheduler;
+        this.channels = channels.stream()
+                .collect(Collectors.toMap(NotificationChannel::getName, Function.identity(), (a, b) -> a));
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("Notification channels: {}", channels.keySet());
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Run a dispatch round now (e.g. right after an alert job queued messages); it may overlap
+     * the scheduled round – each claims its own batch
+     */
+    public void wakeUp() {
+        if (!enabled) return;
+        try {
+            taskScheduler.schedule(this::dispatchQuietly, Instant.now());
+        } catch (RejectedExecutionException ignored) {
+            // بيقفل
+        }
+    }
+
+    public List<OutboxNotification> list(Status status, int page, int size) {
+        Query query = new Query(status != null ? Criteria.where("status").is(status) : new Criteria())
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .skip((long) page * size)
+                .limit(size);
+        return mongoTemplate.find(query, OutboxNotification.class);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("channels", channels.keySet());
+        stats.put("pending", mongoTemplate.count(new Query(Criteria.where("status").is(Status.PENDING)), OutboxNotification.class));
+        stats.put("sent", sent.get());
+        stats.put("retried", retried.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    // ────────────────── Dispatch ──────────────────
+
+    @Scheduled(fixedDelayString = "${notifications.dispatch.interval-seconds:10}",
+            initialDelayString = "${notifications.dispatch.interval-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    private void dispatchQuietly() {
+        if (!enabled) return;
+        try {
+            while (dispatchBatch() == batchSize) {
+                // لسه فيه – دفعة كمان
+            }
+        } catch (Exception e) {
+            log.warn("Notification dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of notifications handled (sent or rescheduled)
+     */
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // SENDING من run اتقطع والـ lease بتاعه خلص → يرجع PENDING
+        mongoTemplate.updateMulti(new Query(Criteria.where("status").is(Status.SENDING).and("nextAttemptAt").lte(now)),
+                new Update().set("status", Status.PENDING).unset("claimToken"), OutboxNotification.class);
+
+        Query due = new Query(Criteria.where("status").is(Status.PENDING).and("nextAttemptAt").lte(now))
+                .with(Sort.by("nextAttemptAt"))
+                .limit(batchSize);
+        due.fields().include("_id");
+        List<Object> ids = mongoTemplate.find(due, OutboxNotification.class).stream()
+                .map(n -> (Object) n.getId())
+                .toList();
+        if (ids.isEmpty()) return 0;
+
+        String token = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids).and("status").is(Status.PENDING)),
+                new Update().set("status", Status.SENDING)
+                        .set("claimToken", token)
+                        .set("nextAttemptAt", now.plusMinutes(leaseMinutes)),
+                OutboxNotification.class);
+        List<OutboxNotification> batch = mongoTemplate.find(
+                new Query(Criteria.where("claimToken").is(token).and("status").is(Status.SENDING)),
+                OutboxNotification.class);
+        if (batch.isEmpty()) return 0;
+
+        BulkOperations results = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxNotification.class);
+        for (OutboxNotification notification : batch) {
+            Query byClaim = new Query(Criteria.where("_id").is(notification.getId()).and("claimToken").is(token));
+            int attempts = notification.getAttempts() + 1;
+            try {
+                NotificationChannel channel = channels.get(notification.getChannel());
+                if (channel == null) {
+                    throw new IllegalStateException("Unknown notification channel: " + notification.getChannel());
+                }
+                channel.send(notification);
+                results.updateOne(byClaim, new Update().set("status", Status.SENT)
+                        .set("attempts", attempts)
+                        .set("sentAt", LocalDateTime.now())
+                        .unset("claimToken")
+                        .unset("lastError"));
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                boolean giveUp = attempts >= maxAttempts;
+                // 1, 2, 4, 8... × retry-base
+                long delay = retryBaseSeconds << Math.min(attempts - 1, 16);
+                results.updateOne(byClaim, new Update().set("status", giveUp ? Status.FAILED : Status.PENDING)
+                        .set("attempts", attempts)
+                        .set("nextAttemptAt", LocalDateTime.now().plusSeconds(delay))
+                        .set("lastError", String.valueOf(e.getMessage()))
+                        .unset("claimToken"));
+                (giveUp ? failed : retried).incrementAndGet();
+                log.warn("Notification {} to {} failed (attempt {}/{}): {}", notification.getId(),
+                        notification.getRecipient(), attempts, maxAttempts, e.getMessage());
+            }
+        }
+        results.execute();
+        return batch.size();
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.backend.service;
+
+import com.example.backend.model.PaymentSnapshot;
+import com.example.backend.model.PaymentTransaction;
+import com.example.backend.model.PaymentTransaction.Type;
+import com.example.backend.model.Student;
+import com.example.backend.model.Student.PaymentStatus;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only payment ledger ({@link PaymentTransaction}) and the balances derived from it.
+ * <p>
+ * Posting = insert the transaction (its unique idempotency key makes a retried request a
+ * no-op), then one pipeline update on the student that adds the amount to
+ * {@code amountPaid}, re-derives {@code balanceDue} and {@code paymentStatus} from the new
+ * numbers and records the transaction id in {@code recentPayments}. The update is guarded by "id not in
+ * recentPayments", so concurrent postings each add exactly once and nothing is ever
+ * read-modified-written. A posting whose student update was interrupted stays
+ * {@code applied=false} and is finished by a background check.
+ * <p>
+ * The unique index on {@code idempotencyKey} is what makes a retry a no-op, and
+ * {@code auto-index-creation} is off – so it is created here before the service is up, and
+ * the application does not start without it.
+ * <p>
+ * {@link PaymentSnapshot}s (nightly, {@code payments.snapshot.cron}) hold each
+ * student's ledger total, so the ledger balance shown next to the stored one is the
+ * snapshot plus the few postings after it.
+ */
+@Service
+public class PaymentLedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentLedgerService.class);
+
+    private static final String TRANSACTIONS = "payment_transactions";
+
+    // عدد الـ ids اللي بتتحفظ في recentPayments (أكتر بكتير من أي retry بيحصل فعليًا)
+    private static final int RECENT_PAYMENTS = 50;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+
+    public PaymentLedgerService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        ensureIdempotencyIndex();
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Posting
+    // ────────────────────────────────────────────────────────────────
+
+    public enum Status {
+        POSTED,
+        DUPLICATE,
+        STUDENT_NOT_FOUND
+    }
+
+    /**
+     * @param transaction the stored posting (for DUPLICATE: the one posted first under the key)
+     */
+    public record PostingResult(Status status, PaymentTransaction transaction,
+                                Double amountPaid, Double totalFees, Double balanceDue, PaymentStatus paymentStatus) {
+    }
+
+    /**
+     * Post a payment / refund / adjustment
+     *
+     * @param amount positive; a REFUND is subtracted, an ADJUSTMENT may be negative
+     * @throws IllegalArgumentException for a missing key, a zero / invalid amount or OPENING
+     * @throws IllegalStateException    if the key was already used for a different posting
+     */
+    public PostingResult post(String idempotencyKey, String studentCode, Type type, double amount,
+                              String method, String reference, String note, String postedBy) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency-Key مطلوب");
+        }
+        if (type == null || type == Type.OPENING) {
+            throw new IllegalArgumentException("نوع العملية لازم يكون PAYMENT أو REFUND أو ADJUSTMENT");
+        }
+        if (amount == 0 || Double.isNaN(amount) || Double.isInfinite(amount)
+                || (type != Type.ADJUSTMENT && amount < 0)) {
+            throw new IllegalArgumentException("المبلغ غير صحيح");
+        }
+        double signed = type == Type.REFUND ? -amount : amount;
+
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        byCode.fields().include("className", "currency");
+        Student student = mongoTemplate.findOne(byCode, Student.class);
+        if (student == null) {
+            return new PostingResult(Status.STUDENT_NOT_FOUND, null, null, null, null, null);
+        }
+
+        PaymentTransaction tx = new PaymentTransaction();
+        tx.setIdempotencyKey(idempotencyKey.trim());
+        tx.setStudentCode(studentCode);
+        tx.setClassName(student.getClassName());
+        tx.setType(type);
+        tx.setAmount(signed);
+        tx.setCurrency(student.getCurrency());
+        tx.setMethod(method);
+        tx.setReference(reference);
+        tx.setNote(note);
+        tx.setPostedBy(postedBy);
+        try {
+            tx = mongoTemplate.insert(tx);
+        } catch (DuplicateKeyException e) {
+            PaymentTransaction first = mongoTemplate.findOne(
+                    new Query(Criteria.where("idempotencyKey").is(tx.getIdempotencyKey())), PaymentTransaction.class);
+            if (first == null || !first.getStudentCode().equals(studentCode) || first.getAmount() != signed
+                    || first.getType() != type) {
+                throw new IllegalStateException("Idempotency-Key مستخدم لعملية تانية");
+            }
+            duplicates.incrementAndGet();
+            Student current = first.isApplied() ? balanceOf(studentCode) : apply(first);
+            return result(Status.DUPLICATE, first, current);
+        }
+
+        Student updated = apply(tx);
+        posted.incrementAndGet();
+        log.info("Payment posted for {}: {} {} ({}) by {}", studentCode, type, signed, tx.getIdempotencyKey(), postedBy);
+        return result(Status.POSTED, tx, updated);
+    }
+
+    /**
+     * Ledger entry for the amount a student was created with (already included in {@code amountPaid})
+     */
+    public void recordOpening(Student student, String postedBy) {
+        if (student.getAmountPaid() == 0) return;
+        PaymentTransaction tx = new PaymentTransaction();
+        tx.setIdempotencyKey("opening|" + student.getStudentCode());
+        tx.setStudentCode(student.getStudentCode());
+        tx.setClassName(student.getClassName());
+        tx.setType(Type.OPENING);
+        tx.setAmount(student.getAmountPaid());
+        tx.setCurrency(student.getCurrency());
+        tx.setMethod(student.getPaymentMethod());
+        tx.setPostedBy(postedBy);
+        tx.setApplied(true);
+        tx.setPaidAfter(student.getAmountPaid());
+        try {
+            mongoTemplate.insert(tx);
+        } catch (DuplicateKeyException e) {
+            log.debug("Opening balance of {} already recorded", student.getStudentCode());
+        }
+    }
+
+    /**
+     * Status from the numbers: fully paid → PAID, otherwise OVERDUE stays OVERDUE, then
+     * PARTIAL / PENDING – the same rule the posting pipeline applies
+     */
+    public static PaymentStatus statusOf(double amountPaid, double totalFees, PaymentStatus current) {
+        if (totalFees > 0 && amountPaid >= totalFees) return PaymentStatus.PAID;
+        if (current == PaymentStatus.OVERDUE) return PaymentStatus.OVERDUE;
+        return amountPaid > 0 ? PaymentStatus.PARTIAL : PaymentStatus.PENDING;
+    }
+
+    /**
+     * Pipeline stage deriving {@code balanceDue} and {@code paymentStatus} from the
+     * student's current {@code totalFees} / {@code amountPaid} (the {@link #statusOf} rule) –
+     * the last stage of every update that changes either number
+     */
+    public static AggregationOperation balanceStage() {
+        Document status = new Document("$switch", new Document("branches", List.of(
+                new Document("case", new Document("$and", List.of(
+                        new Document("$gt", List.of("$totalFees", 0)),
+                        new Document("$gte", List.of("$amountPaid", "$totalFees")))))
+                        .append("then", PaymentStatus.PAID.name()),
+                new Document("case", new Document("$eq", List.of("$paymentStatus", PaymentStatus.OVERDUE.name())))
+                        .append("then", PaymentStatus.OVERDUE.name()),
+                new Document("case", new Document("$gt", List.of("$amountPaid", 0)))
+                        .append("then", PaymentStatus.PARTIAL.name())))
+                .append("default", PaymentStatus.PENDING.name()));
+        return Aggregation.stage(new Document("$set", new Document("balanceDue", new Document("$subtract", List.of(
+                new Document("$ifNull", List.of("$totalFees", 0)), new Document("$ifNull", List.of("$amountPaid", 0)))))
+                .append("paymentStatus", status)));
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Ledger view
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @param ledgerPaid what the ledger adds up to (snapshot + later postings)
+     * @param consistent stored {@code amountPaid} equals the ledger (unapplied postings aside)
+     */
+    public record Ledger(String studentCode, double amountPaid, double totalFees, PaymentStatus paymentStatus,
+                         double ledgerPaid, int unapplied, boolean consistent, List<PaymentTransaction> transactions) {
+    }
+
+    /**
+     * @return null if there is no such student
+     */
+    public Ledger ledger(String studentCode, int page, int size) {
+        Student student = balanceOf(studentCode);
+        if (student == null) return null;
+
+        PaymentSnapshot snapshot = mongoTemplate.findById(studentCode, PaymentSnapshot.class);
+        Criteria after = Criteria.where("studentCode").is(studentCode);
+        if (snapshot != null) after = after.and("postedAt").gt(snapshot.getUpTo());
+        double ledgerPaid = snapshot != null ? snapshot.getPaid() : 0;
+        double pendingAmount = 0;
+        int unapplied = 0;
+        Query tail = new Query(after);
+        tail.fields().include("amount", "applied");
+        for (PaymentTransaction tx : mongoTemplate.find(tail, PaymentTransaction.class)) {
+            ledgerPaid += tx.getAmount();
+            if (!tx.isApplied()) {
+                unapplied++;
+                pendingAmount += tx.getAmount();
+            }
+        }
+
+        Query history = new Query(Criteria.where("studentCode").is(studentCode))
+                .with(Sort.by(Sort.Direction.DESC, "postedAt"))
+                .skip((long) page * size)
+                .limit(size);
+        List<PaymentTransaction> transactions = mongoTemplate.find(history, PaymentTransaction.class);
+
+        boolean consistent = Math.abs(student.getAmountPaid() + pendingAmount - ledgerPaid) < 0.005;
+        return new Ledger(studentCode, student.getAmountPaid(), student.getTotalFees(), student.getPaymentStatus(),
+                round(ledgerPaid), unapplied, consistent, transactions);
+    }
+
+    public record SnapshotRun(int students, long millis) {
+    }
+
+    /**
+     * Recompute every student's ledger total up to a minute ago (one aggregation + one bulk)
+     */
+    public synchronized SnapshotRun snapshot() {
+        long start = System.currentTimeMillis();
+        // دقيقة ورا عشان posting بيتكتب دلوقتي مايقعش بين الـ aggregation والـ upTo
+        LocalDateTime upTo = LocalDateTime.now().minusMinutes(1);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("postedAt").lte(upTo)),
+                Aggregation.group("studentCode").sum("amount").as("paid").count().as("transactions")
+        ).withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        List<Document> totals = mongoTemplate.aggregate(aggregation, TRANSACTIONS, Document.class).getMappedResults();
+
+        if (!totals.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PaymentSnapshot.class);
+            LocalDateTime now = LocalDateTime.now();
+            for (Document total : totals) {
+                bulk.upsert(new Query(Criteria.where("_id").is(total.get("_id"))),
+                        new Update().set("paid", ((Number) total.get("paid")).doubleValue())
+                                .set("transactions", ((Number) total.get("transactions")).longValue())
+                                .set("upTo", upTo)
+                                .set("takenAt", now));
+            }
+            bulk.execute();
+        }
+        SnapshotRun run = new SnapshotRun(totals.size(), System.currentTimeMillis() - start);
+        log.info("Payment snapshots taken for {} students in {} ms", run.students(), run.millis());
+        return run;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("posted", posted.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("recovered", recovered.get());
+        stats.put("unapplied", mongoTemplate.count(new Query(Criteria.where("applied").is(false)), PaymentTransaction.class));
+        return stats;
+    }
+
+    // ────────────────── Applying a posting ──────────────────
+
+    /**
+     * Add the posting to the student (at most once) and mark it applied
+     *
+     * @return the student's balance fields after the posting, or null if the student is gone
+     */
+    private Student apply(PaymentTransaction tx) {
+        Document set = new Document("amountPaid", new Document("$add", List.of(
+                        new Document("$ifNull", List.of("$amountPaid", 0)), tx.getAmount())))
+                .append("recentPayments", new Document("$slice", List.of(
+                        new Document("$concatArrays", List.of(
+                                new Document("$ifNull", List.of("$recentPayments", List.of())), List.of(tx.getId()))),
+                        -RECENT_PAYMENTS)))
+                .append("updatedAt", toDate(LocalDateTime.now()));
+        if (tx.getType() == Type.PAYMENT) {
+            set.append("lastPaymentDate", toDate(tx.getPostedAt().toLocalDate().atStartOfDay()));
+            if (tx.getMethod() != null) set.append("paymentMethod", tx.getMethod());
+        }
+        AggregationUpdate update = AggregationUpdate.from(List.of(
+                Aggregation.stage(new Document("$set", set)),
+                balanceStage()));
+
+        Query notYetApplied = new Query(Criteria.where("studentCode").is(tx.getStudentCode())
+                .and("recentPayments").ne(tx.getId()));
+        balanceFields(notYetApplied);
+        Student updated = mongoTemplate.findAndModify(notYetApplied, update,
+                FindAndModifyOptions.options().returnNew(true), Student.class);
+        if (updated == null) {
+            // اتطبقت قبل كده (crash بعد الـ update) أو الطالب اتمسح
+            updated = balanceOf(tx.getStudentCode());
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(tx.getId())),
+                new Update().set("applied", true).set("paidAfter", updated != null ? updated.getAmountPaid() : null),
+                PaymentTransaction.class);
+        tx.setApplied(true);
+        tx.setPaidAfter(updated != null ? updated.getAmountPaid() : null);
+        return updated;
+    }
+
+    // posting اتسجلت في الـ ledger والـ student update اتقطع قبلها
+    @Scheduled(fixedDelayString = "${payments.recovery.interval-minutes:5}", initialDelay = 1, timeUnit = TimeUnit.MINUTES)
+    private void applyPendingQuietly() {
+        try {
+            Query stale = new Query(Criteria.where("applied").is(false)
+                    .and("postedAt").lt(LocalDateTime.now().minusMinutes(1)))
+                    .with(Sort.by("postedAt"))
+                    .limit(500);
+            for (PaymentTransaction tx : mongoTemplate.find(stale, PaymentTransaction.class)) {
+                apply(tx);
+                recovered.incrementAndGet();
+                log.warn("Applied interrupted payment {} for {}", tx.getIdempotencyKey(), tx.getStudentCode());
+            }
+        } catch (Exception e) {
+            log.warn("Payment recovery failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${payments.snapshot.cron:0 30 3 * * *}")
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.warn("Payment snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    // من غير الـ unique index الـ retry بيترحّل مرتين → التطبيق مايقومش
+    private void ensureIdempotencyIndex() {
+        IndexOperations ops = mongoTemplate.indexOps(PaymentTransaction.class);
+        try {
+            ops.ensureIndex(new Index().on("idempotencyKey", Sort.Direction.ASC).unique().named("idempotencyKey"));
+        } catch (DataAccessException e) {
+            throw new IllegalStateException("Cannot create the unique idempotencyKey index on " + TRANSACTIONS
+                    + " (duplicate keys or a conflicting index?): " + e.getMessage(), e);
+        }
+        boolean unique = ops.getIndexInfo().stream().anyMatch(info -> info.isUnique()
+                && info.getIndexFields().stream().map(IndexField::getKey).toList().equals(List.of("idempotencyKey")));
+        if (!unique) {
+            throw new IllegalStateException("No unique idempotencyKey index on " + TRANSACTIONS);
+        }
+    }
+
+    private Student balanceOf(String studentCode) {
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        balanceFields(byCode);
+        return mongoTemplate.findOne(byCode, Student.class);
+    }
+
+    private static void balanceFields(Query query) {
+        query.fields().include("studentCode", "amountPaid", "totalFees", "balanceDue", "paymentStatus");
+    }
+
+    private static PostingResult result(Status status, PaymentTransaction tx, Student student) {
+        return student == null
+                ? new PostingResult(status, tx, null, null, null, null)
+                : new PostingResult(status, tx, student.getAmountPaid(), student.getTotalFees(), student.getBalanceDue(),
+                        student.getPaymentStatus());
+    }
+
+    // raw pipeline stage → التاريخ بيتحول هنا بنفس طريقة تخزين LocalDateTime (توقيت السيرفر)
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
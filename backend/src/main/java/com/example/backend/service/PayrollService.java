@@ -0,0 +1,242 @@
+package com.example.backend.service;
+
+import com.example.backend.model.PaymentTransaction;
+import com.example.backend.model.TeacherPayroll;
+import com.example.backend.model.TeacherPayroll.ClassShare;
+import com.example.backend.model.User;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Monthly teacher pay from the fees collected in the teacher's classes.
+ * <p>
+ * A TEACHER {@link User} lists their {@code teachingClasses}; for each of them the teacher
+ * earns a share of what the class paid that month. The share is the teacher's own
+ * {@code payrollSharePercent}, else the class rule ({@code payroll.class-shares}), else
+ * {@code payroll.default-share-percent}. The collected amounts come from one aggregation
+ * over {@code payment_transactions} grouped by the class stored on each posting, so the
+ * result does not depend on where a student sits today.
+ * <p>
+ * Results are stored in {@code teacher_payroll}. A month that is over cannot receive new
+ * postings, so it is computed once ({@code closed}) and reopened from storage; the current
+ * month is recomputed on every read.
+ */
+@Service
+public class PayrollService {
+
+    private static final Logger log = LoggerFactory.getLogger(PayrollService.class);
+
+    private static final String TRANSACTIONS = "payment_transactions";
+    private static final String TEACHER = "TEACHER";
+
+    @Value("${payroll.default-share-percent:10}")
+    private double defaultSharePercent;
+
+    // مثال: Grade 1:12,Grade 2:15 (اسم الفصل:النسبة)
+    @Value("${payroll.class-shares:}")
+    private String classSharesValue;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<String, Double> classShares = new HashMap<>();
+
+    public PayrollService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String rule : classSharesValue.split(",")) {
+            if (rule.isBlank()) continue;
+            int colon = rule.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("payroll.class-shares: expected className:percent, got " + rule);
+            }
+            classShares.put(rule.substring(0, colon).trim(), percent(Double.parseDouble(rule.substring(colon + 1).trim())));
+        }
+        percent(defaultSharePercent);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Payroll of every active teacher for {@code month}, highest total first
+     */
+    public List<TeacherPayroll> month(YearMonth month) {
+        List<User> teachers = teachers();
+        List<TeacherPayroll> out = new ArrayList<>();
+        if (isClosed(month)) {
+            // الشهر اتقفل → المحفوظ زي ما هو، وبيتحسب بس للمدرسين اللي ملهمش نتيجة لسه
+            out.addAll(mongoTemplate.find(new Query(Criteria.where("month").is(month.toString())), TeacherPayroll.class));
+            Set<String> stored = new HashSet<>();
+            out.forEach(p -> stored.add(p.getTeacherId()));
+            teachers = teachers.stream().filter(t -> !stored.contains(t.getId())).toList();
+        }
+        if (!teachers.isEmpty()) out.addAll(compute(month, teachers));
+        out.sort((a, b) -> Double.compare(b.getTotal(), a.getTotal()));
+        return out;
+    }
+
+    /**
+     * @return null if there is no such TEACHER
+     */
+    public TeacherPayroll forTeacher(String teacherId, YearMonth month) {
+        if (isClosed(month)) {
+            TeacherPayroll stored = mongoTemplate.findById(idOf(teacherId, month), TeacherPayroll.class);
+            if (stored != null) return stored;
+        }
+        User teacher = mongoTemplate.findOne(new Query(Criteria.where("_id").is(teacherId).and("role").is(TEACHER)), User.class);
+        if (teacher == null) return null;
+        return compute(month, List.of(teacher)).get(0);
+    }
+
+    /**
+     * Compute {@code month} again for every active teacher and overwrite what is stored
+     * (after changing the share rules or the teachers' classes for a past month)
+     */
+    public List<TeacherPayroll> recompute(YearMonth month) {
+        mongoTemplate.remove(new Query(Criteria.where("month").is(month.toString())), TeacherPayroll.class);
+        return month(month);
+    }
+
+    /**
+     * Set the classes a teacher is paid for and their share (null = the configured rules)
+     *
+     * @return the updated user, or null if there is no such TEACHER
+     * @throws IllegalArgumentException for a share outside 0-100
+     */
+    public User assign(String teacherId, List<String> classes, Double sharePercent) {
+        if (sharePercent != null) percent(sharePercent);
+        List<String> cleaned = new ArrayList<>(new LinkedHashSet<>(classes != null
+                ? classes.stream().filter(c -> c != null && !c.isBlank()).map(String::trim).toList()
+                : List.of()));
+        User updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(teacherId).and("role").is(TEACHER)),
+                new Update().set("teachingClasses", cleaned)
+                        .set("payrollSharePercent", sharePercent)
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (updated != null) log.info("Payroll assignment of teacher {}: {} @ {}%", teacherId, cleaned, sharePercent);
+        return updated;
+    }
+
+    public Map<String, Object> rules() {
+        Map<String, Object> rules = new LinkedHashMap<>();
+        rules.put("defaultSharePercent", defaultSharePercent);
+        rules.put("classShares", classShares);
+        return rules;
+    }
+
+    // ────────────────── Computation ──────────────────
+
+    private record ClassTotal(double collected, long payments, int students) {
+    }
+
+    private List<TeacherPayroll> compute(YearMonth month, List<User> teachers) {
+        Set<String> classes = new LinkedHashSet<>();
+        teachers.forEach(t -> classes.addAll(t.getTeachingClasses()));
+        Map<String, ClassTotal> totals = collectedByClass(month, classes);
+
+        boolean closed = isClosed(month);
+        LocalDateTime now = LocalDateTime.now();
+        List<TeacherPayroll> out = new ArrayList<>();
+        for (User teacher : teachers) {
+            TeacherPayroll payroll = new TeacherPayroll();
+            payroll.setId(idOf(teacher.getId(), month));
+            payroll.setMonth(month.toString());
+            payroll.setTeacherId(teacher.getId());
+            payroll.setTeacherName(teacher.getFullName());
+            double collected = 0;
+            double total = 0;
+            for (String className : teacher.getTeachingClasses()) {
+                ClassTotal t = totals.getOrDefault(className, new ClassTotal(0, 0, 0));
+                double share = shareOf(teacher, className);
+                double amount = round(t.collected() * share / 100.0);
+                payroll.getClasses().add(new ClassShare(className, round(t.collected()), t.payments(), t.students(), share, amount));
+                collected += t.collected();
+                total += amount;
+            }
+            payroll.setCollected(round(collected));
+            payroll.setTotal(round(total));
+            payroll.setClosed(closed);
+            payroll.setComputedAt(now);
+            out.add(mongoTemplate.save(payroll));
+        }
+        log.debug("Payroll {} computed for {} teachers over {} classes", month, teachers.size(), classes.size());
+        return out;
+    }
+
+    // صافي المحصل لكل فصل في الشهر (aggregation واحدة على الـ ledger)
+    private Map<String, ClassTotal> collectedByClass(YearMonth month, Set<String> classes) {
+        Map<String, ClassTotal> totals = new HashMap<>();
+        if (classes.isEmpty()) return totals;
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("className").in(classes)
+                        .and("postedAt").gte(month.atDay(1).atStartOfDay()).lt(month.plusMonths(1).atDay(1).atStartOfDay())),
+                Aggregation.stage(new Document("$group", new Document("_id", "$className")
+                        .append("collected", new Document("$sum", "$amount"))
+                        .append("payments", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$eq", List.of("$type", PaymentTransaction.Type.PAYMENT.name())), 1, 0))))
+                        .append("students", new Document("$addToSet", "$studentCode")))));
+        for (Document d : mongoTemplate.aggregate(aggregation, TRANSACTIONS, Document.class).getMappedResults()) {
+            totals.put(d.getString("_id"), new ClassTotal(((Number) d.get("collected")).doubleValue(),
+                    ((Number) d.get("payments")).longValue(), d.getList("students", Object.class).size()));
+        }
+        return totals;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private List<User> teachers() {
+        return mongoTemplate.find(new Query(Criteria.where("role").is(TEACHER).and("active").is(true))
+                .with(Sort.by("fullName")), User.class);
+    }
+
+    private double shareOf(User teacher, String className) {
+        if (teacher.getPayrollSharePercent() != null) return teacher.getPayrollSharePercent();
+        return classShares.getOrDefault(className, defaultSharePercent);
+    }
+
+    private static boolean isClosed(YearMonth month) {
+        return month.isBefore(YearMonth.now());
+    }
+
+    private static String idOf(String teacherId, YearMonth month) {
+        return teacherId + "|" + month;
+    }
+
+    private static double percent(double value) {
+        if (value < 0 || value > 100 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("النسبة لازم تكون بين 0 و 100");
+        }
+        return value;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
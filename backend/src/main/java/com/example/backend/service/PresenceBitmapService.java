@@ -0,0 +1,464 @@
+package com.example.backend.service;
+
+import com.example.backend.model.AttendanceBitmap;
+import com.example.backend.model.Student;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-day presence bitmaps for roster / absence queries without touching the students.
+ * <p>
+ * Every student gets a dense, stable {@code ordinal}; a day is a {@link BitSet} with the
+ * ordinals of the students that attended. An in-memory roster snapshot keeps one bitset
+ * per class section plus the active students, so "who in 2-A is missing today" is
+ * {@code section ∧ ¬present(today)} and "absent the last 3 school days" is an AND over three
+ * days – a few word operations per query instead of scanning embedded records.
+ * <p>
+ * Attendance writes set the bit in memory ({@link #markPresent}); dirty days are persisted
+ * ({@link AttendanceBitmap}) every {@code attendance.bitmap.flush-seconds}. Today is always
+ * rebuilt from the raw records on first use after a restart, and any past day with no
+ * stored bitmap is rebuilt the same way, so a lost flush never loses attendance. A day
+ * rebuilt before the roster's first load (students may still lack an ordinal) is kept
+ * in memory only and rebuilt again after the next roster refresh. A day whose records
+ * change after its bitmap was stored (the day close, a manual correction) is re-read
+ * with {@link #refresh}.
+ * The roster is reloaded every {@code attendance.bitmap.roster-refresh-minutes} (class
+ * changes and new students show up after the next refresh).
+ */
+@Service
+public class PresenceBitmapService {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceBitmapService.class);
+
+    private static final String COUNTERS = "counters";
+    private static final String ORDINAL_COUNTER = "studentOrdinal";
+
+    @Value("${attendance.bitmap.days-in-memory:30}")
+    private int daysInMemory;
+
+    /** Longest range a streak / follow-up query may cover (school days) */
+    @Value("${attendance.bitmap.max-days:60}")
+    private int maxDays;
+
+    private final MongoTemplate mongoTemplate;
+    private final SchoolCalendarService calendar;
+
+    private final Map<LocalDate, Day> days = new ConcurrentHashMap<>();
+    private volatile Roster roster = Roster.EMPTY;
+
+    public PresenceBitmapService(MongoTemplate mongoTemplate, SchoolCalendarService calendar) {
+        this.mongoTemplate = mongoTemplate;
+        this.calendar = calendar;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Writes
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Set the student's bit for {@code date}; called after the attendance record is stored
+     * (a failure here is only logged – the day is rebuilt from the records if needed)
+     */
+    public void markPresent(LocalDate date, Student student) {
+        try {
+            Integer ordinal = student.getOrdinal() != null ? student.getOrdinal() : ensureOrdinal(student.getStudentCode());
+            if (ordinal == null) return;
+            Day day = day(date);
+            synchronized (day) {
+                day.present.set(ordinal);
+                day.dirty = true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Presence bitmap update failed for {} on {}: {}", student.getStudentCode(), date, e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read {@code date} from the students' records and store it on the next flush.
+     * A past day is replaced (a corrected record may be gone); today is merged, since
+     * {@link #markPresent} of a record stored after the read must not be dropped.
+     * A failure is only logged – the stored bitmap stays as it was.
+     */
+    public void refresh(LocalDate date) {
+        try {
+            Day fresh = fromRecords(date);
+            Day day = days.putIfAbsent(date, fresh);
+            if (day == null) return;
+            synchronized (day) {
+                if (date.isBefore(LocalDate.now())) day.present.clear();
+                day.present.or(fresh.present);
+                day.dirty = true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Presence bitmap refresh failed for {}: {}", date, e.getMessage());
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Queries
+    // ────────────────────────────────────────────────────────────────
+
+    public record RosterEntry(String studentCode, String fullName, String className, String division) {
+    }
+
+    /**
+     * @param days     the school days that were intersected (ascending)
+     * @param scope    students in the queried class / school
+     * @param micros   time spent on the bitmap operations
+     */
+    public record PresenceResult(List<LocalDate> days, int scope, int count, List<RosterEntry> students, long micros) {
+    }
+
+    /**
+     * Active students of the class / section (or the whole school) with no attendance on {@code date}
+     */
+    public PresenceResult missing(LocalDate date, String className, String division) {
+        return absentOnAll(List.of(date), className, division);
+    }
+
+    /**
+     * Students absent on each of the last {@code count} school days up to {@code through}
+     *
+     * @throws IllegalArgumentException if {@code count} is out of 1..max-days
+     */
+    public PresenceResult absentStreak(int count, LocalDate through, String className, String division) {
+        if (count < 1 || count > maxDays) {
+            throw new IllegalArgumentException("عدد الأيام لازم يكون بين 1 و " + maxDays);
+        }
+        // نافذة كفاية لـ count يوم دراسي حتى مع الإجازات
+        List<LocalDate> schoolDays = calendar.schoolDays(through.minusDays(count * 2L + 14), through);
+        List<LocalDate> last = schoolDays.subList(Math.max(0, schoolDays.size() - count), schoolDays.size());
+        return absentOnAll(last, className, division);
+    }
+
+    /**
+     * Follow-up list: students with no attendance on any school day from {@code since} through
+     * {@code through} – what {@code StudentRepository.findStudentsWithNoAttendanceSince} describes
+     *
+     * @throws IllegalArgumentException for a reversed or too long range
+     */
+    public PresenceResult noAttendanceSince(LocalDate since, LocalDate through, String className, String division) {
+        if (through.isBefore(since)) {
+            throw new IllegalArgumentException("تاريخ البداية بعد تاريخ النهاية");
+        }
+        List<LocalDate> schoolDays = calendar.schoolDays(since, through);
+        if (schoolDays.size() > maxDays) {
+            throw new IllegalArgumentException("أقصى مدة هي " + maxDays + " يوم دراسي");
+        }
+        return absentOnAll(schoolDays, className, division);
+    }
+
+    public Map<String, Object> getStats() {
+        Roster current = roster;
+        long bytes = 0;
+        for (Day day : days.values()) {
+            synchronized (day) {
+                bytes += day.present.size() / 8;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("students", current.active.cardinality());
+        stats.put("ordinals", current.codes.length);
+        stats.put("sections", current.sections.size());
+        stats.put("rosterLoadedAt", current.loadedAt);
+        stats.put("daysInMemory", days.size());
+        stats.put("bitmapBytes", bytes);
+        return stats;
+    }
+
+    // ────────────────── Bitmap operations ──────────────────
+
+    private PresenceResult absentOnAll(List<LocalDate> dates, String className, String division) {
+        if (dates.isEmpty()) {
+            return new PresenceResult(dates, 0, 0, List.of(), 0);
+        }
+        Roster current = roster;
+        List<BitSet> present = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            present.add(snapshot(day(date)));
+        }
+
+        long start = System.nanoTime();
+        BitSet absent = current.scope(className, division);
+        int scope = absent.cardinality();
+        for (BitSet day : present) {
+            absent.andNot(day);
+        }
+        // اللي اتسجل بعد أول يوم مايتحسبش غايب عن أيام قبل تسجيله
+        LocalDate first = dates.get(0);
+        List<RosterEntry> students = new ArrayList<>(absent.cardinality());
+        for (int i = absent.nextSetBit(0); i >= 0; i = absent.nextSetBit(i + 1)) {
+            if (current.enrolledOn[i] != null && current.enrolledOn[i].isAfter(first)) continue;
+            students.add(new RosterEntry(current.codes[i], current.names[i], current.classNames[i], current.divisions[i]));
+        }
+        long micros = (System.nanoTime() - start) / 1_000;
+        return new PresenceResult(dates, scope, students.size(), students, micros);
+    }
+
+    private static BitSet snapshot(Day day) {
+        synchronized (day) {
+            return (BitSet) day.present.clone();
+        }
+    }
+
+    // ────────────────── Days ──────────────────
+
+    private static final class Day {
+        final BitSet present;
+        boolean dirty;
+        // اتبنى قبل أول تحميل للـ roster → ممكن يكون ناقص طلاب ملهمش ordinal لسه، مايتحفظش
+        final boolean provisional;
+
+        Day(BitSet present, boolean dirty, boolean provisional) {
+            this.present = present;
+            this.dirty = dirty;
+            this.provisional = provisional;
+        }
+    }
+
+    private Day day(LocalDate date) {
+        Day day = days.get(date);
+        if (day != null) return day;
+        // التحميل برا الـ map عشان القراءة من Mongo ماتقفلش أيام تانية
+        Day loaded = load(date);
+        Day existing = days.putIfAbsent(date, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private Day load(LocalDate date) {
+        if (date.isBefore(LocalDate.now())) {
+            AttendanceBitmap stored = mongoTemplate.findById(date.toString(), AttendanceBitmap.class);
+            if (stored != null && stored.getPresent() != null) {
+                return new Day(BitSet.valueOf(stored.getPresent()), false, false);
+            }
+        }
+        // النهارده (ممكن يكون آخر flush اتفقد) أو يوم ملوش bitmap → من السجلات نفسها
+        return fromRecords(date);
+    }
+
+    private Day fromRecords(LocalDate date) {
+        boolean rosterLoaded = roster.loadedAt != null;
+        Query query = new Query(Criteria.where("ordinal").ne(null)
+                .and("attendanceRecords").elemMatch(Criteria.where("dateTime")
+                        .gte(date.atStartOfDay())
+                        .lt(date.plusDays(1).atStartOfDay())));
+        query.fields().include("ordinal");
+        BitSet present = new BitSet();
+        for (Student student : mongoTemplate.find(query, Student.class)) {
+            present.set(student.getOrdinal());
+        }
+        return new Day(present, true, !rosterLoaded);
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.bitmap.flush-seconds:5}",
+            initialDelayString = "${attendance.bitmap.flush-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Presence bitmap flush failed: {}", e.getMessage());
+        }
+    }
+
+    private void flush() {
+        LocalDate oldest = LocalDate.now().minusDays(daysInMemory);
+        for (Map.Entry<LocalDate, Day> entry : days.entrySet()) {
+            Day day = entry.getValue();
+            byte[] bytes = null;
+            int count = 0;
+            synchronized (day) {
+                if (day.dirty && !day.provisional) {
+                    bytes = day.present.toByteArray();
+                    count = day.present.cardinality();
+                    day.dirty = false;
+                }
+            }
+            if (bytes != null) {
+                try {
+                    mongoTemplate.save(new AttendanceBitmap(entry.getKey(), bytes, count));
+                } catch (RuntimeException e) {
+                    synchronized (day) {
+                        day.dirty = true;
+                    }
+                    throw e;
+                }
+            }
+            if (entry.getKey().isBefore(oldest)) {
+                synchronized (day) {
+                    if (!day.dirty) days.remove(entry.getKey(), day);
+                }
+            }
+        }
+    }
+
+    // ────────────────── Roster ──────────────────
+
+    /**
+     * Everything a query needs per ordinal, replaced as a whole on refresh
+     */
+    private static final class Roster {
+        static final Roster EMPTY = new Roster(new String[0], new String[0], new String[0], new String[0],
+                new LocalDate[0], new BitSet(), Map.of(), null);
+
+        final String[] codes;
+        final String[] names;
+        final String[] classNames;
+        final String[] divisions;
+        final LocalDate[] enrolledOn;
+        final BitSet active;
+        final Map<String, BitSet> sections;       // "className|division" → members
+        final LocalDateTime loadedAt;
+
+        Roster(String[] codes, String[] names, String[] classNames, String[] divisions, LocalDate[] enrolledOn,
+               BitSet active, Map<String, BitSet> sections, LocalDateTime loadedAt) {
+            this.codes = codes;
+            this.names = names;
+            this.classNames = classNames;
+            this.divisions = divisions;
+            this.enrolledOn = enrolledOn;
+            this.active = active;
+            this.sections = sections;
+            this.loadedAt = loadedAt;
+        }
+
+        /** active students of the class (all its sections) / section, or of the school; a new bitset */
+        BitSet scope(String className, String division) {
+            BitSet scope = new BitSet();
+            if (className == null || className.isBlank()) {
+                scope.or(active);
+                return scope;
+            }
+            for (Map.Entry<String, BitSet> section : sections.entrySet()) {
+                if (section.getKey().equals(sectionKey(className, division))
+                        || ((division == null || division.isBlank()) && section.getKey().startsWith(className + "|"))) {
+                    scope.or(section.getValue());
+                }
+            }
+            scope.and(active);
+            return scope;
+        }
+
+        static String sectionKey(String className, String division) {
+            return (className != null ? className : "") + "|" + (division != null ? division : "");
+        }
+    }
+
+    // أول تحميل على الـ scheduler – الـ startup مايستناش Mongo
+    @Scheduled(fixedDelayString = "${attendance.bitmap.roster-refresh-minutes:5}", timeUnit = TimeUnit.MINUTES)
+    private void refreshRosterQuietly() {
+        try {
+            refreshRoster();
+        } catch (Exception e) {
+            log.warn("Presence roster refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private void refreshRoster() {
+        assignMissingOrdinals();
+
+        Query query = new Query(Criteria.where("ordinal").ne(null));
+        query.fields().include("studentCode", "fullName", "className", "division", "createdAt", "active", "ordinal");
+        List<Student> students = mongoTemplate.find(query, Student.class);
+
+        int size = students.stream().mapToInt(Student::getOrdinal).max().orElse(-1) + 1;
+        String[] codes = new String[size];
+        String[] names = new String[size];
+        String[] classNames = new String[size];
+        String[] divisions = new String[size];
+        LocalDate[] enrolledOn = new LocalDate[size];
+        BitSet active = new BitSet(size);
+        Map<String, BitSet> sections = new HashMap<>();
+        for (Student student : students) {
+            int i = student.getOrdinal();
+            codes[i] = student.getStudentCode();
+            names[i] = student.getFullName();
+            classNames[i] = student.getClassName();
+            divisions[i] = student.getDivision();
+            enrolledOn[i] = student.getCreatedAt() != null ? student.getCreatedAt().toLocalDate() : null;
+            if (student.isActive()) active.set(i);
+            sections.computeIfAbsent(Roster.sectionKey(student.getClassName(), student.getDivision()),
+                    k -> new BitSet(size)).set(i);
+        }
+        roster = new Roster(codes, names, classNames, divisions, enrolledOn, active, sections, LocalDateTime.now());
+        // الأيام اللي اتبنت قبل الـ ordinals → تتبني تاني من السجلات عند أول استخدام
+        days.values().removeIf(day -> day.provisional);
+        log.debug("Presence roster loaded: {} students, {} sections", students.size(), sections.size());
+    }
+
+    // ────────────────── Ordinals ──────────────────
+
+    // الطلاب اللي ملهمش ordinal (قدام أو لسه متسجلين) بياخدوا block واحد من العداد
+    private void assignMissingOrdinals() {
+        Query query = new Query(Criteria.where("ordinal").is(null));
+        query.fields().include("_id");
+        List<Document> missing = mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Student.class));
+        if (missing.isEmpty()) return;
+
+        int next = allocate(missing.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class);
+        for (Document student : missing) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(student.get("_id")).and("ordinal").is(null)),
+                    new Update().set("ordinal", next++));
+        }
+        int assigned = bulk.execute().getModifiedCount();
+        log.info("Assigned presence ordinals to {} students", assigned);
+    }
+
+    private Integer ensureOrdinal(String studentCode) {
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        byCode.fields().include("ordinal");
+        Student current = mongoTemplate.findOne(byCode, Student.class);
+        if (current == null) return null;
+        if (current.getOrdinal() != null) return current.getOrdinal();
+
+        Student updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("studentCode").is(studentCode).and("ordinal").is(null)),
+                new Update().set("ordinal", allocate(1)),
+                FindAndModifyOptions.options().returnNew(true), Student.class);
+        // لو حد سبقنا، الرقم اللي اتحجز بيفضل فاضي – مش مشكلة
+        if (updated != null) return updated.getOrdinal();
+        Student again = mongoTemplate.findOne(byCode, Student.class);
+        return again != null ? again.getOrdinal() : null;
+    }
+
+    /**
+     * Reserve {@code count} consecutive ordinals
+     *
+     * @return the first one
+     */
+    private int allocate(int count) {
+        Document counter = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(ORDINAL_COUNTER)),
+                new Update().inc("seq", count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class, COUNTERS);
+        return ((Number) counter.get("seq")).intValue() - count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushQuietly();
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.backend.service;
+
+import com.example.backend.index.RankTree;
+import com.example.backend.model.Student;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Rank-in-class and percentile for every exam (and every graded subject/day).
+ * <p>
+ * One {@link RankTree} per board – (className, kind, exam name or subject, date) – holds the
+ * percent scores of the class, so top-N, rank-of-student and percentile are O(log n)
+ * instead of loading the class and sorting. {@link GradeService} feeds every grade / exam
+ * write in through {@link #record}; {@link #rebuild} recomputes everything from the
+ * students (on startup, and on demand after imports or class changes).
+ * <p>
+ * Ranks are competition ranks (equal scores share a rank); the percentile is the
+ * percentile rank {@code 100 × (below + ½ × equal) / size}.
+ */
+@Service
+public class RankingService {
+
+    private static final Logger log = LoggerFactory.getLogger(RankingService.class);
+
+    public enum Kind {
+        EXAM, GRADE
+    }
+
+    /**
+     * @param name exam name (EXAM) or subject (GRADE)
+     */
+    public record BoardKey(String className, Kind kind, String name, LocalDate date) {
+    }
+
+    public record Score(BoardKey board, String studentCode, double percent) {
+    }
+
+    private static final class Board {
+        final RankTree tree = new RankTree();
+        final Map<String, Double> scores = new HashMap<>();
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile Map<BoardKey, Board> boards = new ConcurrentHashMap<>();
+
+    // الكتابات اللي بتحصل أثناء الـ rebuild بتتعاد على الـ boards الجديدة قبل التبديل
+    private final Object rebuildLock = new Object();
+    private List<Score> duringRebuild;
+
+    private ExecutorService loader;
+
+    public RankingService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ranking-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        loader.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Initial ranking load failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Writes
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Add or replace a student's score on a board (called after the grade / exam is stored)
+     */
+    public void record(Score score) {
+        if (score.board().className() == null) return;
+        synchronized (rebuildLock) {
+            if (duringRebuild != null) duringRebuild.add(score);
+        }
+        apply(boards, score);
+    }
+
+    public static Score examScore(String className, String studentCode, Student.ExamResult exam) {
+        double total = exam.getTotalMarks() > 0 ? exam.getTotalMarks() : 1;
+        return new Score(new BoardKey(className, Kind.EXAM, exam.getExamName(), exam.getDate()),
+                studentCode, exam.getObtainedMarks() * 100.0 / total);
+    }
+
+    public static Score gradeScore(String className, String studentCode, Student.Grade grade) {
+        double max = grade.getMaxScore() > 0 ? grade.getMaxScore() : 1;
+        return new Score(new BoardKey(className, Kind.GRADE, grade.getSubject(), grade.getDate()),
+                studentCode, grade.getScore() * 100.0 / max);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Queries
+    // ────────────────────────────────────────────────────────────────
+
+    public record Ranked(int rank, String studentCode, double percent) {
+    }
+
+    public record Standing(BoardKey board, String studentCode, double percent, int rank, int size, double percentile) {
+    }
+
+    public record BoardSummary(BoardKey board, int size, Double best) {
+    }
+
+    /**
+     * @return the best {@code n} of the board, or an empty list if there is no such board
+     */
+    public List<Ranked> top(BoardKey key, int n) {
+        Board board = boards.get(key);
+        if (board == null) return List.of();
+        synchronized (board) {
+            List<Ranked> out = new ArrayList<>();
+            int rank = 0;
+            double previous = Double.NaN;
+            List<RankTree.Entry> entries = board.tree.top(n);
+            for (int i = 0; i < entries.size(); i++) {
+                RankTree.Entry entry = entries.get(i);
+                if (entry.score() != previous) rank = i + 1;
+                previous = entry.score();
+                out.add(new Ranked(rank, entry.label(), round(entry.score())));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * @return null if the student has no score on that board
+     */
+    public Standing standing(BoardKey key, String studentCode) {
+        Board board = boards.get(key);
+        if (board == null) return null;
+        synchronized (board) {
+            return standingOf(key, board, studentCode);
+        }
+    }
+
+    /**
+     * The student's standing on every board of their class, newest first
+     *
+     * @return null if there is no such student
+     */
+    public List<Standing> standings(String studentCode) {
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        byCode.fields().include("className");
+        Student student = mongoTemplate.findOne(byCode, Student.class);
+        if (student == null) return null;
+
+        List<Standing> out = new ArrayList<>();
+        for (Map.Entry<BoardKey, Board> entry : boards.entrySet()) {
+            if (!entry.getKey().className().equals(student.getClassName())) continue;
+            synchronized (entry.getValue()) {
+                Standing standing = standingOf(entry.getKey(), entry.getValue(), studentCode);
+                if (standing != null) out.add(standing);
+            }
+        }
+        out.sort(Comparator.comparing((Standing s) -> s.board().date(), Comparator.nullsLast(Comparator.reverseOrder())));
+        return out;
+    }
+
+    /**
+     * Boards of one class, newest first
+     */
+    public List<BoardSummary> boards(String className) {
+        List<BoardSummary> out = new ArrayList<>();
+        for (Map.Entry<BoardKey, Board> entry : boards.entrySet()) {
+            if (!entry.getKey().className().equals(className)) continue;
+            Board board = entry.getValue();
+            synchronized (board) {
+                List<RankTree.Entry> best = board.tree.top(1);
+                out.add(new BoardSummary(entry.getKey(), board.tree.size(),
+                        best.isEmpty() ? null : round(best.get(0).score())));
+            }
+        }
+        out.sort(Comparator.comparing((BoardSummary s) -> s.board().date(), Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(s -> s.board().name(), Comparator.nullsLast(Comparator.naturalOrder())));
+        return out;
+    }
+
+    public record RebuildResult(int boards, int scores, long millis) {
+    }
+
+    /**
+     * Recompute every board from the students' grades and exam results; queries keep
+     * answering from the old boards until the new ones are swapped in
+     */
+    public RebuildResult rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (rebuildLock) {
+            if (duringRebuild != null) throw new IllegalStateException("Ranking rebuild already running");
+            duringRebuild = new ArrayList<>();
+        }
+        try {
+            Map<BoardKey, Board> fresh = new ConcurrentHashMap<>();
+            int scores = 0;
+            Query query = new Query(Criteria.where("className").ne(null));
+            query.fields().include("studentCode", "className", "grades", "examResults");
+            try (Stream<Student> students = mongoTemplate.stream(query, Student.class)) {
+                for (Student student : (Iterable<Student>) students::iterator) {
+                    for (Student.ExamResult exam : student.getExamResults()) {
+                        apply(fresh, examScore(student.getClassName(), student.getStudentCode(), exam));
+                        scores++;
+                    }
+                    for (Student.Grade grade : student.getGrades()) {
+                        apply(fresh, gradeScore(student.getClassName(), student.getStudentCode(), grade));
+                        scores++;
+                    }
+                }
+            }
+            synchronized (rebuildLock) {
+                for (Score score : duringRebuild) apply(fresh, score);
+                boards = fresh;
+                duringRebuild = null;
+            }
+            RebuildResult result = new RebuildResult(fresh.size(), scores, System.currentTimeMillis() - start);
+            log.info("Rankings rebuilt: {} boards, {} scores in {} ms", result.boards(), result.scores(), result.millis());
+            return result;
+        } catch (RuntimeException e) {
+            synchronized (rebuildLock) {
+                duringRebuild = null;
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("boards", boards.size());
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static void apply(Map<BoardKey, Board> target, Score score) {
+        Board board = target.computeIfAbsent(score.board(), k -> new Board());
+        synchronized (board) {
+            Double old = board.scores.put(score.studentCode(), score.percent());
+            if (old != null) board.tree.remove(old, score.studentCode());
+            board.tree.insert(score.percent(), score.studentCode());
+        }
+    }
+
+    private static Standing standingOf(BoardKey key, Board board, String studentCode) {
+        Double percent = board.scores.get(studentCode);
+        if (percent == null) return null;
+        int size = board.tree.size();
+        int above = board.tree.countAbove(percent);
+        int atLeast = board.tree.countAtLeast(percent);
+        double percentile = 100.0 * ((size - atLeast) + 0.5 * (atLeast - above)) / size;
+        return new Standing(key, studentCode, round(percent), above + 1, size, round(percentile));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+}
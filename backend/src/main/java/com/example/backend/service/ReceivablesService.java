@@ -0,0 +1,282 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Student;
+import com.example.backend.model.Student.PaymentStatus;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Who owes what: receivables lists sorted by {@code balanceDue} and the nightly OVERDUE
+ * evaluation.
+ * <p>
+ * {@code balanceDue} ({@code totalFees - amountPaid}) is stored and indexed – every update
+ * that changes either number ends with {@link PaymentLedgerService#balanceStage()} – so
+ * "who still owes money, biggest first" is an index scan instead of loading every student.
+ * <p>
+ * Due-date rules ({@code fees.due-rules}, {@code date:percent}) say how much of
+ * {@code totalFees} must be paid by when. Once a rule's date plus
+ * {@code fees.overdue.grace-days} has passed, the evaluator flips students below the share
+ * to OVERDUE and puts students who caught up back to PARTIAL / PENDING / PAID – two
+ * multi-document updates filtered on the server, no student is loaded. It runs every night
+ * ({@code fees.overdue.cron}), once after startup and on demand.
+ */
+@Service
+public class ReceivablesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceivablesService.class);
+
+    private static final String STUDENTS = "students";
+
+    // مثال: 2026-10-15:50,2027-02-15:100 → نص المصروفات لحد 15/10 والباقي لحد 15/2
+    @Value("${fees.due-rules:}")
+    private String dueRulesValue;
+
+    @Value("${fees.overdue.grace-days:7}")
+    private int graceDays;
+
+    @Value("${fees.overdue.enabled:true}")
+    private boolean enabled;
+
+    private final MongoTemplate mongoTemplate;
+
+    // تاريخ الاستحقاق → النسبة المطلوبة (0-100)
+    private final TreeMap<LocalDate, Double> dueRules = new TreeMap<>();
+    private volatile OverdueRun lastRun;
+
+    public ReceivablesService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String rule : dueRulesValue.split(",")) {
+            if (rule.isBlank()) continue;
+            String[] parts = rule.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("fees.due-rules: expected date:percent, got " + rule);
+            }
+            double percent = Double.parseDouble(parts[1].trim());
+            if (percent <= 0 || percent > 100) {
+                throw new IllegalArgumentException("fees.due-rules: percent must be in (0, 100], got " + rule);
+            }
+            dueRules.put(LocalDate.parse(parts[0].trim()), percent);
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Receivables
+    // ────────────────────────────────────────────────────────────────
+
+    public record Receivable(String studentCode, String fullName, String className, String division,
+                             String guardianPhonePrimary, double totalFees, double amountPaid, double balanceDue,
+                             PaymentStatus paymentStatus, LocalDate lastPaymentDate) {
+    }
+
+    /**
+     * Students with something left to pay, biggest balance first
+     *
+     * @param className optional
+     * @param status    optional (e.g. only OVERDUE)
+     */
+    public Page<Receivable> receivables(String className, PaymentStatus status, int page, int size) {
+        Criteria criteria = Criteria.where("balanceDue").gt(0);
+        if (className != null && !className.isBlank()) criteria = criteria.and("className").is(className);
+        if (status != null) criteria = criteria.and("paymentStatus").is(status);
+        Pageable pageable = PageRequest.of(page, size,
+                Sort.by(Sort.Direction.DESC, "balanceDue").and(Sort.by("studentCode")));
+
+        Query filter = new Query(criteria);
+        Query query = Query.of(filter).with(pageable);
+        query.fields().include("studentCode", "fullName", "className", "division", "guardianPhonePrimary",
+                "totalFees", "amountPaid", "balanceDue", "paymentStatus", "lastPaymentDate");
+        List<Receivable> content = mongoTemplate.find(query, Student.class).stream()
+                .map(s -> new Receivable(s.getStudentCode(), s.getFullName(), s.getClassName(), s.getDivision(),
+                        s.getGuardianPhonePrimary(), s.getTotalFees(), s.getAmountPaid(), s.getBalanceDue(),
+                        s.getPaymentStatus(), s.getLastPaymentDate()))
+                .toList();
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(filter, Student.class));
+    }
+
+    /**
+     * @param outstanding sum of positive balances (credits are not netted against debts)
+     */
+    public record Summary(long students, double totalFees, double collected, double outstanding,
+                          Map<PaymentStatus, Long> byStatus) {
+    }
+
+    /**
+     * Totals for the finance screen (one aggregation grouped by status)
+     *
+     * @param className optional
+     */
+    public Summary summary(String className) {
+        Criteria criteria = className != null && !className.isBlank()
+                ? Criteria.where("className").is(className) : new Criteria();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.stage(new Document("$group", new Document("_id", "$paymentStatus")
+                        .append("students", new Document("$sum", 1))
+                        .append("totalFees", new Document("$sum", "$totalFees"))
+                        .append("collected", new Document("$sum", "$amountPaid"))
+                        .append("outstanding", new Document("$sum", new Document("$max", List.of("$balanceDue", 0)))))));
+
+        long students = 0;
+        double totalFees = 0;
+        double collected = 0;
+        double outstanding = 0;
+        Map<PaymentStatus, Long> byStatus = new LinkedHashMap<>();
+        for (PaymentStatus s : PaymentStatus.values()) byStatus.put(s, 0L);
+        for (Document d : mongoTemplate.aggregate(aggregation, STUDENTS, Document.class).getMappedResults()) {
+            long count = ((Number) d.get("students")).longValue();
+            students += count;
+            totalFees += doubleOf(d.get("totalFees"));
+            collected += doubleOf(d.get("collected"));
+            outstanding += doubleOf(d.get("outstanding"));
+            String status = d.getString("_id");
+            PaymentStatus key = status != null ? PaymentStatus.valueOf(status) : PaymentStatus.PENDING;
+            byStatus.merge(key, count, Long::sum);
+        }
+        return new Summary(students, round(totalFees), round(collected), round(outstanding), byStatus);
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // OVERDUE evaluation
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @param requiredPercent share of totalFees that had to be paid by {@code day}
+     */
+    public record OverdueRun(LocalDate day, double requiredPercent, long markedOverdue, long cleared, long millis) {
+    }
+
+    /**
+     * Re-evaluate OVERDUE for every active student as of {@code day} (safe to run again)
+     */
+    public synchronized OverdueRun evaluate(LocalDate day) {
+        long start = System.currentTimeMillis();
+        double required = requiredPercent(day);
+        double share = required / 100.0;
+
+        // تحت النسبة المطلوبة ومش OVERDUE → OVERDUE
+        Query behind = new Query(Criteria.where("balanceDue").gt(0)
+                .and("active").is(true)
+                .and("totalFees").gt(0)
+                .and("paymentStatus").in(PaymentStatus.PENDING, PaymentStatus.PARTIAL)
+                .andOperator(Criteria.expr(() -> new Document("$lt", List.of("$amountPaid",
+                        new Document("$multiply", List.of("$totalFees", share)))))));
+        // OVERDUE ولحق النسبة (أو مفيش قاعدة مستحقة) → الحالة من الأرقام تاني
+        Query caughtUp = new Query(Criteria.where("paymentStatus").is(PaymentStatus.OVERDUE)
+                .andOperator(Criteria.expr(() -> new Document("$gte", List.of("$amountPaid",
+                        new Document("$multiply", List.of("$totalFees", share)))))));
+
+        LocalDateTime now = LocalDateTime.now();
+        long marked = share > 0
+                ? mongoTemplate.updateMulti(behind,
+                        new Update().set("paymentStatus", PaymentStatus.OVERDUE).set("updatedAt", now),
+                        Student.class).getModifiedCount()
+                : 0;
+        long cleared = mongoTemplate.updateMulti(caughtUp, AggregationUpdate.from(List.of(
+                        Aggregation.stage(new Document("$set", new Document("paymentStatus", PaymentStatus.PENDING.name())
+                                .append("updatedAt", toDate(now)))),
+                        PaymentLedgerService.balanceStage())),
+                Student.class).getModifiedCount();
+
+        OverdueRun run = new OverdueRun(day, required, marked, cleared, System.currentTimeMillis() - start);
+        lastRun = run;
+        log.info("Overdue evaluation for {} ({}% due): {} marked overdue, {} cleared in {} ms",
+                day, required, run.markedOverdue(), run.cleared(), run.millis());
+        return run;
+    }
+
+    /**
+     * Share of totalFees (0-100) that must be paid by {@code day}: the highest rule whose
+     * date plus the grace days is before it
+     */
+    public double requiredPercent(LocalDate day) {
+        double required = 0;
+        for (Map.Entry<LocalDate, Double> rule : dueRules.entrySet()) {
+            if (rule.getKey().plusDays(graceDays).isBefore(day)) required = Math.max(required, rule.getValue());
+        }
+        return required;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled && !dueRules.isEmpty());
+        stats.put("dueRules", dueRules);
+        stats.put("graceDays", graceDays);
+        stats.put("requiredToday", requiredPercent(LocalDate.now()));
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    // ────────────────── Scheduling ──────────────────
+
+    // + مرة بعد الـ startup: سيرفر مقفول بالليل ميفوّتش التقييم
+    @Scheduled(cron = "${fees.overdue.cron:0 0 2 * * *}")
+    @Scheduled(initialDelay = 1, timeUnit = TimeUnit.MINUTES)
+    private void runDueQuietly() {
+        if (!enabled || dueRules.isEmpty()) return;
+        try {
+            evaluate(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Overdue evaluation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // طلاب اتسجلوا قبل balanceDue → بيتحسب من الأرقام مرة واحدة
+    @Scheduled(initialDelay = 0)
+    private void backfillBalanceQuietly() {
+        try {
+            long updated = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("balanceDue").exists(false)),
+                    AggregationUpdate.from(List.of(PaymentLedgerService.balanceStage())),
+                    Student.class).getModifiedCount();
+            if (updated > 0) log.info("Backfilled balanceDue for {} students", updated);
+        } catch (Exception e) {
+            log.warn("balanceDue backfill failed: {}", e.getMessage());
+        }
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    // raw pipeline stage → التاريخ بيتحول هنا بنفس طريقة تخزين LocalDateTime (توقيت السيرفر)
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static double doubleOf(Object value) {
+        return value instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.backend.service;
+
+import com.example.backend.model.CalendarDay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Which days are school days.
+ * <p>
+ * The regular week comes from {@code calendar.working-days}; single days are overridden by
+ * {@link CalendarDay} entries (holidays, make-up days). Outside
+ * {@code calendar.term-start .. calendar.term-end} (when set) nothing is a school day.
+ */
+@Service
+public class SchoolCalendarService {
+
+    @Value("${calendar.working-days:SUNDAY,MONDAY,TUESDAY,WEDNESDAY,THURSDAY}")
+    private List<DayOfWeek> workingDays;
+
+    @Value("${calendar.term-start:}")
+    private String termStart;
+
+    @Value("${calendar.term-end:}")
+    private String termEnd;
+
+    private final MongoTemplate mongoTemplate;
+
+    public SchoolCalendarService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    public boolean isSchoolDay(LocalDate date) {
+        if (!inTerm(date)) return false;
+        CalendarDay override = mongoTemplate.findById(date.toString(), CalendarDay.class);
+        return override != null ? override.getType() == CalendarDay.Type.SCHOOL_DAY : isWorkingWeekday(date);
+    }
+
+    /**
+     * School days of {@code from..to} (inclusive), ascending – one query for the overrides
+     */
+    public List<LocalDate> schoolDays(LocalDate from, LocalDate to) {
+        Map<LocalDate, CalendarDay> overrides = overrides(from, to).stream()
+                .collect(Collectors.toMap(CalendarDay::getDate, Function.identity(), (a, b) -> a));
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (!inTerm(date)) continue;
+            CalendarDay override = overrides.get(date);
+            if (override != null ? override.getType() == CalendarDay.Type.SCHOOL_DAY : isWorkingWeekday(date)) {
+                days.add(date);
+            }
+        }
+        return days;
+    }
+
+    public List<CalendarDay> overrides(LocalDate from, LocalDate to) {
+        Query query = new Query(Criteria.where("date").gte(from).lte(to)).with(Sort.by("date"));
+        return mongoTemplate.find(query, CalendarDay.class);
+    }
+
+    public CalendarDay setDay(LocalDate date, CalendarDay.Type type, String name) {
+        return mongoTemplate.save(new CalendarDay(date, type, name));
+    }
+
+    public boolean removeDay(LocalDate date) {
+        return mongoTemplate.remove(new Query(Criteria.where("_id").is(date.toString())), CalendarDay.class)
+                .getDeletedCount() > 0;
+    }
+
+    /**
+     * First day of the term, or null if not configured
+     */
+    public LocalDate getTermStart() {
+        return parse(termStart);
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("workingDays", workingDays);
+        info.put("termStart", parse(termStart));
+        info.put("termEnd", parse(termEnd));
+        return info;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private boolean isWorkingWeekday(LocalDate date) {
+        return workingDays.contains(date.getDayOfWeek());
+    }
+
+    private boolean inTerm(LocalDate date) {
+        LocalDate start = parse(termStart);
+        LocalDate end = parse(termEnd);
+        return (start == null || !date.isBefore(start)) && (end == null || !date.isAfter(end));
+    }
+
+    private static LocalDate parse(String value) {
+        return value == null || value.isBlank() ? null : LocalDate.parse(value.trim());
+    }
+}
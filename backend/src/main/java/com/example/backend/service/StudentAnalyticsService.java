@@ -0,0 +1,277 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Student;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-aggregated numbers for the student dashboard (monthly attendance, grade averages
+ * per subject and month, exam percentages) – a few KB instead of the whole history.
+ * <p>
+ * Computed by one aggregation ({@code $facet} over the student's embedded arrays) and
+ * cached per student under a stamp of {@code updatedAt} + {@code lastClosedDay}: every
+ * write to the student (attendance, grades, PATCH, the day close) changes one of them, so a
+ * cheap projected read is enough to know whether the cached result is still valid.
+ */
+@Service
+public class StudentAnalyticsService {
+
+    private static final String STUDENTS = "students";
+    private static final String UNKNOWN_SUBJECT = "غير محدد";
+    private static final int RECENT = 5;
+
+    @Value("${analytics.cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${attendance.late-cutoff:08:00}")
+    private String lateCutoffValue;
+
+    private final MongoTemplate mongoTemplate;
+
+    private Map<String, Cached> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StudentAnalyticsService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        // LRU: آخر الطلاب اللي اتفتحوا
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Result types
+    // ────────────────────────────────────────────────────────────────
+
+    /** month = "yyyy-MM"; late is a subset of present */
+    public record MonthAttendance(String month, int present, int late) {
+    }
+
+    public record SubjectMonth(String subject, String month, double average, int count) {
+    }
+
+    /** grades + exams together (the performance curve) */
+    public record MonthAverage(String month, double average, int count) {
+    }
+
+    public record ExamPoint(String examName, LocalDate date, double obtainedMarks, double totalMarks,
+                            double percent, String gradeLetter) {
+    }
+
+    /** type = "grade" / "exam"; subject is the exam name for exams */
+    public record Assessment(String type, String subject, LocalDate date, double score, double maxScore) {
+    }
+
+    /**
+     * @param stamp changes with every write to the student (use as ETag)
+     */
+    public record StudentAnalytics(String studentCode, String stamp,
+                                   int presentDays, int absentDays, int lateDays,
+                                   List<MonthAttendance> attendance,
+                                   List<SubjectMonth> grades,
+                                   List<MonthAverage> performance,
+                                   List<ExamPoint> exams,
+                                   List<Assessment> recent) {
+    }
+
+    private record Cached(String stamp, StudentAnalytics analytics) {
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * @return null if there is no such student
+     */
+    public StudentAnalytics analytics(String studentCode) {
+        Query byCode = new Query(Criteria.where("studentCode").is(studentCode));
+        byCode.fields().include("updatedAt", "lastClosedDay");
+        Student current = mongoTemplate.findOne(byCode, Student.class);
+        if (current == null) {
+            cache.remove(studentCode);
+            return null;
+        }
+        String stamp = stampOf(current);
+        Cached cached = cache.get(studentCode);
+        if (cached != null && cached.stamp().equals(stamp)) {
+            hits.incrementAndGet();
+            return cached.analytics();
+        }
+        misses.incrementAndGet();
+        StudentAnalytics analytics = compute(studentCode, stamp);
+        if (analytics != null) cache.put(studentCode, new Cached(stamp, analytics));
+        return analytics;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cached", cache.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    // ────────────────── Aggregation ──────────────────
+
+    private StudentAnalytics compute(String studentCode, String stamp) {
+        String timezone = ZoneId.systemDefault().getId();
+        LocalTime cutoff = LocalTime.parse(lateCutoffValue.trim());
+
+        Document minuteOfDay = new Document("$add", List.of(
+                new Document("$multiply", List.of(
+                        new Document("$hour", new Document("date", "$attendanceRecords.dateTime").append("timezone", timezone)), 60)),
+                new Document("$minute", new Document("date", "$attendanceRecords.dateTime").append("timezone", timezone))));
+        Document gradePercent = new Document("$multiply", List.of(100, new Document("$divide", List.of("$grades.score",
+                new Document("$cond", List.of(new Document("$gt", List.of("$grades.maxScore", 0)), "$grades.maxScore", 1))))));
+
+        Document facets = new Document()
+                .append("summary", List.of(
+                        new Document("$project", new Document("_id", 0)
+                                .append("presentDays", 1).append("absentDays", 1).append("lateDays", 1))))
+                .append("attendance", List.of(
+                        new Document("$unwind", "$attendanceRecords"),
+                        new Document("$group", new Document("_id", month("$attendanceRecords.dateTime", timezone))
+                                .append("present", new Document("$sum", 1))
+                                .append("late", new Document("$sum", new Document("$cond", List.of(
+                                        new Document("$gte", List.of(minuteOfDay, cutoff.getHour() * 60 + cutoff.getMinute())),
+                                        1, 0))))),
+                        new Document("$sort", new Document("_id", 1))))
+                .append("grades", List.of(
+                        new Document("$unwind", "$grades"),
+                        new Document("$match", new Document("grades.date", new Document("$ne", null))),
+                        new Document("$group", new Document("_id", new Document("subject",
+                                new Document("$ifNull", List.of("$grades.subject", UNKNOWN_SUBJECT)))
+                                .append("month", month("$grades.date", timezone)))
+                                .append("sum", new Document("$sum", gradePercent))
+                                .append("count", new Document("$sum", 1))),
+                        new Document("$sort", new Document("_id.month", 1).append("_id.subject", 1))))
+                .append("exams", List.of(
+                        new Document("$unwind", "$examResults"),
+                        new Document("$replaceRoot", new Document("newRoot", "$examResults")),
+                        new Document("$sort", new Document("date", 1))))
+                .append("recentGrades", List.of(
+                        new Document("$unwind", "$grades"),
+                        new Document("$replaceRoot", new Document("newRoot", "$grades")),
+                        new Document("$sort", new Document("date", -1)),
+                        new Document("$limit", RECENT)));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("studentCode").is(studentCode)),
+                Aggregation.stage(new Document("$facet", facets)));
+        Document result = mongoTemplate.aggregate(aggregation, STUDENTS, Document.class).getUniqueMappedResult();
+        if (result == null) return null;
+
+        List<Document> summaryDocs = result.getList("summary", Document.class);
+        if (summaryDocs.isEmpty()) return null;
+        Document summary = summaryDocs.get(0);
+
+        List<MonthAttendance> attendance = new ArrayList<>();
+        for (Document d : result.getList("attendance", Document.class)) {
+            attendance.add(new MonthAttendance(d.getString("_id"), intOf(d.get("present")), intOf(d.get("late"))));
+        }
+
+        // المنحنى: درجات + امتحانات لكل شهر (نفس حساب الداشبورد القديم)
+        Map<String, double[]> performance = new TreeMap<>();
+        List<SubjectMonth> grades = new ArrayList<>();
+        for (Document d : result.getList("grades", Document.class)) {
+            Document key = d.get("_id", Document.class);
+            double sum = doubleOf(d.get("sum"));
+            int count = intOf(d.get("count"));
+            grades.add(new SubjectMonth(key.getString("subject"), key.getString("month"), round(sum / count), count));
+            double[] month = performance.computeIfAbsent(key.getString("month"), k -> new double[2]);
+            month[0] += sum;
+            month[1] += count;
+        }
+
+        List<ExamPoint> exams = new ArrayList<>();
+        List<Assessment> recent = new ArrayList<>();
+        for (Document d : result.getList("exams", Document.class)) {
+            LocalDate date = dateOf(d.get("date"));
+            double obtained = doubleOf(d.get("obtainedMarks"));
+            double total = doubleOf(d.get("totalMarks"));
+            double percent = obtained * 100.0 / (total > 0 ? total : 1);
+            exams.add(new ExamPoint(d.getString("examName"), date, obtained, total, round(percent), d.getString("gradeLetter")));
+            recent.add(new Assessment("exam", d.getString("examName"), date, obtained, total));
+            if (date != null) {
+                double[] month = performance.computeIfAbsent(date.toString().substring(0, 7), k -> new double[2]);
+                month[0] += percent;
+                month[1] += 1;
+            }
+        }
+        for (Document d : result.getList("recentGrades", Document.class)) {
+            String subject = d.getString("subject");
+            recent.add(new Assessment("grade", subject != null ? subject : UNKNOWN_SUBJECT, dateOf(d.get("date")),
+                    doubleOf(d.get("score")), doubleOf(d.get("maxScore"))));
+        }
+        recent.sort(Comparator.comparing(Assessment::date, Comparator.nullsLast(Comparator.reverseOrder())));
+        if (recent.size() > RECENT) recent = new ArrayList<>(recent.subList(0, RECENT));
+
+        List<MonthAverage> curve = new ArrayList<>();
+        performance.forEach((month, v) -> curve.add(new MonthAverage(month, round(v[0] / v[1]), (int) v[1])));
+
+        return new StudentAnalytics(studentCode, stamp,
+                intOf(summary.get("presentDays")), intOf(summary.get("absentDays")), intOf(summary.get("lateDays")),
+                attendance, grades, curve, exams, recent);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static String stampOf(Student student) {
+        LocalDateTime updatedAt = student.getUpdatedAt();
+        return (updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0)
+                + "-" + (student.getLastClosedDay() != null ? student.getLastClosedDay() : "");
+    }
+
+    private static Document month(String field, String timezone) {
+        return new Document("$dateToString", new Document("format", "%Y-%m")
+                .append("date", field)
+                .append("timezone", timezone));
+    }
+
+    // LocalDate بتتخزن كـ Date أول اليوم بتوقيت السيرفر
+    private static LocalDate dateOf(Object value) {
+        return value instanceof Date date ? date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate() : null;
+    }
+
+    private static int intOf(Object value) {
+        return value instanceof Number n ? n.intValue() : 0;
+    }
+
+    private static double doubleOf(Object value) {
+        return value instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
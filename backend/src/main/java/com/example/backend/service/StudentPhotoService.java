@@ -0,0 +1,192 @@
+package com.example.backend.service;
+
+import com.example.backend.model.FaceGalleryManifest;
+import com.example.backend.model.FaceGalleryManifest.FileStamp;
+import com.example.backend.model.Student;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Display photos of students in a few fixed sizes.
+ * <p>
+ * The source is the student's {@code profilePictureUrl} when it names one of their
+ * gallery images ({@code <hh>/<hash>.jpg}), otherwise their oldest gallery image. Each
+ * size is generated once, on first request, into
+ * {@code <face.photo.cache-folder>/<size>/<hh>/<key>.jpg} – the key is the source's
+ * content hash, so a variant never goes stale and students sharing an image share it.
+ * Serving is then just a file send; see {@code StudentController#getPhoto}.
+ */
+@Service
+public class StudentPhotoService {
+
+    @Value("${face.register.folder}")
+    private String registerFolder;
+
+    /** Must be outside face.register.folder (the gallery watcher would pick variants up) */
+    @Value("${face.photo.cache-folder:photo_cache}")
+    private String cacheFolder;
+
+    @Value("${face.photo.sizes:64,128,256}")
+    private List<Integer> sizes;
+
+    private final MongoTemplate mongoTemplate;
+    private final FaceImageProcessor imageProcessor;
+
+    // one generation per variant; concurrent requests for it wait for the same result
+    private final Map<Path, CompletableFuture<Path>> generating = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+
+    public StudentPhotoService(MongoTemplate mongoTemplate, FaceImageProcessor imageProcessor) {
+        this.mongoTemplate = mongoTemplate;
+        this.imageProcessor = imageProcessor;
+    }
+
+    // ────────────────────────────────────────────────────────────────
+    // Public API
+    // ────────────────────────────────────────────────────────────────
+
+    /**
+     * Variant of the student's photo closest to {@code requestedSize} (next configured size up)
+     *
+     * @return empty when the student has no usable image
+     */
+    public Optional<Photo> photo(String studentCode, int requestedSize) throws IOException {
+        Source source = source(studentCode);
+        if (source == null) return Optional.empty();
+
+        int size = snap(requestedSize);
+        Path variant = Paths.get(cacheFolder, String.valueOf(size), source.key().substring(0, 2), source.key() + ".jpg");
+        if (Files.isRegularFile(variant)) {
+            hits.incrementAndGet();
+        } else if (generate(source.file(), variant, size) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Photo(variant, Files.size(variant), Files.getLastModifiedTime(variant).toMillis(),
+                "\"" + source.key() + "-" + size + "\""));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sizes", sizes);
+        stats.put("hits", hits.get());
+        stats.put("generated", generated.get());
+        stats.put("generating", generating.size());
+        return stats;
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private int snap(int requested) {
+        List<Integer> sorted = sizes.stream().sorted().toList();
+        for (int size : sorted) {
+            if (size >= requested) return size;
+        }
+        return sorted.get(sorted.size() - 1);
+    }
+
+    private Source source(String studentCode) {
+        Path dir = Paths.get(registerFolder, studentCode);
+
+        Query studentQuery = new Query(Criteria.where("studentCode").is(studentCode));
+        studentQuery.fields().include("profilePictureUrl");
+        Student student = mongoTemplate.findOne(studentQuery, Student.class);
+        if (student == null) return null;
+
+        String chosen = student.getProfilePictureUrl();
+        if (chosen != null && FaceImageStore.contentHashOf(chosen) != null && Files.isRegularFile(dir.resolve(chosen))) {
+            return new Source(dir.resolve(chosen), FaceImageStore.contentHashOf(chosen));
+        }
+
+        Query manifestQuery = new Query(Criteria.where("_id").is(studentCode));
+        manifestQuery.fields().include("files");
+        FaceGalleryManifest manifest = mongoTemplate.findOne(manifestQuery, FaceGalleryManifest.class);
+        if (manifest == null) return null;
+
+        return manifest.getFiles().stream()
+                .sorted(Comparator.comparingLong(FileStamp::getModifiedAt).thenComparing(FileStamp::getName))
+                .filter(file -> Files.isRegularFile(dir.resolve(file.getName())))
+                .findFirst()
+                .map(file -> new Source(dir.resolve(file.getName()), keyOf(studentCode, file)))
+                .orElse(null);
+    }
+
+    // legacy (non content-addressed) files: key from name + size + mtime, so edits still bust the cache
+    private static String keyOf(String studentCode, FileStamp file) {
+        String hash = FaceImageStore.contentHashOf(file.getName());
+        if (hash != null) return hash;
+        String stamp = studentCode + "/" + file.getName() + ":" + file.getSize() + ":" + file.getModifiedAt();
+        return FaceImageStore.sha256Hex(stamp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path generate(Path source, Path variant, int size) throws IOException {
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = generating.putIfAbsent(variant, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            byte[] jpeg = imageProcessor.downscale(Files.readAllBytes(source), size);
+            if (jpeg == null) {
+                mine.complete(null);
+                return null;
+            }
+            Files.createDirectories(variant.getParent());
+            Path temp = Files.createTempFile(variant.getParent(), ".variant-", ".part");
+            try {
+                Files.write(temp, jpeg);
+                try {
+                    Files.move(temp, variant, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            generated.incrementAndGet();
+            mine.complete(variant);
+            return variant;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            generating.remove(variant);
+        }
+    }
+
+    // ────────────────── Types ──────────────────
+
+    private record Source(Path file, String key) {
+    }
+
+    /**
+     * @param etag strong validator – changes whenever the source image or size changes
+     */
+    public record Photo(Path file, long length, long lastModified, String etag) {
+    }
+}
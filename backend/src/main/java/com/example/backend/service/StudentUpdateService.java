@@ -0,0 +1,204 @@
+package com.example.backend.service;
+
+import com.example.backend.model.Student;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.util.Map.entry;
+
+/**
+ * Partial updates of a student's profile fields.
+ * <p>
+ * The allowed fields are converted and type-checked up front, then written with a single
+ * {@code $set} (plus {@code $inc version}) – the document is never loaded and saved back,
+ * so concurrent attendance / grade appends are never overwritten and a one-field change
+ * is one small write. A {@code totalFees} change is one pipeline update instead: the
+ * {@code $set} (version included) followed by {@link PaymentLedgerService#balanceStage()},
+ * so {@code balanceDue} / {@code paymentStatus} never lag behind the new fees.
+ * <p>
+ * Optimistic concurrency: {@code version} counts profile changes. With an expected
+ * version (If-Match) it is part of the update filter, so two editors of the same student
+ * cannot silently overwrite each other – the second gets {@link Status#VERSION_MISMATCH}.
+ */
+@Service
+public class StudentUpdateService {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentUpdateService.class);
+
+    // الحقول المسموح بتعديلها ونوع كل واحد (القيمة بتتحول قبل ما تتكتب)
+    // amountPaid / paymentStatus مش هنا: بيتغيروا بس من خلال الـ ledger (PaymentLedgerService)
+    private static final Map<String, Function<Object, Object>> FIELDS = Map.ofEntries(
+            entry("fullName", StudentUpdateService::requiredText),
+            entry("className", StudentUpdateService::text),
+            entry("division", StudentUpdateService::text),
+            entry("dateOfBirth", StudentUpdateService::date),
+            entry("gender", StudentUpdateService::text),
+            entry("address", StudentUpdateService::text),
+            entry("guardianName", StudentUpdateService::text),
+            entry("guardianPhonePrimary", StudentUpdateService::text),
+            entry("guardianPhoneSecondary", StudentUpdateService::text),
+            entry("guardianEmail", StudentUpdateService::text),
+            entry("studentPhone", StudentUpdateService::text),
+            entry("studentEmail", StudentUpdateService::text),
+            entry("totalFees", StudentUpdateService::amount),
+            entry("currency", StudentUpdateService::requiredText),
+            entry("paymentMethod", StudentUpdateService::text),
+            entry("notes", StudentUpdateService::text),
+            entry("active", StudentUpdateService::bool)
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    public StudentUpdateService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        VERSION_MISMATCH
+    }
+
+    /**
+     * @param student the updated document (UPDATED) or the current one (VERSION_MISMATCH); null if not found
+     */
+    public record PatchResult(Status status, Student student) {
+    }
+
+    /**
+     * Apply {@code changes} to the student in one atomic update
+     *
+     * @param expectedVersion the version the client edited (If-Match), or null for no check
+     * @throws IllegalArgumentException for an empty patch, unknown / read-only fields or values of the wrong type
+     */
+    public PatchResult patch(String studentCode, Map<String, Object> changes, Long expectedVersion) {
+        Map<String, Object> values = convert(changes);
+        UpdateDefinition update = values.containsKey("totalFees") ? rebalancingUpdate(values) : update(values);
+
+        Criteria criteria = Criteria.where("studentCode").is(studentCode);
+        if (expectedVersion != null) {
+            // مستندات قديمة من غير version → بتتعامل كـ 0
+            criteria = expectedVersion == 0
+                    ? criteria.orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false))
+                    : criteria.and("version").is(expectedVersion);
+        }
+
+        Student updated = mongoTemplate.findAndModify(new Query(criteria), update,
+                FindAndModifyOptions.options().returnNew(true), Student.class);
+        if (updated != null) {
+            log.info("Student {} patched ({}) → version {}", studentCode, changes.keySet(), updated.getVersion());
+            return new PatchResult(Status.UPDATED, updated);
+        }
+
+        Student current = mongoTemplate.findOne(new Query(Criteria.where("studentCode").is(studentCode)), Student.class);
+        if (current == null) {
+            return new PatchResult(Status.NOT_FOUND, null);
+        }
+        return new PatchResult(Status.VERSION_MISMATCH, current);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    /**
+     * @return the converted values by field (insertion order of the patch)
+     */
+    private static Map<String, Object> convert(Map<String, Object> changes) {
+        if (changes == null || changes.isEmpty()) {
+            throw new IllegalArgumentException("لا توجد حقول للتعديل");
+        }
+        List<String> unsupported = new ArrayList<>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        changes.forEach((field, value) -> {
+            Function<Object, Object> converter = FIELDS.get(field);
+            if (converter == null) {
+                unsupported.add(field);
+                return;
+            }
+            try {
+                values.put(field, converter.apply(value));
+            } catch (ClassCastException | NullPointerException | DateTimeParseException e) {
+                throw new IllegalArgumentException("قيمة غير صحيحة للحقل " + field);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("قيمة غير صحيحة للحقل " + field + ": " + e.getMessage());
+            }
+        });
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("حقول غير قابلة للتعديل: " + String.join(", ", unsupported));
+        }
+        return values;
+    }
+
+    private static Update update(Map<String, Object> values) {
+        Update update = new Update();
+        values.forEach(update::set);
+        return update.set("updatedAt", LocalDateTime.now()).inc("version", 1);
+    }
+
+    // المصروفات اتغيرت → الـ $set والرصيد والحالة في نفس الـ write (دفعة بتتسجل في نفس اللحظة بتعمل نفس الحساب)
+    private static AggregationUpdate rebalancingUpdate(Map<String, Object> values) {
+        Document set = new Document();
+        // جوه الـ pipeline القيمة expression: نص بيبدأ بـ $ هيتقري كاسم حقل من غير $literal
+        values.forEach((field, value) -> set.append(field, value instanceof LocalDate date
+                ? toDate(date.atStartOfDay())
+                : new Document("$literal", value)));
+        set.append("updatedAt", toDate(LocalDateTime.now()))
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L)));
+        return AggregationUpdate.from(List.of(
+                Aggregation.stage(new Document("$set", set)),
+                PaymentLedgerService.balanceStage()));
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Object text(Object value) {
+        if (value == null) return null;
+        String s = ((String) value).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static Object requiredText(Object value) {
+        Object s = text(value);
+        if (s == null) throw new IllegalArgumentException("مطلوب");
+        return s;
+    }
+
+    private static Object date(Object value) {
+        return value == null ? null : LocalDate.parse((String) value);
+    }
+
+    private static Object amount(Object value) {
+        double amount = ((Number) value).doubleValue();
+        if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("لازم يكون رقم موجب");
+        }
+        return amount;
+    }
+
+    private static Object bool(Object value) {
+        return Objects.requireNonNull((Boolean) value);
+    }
+}
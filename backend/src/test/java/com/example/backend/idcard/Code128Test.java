@@ -0,0 +1,79 @@
+package com.example.backend.idcard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Expected symbols are written out from the Code 128 table (ISO/IEC 15417): value → widths.
+ */
+class Code128Test {
+
+    private static final String START_B = "211214";
+    private static final String START_C = "211232";
+    private static final String STOP = "2331112";
+
+    @Test
+    void evenLengthDigitsUseCodeSetC() {
+        // 12, 34; checksum (105 + 12·1 + 34·2) % 103 = 82
+        assertArrayEquals(widths(START_C, "112232", "131123", "121241", STOP), Code128.encode("1234"));
+    }
+
+    @Test
+    void otherValuesUseCodeSetB() {
+        // 'A' = 33; checksum (104 + 33·1) % 103 = 34
+        assertArrayEquals(widths(START_B, "111323", "131123", STOP), Code128.encode("A"));
+        // odd number of digits: '1' = 17, '2' = 18, '3' = 19; checksum (104 + 17 + 36 + 57) % 103 = 8
+        assertArrayEquals(widths(START_B, "123221", "223211", "221132", "132212", STOP), Code128.encode("123"));
+    }
+
+    @Test
+    void checksumWrapsModulo103() {
+        // "S-1": 'S' = 51, '-' = 13, '1' = 17; (104 + 51 + 26 + 51) % 103 = 26
+        assertArrayEquals(widths(START_B, "213113", "122132", "123221", "321221", STOP), Code128.encode("S-1"));
+    }
+
+    @Test
+    void everySymbolIsElevenModulesAndStopIsThirteen() {
+        for (String value : new String[]{"0", "00", "2024001", "20240017", "Student ~ 42"}) {
+            int[] widths = Code128.encode(value);
+            boolean numeric = value.length() % 2 == 0 && value.chars().allMatch(Character::isDigit);
+            int symbols = (numeric ? value.length() / 2 : value.length()) + 2;   // start + data + checksum
+
+            assertEquals(symbols * 6 + 7, widths.length, value);
+            assertEquals(symbols * 11 + 13, Code128.moduleCount(widths), value);
+            for (int s = 0; s < symbols; s++) {
+                assertEquals(11, Arrays.stream(widths, s * 6, s * 6 + 6).sum(), value + " symbol " + s);
+            }
+            assertArrayEquals(digits(STOP), Arrays.copyOfRange(widths, widths.length - 7, widths.length), value);
+        }
+    }
+
+    @Test
+    void numericCodesAreAboutHalfTheWidth() {
+        assertEquals(11 * 6 + 13, Code128.moduleCount(Code128.encode("20240017")));
+        assertEquals(11 * 9 + 13, Code128.moduleCount(Code128.encode("2024001")));
+    }
+
+    @Test
+    void unsupportedValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Code128.encode(""));
+        assertThrows(IllegalArgumentException.class, () -> Code128.encode(null));
+        assertThrows(IllegalArgumentException.class, () -> Code128.encode("طالب"));
+        assertThrows(IllegalArgumentException.class, () -> Code128.encode("A\tB"));
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static int[] widths(String... patterns) {
+        return digits(String.join("", patterns));
+    }
+
+    private static int[] digits(String pattern) {
+        return pattern.chars().map(c -> c - '0').toArray();
+    }
+}
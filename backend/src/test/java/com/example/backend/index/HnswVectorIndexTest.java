@@ -0,0 +1,121 @@
+package com.example.backend.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HNSW against the exact {@link FlatVectorIndex} on a face-like gallery: a few noisy
+ * embeddings per label around the label's own direction, queried with a fresh sample.
+ */
+class HnswVectorIndexTest {
+
+    private static final int DIMENSION = 128;
+    private static final int LABELS = 500;
+    private static final int PER_LABEL = 4;
+    private static final int K = 10;
+
+    private final Random random = new Random(7);
+    private float[][] centers;
+    private FlatVectorIndex flat;
+    private HnswVectorIndex hnsw;
+
+    @BeforeEach
+    void setUp() {
+        centers = new float[LABELS][];
+        flat = new FlatVectorIndex(DIMENSION);
+        hnsw = new HnswVectorIndex(DIMENSION, 16, 200, 64);
+        for (int label = 0; label < LABELS; label++) {
+            centers[label] = gaussian();
+            for (int i = 0; i < PER_LABEL; i++) {
+                float[] vector = near(centers[label], 0.3f);
+                flat.add(label(label), vector);
+                hnsw.add(label(label), vector);
+            }
+        }
+    }
+
+    @Test
+    void recallAgainstFlatIndex() {
+        int queries = 200;
+        int found = 0;
+        int bestMatches = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = near(centers[random.nextInt(LABELS)], 0.3f);
+            List<SearchHit> exact = flat.search(query, K);
+            List<SearchHit> approximate = hnsw.search(query, K);
+
+            Set<String> approximateLabels = new HashSet<>();
+            approximate.forEach(hit -> approximateLabels.add(hit.label()));
+            for (SearchHit hit : exact) {
+                if (approximateLabels.contains(hit.label())) found++;
+            }
+            if (exact.get(0).label().equals(approximate.get(0).label())) bestMatches++;
+        }
+        double recall = (double) found / (queries * K);
+        assertTrue(recall >= 0.95, "recall@" + K + " = " + recall);
+        assertEquals(queries, bestMatches, "the best match must always agree with the exact search");
+    }
+
+    @Test
+    void resultsAreOnePerLabelBestFirst() {
+        List<SearchHit> hits = hnsw.search(centers[3], K);
+
+        assertEquals(K, hits.size());
+        assertEquals(label(3), hits.get(0).label());
+        Set<String> labels = new HashSet<>();
+        for (int i = 0; i < hits.size(); i++) {
+            assertTrue(labels.add(hits.get(i).label()), "duplicate label " + hits.get(i).label());
+            if (i > 0) assertTrue(hits.get(i - 1).score() >= hits.get(i).score());
+        }
+    }
+
+    @Test
+    void removedLabelIsNeverReturned() {
+        assertEquals(PER_LABEL, hnsw.remove(label(3)));
+
+        assertEquals((LABELS - 1) * PER_LABEL, hnsw.size());
+        for (SearchHit hit : hnsw.search(centers[3], K)) {
+            assertFalse(hit.label().equals(label(3)));
+        }
+        assertEquals(0, hnsw.remove(label(3)));
+    }
+
+    @Test
+    void clearEmptiesTheIndex() {
+        hnsw.clear();
+
+        assertEquals(0, hnsw.size());
+        assertTrue(hnsw.search(centers[0], K).isEmpty());
+        hnsw.add("again", centers[0]);
+        assertEquals("again", hnsw.search(centers[0], 1).get(0).label());
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    private static String label(int i) {
+        return "S-" + i;
+    }
+
+    private float[] gaussian() {
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) v[i] = (float) random.nextGaussian();
+        return VectorMath.normalize(v);
+    }
+
+    // center + noise of the given length, so same-label cosine is ~0.95
+    private float[] near(float[] center, float noise) {
+        float[] n = gaussian();
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) v[i] = center[i] + noise * n[i];
+        return v;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.backend.index;
+
+import com.example.backend.index.RankTree.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RankTreeTest {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparing(Entry::label);
+
+    @Test
+    void competitionRankAndPercentile() {
+        RankTree tree = new RankTree();
+        tree.insert(90, "A");
+        tree.insert(80, "B");
+        tree.insert(80, "C");
+        tree.insert(70, "D");
+
+        // rank = countAbove + 1 → 1, 2, 2, 4
+        assertEquals(0, tree.countAbove(90));
+        assertEquals(1, tree.countAbove(80));
+        assertEquals(3, tree.countAbove(70));
+        assertEquals(3, tree.countAtLeast(80));
+        assertEquals(4, tree.countAtLeast(0));
+        assertEquals(0, tree.countAtLeast(95));
+
+        // percentile rank 100 × (below + ½ equal) / size, as RankingService computes it
+        assertEquals(87.5, percentile(tree, 90));
+        assertEquals(50.0, percentile(tree, 80));
+        assertEquals(12.5, percentile(tree, 70));
+    }
+
+    @Test
+    void topIsBestFirstThenByLabel() {
+        RankTree tree = new RankTree();
+        tree.insert(80, "C");
+        tree.insert(90, "A");
+        tree.insert(80, "B");
+        tree.insert(70, "D");
+
+        assertEquals(List.of(new Entry("A", 90), new Entry("B", 80), new Entry("C", 80)), tree.top(3));
+        assertEquals(4, tree.top(10).size());
+        assertTrue(tree.top(0).isEmpty());
+    }
+
+    @Test
+    void removeTakesOutOnlyTheExactEntry() {
+        RankTree tree = new RankTree();
+        tree.insert(80, "B");
+        tree.insert(80, "C");
+
+        assertFalse(tree.remove(80, "A"));
+        assertFalse(tree.remove(70, "B"));
+        assertTrue(tree.remove(80, "B"));
+        assertEquals(List.of(new Entry("C", 80)), tree.top(5));
+        assertTrue(tree.remove(80, "C"));
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    void matchesSortedListUnderRandomUpdates() {
+        Random random = new Random(11);
+        RankTree tree = new RankTree();
+        List<Entry> model = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            if (model.isEmpty() || random.nextInt(3) > 0) {
+                // few distinct scores → many ties
+                Entry entry = new Entry("S-" + step, random.nextInt(41) * 2.5);
+                tree.insert(entry.score(), entry.label());
+                model.add(entry);
+            } else {
+                Entry entry = model.remove(random.nextInt(model.size()));
+                assertTrue(tree.remove(entry.score(), entry.label()));
+            }
+
+            if (step % 250 == 0) {
+                model.sort(ORDER);
+                assertEquals(model.size(), tree.size());
+                assertEquals(model.subList(0, Math.min(20, model.size())), tree.top(20));
+                for (double score = -2.5; score <= 102.5; score += 2.5) {
+                    double s = score;
+                    assertEquals(model.stream().filter(e -> e.score() > s).count(), tree.countAbove(s), "above " + s);
+                    assertEquals(model.stream().filter(e -> e.score() >= s).count(), tree.countAtLeast(s), "at least " + s);
+                }
+            }
+        }
+        model.sort(ORDER);
+        assertEquals(model, tree.top(model.size()));
+    }
+
+    private static double percentile(RankTree tree, double score) {
+        int above = tree.countAbove(score);
+        int atLeast = tree.countAtLeast(score);
+        return 100.0 * ((tree.size() - atLeast) + 0.5 * (atLeast - above)) / tree.size();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.backend.model;
+
+import com.example.backend.model.PackedEmbedding.Encoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedEmbeddingTest {
+
+    private static final int DIMENSION = 512;
+
+    @Test
+    void float32RoundTripIsExact() {
+        float[] vector = embedding(1);
+        PackedEmbedding packed = PackedEmbedding.of(vector);
+
+        assertEquals(4 + DIMENSION * 4, packed.toBytes().length);
+        assertArrayEquals(vector, packed.toFloatArray());
+        assertEquals(packed, PackedEmbedding.fromBytes(packed.toBytes()));
+    }
+
+    @Test
+    void float16RoundTripKeepsHalfPrecision() {
+        float[] vector = embedding(2);
+        PackedEmbedding packed = PackedEmbedding.fromBytes(PackedEmbedding.of(vector, Encoding.FLOAT16).toBytes());
+
+        assertEquals(Encoding.FLOAT16, packed.getEncoding());
+        assertEquals(4 + DIMENSION * 2, packed.toBytes().length);
+        float[] decoded = packed.toFloatArray();
+        for (int i = 0; i < DIMENSION; i++) {
+            // 10-bit mantissa, rounded to nearest → relative error ≤ 2^-11 (values here are normal halves)
+            assertEquals(vector[i], decoded[i], Math.abs(vector[i]) / 2048f + 1e-7f, "dimension " + i);
+        }
+        assertTrue(cosine(vector, decoded) > 0.99999, "cosine " + cosine(vector, decoded));
+    }
+
+    @Test
+    void int8RoundTripStaysWithinHalfAStep() {
+        float[] vector = embedding(3);
+        PackedEmbedding packed = PackedEmbedding.fromBytes(PackedEmbedding.of(vector, Encoding.INT8).toBytes());
+
+        assertEquals(Encoding.INT8, packed.getEncoding());
+        assertEquals(4 + 4 + DIMENSION, packed.toBytes().length);
+        float maxAbs = 0f;
+        for (float v : vector) maxAbs = Math.max(maxAbs, Math.abs(v));
+        float step = maxAbs / 127f;
+        float[] decoded = packed.toFloatArray();
+        for (int i = 0; i < DIMENSION; i++) {
+            assertEquals(vector[i], decoded[i], step / 2 + 1e-6f, "dimension " + i);
+        }
+        assertTrue(cosine(vector, decoded) > 0.999, "cosine " + cosine(vector, decoded));
+    }
+
+    @Test
+    void int8OfZeroVectorDecodesToZero() {
+        float[] decoded = PackedEmbedding.of(new float[8], Encoding.INT8).toFloatArray();
+
+        assertArrayEquals(new float[8], decoded);
+    }
+
+    @Test
+    void halfPrecisionSpecialValues() {
+        float[] exact = {0f, -0f, 1f, -2f, 0.5f, 65504f, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                (float) Math.pow(2, -24), (float) Math.pow(2, -14)};
+        for (float value : exact) {
+            assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(PackedEmbedding.fromHalf(PackedEmbedding.toHalf(value))),
+                    "value " + value);
+        }
+        assertTrue(Float.isNaN(PackedEmbedding.fromHalf(PackedEmbedding.toHalf(Float.NaN))));
+        assertEquals(Float.POSITIVE_INFINITY, PackedEmbedding.fromHalf(PackedEmbedding.toHalf(1e6f)));
+        assertEquals(0f, PackedEmbedding.fromHalf(PackedEmbedding.toHalf(1e-10f)));
+    }
+
+    @Test
+    void withEncodingReencodesOrReturnsItself() {
+        PackedEmbedding packed = PackedEmbedding.of(embedding(4));
+
+        assertSame(packed, packed.withEncoding(Encoding.FLOAT32));
+        PackedEmbedding half = packed.withEncoding(Encoding.FLOAT16);
+        assertEquals(Encoding.FLOAT16, half.getEncoding());
+        assertEquals(DIMENSION, half.getDimension());
+    }
+
+    @Test
+    void legacyRawFloat32BlobIsAccepted() {
+        float[] vector = embedding(5);
+        ByteBuffer raw = ByteBuffer.allocate(DIMENSION * 4).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asFloatBuffer().put(vector);
+
+        PackedEmbedding packed = PackedEmbedding.fromBytes(raw.array());
+
+        assertEquals(Encoding.FLOAT32, packed.getEncoding());
+        assertArrayEquals(vector, packed.toFloatArray());
+    }
+
+    @Test
+    void invalidInputIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PackedEmbedding.of(new float[0]));
+        assertThrows(IllegalArgumentException.class, () -> PackedEmbedding.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> PackedEmbedding.fromBytes(new byte[7]));
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    // L2-normalized, like the embeddings face.py returns
+    private static float[] embedding(long seed) {
+        Random random = new Random(seed);
+        float[] v = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) v[i] *= inv;
+        return v;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Offline stand-in for face.py for tests, started only with the {@code face-stub} profile
+ * ({@code @ActiveProfiles("face-stub")}).
+ * <p>
+ * Speaks the same JSON as the real sidecar. Embeddings are derived from the SHA-256 of
+ * the image bytes, so the same photo always yields the same vector and the whole
+ * enrol → search → attend path can be exercised without insightface. Latency and a
+ * failure rate can be injected to exercise hedging and the circuit breaker.
+ */
+@Component
+@Profile("face-stub")
+public class FaceServiceStub {
+
+    private static final Logger log = LoggerFactory.getLogger(FaceServiceStub.class);
+
+    @Value("${face.stub.port:8001}")
+    private int port;
+
+    @Value("${face.index.dimension:512}")
+    private int dimension;
+
+    /** If set, /recognize reports every frame as this label */
+    @Value("${face.stub.recognize-as:}")
+    private String recognizeAs;
+
+    @Value("${face.stub.latency-ms:0}")
+    private long latencyMs;
+
+    @Value("${face.stub.failure-rate:0.0}")
+    private double failureRate;
+
+    private final ObjectMapper objectMapper;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FaceServiceStub(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/health", ex -> respond(ex, Map.of("status", "healthy", "model", "stub")));
+        server.createContext("/recognize", ex -> handle(ex, body -> recognize(image(body.get("image")))));
+        server.createContext("/recognize_batch", ex -> handle(ex, body -> {
+            List<Object> items = new ArrayList<>();
+            body.get("images").forEach(img -> items.add(recognize(image(img))));
+            return Map.of("status", "success", "items", items);
+        }));
+        server.createContext("/embed", ex -> handle(ex, body -> embed(image(body.get("image")))));
+        server.createContext("/embed_batch", ex -> handle(ex, body -> {
+            List<Object> items = new ArrayList<>();
+            body.get("images").forEach(img -> items.add(embed(image(img))));
+            return Map.of("status", "success", "items", items);
+        }));
+        server.createContext("/register_new_face", ex -> handle(ex, body ->
+                Map.of("status", "success", "message", "stub registered " + body.path("student_code").asText())));
+        server.start();
+        log.warn("Face service STUB listening on 127.0.0.1:{} (recognizeAs='{}', latency={}ms, failureRate={})",
+                port, recognizeAs, latencyMs, failureRate);
+    }
+
+    private interface Handler {
+        Object apply(JsonNode body) throws Exception;
+    }
+
+    private void handle(HttpExchange ex, Handler handler) throws IOException {
+        try {
+            if (latencyMs > 0) Thread.sleep(latencyMs);
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                respond(ex, 503, Map.of("detail", "stub injected failure"));
+                return;
+            }
+            JsonNode body = objectMapper.readTree(ex.getRequestBody());
+            respond(ex, 200, handler.apply(body));
+        } catch (Exception e) {
+            respond(ex, 400, Map.of("detail", "stub error: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> recognize(byte[] image) {
+        boolean match = recognizeAs != null && !recognizeAs.isBlank();
+        Map<String, Object> face = new LinkedHashMap<>();
+        face.put("bbox", List.of(100, 80, 220, 230));
+        face.put("name", match ? recognizeAs : "Unknown");
+        face.put("confidence", match ? 0.9 : 0.2);
+        face.put("similarity", match ? 0.9 : 0.2);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("status", "success");
+        out.put("faces_detected", 1);
+        out.put("results", List.of(face));
+        out.put("match_success", match);
+        out.put("best_match", match ? Map.of("name", recognizeAs, "confidence", 0.9) : null);
+        return out;
+    }
+
+    private Map<String, Object> embed(byte[] image) {
+        Map<String, Object> face = new LinkedHashMap<>();
+        face.put("bbox", List.of(100, 80, 220, 230));
+        face.put("det_score", 0.99);
+        face.put("embedding", deterministicEmbedding(image));
+        return Map.of("status", "success", "faces_detected", 1, "faces", List.of(face));
+    }
+
+    private float[] deterministicEmbedding(byte[] image) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(image);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        Random random = new Random(ByteBuffer.wrap(digest).getLong());
+        float[] v = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) v[i] *= inv;
+        return v;
+    }
+
+    private static byte[] image(JsonNode node) {
+        String value = node == null ? "" : node.asText();
+        if (value.startsWith("data:image")) value = value.substring(value.indexOf(',') + 1);
+        return Base64.getDecoder().decode(value);
+    }
+
+    private void respond(HttpExchange ex, Object body) throws IOException {
+        respond(ex, 200, body);
+    }
+
+    private void respond(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, json.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(json);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            log.info("Face service stub stopped");
+        }
+    }
+}
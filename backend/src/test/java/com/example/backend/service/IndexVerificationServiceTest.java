@@ -0,0 +1,106 @@
+package com.example.backend.service;
+
+import com.example.backend.config.MongoConfig;
+import com.example.backend.config.MongoIndexes;
+import com.example.backend.service.IndexVerificationService.IndexStatus;
+import com.example.backend.service.IndexVerificationService.PlanCheck;
+import com.example.backend.service.IndexVerificationService.PlanStatus;
+import com.example.backend.service.IndexVerificationService.Status;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every {@link MongoIndexes#QUERY_SHAPES} entry against a real mongod with the declared indexes:
+ * a COLLSCAN or an in-memory SORT fails the build. Skipped where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class IndexVerificationServiceTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static IndexVerificationService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        client = MongoClients.create(MONGO.getConnectionString());
+        MongoTemplate template = template(client);
+        template.getDb().drop();
+        service = new IndexVerificationService(template);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (client != null) client.close();
+    }
+
+    @Test
+    void everyQueryShapeIsServedByAnIndex() {
+        List<IndexStatus> indexes = service.ensureIndexes();
+        List<IndexStatus> problems = indexes.stream()
+                .filter(s -> s.status() == Status.CONFLICT || s.status() == Status.FAILED)
+                .toList();
+        assertTrue(problems.isEmpty(), "index problems: " + problems);
+
+        List<PlanCheck> plans = service.checkPlans();
+        assertEquals(MongoIndexes.QUERY_SHAPES.size(), plans.size());
+        List<PlanCheck> unserved = plans.stream()
+                .filter(p -> p.status() != PlanStatus.INDEXED)
+                .toList();
+        assertTrue(unserved.isEmpty(), "query shapes not served by an index: " + unserved);
+    }
+
+    // ────────────────── Helper methods ──────────────────
+
+    /**
+     * Same mapping as the app (all @Document models + MongoConfig conversions), without a Spring context
+     */
+    private static MongoTemplate template(MongoClient client) throws ClassNotFoundException {
+        MongoCustomConversions conversions = new MongoConfig().mongoCustomConversions();
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setInitialEntitySet(documents());
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.setAutoIndexCreation(false);
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        return new MongoTemplate(new SimpleMongoClientDatabaseFactory(client, "index_plan_check"), converter);
+    }
+
+    private static Set<Class<?>> documents() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Document.class));
+        Set<Class<?>> out = new HashSet<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents("com.example.backend.model")) {
+            out.add(Class.forName(candidate.getBeanClassName()));
+        }
+        return out;
+    }
+}
@@ -1,5 +1,6 @@
 import React, { useState, useEffect } from "react";
 import { useNavigate } from "react-router-dom";
+import { studentPhotoUrl } from "../services/api";
 import "../styles/StudentCard.css";
 
 function StudentCard({ student, isDemo, onPrint, onUpdate }) {
@@ -35,6 +36,9 @@ function StudentCard({ student, isDemo, onPrint, onUpdate }) {
 
   const makeCall = (phone) => window.location.href = `tel:${phone}`;
 
+  const avatarUrl = `https://ui-avatars.com/api/?name=${formData.name}&background=c2185b&color=fff&size=150`;
+  const studentCode = student.studentCode || student.id;
+
   return (
     <div className={`student-card-organized ${isEditing ? 'editing-mode' : ''}`}>
       {isDemo && <div className="demo-badge">DEMO MODE</div>}
@@ -50,7 +54,9 @@ function StudentCard({ student, isDemo, onPrint, onUpdate }) {
           <div className="avatar-container">
             <img
               className="student-photo-large"
-              src={`https://ui-avatars.com/api/?name=${formData.name}&background=c2185b&color=fff&size=150`}
+              src={studentCode ? studentPhotoUrl(studentCode, 256) : avatarUrl}
+              onError={(e) => { e.currentTarget.onerror = null; e.currentTarget.src = avatarUrl; }}
+              loading="lazy"
               alt="Student"
             />
           </div>
@@ -139,16 +145,10 @@ function StudentCard({ student, isDemo, onPrint, onUpdate }) {
             </div>
             <div className="grid-item">
               <label>Payment Status</label>
-              {isEditing ? (
-                <select className="edit-input" name="payment_status" value={formData.payment_status} onChange={handleChange}>
-                  <option value="Paid">Paid</option>
-                  <option value="Pending">Pending</option>
-                </select>
-              ) : (
-                <span className={`status-pill ${student.payment_status?.toLowerCase()}`}>
-                  {student.payment_status}
-                </span>
-              )}
+              {/* بتتحسب من الدفعات على السيرفر – للعرض بس */}
+              <span className={`status-pill ${student.payment_status?.toLowerCase()}`}>
+                {student.payment_status}
+              </span>
             </div>
           </div>
 
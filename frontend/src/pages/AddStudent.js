@@ -126,18 +126,8 @@ function AddStudent() {
       console.log("نجاح! الحالة:", response.status);
       const newStudent = response.data;
 
-      // ─── الجزء التلقائي المهم ───
-      // طلب تسجيل الوجه تلقائيًا في الـ face server
-      try {
-        await axios.post("http://localhost:8000/register_new_face", {
-          student_code: newStudent.studentCode,
-        });
-        console.log("تم طلب تسجيل الوجه تلقائيًا للطالب:", newStudent.studentCode);
-        setSuccessMessage("تم إضافة الطالب وتسجيل الوجه بنجاح!");
-      } catch (faceErr) {
-        console.warn("فشل طلب تسجيل الوجه (لكن الطالب تم إضافته):", faceErr);
-        setSuccessMessage("تم إضافة الطالب بنجاح، لكن تسجيل الوجه فشل. يرجى المحاولة لاحقًا.");
-      }
+      // تسجيل الوجه في الـ face server بيحصل من الـ backend نفسه بعد حفظ الصور
+      setSuccessMessage("تم إضافة الطالب بنجاح، وجاري تسجيل الوجه.");
 
       // الانتقال لصفحة الطالب
       navigate(`/student/${newStudent.studentCode}`, {
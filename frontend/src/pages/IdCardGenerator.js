@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from "react";
 import { useLocation, useNavigate } from "react-router-dom";
 import Barcode from "react-barcode";
+import { studentPhotoUrl, renderIdCards } from "../services/api";
 import "../styles/IdCardGenerator.css";
 
 function IdCardGenerator() {
@@ -24,15 +25,35 @@ function IdCardGenerator() {
         ...student, // keep defaults like school name
         name: data.name,
         id: data.user_id || data.id, // Handle different field names
+        code: data.studentCode || data.id,
         class: data.class || "N/A"
       });
     }
   }, [location.state]);
 
+  const [classLoading, setClassLoading] = useState(false);
+  const [classError, setClassError] = useState("");
+
   const handleChange = (e) => {
     setStudent({ ...student, [e.target.name]: e.target.value });
   };
 
+  // كروت الفصل كله كـ PDF جاهز للطباعة (بيترسم على السيرفر)
+  const handlePrintClass = async () => {
+    setClassLoading(true);
+    setClassError("");
+    try {
+      const blob = await renderIdCards({ className: student.class, schoolName: student.school, format: "pdf" });
+      const url = URL.createObjectURL(blob);
+      window.open(url, "_blank");
+      setTimeout(() => URL.revokeObjectURL(url), 60000);
+    } catch (err) {
+      setClassError(err.message);
+    } finally {
+      setClassLoading(false);
+    }
+  };
+
   return (
     <div className="generator-container">
       
@@ -65,6 +86,11 @@ function IdCardGenerator() {
         <button className="btn-print-large" onClick={() => window.print()}>
           🖨️ Print ID Card
         </button>
+
+        <button className="btn-print-large" onClick={handlePrintClass} disabled={classLoading || !student.class}>
+          {classLoading ? "⏳ Rendering..." : `🗂️ Print Whole Class (${student.class})`}
+        </button>
+        {classError && <p className="preview-note">{classError}</p>}
       </div>
 
       {/* 2. RIGHT SIDE: The Live Preview (This gets printed) */}
@@ -82,7 +108,8 @@ function IdCardGenerator() {
             <div className="card-body">
               <div className="photo-section">
                 <img 
-                  src={`https://ui-avatars.com/api/?name=${student.name}&background=0D8ABC&color=fff&size=128`} 
+                  src={student.code ? studentPhotoUrl(student.code, 256) : `https://ui-avatars.com/api/?name=${student.name}&background=0D8ABC&color=fff&size=128`} 
+                  onError={(e) => { e.currentTarget.onerror = null; e.currentTarget.src = `https://ui-avatars.com/api/?name=${student.name}&background=0D8ABC&color=fff&size=128`; }}
                   alt="Student" 
                 />
               </div>
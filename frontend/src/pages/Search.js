@@ -8,10 +8,23 @@ import {
   getStudentByCode,
   getAllStudents,
   recordAttendance,
+  recognizeAndAttend,
 } from "../services/api";
 
 import "../styles/Search.css";
 
+// معرف ثابت للمتصفح ده (الـ motion gate ومنع التكرار على السيرفر بيشتغلوا لكل كاميرا)
+const CAMERA_ID_KEY = "cameraId";
+
+function browserCameraId() {
+  let id = localStorage.getItem(CAMERA_ID_KEY);
+  if (!id) {
+    id = `browser-${Math.random().toString(36).slice(2, 10)}`;
+    localStorage.setItem(CAMERA_ID_KEY, id);
+  }
+  return id;
+}
+
 function Search() {
   const [searchQuery, setSearchQuery] = useState("");
   const [barcodeScanning, setBarcodeScanning] = useState(false);
@@ -20,12 +33,12 @@ function Search() {
   const [message, setMessage] = useState("");
   const [error, setError] = useState("");
   const [loading, setLoading] = useState(false);
-  const [lastRecognized, setLastRecognized] = useState(null);
 
   const barcodeScannerRef = useRef(null);
   const faceVideoRef = useRef(null);
   const faceCanvasRef = useRef(null);
   const intervalRef = useRef(null);
+  const cameraIdRef = useRef(browserCameraId());
 
   const navigate = useNavigate();
   const { logout } = useAuth();
@@ -153,80 +166,43 @@ function Search() {
           setLoading(true);
           setError(""); // نظف الخطأ السابق
 
-          const res = await fetch("http://localhost:8000/recognize", {
-            method: "POST",
-            headers: { "Content-Type": "application/json" },
-            body: JSON.stringify({ image: base64 }),
-          });
+          // السيرفر بيعمل التعرف + ربط الطالب + تسجيل الحضور + منع التكرار في طلب واحد
+          const data = await recognizeAndAttend(base64, cameraIdRef.current);
 
-          if (!res.ok) {
-            throw new Error(`مشكلة في خادم التعرف - HTTP ${res.status}`);
+          const hit = data?.outcomes?.find(
+            (o) => o.status === "RECORDED" || o.status === "ALREADY_PRESENT"
+          );
+          if (!hit) {
+            const missing = data?.outcomes?.find((o) => o.status === "STUDENT_NOT_FOUND");
+            if (missing) {
+              setError(`تم التعرف على ${missing.label} لكن لا يوجد طالب بهذا الرقم`);
+            }
+            return;
           }
 
-          const data = await res.json();
-
-          if (data.match_success && data.best_match) {
-            const { name, confidence } = data.best_match;
-
-            // منع التكرار السريع لنفس الشخص
-            if (lastRecognized === name) return;
-
-            setLastRecognized(name);
-
-            let studentCode = name;     // الافتراضي
-            let displayName = name;
-
-            try {
-              // نحاول نجيب بيانات الطالب الحقيقية
-              const student = await getStudentByCode(name);
-
-              if (student) {
-                studentCode = student.studentCode;
-                displayName = student.fullName || name;
-              }
-              // ────── اختياري: بحث بالاسم إذا لم يُعثر بالكود ──────
-              // else {
-              //   const all = await getAllStudents({ page: 0, size: 100 });
-              //   const found = all.content?.find(s =>
-              //     s.fullName?.toLowerCase().includes(name.toLowerCase())
-              //   );
-              //   if (found) {
-              //     studentCode = found.studentCode;
-              //     displayName = found.fullName;
-              //   }
-              // }
-
-              // 1. نسجل الحضور دائمًا (مهما كان الـ mode)
-              await recordAttendance(studentCode, "face");
-
-              // 2. رسالة نجاح
-              const timeStr = new Date().toLocaleString("ar-EG", {
-                dateStyle: "medium",
-                timeStyle: "short",
-              });
-
-              setMessage(
-                `✅ مرحباً ${displayName}!\n` +
-                `تم تسجيل حضورك بثقة ${(confidence * 100).toFixed(1)}% في ${timeStr}`
-              );
-
-              // 3. إذا كنا في وضع البحث العادي → نروح لصفحة الطالب
-              if (!attendanceMode) {
-                setTimeout(() => {
-                  navigate(`/student/${studentCode}`);
-                }, 1800);
-              }
-
-              // إيقاف الكشف بعد النجاح (شائع في أنظمة الحضور)
-              // احذف هذا السطر إذا أردت الاستمرار في الكشف عن أكثر من طالب
-              setFaceScanning(false);
-            } catch (innerErr) {
-              console.error("خطأ أثناء تسجيل الحضور أو التنقل:", innerErr);
-              setError(
-                `تم التعرف على ${displayName} لكن فشل تسجيل الحضور أو عرض الملف`
-              );
-            }
+          const displayName = hit.fullName || hit.studentCode;
+          const timeStr = new Date().toLocaleString("ar-EG", {
+            dateStyle: "medium",
+            timeStyle: "short",
+          });
+
+          setMessage(
+            hit.status === "RECORDED"
+              ? `✅ مرحباً ${displayName}!\n` +
+                  `تم تسجيل حضورك بثقة ${(hit.confidence * 100).toFixed(1)}% في ${timeStr}`
+              : `ℹ️ ${displayName} مسجل حضوره اليوم بالفعل`
+          );
+
+          // إذا كنا في وضع البحث العادي → نروح لصفحة الطالب
+          if (!attendanceMode) {
+            setTimeout(() => {
+              navigate(`/student/${hit.studentCode}`);
+            }, 1800);
           }
+
+          // إيقاف الكشف بعد النجاح (شائع في أنظمة الحضور)
+          // احذف هذا السطر إذا أردت الاستمرار في الكشف عن أكثر من طالب
+          setFaceScanning(false);
         } catch (err) {
           console.error("خطأ أثناء التعرف:", err);
           setError(err.message || "حدث خطأ أثناء محاولة التعرف على الوجه");
@@ -239,7 +215,7 @@ function Search() {
       setError("تعذر فتح كاميرا الوجه. تأكد من السماح بالوصول.");
       setFaceScanning(false);
     }
-  }, [lastRecognized, attendanceMode, navigate]);
+  }, [attendanceMode, navigate]);
 
   useEffect(() => {
     if (faceScanning) {
@@ -259,7 +235,6 @@ function Search() {
   }, [faceScanning, startFaceRecognition]);
 
   const restartFaceScanning = () => {
-    setLastRecognized(null);
     setMessage("");
     setError("");
     setFaceScanning(true);
@@ -37,7 +37,7 @@ function Student() {
 
       // 2. جلب الطالب من MongoDB
       try {
-        const data = await getStudentByCode(id);
+        const data = await getStudentByCode(id, null, { history: false });
 
         if (!data) {
           setError("الطالب غير موجود");
@@ -79,8 +79,6 @@ function Student() {
             late: data.lateDays ?? 0,
           },
 
-          grades: data.grades || [],
-          examResults: data.examResults || [],
           notes: data.notes || "لا توجد ملاحظات",
         });
 
@@ -95,32 +93,44 @@ function Student() {
     fetchStudent();
   }, [id, location.state]);
 
+  // أسماء حقول الفورم → أسماء الحقول في الـ API
+  const EDITABLE_FIELDS = {
+    name: "fullName",
+    class: "className",
+    address: "address",
+    phone_number: "studentPhone",
+    parent_phone_number: "guardianPhonePrimary",
+    method_of_paying: "paymentMethod",
+    // payment_status بيتحسب على السيرفر من الدفعات (postPayment) – مش بيتعدل من هنا
+  };
+
   // ─── دالة الحفظ في MongoDB ───
   const handleSaveChanges = async (updatedData) => {
     if (!student?.studentCode) return;
 
+    // نبعت اللي اتغير بس (PATCH = $set للحقول دي)
+    const changes = {};
+    Object.entries(EDITABLE_FIELDS).forEach(([formKey, apiKey]) => {
+      const value = updatedData[formKey];
+      if (value !== undefined && value !== student[formKey] && value !== "غير محدد") {
+        changes[apiKey] = value;
+      }
+    });
+    if (Object.keys(changes).length === 0) return;
+
     setSaveLoading(true);
     setSaveMessage("");
     setError("");
 
     try {
-      await updateStudent(student.studentCode, updatedData);
+      const saved = await updateStudent(student.studentCode, changes, student.version);
 
+      // حقول الفورم + نفس القيم بأسماء الـ API + النسخة الجديدة (للـ If-Match الجاي)
       setStudent((prev) => ({
         ...prev,
         ...updatedData,
-        name: updatedData.fullName || prev.name,
-        class: updatedData.className || prev.class,
-        phone_number: updatedData.studentPhone || prev.phone_number,
-        parent_phone_number: updatedData.guardianPhonePrimary || prev.parent_phone_number,
-        address: updatedData.address || prev.address,
-        payment_status: updatedData.paymentStatus || prev.payment_status,
-        total_fees: updatedData.totalFees ?? prev.total_fees,
-        amount_paid: updatedData.amountPaid ?? prev.amount_paid,
-        // حافظ على الحقول المهمة للـ Dashboard لو تم تعديلها
-        presentDays: updatedData.presentDays ?? prev.presentDays,
-        absentDays: updatedData.absentDays ?? prev.absentDays,
-        lateDays: updatedData.lateDays ?? prev.lateDays,
+        ...changes,
+        version: saved?.version ?? prev.version,
       }));
 
       setSaveMessage("تم حفظ التعديلات بنجاح ✓");
@@ -11,14 +11,28 @@ import {
   Cell,
   Legend,
 } from "recharts";
+import { getStudentAnalytics } from "../services/api";
 import "../styles/StudentDashboard.css";
 
 function StudentDashboard({ student }) {
-  // ─── قراءة مباشرة من الداتا الحقيقية ────────────────────────────────
-  console.log("Dashboard props → ", student);
-  const presentDays = Number(student?.presentDays ?? 0);
-  const absentDays  = Number(student?.absentDays ?? 0);
-  const lateDays    = Number(student?.lateDays ?? 0);
+  // ─── الإحصائيات متجمعة من السيرفر (مش بنحمل تاريخ الطالب كله) ─────────
+  const studentCode = student?.studentCode;
+  const [analytics, setAnalytics] = React.useState(null);
+
+  React.useEffect(() => {
+    if (!studentCode) return;
+    const controller = new AbortController();
+    getStudentAnalytics(studentCode, controller.signal)
+      .then(setAnalytics)
+      .catch((err) => {
+        if (err.name !== "AbortError") console.error("خطأ في تحميل إحصائيات الطالب:", err);
+      });
+    return () => controller.abort();
+  }, [studentCode, student?.version]);
+
+  const presentDays = Number(analytics?.presentDays ?? student?.presentDays ?? 0);
+  const absentDays  = Number(analytics?.absentDays ?? student?.absentDays ?? 0);
+  const lateDays    = Number(analytics?.lateDays ?? student?.lateDays ?? 0);
 
   const totalDays = presentDays + absentDays + lateDays;
   const presencePercentage =
@@ -33,75 +47,30 @@ function StudentDashboard({ student }) {
     [presentDays, absentDays, lateDays]
   );
 
-  const hasGradesOrExams =
-    (student?.grades?.length ?? 0) > 0 ||
-    (student?.examResults?.length ?? 0) > 0;
-
-  const performanceData = React.useMemo(() => {
-    if (!hasGradesOrExams) return [];
-
-    const monthlyMap = new Map();
-
-    (student?.grades || []).forEach((g) => {
-      if (!g?.date) return;
-      const key = new Date(g.date).toLocaleString("ar-EG", {
-        month: "short",
-        year: "numeric",
-      });
-      if (!monthlyMap.has(key)) monthlyMap.set(key, { sum: 0, count: 0 });
-      const entry = monthlyMap.get(key);
-      entry.sum += (g.score / (g.maxScore || 1)) * 100;
-      entry.count += 1;
-    });
-
-    (student?.examResults || []).forEach((e) => {
-      if (!e?.date) return;
-      const key = new Date(e.date).toLocaleString("ar-EG", {
-        month: "short",
-        year: "numeric",
-      });
-      if (!monthlyMap.has(key)) monthlyMap.set(key, { sum: 0, count: 0 });
-      const entry = monthlyMap.get(key);
-      entry.sum += (e.obtainedMarks / (e.totalMarks || 1)) * 100;
-      entry.count += 1;
-    });
-
-    return Array.from(monthlyMap.entries())
-      .map(([month, data]) => ({
-        month,
-        avg: Math.round(data.sum / data.count) || 0,
-      }))
-      .sort((a, b) => new Date(a.month) - new Date(b.month));
-  }, [student?.grades, student?.examResults]);
-
-  const recentAssessments = React.useMemo(() => {
-    const list = [];
-
-    (student?.grades || []).forEach((g) => {
-      list.push({
-        type: "درجة",
-        subject: g.subject || "غير محدد",
-        date: g.date ? new Date(g.date).toLocaleDateString("ar-EG") : "غير محدد",
-        score: `${g.score ?? 0}/${g.maxScore ?? "?"}`,
-        status: (g.score ?? 0) >= (g.maxScore ?? 1) * 0.5 ? "نجاح" : "رسوب",
-      });
-    });
-
-    (student?.examResults || []).forEach((e) => {
-      list.push({
-        type: "امتحان",
-        subject: e.examName || "غير محدد",
-        date: e.date ? new Date(e.date).toLocaleDateString("ar-EG") : "غير محدد",
-        score: `${e.obtainedMarks ?? 0}/${e.totalMarks ?? "?"}`,
-        status:
-          (e.obtainedMarks ?? 0) >= (e.totalMarks ?? 1) * 0.5 ? "نجاح" : "رسوب",
-      });
-    });
+  // متوسط الدرجات + الامتحانات لكل شهر ("yyyy-MM" من السيرفر، مترتب)
+  const performanceData = React.useMemo(
+    () =>
+      (analytics?.performance || []).map((p) => ({
+        month: new Date(`${p.month}-01`).toLocaleString("ar-EG", {
+          month: "short",
+          year: "numeric",
+        }),
+        avg: Math.round(p.average) || 0,
+      })),
+    [analytics?.performance]
+  );
 
-    return list
-      .sort((a, b) => new Date(b.date) - new Date(a.date))
-      .slice(0, 5);
-  }, [student?.grades, student?.examResults]);
+  const recentAssessments = React.useMemo(
+    () =>
+      (analytics?.recent || []).map((a) => ({
+        type: a.type === "exam" ? "امتحان" : "درجة",
+        subject: a.subject || "غير محدد",
+        date: a.date ? new Date(a.date).toLocaleDateString("ar-EG") : "غير محدد",
+        score: `${a.score ?? 0}/${a.maxScore ?? "?"}`,
+        status: (a.score ?? 0) >= (a.maxScore || 1) * 0.5 ? "نجاح" : "رسوب",
+      })),
+    [analytics?.recent]
+  );
 
   if (!student) {
     return (
@@ -1,59 +1,98 @@
 import React, { useState, useEffect } from "react";
 import { useNavigate } from "react-router-dom";
-import { getAllStudents } from "../services/api";   // ← افترض إنك مستوردها
+import { getReceivables, getReceivablesSummary, getMyPayroll } from "../services/api";
 import "../styles/TeacherSalary.css";
 
+const PAGE_SIZE = 20;
+
+const STATUS_LABELS = {
+  PAID: "كامل",
+  PARTIAL: "جزئي",
+  PENDING: "لم يدفع",
+  OVERDUE: "متأخر",
+};
+
+const STATUS_PILLS = {
+  PAID: "full",
+  PARTIAL: "partial",
+  PENDING: "none",
+  OVERDUE: "overdue",
+};
+
 function TeacherSalary() {
   const navigate = useNavigate();
 
+  // الإجماليات من السيرفر (aggregation) + صفحة واحدة من الذمم مترتبة بالرصيد
+  const [summary, setSummary] = useState(null);
+  const [payroll, setPayroll] = useState(null);
   const [students, setStudents] = useState([]);
+  const [page, setPage] = useState(0);
+  const [totalPages, setTotalPages] = useState(0);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
 
   useEffect(() => {
-    const fetchPaymentData = async () => {
+    const controller = new AbortController();
+    getReceivablesSummary(null, controller.signal)
+      .then(setSummary)
+      .catch((err) => {
+        if (err.name === "AbortError") return;
+        console.error("خطأ في جلب بيانات المصروفات:", err);
+        setError("تعذر تحميل بيانات المصروفات");
+      });
+    // المرتب بيتحسب على السيرفر (PayrollService) – لغير المدرسين الطلب بيرجع 403 والكارت بيفضل فاضي
+    getMyPayroll(null, controller.signal)
+      .then(setPayroll)
+      .catch((err) => {
+        if (err.name !== "AbortError") console.warn("مرتب المدرس غير متاح:", err);
+      });
+    return () => controller.abort();
+  }, []);
+
+  useEffect(() => {
+    const controller = new AbortController();
+    const fetchPage = async () => {
       try {
         setLoading(true);
         setError(null);
 
-        // جلب كل الطلاب (يمكن تحسينه لاحقاً بـ endpoint مخصص)
-        const response = await getAllStudents({ page: 0, size: 1000 });
-
-        // افتراض أن response فيه content (pagination)
-        const studentList = response.content || response || [];
+        const response = await getReceivables({ page, size: PAGE_SIZE, signal: controller.signal });
 
         // تحويل البيانات للشكل اللي نحتاجه
-        const formatted = studentList.map((s) => ({
+        const formatted = (response.content || []).map((s) => ({
           id: s.studentCode,
           name: s.fullName,
           paid: s.amountPaid || 0,
-          total: s.totalFees || 0,
+          remaining: s.balanceDue || 0,
           status: s.paymentStatus || "PENDING",
         }));
 
         setStudents(formatted);
+        setTotalPages(response.totalPages || 0);
       } catch (err) {
+        if (err.name === "AbortError") return;
         console.error("خطأ في جلب بيانات المصروفات:", err);
         setError("تعذر تحميل بيانات المصروفات");
       } finally {
-        setLoading(false);
+        if (!controller.signal.aborted) setLoading(false);
       }
     };
 
-    fetchPaymentData();
-  }, []);
+    fetchPage();
+    return () => controller.abort();
+  }, [page]);
 
-  // الحسابات بناءً على البيانات الحقيقية
-  const totalCollected = students.reduce((acc, curr) => acc + curr.paid, 0);
-  const totalFeesAll = students.reduce((acc, curr) => acc + curr.total, 0);
-  const totalRemaining = totalFeesAll - totalCollected;
+  const totalCollected = summary?.collected || 0;
+  const totalRemaining = summary?.outstanding || 0;
 
-  const teacherCommissionRate = 0.10; // 10% — يمكن جلبها من الـ backend لاحقاً
-  const teacherSalary = totalCollected * teacherCommissionRate;
+  const teacherSalary = payroll?.total;
+  const sharePercents = [...new Set((payroll?.classes || []).map((c) => c.sharePercent))];
+  const salaryLabel = sharePercents.length === 1 ? `راتبك (${sharePercents[0]}%)` : "راتبك";
 
-  const fullyPaidCount = students.filter(s => s.paid >= s.total).length;
-  const partialCount = students.filter(s => s.paid > 0 && s.paid < s.total).length;
-  const notPaidCount = students.length - fullyPaidCount - partialCount;
+  const fullyPaidCount = summary?.byStatus?.PAID || 0;
+  const partialCount = summary?.byStatus?.PARTIAL || 0;
+  const overdueCount = summary?.byStatus?.OVERDUE || 0;
+  const notPaidCount = summary?.byStatus?.PENDING || 0;
 
   if (loading) {
     return (
@@ -93,15 +132,15 @@ function TeacherSalary() {
         <div className="salary-stats">
           <div className="stat-card">
             <span className="stat-label">عدد الطلاب</span>
-            <span className="stat-value">{students.length}</span>
+            <span className="stat-value">{summary?.students ?? "..."}</span>
           </div>
           <div className="stat-card highlight">
             <span className="stat-label">إجمالي المحصل (جنيه)</span>
             <span className="stat-value">{totalCollected.toLocaleString()}</span>
           </div>
           <div className="stat-card salary">
-            <span className="stat-label">راتبك (10%)</span>
-            <span className="stat-value">{teacherSalary.toLocaleString()}</span>
+            <span className="stat-label">{salaryLabel}</span>
+            <span className="stat-value">{teacherSalary != null ? teacherSalary.toLocaleString() : "—"}</span>
           </div>
         </div>
 
@@ -110,6 +149,7 @@ function TeacherSalary() {
           <div>كامل الدفع: <strong>{fullyPaidCount}</strong></div>
           <div>جزئي: <strong>{partialCount}</strong></div>
           <div>لم يدفع: <strong>{notPaidCount}</strong></div>
+          <div>متأخر: <strong>{overdueCount}</strong></div>
           <div>المتبقي كلياً: <strong>{totalRemaining.toLocaleString()} ج.م</strong></div>
         </div>
 
@@ -117,7 +157,7 @@ function TeacherSalary() {
         <div className="salary-table-wrapper">
           {students.length === 0 ? (
             <div className="no-data">
-              <p>لا توجد بيانات طلاب بعد</p>
+              <p>لا توجد مبالغ متبقية على الطلاب</p>
             </div>
           ) : (
             <table className="salary-table">
@@ -139,23 +179,11 @@ function TeacherSalary() {
                       {student.paid.toLocaleString()} ج.م
                     </td>
                     <td className="remaining-amount">
-                      {(student.total - student.paid).toLocaleString()} ج.م
+                      {student.remaining.toLocaleString()} ج.م
                     </td>
                     <td>
-                      <span
-                        className={`status-pill ${
-                          student.paid >= student.total
-                            ? "full"
-                            : student.paid > 0
-                            ? "partial"
-                            : "none"
-                        }`}
-                      >
-                        {student.paid >= student.total
-                          ? "كامل"
-                          : student.paid > 0
-                          ? "جزئي"
-                          : "لم يدفع"}
+                      <span className={`status-pill ${STATUS_PILLS[student.status] || "none"}`}>
+                        {STATUS_LABELS[student.status] || student.status}
                       </span>
                     </td>
                   </tr>
@@ -164,6 +192,15 @@ function TeacherSalary() {
             </table>
           )}
         </div>
+
+        {/* الصفحات (الأكبر رصيد الأول) */}
+        {totalPages > 1 && (
+          <div className="salary-pagination">
+            <button disabled={page === 0} onClick={() => setPage((p) => p - 1)}>السابق</button>
+            <span>{page + 1} / {totalPages}</span>
+            <button disabled={page + 1 >= totalPages} onClick={() => setPage((p) => p + 1)}>التالي</button>
+          </div>
+        )}
       </div>
     </div>
   );
@@ -62,6 +62,10 @@ const handleResponse = async (res) => {
       throw new Error(data?.message || "العنصر غير موجود");
     }
 
+    if (res.status === 412) {
+      throw new Error("البيانات اتعدلت من مستخدم تاني. حدّث الصفحة وحاول مرة أخرى");
+    }
+
     if (res.status === 409) {
       throw new Error(data?.message || "البيانات موجودة بالفعل");
     }
@@ -101,8 +105,10 @@ const logout = () => {
 };
 
 // ─── Students ────────────────────────────────────────────────────────────────
-const getStudentByCode = async (code, signal = null) => {
-  const res = await fetch(`${BASE_URL}/students/code/${encodeURIComponent(code)}`, {
+// history: false → من غير سجلات الحضور والدرجات (الداشبورد بياخدها متجمعة من getStudentAnalytics)
+const getStudentByCode = async (code, signal = null, { history = true } = {}) => {
+  const query = history ? "" : "?history=false";
+  const res = await fetch(`${BASE_URL}/students/code/${encodeURIComponent(code)}${query}`, {
     headers: createHeaders(),
     signal,
   });
@@ -157,10 +163,14 @@ const addStudent = async (studentData, signal = null) => {
   return handleResponse(res);
 };
 
-const updateStudent = async (code, updates, signal = null) => {
-  const res = await fetch(`${BASE_URL}/students/code/${encodeURIComponent(code)}`, {
-    method: "PUT",
-    headers: createHeaders(true),
+// updates = الحقول المتغيرة بس؛ version (من بيانات الطالب) → If-Match عشان منكتبش فوق تعديل حد تاني
+const updateStudent = async (code, updates, version = null, signal = null) => {
+  const headers = createHeaders(true);
+  if (version !== null && version !== undefined) headers["If-Match"] = `"${version}"`;
+
+  const res = await fetch(`${BASE_URL}/students/${encodeURIComponent(code)}`, {
+    method: "PATCH",
+    headers,
     body: JSON.stringify(updates),
     signal,
   });
@@ -187,6 +197,17 @@ const recordAttendance = async (code, method = "face", recordedBy = "system", si
   return handleResponse(res);
 };
 
+// فريم واحد → تعرف + تسجيل حضور على السيرفر (بدل recognize ثم getStudentByCode ثم attend)
+const recognizeAndAttend = async (image, cameraId = "browser", signal = null) => {
+  const res = await fetch(`${BASE_URL}/attendance/recognize`, {
+    method: "POST",
+    headers: createHeaders(true),
+    body: JSON.stringify({ image, cameraId }),
+    signal,
+  });
+  return handleResponse(res);
+};
+
 const getAttendanceHistory = async (code, fromDate, toDate, signal = null) => {
   const params = new URLSearchParams();
   if (fromDate) params.append("from", fromDate);
@@ -202,6 +223,16 @@ const getAttendanceHistory = async (code, fromDate, toDate, signal = null) => {
   return handleResponse(res);
 };
 
+// صورة الإثبات لحضور بالوش (record.snapshot = "<yyyy-MM-dd>/<file>.jpg") → blob للعرض
+const getAttendanceSnapshot = async (snapshot, signal = null) => {
+  const res = await fetch(`${BASE_URL}/attendance/snapshots/${snapshot}`, {
+    headers: createHeaders(true, null),
+    signal,
+  });
+  if (!res.ok) return handleResponse(res);
+  return res.blob();
+};
+
 // ─── Grades / Exams ──────────────────────────────────────────────────────────
 const addGradeOrExam = async (code, data, signal = null) => {
   const res = await fetch(`${BASE_URL}/students/${encodeURIComponent(code)}/grade`, {
@@ -213,6 +244,27 @@ const addGradeOrExam = async (code, data, signal = null) => {
   return handleResponse(res);
 };
 
+// شيت درجات فصل لامتحان واحد: { examName, totalMarks, date, className, rows: [{ studentCode, obtainedMarks }] }
+// الرد: { applied, alreadyEntered, unknownStudents } – إعادة الإرسال مش بتكرر الدرجات
+const submitGradeSheet = async (sheet, signal = null) => {
+  const res = await fetch(`${BASE_URL}/students/grade-sheet`, {
+    method: "POST",
+    headers: createHeaders(true),
+    body: JSON.stringify(sheet),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// إحصائيات الداشبورد: attendance (لكل شهر)، grades (مادة × شهر)، performance، exams، recent
+const getStudentAnalytics = async (code, signal = null) => {
+  const res = await fetch(`${BASE_URL}/students/${encodeURIComponent(code)}/analytics`, {
+    headers: createHeaders(),
+    signal,
+  });
+  return handleResponse(res);
+};
+
 const getStudentGrades = async (code, signal = null) => {
   const res = await fetch(`${BASE_URL}/students/${encodeURIComponent(code)}/grades`, {
     headers: createHeaders(),
@@ -221,6 +273,81 @@ const getStudentGrades = async (code, signal = null) => {
   return handleResponse(res);
 };
 
+// ─── Payments (ledger) ───────────────────────────────────────────────────────
+// payment: { studentCode, type ("PAYMENT" | "REFUND" | "ADJUSTMENT"), amount, method, reference, note }
+// idempotencyKey: نفس المفتاح عند إعادة المحاولة → الدفعة مش بتتسجل مرتين
+const postPayment = async (payment, idempotencyKey = crypto.randomUUID(), signal = null) => {
+  const headers = createHeaders(true);
+  headers["Idempotency-Key"] = idempotencyKey;
+  const res = await fetch(`${BASE_URL}/payments`, {
+    method: "POST",
+    headers,
+    body: JSON.stringify(payment),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// الرد: amountPaid / paymentStatus + ledgerPaid و consistent + transactions (الأحدث الأول)
+const getPaymentLedger = async (code, page = 0, size = 20, signal = null) => {
+  const res = await fetch(`${BASE_URL}/payments/students/${encodeURIComponent(code)}?page=${page}&size=${size}`, {
+    headers: createHeaders(true),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// الذمم: الطلاب اللي عليهم فلوس، الأكبر رصيد الأول – Page ({ content, totalElements, totalPages, ... })
+const getReceivables = async ({ className, status, page = 0, size = 20, signal = null } = {}) => {
+  const params = new URLSearchParams({ page: page.toString(), size: size.toString() });
+  if (className) params.append("className", className);
+  if (status) params.append("status", status);
+
+  const res = await fetch(`${BASE_URL}/payments/receivables?${params.toString()}`, {
+    headers: createHeaders(true),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// { students, totalFees, collected, outstanding, byStatus: { PAID, PARTIAL, PENDING, OVERDUE } }
+const getReceivablesSummary = async (className = null, signal = null) => {
+  const query = className ? `?className=${encodeURIComponent(className)}` : "";
+  const res = await fetch(`${BASE_URL}/payments/receivables/summary${query}`, {
+    headers: createHeaders(true),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// ─── Payroll ─────────────────────────────────────────────────────────────────
+// مرتب المدرس اللي عامل login: { month, classes: [{ className, collected, sharePercent, amount }], collected, total }
+const getMyPayroll = async (month = null, signal = null) => {
+  const query = month ? `?month=${encodeURIComponent(month)}` : "";
+  const res = await fetch(`${BASE_URL}/payroll/me${query}`, {
+    headers: createHeaders(true),
+    signal,
+  });
+  return handleResponse(res);
+};
+
+// رابط صورة الطالب المصغرة (64 / 128 / 256) – GET عام، المتصفح بيكيّشها بالـ ETag
+const studentPhotoUrl = (code, size = 128) =>
+  `${BASE_URL}/students/${encodeURIComponent(code)}/photo?size=${size}`;
+
+// ─── ID cards (طباعة فصل كامل من السيرفر) ────────────────────────────────────
+// body: { className, division } أو { codes: [...] } + format ("pdf" | "png") + schoolName
+const renderIdCards = async (request, signal = null) => {
+  const res = await fetch(`${BASE_URL}/id-cards/render`, {
+    method: "POST",
+    headers: createHeaders(true),
+    body: JSON.stringify(request),
+    signal,
+  });
+  if (!res.ok) return handleResponse(res);
+  return res.blob();
+};
+
 // ─── Named exports (التصدير الوحيد في الملف) ───────────────────────────────
 export {
   login,
@@ -232,7 +359,18 @@ export {
   updateStudent,
   deleteStudent,
   recordAttendance,
+  recognizeAndAttend,
   getAttendanceHistory,
+  getAttendanceSnapshot,
   addGradeOrExam,
   getStudentGrades,
+  getStudentAnalytics,
+  submitGradeSheet,
+  postPayment,
+  getPaymentLedger,
+  getReceivables,
+  getReceivablesSummary,
+  getMyPayroll,
+  studentPhotoUrl,
+  renderIdCards,
 };
\ No newline at end of file